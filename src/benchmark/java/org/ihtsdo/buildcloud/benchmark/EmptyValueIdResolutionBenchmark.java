@@ -0,0 +1,63 @@
+package org.ihtsdo.buildcloud.benchmark;
+
+import org.ihtsdo.buildcloud.core.service.build.database.RF2TableExportDAO;
+import org.ihtsdo.buildcloud.core.service.build.database.map.RF2TableExportDAOImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolving the empty value ids of an attribute value delta against the previous snapshot of the refset.
+ * A share of the members are inactivated with an empty value id. The resolution is a linear scan of the table and
+ * the previous snapshot, so the time should grow in proportion to the number of members.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EmptyValueIdResolutionBenchmark {
+
+	private static final String FILENAME = "der2_cRefset_AttributeValueDelta_INT_20250131.txt";
+	private static final String PREVIOUS_EFFECTIVE_TIME = "20240731";
+	private static final String EFFECTIVE_TIME = "20250131";
+
+	@Param({"100000", "1000000"})
+	private int members;
+
+	@Param("0.2")
+	private double emptyValueRatio;
+
+	private byte[] deltaFile;
+	private byte[] previousSnapshotFile;
+	private RF2TableExportDAO tableDAO;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Rf2DataGenerator generator = new Rf2DataGenerator(42);
+		List<String> memberIds = generator.memberIds(members);
+		previousSnapshotFile = generator.attributeValueRefset(memberIds, PREVIOUS_EFFECTIVE_TIME, true, false);
+		deltaFile = generator.attributeValueRefset(memberIds.subList(0, (int) (members * emptyValueRatio)), EFFECTIVE_TIME, false, true);
+	}
+
+	@Setup(Level.Invocation)
+	public void createTable() throws Exception {
+		tableDAO = new RF2TableExportDAOImpl(Collections.emptyMap());
+		tableDAO.createTable(FILENAME, new ByteArrayInputStream(deltaFile), true);
+	}
+
+	@TearDown(Level.Invocation)
+	public void closeTable() throws Exception {
+		tableDAO.closeConnection();
+	}
+
+	@Benchmark
+	public RF2TableExportDAO resolveEmptyValueId() throws Exception {
+		tableDAO.resolveEmptyValueId(new ByteArrayInputStream(previousSnapshotFile), EFFECTIVE_TIME);
+		return tableDAO;
+	}
+}
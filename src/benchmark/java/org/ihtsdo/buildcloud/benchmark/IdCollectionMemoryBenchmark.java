@@ -0,0 +1,156 @@
+package org.ihtsdo.buildcloud.benchmark;
+
+import org.ihtsdo.buildcloud.core.service.build.database.primitive.LongHashSet;
+import org.ihtsdo.buildcloud.core.service.build.database.primitive.LongLongHashMap;
+import org.ihtsdo.buildcloud.core.service.build.database.primitive.SortedLongSet;
+import org.ihtsdo.buildcloud.core.service.build.database.primitive.UuidLongHashMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Heap taken by the id collections of a transformation, as the ids of a previous concept snapshot, concept to module ids
+ * and relationship UUIDs to SCTIDs, held in boxed collections and in primitive ones.
+ * The bytesPerEntry counter is the heap still used after building the collection divided by the number of entries,
+ * including the Strings and Longs held by the boxed collections. Run with a serial collector so that the heap
+ * after a full collection only holds live objects.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-XX:+UseSerialGC")
+public class IdCollectionMemoryBenchmark {
+
+	@Param("1000000")
+	private int entries;
+
+	private long[] conceptIds;
+	private long[] moduleIds;
+	private UUID[] uuids;
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Footprint {
+
+		public double bytesPerEntry;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			bytesPerEntry = 0;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Random random = new Random(42);
+		conceptIds = new long[entries];
+		moduleIds = new long[entries];
+		uuids = new UUID[entries];
+		for (int i = 0; i < entries; i++) {
+			conceptIds[i] = 100000000L + i * 1000L + random.nextInt(1000);
+			moduleIds[i] = random.nextBoolean() ? 900000000000207008L : 900000000000012004L;
+			uuids[i] = new UUID(random.nextLong(), random.nextLong());
+		}
+	}
+
+	@Benchmark
+	public Object conceptIdsHashSetOfLong(Footprint footprint) {
+		return measure(footprint, () -> {
+			Set<Long> set = new HashSet<>();
+			for (long conceptId : conceptIds) {
+				set.add(conceptId);
+			}
+			return set;
+		});
+	}
+
+	@Benchmark
+	public Object conceptIdsLongHashSet(Footprint footprint) {
+		return measure(footprint, () -> {
+			LongHashSet set = new LongHashSet();
+			for (long conceptId : conceptIds) {
+				set.add(conceptId);
+			}
+			return set;
+		});
+	}
+
+	@Benchmark
+	public Object conceptIdsSortedLongSet(Footprint footprint) {
+		return measure(footprint, () -> {
+			SortedLongSet.Builder builder = new SortedLongSet.Builder();
+			for (long conceptId : conceptIds) {
+				builder.add(conceptId);
+			}
+			return builder.build();
+		});
+	}
+
+	@Benchmark
+	public Object conceptModulesHashMapOfString(Footprint footprint) {
+		return measure(footprint, () -> {
+			Map<String, String> map = new HashMap<>();
+			for (int i = 0; i < entries; i++) {
+				map.put(Long.toString(conceptIds[i]), Long.toString(moduleIds[i]));
+			}
+			return map;
+		});
+	}
+
+	@Benchmark
+	public Object conceptModulesLongLongHashMap(Footprint footprint) {
+		return measure(footprint, () -> {
+			LongLongHashMap map = new LongLongHashMap();
+			for (int i = 0; i < entries; i++) {
+				map.put(conceptIds[i], moduleIds[i]);
+			}
+			return map;
+		});
+	}
+
+	@Benchmark
+	public Object relationshipUuidsHashMapOfString(Footprint footprint) {
+		return measure(footprint, () -> {
+			Map<String, String> map = new HashMap<>();
+			for (int i = 0; i < entries; i++) {
+				map.put(uuids[i].toString(), Long.toString(conceptIds[i]));
+			}
+			return map;
+		});
+	}
+
+	@Benchmark
+	public Object relationshipUuidsUuidLongHashMap(Footprint footprint) {
+		return measure(footprint, () -> {
+			UuidLongHashMap map = new UuidLongHashMap();
+			for (int i = 0; i < entries; i++) {
+				map.put(uuids[i], conceptIds[i]);
+			}
+			return map;
+		});
+	}
+
+	private Object measure(Footprint footprint, Supplier<Object> collectionBuilder) {
+		final long before = usedHeap();
+		final Object collection = collectionBuilder.get();
+		footprint.bytesPerEntry = (double) (usedHeap() - before) / entries;
+		return collection;
+	}
+
+	private static long usedHeap() {
+		final Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
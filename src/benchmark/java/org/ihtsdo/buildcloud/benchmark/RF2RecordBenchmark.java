@@ -0,0 +1,86 @@
+package org.ihtsdo.buildcloud.benchmark;
+
+import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
+import org.ihtsdo.buildcloud.core.service.build.RF2Record;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the id, effectiveTime and active flag of relationship lines with String.split and with an {@link RF2Record},
+ * as done when loading the export table and writing the full and snapshot files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RF2RecordBenchmark {
+
+	@Param("100000")
+	private int rows;
+
+	private List<String> lines;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		lines = new Rf2DataGenerator(42).relationshipLines(rows, "20250131");
+		// Give the lines ids, they are empty in classification results
+		for (int i = 0; i < lines.size(); i++) {
+			lines.set(i, (100000020L + i * 10L) + lines.get(i));
+		}
+	}
+
+	@Benchmark
+	public void splitAllFields(Blackhole blackhole) {
+		for (String line : lines) {
+			String[] values = line.split(RF2Constants.COLUMN_SEPARATOR, -1);
+			blackhole.consume(Long.parseLong(values[0]));
+			blackhole.consume(Integer.parseInt(values[1]));
+			blackhole.consume(RF2Constants.BOOLEAN_TRUE.equals(values[2]));
+		}
+	}
+
+	@Benchmark
+	public void splitWithLimit(Blackhole blackhole) {
+		for (String line : lines) {
+			String[] values = line.split(RF2Constants.COLUMN_SEPARATOR, 3);
+			blackhole.consume(values[0]);
+			blackhole.consume(values[1]);
+			blackhole.consume(values[2]);
+		}
+	}
+
+	@Benchmark
+	public void recordPrimitiveFields(Blackhole blackhole) {
+		RF2Record record = new RF2Record();
+		for (String line : lines) {
+			record.reset(line);
+			blackhole.consume(record.getSctid());
+			blackhole.consume(record.getEffectiveTime());
+			blackhole.consume(record.isActive());
+		}
+	}
+
+	@Benchmark
+	public void recordFieldValues(Blackhole blackhole) {
+		RF2Record record = new RF2Record();
+		for (String line : lines) {
+			record.reset(line);
+			blackhole.consume(record.get(0));
+			blackhole.consume(record.get(1));
+			blackhole.consume(record.getFrom(2));
+		}
+	}
+
+	@Benchmark
+	public void recordToArray(Blackhole blackhole) {
+		RF2Record record = new RF2Record();
+		for (String line : lines) {
+			blackhole.consume(record.reset(line).toArray());
+		}
+	}
+}
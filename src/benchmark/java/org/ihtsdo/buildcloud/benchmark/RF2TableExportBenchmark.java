@@ -0,0 +1,108 @@
+package org.ihtsdo.buildcloud.benchmark;
+
+import org.ihtsdo.buildcloud.core.service.build.database.RF2TableExportDAO;
+import org.ihtsdo.buildcloud.core.service.build.database.RF2TableResults;
+import org.ihtsdo.buildcloud.core.service.build.database.Rf2FileWriter;
+import org.ihtsdo.buildcloud.core.service.build.database.map.Key;
+import org.ihtsdo.buildcloud.core.service.build.database.map.RF2TableExportDAOImpl;
+import org.ihtsdo.buildcloud.core.service.build.database.map.UUIDKey;
+import org.ihtsdo.snomed.util.rf2.schema.TableSchema;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a refset into the export table and writing the delta, full and snapshot files from it.
+ * The refset has a row for each member in each release, like a previous full file merged with the current delta.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RF2TableExportBenchmark {
+
+	private static final String FILENAME = "der2_Refset_SimpleDelta_INT_20250131.txt";
+	private static final String[] EFFECTIVE_TIMES = {"20230131", "20230731", "20240131", "20240731", "20250131"};
+
+	@Param("100000")
+	private int members;
+
+	@Param("3")
+	private int releases;
+
+	// Share of members already published with the same state, which the delta export leaves out
+	@Param("0.5")
+	private double discardRatio;
+
+	private byte[] refsetFile;
+	private RF2TableExportDAO tableDAO;
+	private TableSchema tableSchema;
+	private Set<Key> deltaKeysToDiscard;
+	private Date targetEffectiveTime;
+	private final Rf2FileWriter rf2FileWriter = new Rf2FileWriter();
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		Rf2DataGenerator generator = new Rf2DataGenerator(42);
+		List<String> memberIds = generator.memberIds(members);
+		String[] effectiveTimes = new String[Math.min(releases, EFFECTIVE_TIMES.length)];
+		System.arraycopy(EFFECTIVE_TIMES, EFFECTIVE_TIMES.length - effectiveTimes.length, effectiveTimes, 0, effectiveTimes.length);
+		refsetFile = generator.simpleRefset(memberIds, effectiveTimes);
+
+		String lastEffectiveTime = effectiveTimes[effectiveTimes.length - 1];
+		deltaKeysToDiscard = new HashSet<>();
+		for (String memberId : memberIds.subList(0, (int) (memberIds.size() * discardRatio))) {
+			deltaKeysToDiscard.add(new UUIDKey(memberId, lastEffectiveTime));
+		}
+		targetEffectiveTime = new SimpleDateFormat("yyyyMMdd").parse(lastEffectiveTime);
+
+		tableDAO = new RF2TableExportDAOImpl(Collections.emptyMap());
+		tableSchema = tableDAO.createTable(FILENAME, new ByteArrayInputStream(refsetFile), false);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		tableDAO.closeConnection();
+	}
+
+	@Benchmark
+	public TableSchema insertData() throws Exception {
+		RF2TableExportDAO dao = new RF2TableExportDAOImpl(Collections.emptyMap());
+		try {
+			return dao.createTable(FILENAME, new ByteArrayInputStream(refsetFile), false);
+		} finally {
+			dao.closeConnection();
+		}
+	}
+
+	@Benchmark
+	public void selectAllOrdered(Blackhole blackhole) throws Exception {
+		RF2TableResults results = tableDAO.selectAllOrdered(tableSchema);
+		String line;
+		while ((line = results.nextLine()) != null) {
+			blackhole.consume(line);
+		}
+	}
+
+	@Benchmark
+	public void exportDelta() throws Exception {
+		rf2FileWriter.exportDelta(tableDAO.selectAllOrdered(tableSchema), tableSchema, OutputStream.nullOutputStream(), deltaKeysToDiscard);
+	}
+
+	@Benchmark
+	public void exportFullAndSnapshot() throws Exception {
+		rf2FileWriter.exportFullAndSnapshot(tableDAO.selectAllOrdered(tableSchema), tableSchema, targetEffectiveTime,
+				OutputStream.nullOutputStream(), OutputStream.nullOutputStream());
+	}
+}
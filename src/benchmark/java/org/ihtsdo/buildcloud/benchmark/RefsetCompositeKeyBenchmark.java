@@ -0,0 +1,75 @@
+package org.ihtsdo.buildcloud.benchmark;
+
+import org.ihtsdo.buildcloud.core.service.build.database.RF2TableExportDAO;
+import org.ihtsdo.buildcloud.core.service.build.database.map.RF2TableExportDAOImpl;
+import org.ihtsdo.buildcloud.core.service.build.database.map.ReferenceSetCompositeKeyPatternFactory;
+import org.ihtsdo.snomed.util.rf2.schema.TableSchema;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finding the refset id and composite key of association refset lines, as done when reconciling refset member ids
+ * and resolving already published delta states.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RefsetCompositeKeyBenchmark {
+
+	private static final String FILENAME = "der2_cRefset_AssociationDelta_INT_20250131.txt";
+	private static final String REFSET_ID = "900000000000527005";
+
+	@Param("100000")
+	private int members;
+
+	private List<String> lines;
+	private TableSchema tableSchema;
+	private ReferenceSetCompositeKeyPatternFactory patternFactory;
+	private Pattern compositeKeyPattern;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		lines = new Rf2DataGenerator(42).associationRefsetLines(members, "20250131");
+		RF2TableExportDAO tableDAO = new RF2TableExportDAOImpl(Collections.emptyMap());
+		try {
+			tableSchema = tableDAO.createTable(FILENAME, new ByteArrayInputStream(Rf2DataGenerator.toFile(Rf2DataGenerator.ASSOCIATION_REFSET_HEADER, lines)), false);
+		} finally {
+			tableDAO.closeConnection();
+		}
+		patternFactory = new ReferenceSetCompositeKeyPatternFactory(Collections.emptyMap());
+		compositeKeyPattern = patternFactory.getRefsetCompositeKeyPattern(tableSchema, REFSET_ID);
+	}
+
+	@Benchmark
+	public Pattern compilePattern() throws Exception {
+		return patternFactory.getRefsetCompositeKeyPattern(tableSchema, REFSET_ID);
+	}
+
+	@Benchmark
+	public void matchCompositeKeys(Blackhole blackhole) {
+		for (String line : lines) {
+			Matcher refsetIdMatcher = RF2TableExportDAOImpl.REFSET_ID_PATTERN.matcher(line);
+			if (refsetIdMatcher.matches()) {
+				blackhole.consume(refsetIdMatcher.group(1));
+				Matcher matcher = compositeKeyPattern.matcher(line);
+				if (matcher.matches()) {
+					StringBuilder key = new StringBuilder();
+					for (int a = 0; a < matcher.groupCount(); a++) {
+						key.append(matcher.group(a + 1));
+					}
+					blackhole.consume(key.toString());
+				}
+			}
+		}
+	}
+}
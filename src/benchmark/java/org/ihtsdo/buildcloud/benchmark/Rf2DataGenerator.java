@@ -0,0 +1,123 @@
+package org.ihtsdo.buildcloud.benchmark;
+
+import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates synthetic RF2 content of any size so that benchmarks don't depend on large release files.
+ * The same seed always gives the same content.
+ */
+public class Rf2DataGenerator {
+
+	public static final String SIMPLE_REFSET_HEADER = "id\teffectiveTime\tactive\tmoduleId\trefsetId\treferencedComponentId";
+	public static final String ASSOCIATION_REFSET_HEADER = SIMPLE_REFSET_HEADER + "\ttargetComponentId";
+	public static final String ATTRIBUTE_VALUE_REFSET_HEADER = SIMPLE_REFSET_HEADER + "\tvalueId";
+	public static final String RELATIONSHIP_HEADER = "id\teffectiveTime\tactive\tmoduleId\tsourceId\tdestinationId\trelationshipGroup\ttypeId\tcharacteristicTypeId\tmodifierId";
+
+	private static final String SIMPLE_REFSET_ID = "450990004";
+	private static final String ASSOCIATION_REFSET_ID = "900000000000527005";
+	private static final String CONCEPT_INACTIVATION_INDICATOR_REFSET_ID = "900000000000489007";
+	private static final String OUTDATED_COMPONENT = "900000000000483008";
+	private static final String IS_A = "116680003";
+	private static final String INFERRED_RELATIONSHIP = "900000000000011006";
+	private static final String EXISTENTIAL_RESTRICTION_MODIFIER = "900000000000451002";
+
+	private final Random random;
+
+	public Rf2DataGenerator(long seed) {
+		random = new Random(seed);
+	}
+
+	/**
+	 * @return the ids of refset members, which are random UUIDs as they are in authoring exports.
+	 */
+	public List<String> memberIds(int members) {
+		List<String> ids = new ArrayList<>(members);
+		for (int i = 0; i < members; i++) {
+			ids.add(new UUID(random.nextLong(), random.nextLong()).toString());
+		}
+		return ids;
+	}
+
+	/**
+	 * @return a simple refset file with a row for each member in each of the given effective times, in effective time order.
+	 */
+	public byte[] simpleRefset(List<String> memberIds, String... effectiveTimes) {
+		StringBuilder builder = new StringBuilder(SIMPLE_REFSET_HEADER).append(RF2Constants.LINE_ENDING);
+		for (String effectiveTime : effectiveTimes) {
+			for (String memberId : memberIds) {
+				builder.append(memberId).append('\t')
+						.append(effectiveTime).append('\t')
+						.append(random.nextInt(10) == 0 ? '0' : '1').append('\t')
+						.append(RF2Constants.INTERNATIONAL_CORE_MODULE_ID).append('\t')
+						.append(SIMPLE_REFSET_ID).append('\t')
+						.append(conceptId()).append(RF2Constants.LINE_ENDING);
+			}
+		}
+		return toBytes(builder);
+	}
+
+	/**
+	 * @return association refset lines without the header.
+	 */
+	public List<String> associationRefsetLines(int rows, String effectiveTime) {
+		List<String> lines = new ArrayList<>(rows);
+		for (String memberId : memberIds(rows)) {
+			lines.add(memberId + '\t' + effectiveTime + "\t1\t" + RF2Constants.INTERNATIONAL_CORE_MODULE_ID + '\t'
+					+ ASSOCIATION_REFSET_ID + '\t' + conceptId() + '\t' + conceptId());
+		}
+		return lines;
+	}
+
+	/**
+	 * @return an attribute value refset file with a row for each member, with an empty value id if emptyValueId is true.
+	 */
+	public byte[] attributeValueRefset(List<String> memberIds, String effectiveTime, boolean active, boolean emptyValueId) {
+		StringBuilder builder = new StringBuilder(ATTRIBUTE_VALUE_REFSET_HEADER).append(RF2Constants.LINE_ENDING);
+		for (String memberId : memberIds) {
+			builder.append(memberId).append('\t')
+					.append(effectiveTime).append('\t')
+					.append(active ? '1' : '0').append('\t')
+					.append(RF2Constants.INTERNATIONAL_CORE_MODULE_ID).append('\t')
+					.append(CONCEPT_INACTIVATION_INDICATOR_REFSET_ID).append('\t')
+					.append(conceptId()).append('\t')
+					.append(emptyValueId ? "" : OUTDATED_COMPONENT).append(RF2Constants.LINE_ENDING);
+		}
+		return toBytes(builder);
+	}
+
+	/**
+	 * @return inferred relationship lines without the header. The id column is empty, as it is in
+	 * classification results before ids are assigned.
+	 */
+	public List<String> relationshipLines(int rows, String effectiveTime) {
+		List<String> lines = new ArrayList<>(rows);
+		for (int i = 0; i < rows; i++) {
+			lines.add("\t" + effectiveTime + "\t1\t" + RF2Constants.INTERNATIONAL_CORE_MODULE_ID + '\t' + conceptId() + '\t'
+					+ (random.nextInt(3) == 0 ? IS_A : conceptId()) + '\t' + random.nextInt(4) + '\t' + conceptId() + '\t'
+					+ INFERRED_RELATIONSHIP + '\t' + EXISTENTIAL_RESTRICTION_MODIFIER);
+		}
+		return lines;
+	}
+
+	public static byte[] toFile(String header, List<String> lines) {
+		StringBuilder builder = new StringBuilder(header).append(RF2Constants.LINE_ENDING);
+		for (String line : lines) {
+			builder.append(line).append(RF2Constants.LINE_ENDING);
+		}
+		return toBytes(builder);
+	}
+
+	private String conceptId() {
+		// Concept SCTIDs have partition 00 before the check digit
+		return (100000 + random.nextInt(900_000_000)) + "00" + random.nextInt(10);
+	}
+
+	private static byte[] toBytes(StringBuilder builder) {
+		return builder.toString().getBytes(RF2Constants.UTF_8);
+	}
+}
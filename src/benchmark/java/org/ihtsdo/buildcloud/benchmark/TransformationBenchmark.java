@@ -0,0 +1,82 @@
+package org.ihtsdo.buildcloud.benchmark;
+
+import org.ihtsdo.buildcloud.core.entity.BuildReport;
+import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
+import org.ihtsdo.buildcloud.core.service.build.transform.CachedSctidFactory;
+import org.ihtsdo.buildcloud.core.service.build.transform.PseudoUUIDGenerator;
+import org.ihtsdo.buildcloud.core.service.build.transform.RepeatableRelationshipUUIDTransform;
+import org.ihtsdo.buildcloud.core.service.build.transform.StreamingFileTransformation;
+import org.ihtsdo.buildcloud.core.service.build.transform.TransformationFactory;
+import org.ihtsdo.buildcloud.core.service.identifier.client.IdServiceRestClientOfflineDemoImpl;
+import org.ihtsdo.snomed.util.rf2.schema.ComponentType;
+import org.ihtsdo.snomed.util.rf2.schema.TableSchema;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transforming an inferred relationship file with the same chain of transformations as a build,
+ * with ids from the offline id service so that no id service is needed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TransformationBenchmark {
+
+	private static final String FILENAME = "sct2_Relationship_Delta_INT_20250131.txt";
+	private static final String EFFECTIVE_TIME = "20250131";
+
+	@Param("100000")
+	private int relationships;
+
+	@Param("10000")
+	private int transformBufferSize;
+
+	private byte[] relationshipFile;
+	private String[][] relationshipColumns;
+	private TableSchema tableSchema;
+	private RepeatableRelationshipUUIDTransform repeatableRelationshipUUIDTransform;
+	private StreamingFileTransformation fileTransformation;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		List<String> lines = new Rf2DataGenerator(42).relationshipLines(relationships, EFFECTIVE_TIME);
+		relationshipFile = Rf2DataGenerator.toFile(Rf2DataGenerator.RELATIONSHIP_HEADER, lines);
+		relationshipColumns = new String[lines.size()][];
+		for (int i = 0; i < lines.size(); i++) {
+			relationshipColumns[i] = lines.get(i).split(RF2Constants.COLUMN_SEPARATOR, -1);
+		}
+		tableSchema = new TableSchema(ComponentType.RELATIONSHIP, FILENAME);
+		repeatableRelationshipUUIDTransform = new RepeatableRelationshipUUIDTransform(RF2Constants.RelationshipFileType.INFERRED);
+	}
+
+	/**
+	 * A new id cache for each run so that every run asks for ids as a build would.
+	 */
+	@Setup(Level.Invocation)
+	public void setupTransformation() throws Exception {
+		CachedSctidFactory cachedSctidFactory = new CachedSctidFactory(0, EFFECTIVE_TIME, "benchmark", new IdServiceRestClientOfflineDemoImpl(), 1, 0);
+		TransformationFactory transformationFactory = new TransformationFactory("0", EFFECTIVE_TIME, cachedSctidFactory, new PseudoUUIDGenerator(),
+				RF2Constants.INTERNATIONAL_CORE_MODULE_ID, RF2Constants.INTERNATIONAL_MODEL_COMPONENT_ID, transformBufferSize);
+		fileTransformation = transformationFactory.getSteamingFileTransformation(tableSchema);
+	}
+
+	@Benchmark
+	public void transformFile() throws Exception {
+		fileTransformation.transformFile(new ByteArrayInputStream(relationshipFile), OutputStream.nullOutputStream(), FILENAME, BuildReport.getDummyReport());
+	}
+
+	@Benchmark
+	public void repeatableRelationshipUuid(Blackhole blackhole) throws Exception {
+		for (String[] columnValues : relationshipColumns) {
+			blackhole.consume(repeatableRelationshipUUIDTransform.getCalculatedUuidFromRelationshipValues(columnValues));
+		}
+	}
+}
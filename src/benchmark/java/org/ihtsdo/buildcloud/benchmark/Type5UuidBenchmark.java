@@ -0,0 +1,74 @@
+package org.ihtsdo.buildcloud.benchmark;
+
+import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
+import org.ihtsdo.buildcloud.core.service.build.transform.RepeatableRelationshipUUIDTransform;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repeatable relationship UUIDs made by one shared transformation from 1 to 32 threads at the same time,
+ * as when several relationship files are transformed in parallel. Each operation makes the UUIDs of 1000 relationships.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class Type5UuidBenchmark {
+
+	private static final int RELATIONSHIPS = 1000;
+
+	private String[][] relationshipColumns;
+
+	private RepeatableRelationshipUUIDTransform repeatableRelationshipUUIDTransform;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		List<String> lines = new Rf2DataGenerator(42).relationshipLines(RELATIONSHIPS, "20250131");
+		relationshipColumns = new String[lines.size()][];
+		for (int i = 0; i < lines.size(); i++) {
+			relationshipColumns[i] = lines.get(i).split(RF2Constants.COLUMN_SEPARATOR, -1);
+		}
+		repeatableRelationshipUUIDTransform = new RepeatableRelationshipUUIDTransform(RF2Constants.RelationshipFileType.INFERRED);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public void oneThread(Blackhole blackhole) {
+		makeUuids(blackhole);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void fourThreads(Blackhole blackhole) {
+		makeUuids(blackhole);
+	}
+
+	@Benchmark
+	@Threads(8)
+	public void eightThreads(Blackhole blackhole) {
+		makeUuids(blackhole);
+	}
+
+	@Benchmark
+	@Threads(16)
+	public void sixteenThreads(Blackhole blackhole) {
+		makeUuids(blackhole);
+	}
+
+	@Benchmark
+	@Threads(32)
+	public void thirtyTwoThreads(Blackhole blackhole) {
+		makeUuids(blackhole);
+	}
+
+	private void makeUuids(Blackhole blackhole) {
+		for (String[] columnValues : relationshipColumns) {
+			blackhole.consume(repeatableRelationshipUUIDTransform.getCalculatedUuidFromRelationshipValues(columnValues));
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package org.ihtsdo.buildcloud.benchmark;
+
+import org.apache.commons.io.FileUtils;
+import org.ihtsdo.buildcloud.core.dao.BuildDAO;
+import org.ihtsdo.buildcloud.core.entity.Build;
+import org.ihtsdo.buildcloud.core.entity.BuildConfiguration;
+import org.ihtsdo.buildcloud.core.entity.QATestConfig;
+import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
+import org.ihtsdo.buildcloud.core.service.build.Zipper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Zipping a release package of Delta, Snapshot and Full refset files listed in a generated manifest.
+ * Output files are served from memory by a stand in for the build DAO so that only the zipping is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ZipperBenchmark {
+
+	private static final String[] RELEASE_TYPES = {"Delta", "Snapshot", "Full"};
+
+	@Param("4")
+	private int filesPerReleaseType;
+
+	@Param("50000")
+	private int membersPerFile;
+
+	@Param({"0", "4"})
+	private int readAhead;
+
+	@Param({"1", "4"})
+	private int compressionParallelism;
+
+	private final Map<String, byte[]> outputFiles = new LinkedHashMap<>();
+	private byte[] manifest;
+	private Build build;
+	private BuildDAO buildDAO;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Rf2DataGenerator generator = new Rf2DataGenerator(42);
+		StringBuilder manifestBuilder = new StringBuilder("<listing xmlns=\"http://release.ihtsdo.org/manifest/1.0.0\">\n")
+				.append("<folder Name=\"SnomedCT_Benchmark_INT_20250131\">\n");
+		for (String releaseType : RELEASE_TYPES) {
+			manifestBuilder.append("<folder Name=\"").append(releaseType).append("\">\n");
+			for (int i = 0; i < filesPerReleaseType; i++) {
+				String fileName = "der2_Refset_Simple" + i + releaseType + "_INT_20250131.txt";
+				manifestBuilder.append("<file Name=\"").append(fileName).append("\"/>\n");
+				outputFiles.put(fileName, generator.simpleRefset(generator.memberIds(membersPerFile), "20250131"));
+			}
+			manifestBuilder.append("</folder>\n");
+		}
+		manifestBuilder.append("</folder>\n</listing>\n");
+		manifest = manifestBuilder.toString().getBytes(RF2Constants.UTF_8);
+
+		build = new Build(new Date(), "international", "benchmark", new BuildConfiguration(), new QATestConfig());
+		buildDAO = (BuildDAO) Proxy.newProxyInstance(BuildDAO.class.getClassLoader(), new Class<?>[]{BuildDAO.class}, (proxy, method, args) -> {
+			if (method.getName().equals("getManifestStream") && args.length == 1) {
+				return new ByteArrayInputStream(manifest);
+			}
+			if (method.getName().equals("getOutputFileInputStream") && args.length == 2 && args[0] instanceof Build) {
+				byte[] content = outputFiles.get((String) args[1]);
+				return content == null ? null : new ByteArrayInputStream(content);
+			}
+			throw new UnsupportedOperationException(method.getName());
+		});
+	}
+
+	@Benchmark
+	public long createZipFile() throws Exception {
+		Zipper zipper = new Zipper(build, buildDAO);
+		zipper.setReadAhead(readAhead);
+		zipper.setCompressionParallelism(compressionParallelism);
+		File zipFile = zipper.createZipFile(Zipper.FileTypeOption.NONE);
+		try {
+			return zipFile.length();
+		} finally {
+			FileUtils.deleteQuietly(zipFile.getParentFile());
+		}
+	}
+}
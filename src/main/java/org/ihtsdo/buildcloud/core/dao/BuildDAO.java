@@ -161,4 +161,8 @@ public interface BuildDAO {
 	void markBuildAsDeleted(Build build) throws IOException;
 
 	void clearBuildIdsCache();
+
+	InputStream getSctidCacheStream(Integer namespaceId);
+
+	void putSctidCache(Integer namespaceId, File file) throws IOException;
 }
\ No newline at end of file
@@ -7,6 +7,8 @@ import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 import io.awspring.cloud.s3.ObjectMetadata;
 import org.apache.activemq.command.ActiveMQTextMessage;
@@ -14,10 +16,12 @@ import org.apache.commons.codec.DecoderException;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.ihtsdo.buildcloud.core.dao.helper.ListHelper;
+import org.ihtsdo.buildcloud.core.dao.helper.PublishedPackageIndex;
 import org.ihtsdo.buildcloud.core.dao.helper.S3PathHelper;
 import org.ihtsdo.buildcloud.core.dao.io.AsyncPipedStreamBean;
 import org.ihtsdo.buildcloud.core.entity.*;
 import org.ihtsdo.buildcloud.core.service.BuildService;
+import org.ihtsdo.buildcloud.core.service.manager.BuildMetadataIndexService;
 import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
 import org.ihtsdo.buildcloud.core.service.helper.Rf2FileNameTransformation;
 import org.ihtsdo.buildcloud.rest.pojo.BuildPage;
@@ -27,7 +31,6 @@ import org.ihtsdo.otf.dao.s3.helper.FileHelper;
 import org.ihtsdo.otf.jms.MessagingHelper;
 import org.ihtsdo.otf.rest.exception.BadConfigurationException;
 import org.ihtsdo.otf.rest.exception.ResourceNotFoundException;
-import org.ihtsdo.otf.utils.FileUtils;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
@@ -42,6 +45,7 @@ import org.springframework.util.CollectionUtils;
 import org.springframework.util.FileCopyUtils;
 import software.amazon.awssdk.services.s3.model.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -52,6 +56,7 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.io.SequenceInputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -62,6 +67,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static org.ihtsdo.buildcloud.core.entity.Build.Tag;
@@ -75,6 +81,7 @@ public class BuildDAOImpl implements BuildDAO {
 	private static final Logger LOGGER = LoggerFactory.getLogger(BuildDAOImpl.class);
 
 	private static final String INTERNATIONAL = "international";
+	private static final int PIPE_BUFFER_SIZE = 64 * 1024;
 	public static final String MANIFEST_XML = "manifest.xml";
 
 	private final ExecutorService executorService;
@@ -105,8 +112,20 @@ public class BuildDAOImpl implements BuildDAO {
 	@Value("${srs.publish.job.storage.path}")
 	private String publishJobStoragePath;
 
+	// Logs only have chunks when the telemetry server uploads them incrementally
+	@Value("${srs.telemetry.incremental-upload:false}")
+	private boolean incrementalLogUpload;
+
 	private final Map<String, Set<String>> buildIdsToProductMap = new ConcurrentHashMap<>();
 
+	@Autowired
+	private BuildMetadataIndexService buildMetadataIndexService;
+
+	private final Cache<String, PublishedPackageIndex> publishedPackageIndexes = CacheBuilder.newBuilder()
+			.maximumSize(100)
+			.expireAfterAccess(1, TimeUnit.HOURS)
+			.build();
+
 	private static final List<String> requiredFileExtensions = Arrays.asList("status:", "tag:", "user:", "user-roles:", "visibility:", "retry-count:", S3PathHelper.MARK_AS_DELETED);
 
 	private static final String RVF_RESPONSE_KEY = "rvf_response";
@@ -234,6 +253,7 @@ public class BuildDAOImpl implements BuildDAO {
 		this.buildIdsToProductMap
 				.computeIfAbsent(build.getReleaseCenterKey() + org.ihtsdo.otf.RF2Constants.DASH + build.getProductKey(), k -> ConcurrentHashMap.newKeySet())
 				.add(build.getId());
+		indexQuietly(build, () -> buildMetadataIndexService.indexBuild(build, storagePathOf(build)));
 		LOGGER.debug("Saved build {}", build.getId());
 	}
 
@@ -261,6 +281,7 @@ public class BuildDAOImpl implements BuildDAO {
                 Files.deleteIfExists(configJson.toPath());
 			}
 		}
+		indexQuietly(build, () -> buildMetadataIndexService.updateBuildName(build, storagePathOf(build)));
 	}
 
 
@@ -285,6 +306,9 @@ public class BuildDAOImpl implements BuildDAO {
 	public BuildPage<Build> findAll(final String releaseCenterKey, final String productKey, Boolean includeBuildConfiguration, Boolean includeQAConfiguration, Boolean includeRvfURL, Boolean visibility, BuildService.View viewMode, List<Integer> forYears, PageRequest pageRequest) {
 		final String productDirectoryPath = pathHelper.getProductPath(releaseCenterKey, productKey).toString();
 		final BuildRequestParameter requestParameter = new BuildRequestParameter(releaseCenterKey, productKey, includeBuildConfiguration, includeQAConfiguration, includeRvfURL, visibility, viewMode, forYears, pageRequest);
+		if (buildMetadataIndexService.isQueryEnabled()) {
+			return findBuildsFromIndex(requestParameter);
+		}
 		return findBuilds(productDirectoryPath, requestParameter);
 	}
 
@@ -314,12 +338,18 @@ public class BuildDAOImpl implements BuildDAO {
 		for (String filename : filenames) {
 			s3Client.deleteObject(buildBucketName, buildDirectoryPath + filename);
 		}
+		try {
+			buildMetadataIndexService.remove(releaseCenterKey, productKey, storageRoot, buildId);
+		} catch (RuntimeException e) {
+			LOGGER.warn("Failed to remove build {} from the build metadata index", buildId, e);
+		}
 	}
 
 	@Override
 	public void markBuildAsDeleted(Build build) {
 		final String newTagFilePath = pathHelper.getBuildPath(build).append(S3PathHelper.MARK_AS_DELETED).toString();
 		putFile(newTagFilePath, BLANK);
+		indexQuietly(build, () -> buildMetadataIndexService.markAsDeleted(build, storagePathOf(build)));
 	}
 
 	@Override
@@ -381,6 +411,7 @@ public class BuildDAOImpl implements BuildDAO {
 			s3Client.deleteObject(buildBucketName, origStatusFilePath);
 			LOGGER.debug("Delete old status {} file and replace with {} in S3 for build id {}", origStatus.name(), newStatus.name(), build.getId());
 		}
+		indexQuietly(build, () -> buildMetadataIndexService.updateStatus(build, storagePathOf(build)));
 		sendStatusUpdateResponseMessage(build);
 	}
 
@@ -448,6 +479,7 @@ public class BuildDAOImpl implements BuildDAO {
 		build.setTags(tags);
 		final String newTagFilePath = pathHelper.getTagFilePath(build, tags.stream().sorted(Comparator.comparingInt(Tag::getOrder)).map(Enum::name).collect(Collectors.joining(",")));
 		putFile(newTagFilePath, BLANK);
+		indexQuietly(build, () -> buildMetadataIndexService.updateTags(build, storagePathOf(build)));
 	}
 
 	@Override
@@ -462,6 +494,7 @@ public class BuildDAOImpl implements BuildDAO {
 			final String newTagFilePath = pathHelper.getTagFilePath(build, tags.stream().sorted(Comparator.comparingInt(Tag::getOrder)).map(Enum::name).collect(Collectors.joining(",")));
 			putFile(newTagFilePath, BLANK);
 		}
+		indexQuietly(build, () -> buildMetadataIndexService.updateTags(build, storagePathOf(build)));
 	}
 
 	@Override
@@ -607,13 +640,40 @@ public class BuildDAOImpl implements BuildDAO {
 	@Override
 	public List<String> listBuildLogFilePaths(final Build build) {
 		final String logFilesPath = pathHelper.getBuildLogFilesPath(build).toString();
-		return srsFileHelper.listFiles(logFilesPath);
+		// Chunks of logs still being written are read through the log itself
+		return srsFileHelper.listFiles(logFilesPath).stream().filter(path -> !TelemetryStreamPathBuilder.isChunkKey(path)).toList();
 	}
 
 	@Override
 	public InputStream getLogFileStream(final Build build, final String logFileName) {
 		final String logFilePath = pathHelper.getBuildLogFilePath(build, logFileName);
-		return srsFileHelper.getFileStream(logFilePath);
+		if (!incrementalLogUpload) {
+			return srsFileHelper.getFileStream(logFilePath);
+		}
+		final String chunkPrefix = TelemetryStreamPathBuilder.getChunkPrefix(logFilePath);
+		final List<String> chunks = srsFileHelper.listFiles(chunkPrefix);
+		if (chunks.isEmpty()) {
+			return srsFileHelper.getFileStream(logFilePath);
+		}
+		// The log is still being written, follow the log with the chunks uploaded since it was last compacted
+		final List<String> paths = new ArrayList<>();
+		paths.add(logFilePath);
+		chunks.stream().sorted().forEach(chunk -> paths.add(chunkPrefix + chunk));
+		final Iterator<String> pathIterator = paths.iterator();
+		return new SequenceInputStream(new Enumeration<>() {
+			@Override
+			public boolean hasMoreElements() {
+				return pathIterator.hasNext();
+			}
+
+			@Override
+			public InputStream nextElement() {
+				// Open each object only when the previous one has been read
+				final String path = pathIterator.next();
+				final InputStream inputStream = srsFileHelper.exists(path) ? srsFileHelper.getFileStream(path) : null;
+				return inputStream != null ? inputStream : InputStream.nullInputStream();
+			}
+		});
 	}
 
 	@Override
@@ -659,19 +719,14 @@ public class BuildDAOImpl implements BuildDAO {
 			targetFileNameStripped = Normalizer.normalize(targetFileNameStripped, Normalizer.Form.NFC);
 		}
 
-		final List<String> filePaths = srsFileHelper.listFiles(publishedExtractedZipPath);
-		for (final String filePath : filePaths) {
-			String filename = FileUtils.getFilenameFromPath(filePath);
-			// use contains rather that startsWith so that we can have candidate release (with x prefix in the filename)
-			// as previous published release.
-			if (!Normalizer.isNormalized(filename, Normalizer.Form.NFC)) {
-				filename = Normalizer.normalize(filename, Normalizer.Form.NFC);
-			}
-			if (filename.contains(targetFileNameStripped)) {
-				return srsFileHelper.getFileStream(publishedExtractedZipPath + filePath);
-			}
+		final PublishedPackageIndex packageIndex = getPublishedPackageIndex(publishedZipPath);
+		// use contains rather that startsWith so that we can have candidate release (with x prefix in the filename)
+		// as previous published release.
+		final PublishedPackageIndex.Entry entry = packageIndex.findFileContaining(targetFileNameStripped);
+		if (entry != null) {
+			return srsFileHelper.getFileStream(publishedExtractedZipPath + entry.path());
 		}
-		if (filePaths.isEmpty()) {
+		if (packageIndex.isEmpty()) {
 			LOGGER.error("No files found in the previous published package {}", previousPublishedPackage);
 		} else {
 			LOGGER.warn("No file found in the previous published package {} containing {}", previousPublishedPackage, targetFileNameStripped);
@@ -679,6 +734,37 @@ public class BuildDAOImpl implements BuildDAO {
 		return null;
 	}
 
+	private PublishedPackageIndex getPublishedPackageIndex(final String publishedZipPath) {
+		PublishedPackageIndex packageIndex = publishedPackageIndexes.getIfPresent(publishedZipPath);
+		if (packageIndex != null) {
+			return packageIndex;
+		}
+		final String indexPath = pathHelper.getPublishedPackageIndexPath(publishedZipPath);
+		try (InputStream indexStream = srsFileHelper.getFileStream(indexPath)) {
+			if (indexStream != null) {
+				packageIndex = PublishedPackageIndex.read(indexStream);
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Failed to read published package index {}, the package will be listed instead", indexPath, e);
+		}
+		if (packageIndex == null) {
+			// Packages published before indexes were written have their index built from a listing of the package
+			packageIndex = PublishedPackageIndex.fromFilePaths(srsFileHelper.listFiles(publishedZipPath.replace(".zip", "/")));
+			if (!packageIndex.isEmpty()) {
+				final byte[] indexBytes = packageIndex.toBytes();
+				try {
+					srsFileHelper.putFile(new ByteArrayInputStream(indexBytes), indexBytes.length, indexPath);
+				} catch (Exception e) {
+					LOGGER.warn("Failed to write published package index {}", indexPath, e);
+				}
+			}
+		}
+		if (!packageIndex.isEmpty()) {
+			publishedPackageIndexes.put(publishedZipPath, packageIndex);
+		}
+		return packageIndex;
+	}
+
 	@Override
 	public void persistReport(final Build build) {
 		String reportPath = pathHelper.getReportPath(build);
@@ -732,6 +818,32 @@ public class BuildDAOImpl implements BuildDAO {
 		return findBuildsFromMergedResponse(response, requestParameter, productDirectoryPath);
 	}
 
+	private BuildPage<Build> findBuildsFromIndex(BuildRequestParameter requestParameter) {
+		BuildPage<Build> page = buildMetadataIndexService.findBuilds(requestParameter.releaseCenterKey, requestParameter.productKey,
+				pathHelper.getBuildStoragePath(), requestParameter.visibility, requestParameter.viewMode, requestParameter.forYears, requestParameter.pageRequest);
+		page.getContent().forEach(build -> {
+			enrichBuildWithRvfIfRequested(build, requestParameter);
+			enrichBuildWithConfigurationsIfRequested(build, requestParameter);
+		});
+		return page;
+	}
+
+	private String storagePathOf(final Build build) {
+		return build.getContentStoragePath() != null ? build.getContentStoragePath() : pathHelper.getBuildStoragePath();
+	}
+
+	/**
+	 * The marker files in S3 are the record of the build, so a build is not failed when its index can't be updated.
+	 * The index of the product can be rebuilt from S3 afterwards.
+	 */
+	private void indexQuietly(final Build build, final Runnable update) {
+		try {
+			update.run();
+		} catch (RuntimeException e) {
+			LOGGER.warn("Failed to update the build metadata index for build {}", build.getId(), e);
+		}
+	}
+
 	private BuildPage<Build> findBuildsFromMergedResponse(BuildResponse response, BuildRequestParameter requestParameter, String logPathForPrimaryOnly) {
 		int pageNumber = requestParameter.pageRequest.getPageNumber();
 		int pageSize = requestParameter.pageRequest.getPageSize();
@@ -1232,7 +1344,7 @@ public class BuildDAOImpl implements BuildDAO {
 	private AsyncPipedStreamBean getFileAsOutputStream(final String buildOutputFilePath) throws IOException {
         // Stream file to buildFileHelper as it's written to the OutputStream
         // try with resource here won't work
-        final PipedInputStream pipedInputStream = new PipedInputStream();
+        final PipedInputStream pipedInputStream = new PipedInputStream(PIPE_BUFFER_SIZE);
         final PipedOutputStream outputStream = new PipedOutputStream(pipedInputStream);
 
         final Future<String> future = executorService.submit(() -> {
@@ -1249,7 +1361,7 @@ public class BuildDAOImpl implements BuildDAO {
             }
         });
 
-        return new AsyncPipedStreamBean(outputStream, future, buildOutputFilePath);
+        return new AsyncPipedStreamBean(outputStream, future, buildOutputFilePath, pipedInputStream);
 	}
 
 	private PutObjectResponse putFile(final String filePath, final String contents) {
@@ -1302,6 +1414,22 @@ public class BuildDAOImpl implements BuildDAO {
 		return srsFileHelper.getFileStream(reportFilePath);
 	}
 
+	@Override
+	public InputStream getSctidCacheStream(final Integer namespaceId) {
+		final String cacheFilePath = pathHelper.getSctidCacheFilePath(namespaceId);
+		return srsFileHelper.exists(cacheFilePath) ? srsFileHelper.getFileStream(cacheFilePath) : null;
+	}
+
+	@Override
+	public void putSctidCache(final Integer namespaceId, final File file) throws IOException {
+		final String cacheFilePath = pathHelper.getSctidCacheFilePath(namespaceId);
+		try {
+			srsFileHelper.putFile(file, cacheFilePath, false);
+		} catch (NoSuchAlgorithmException | DecoderException e) {
+			throw new IOException("Problem uploading SCTID cache " + file.getName(), e);
+		}
+	}
+
 	@Override
 	public boolean isBuildCancelRequested(final Build build) {
 		if (Build.Status.CANCEL_REQUESTED.equals(build.getStatus())) return true;
@@ -1383,6 +1511,7 @@ public class BuildDAOImpl implements BuildDAO {
 
 		// Write new marker
 		putFile(markerPrefix + retryCount, BLANK);
+		indexQuietly(build, () -> buildMetadataIndexService.updateRetryCount(build, storagePathOf(build), retryCount));
 	}
 
 
@@ -1575,6 +1704,7 @@ public class BuildDAOImpl implements BuildDAO {
 		// Put new visibility
 		final String newStatusFilePath = pathHelper.getVisibilityFilePath(build, visibility);
 		putFile(newStatusFilePath, BLANK);
+		indexQuietly(build, () -> buildMetadataIndexService.updateVisibility(build, storagePathOf(build), visibility));
 	}
 
 	@Override
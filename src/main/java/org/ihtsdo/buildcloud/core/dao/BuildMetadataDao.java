@@ -0,0 +1,24 @@
+package org.ihtsdo.buildcloud.core.dao;
+
+import org.ihtsdo.buildcloud.core.entity.BuildMetadata;
+import org.ihtsdo.buildcloud.core.service.BuildService;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+public interface BuildMetadataDao extends EntityDAO<BuildMetadata> {
+
+	BuildMetadata find(String releaseCenterKey, String productKey, String storagePath, String buildId);
+
+	/**
+	 * Find the builds of a product which have not been deleted, filtered like the build list of the product.
+	 * Builds are in descending build id order unless a sort is given.
+	 */
+	List<BuildMetadata> findBuilds(String releaseCenterKey, String productKey, String storagePath, Boolean visibility,
+			BuildService.View viewMode, List<Integer> forYears, Sort sort, int firstResult, int maxResults);
+
+	long countBuilds(String releaseCenterKey, String productKey, String storagePath, Boolean visibility,
+			BuildService.View viewMode, List<Integer> forYears);
+
+	void deleteAll(String releaseCenterKey, String productKey, String storagePath);
+}
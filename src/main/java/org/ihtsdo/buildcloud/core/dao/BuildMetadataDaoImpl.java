@@ -0,0 +1,169 @@
+package org.ihtsdo.buildcloud.core.dao;
+
+import org.hibernate.query.MutationQuery;
+import org.hibernate.query.Query;
+import org.ihtsdo.buildcloud.core.entity.Build;
+import org.ihtsdo.buildcloud.core.entity.BuildMetadata;
+import org.ihtsdo.buildcloud.core.service.BuildService;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.CollectionUtils;
+
+import java.util.List;
+
+@Repository
+public class BuildMetadataDaoImpl extends EntityDAOImpl<BuildMetadata> implements BuildMetadataDao {
+
+	private static final String RELEASE_CENTER_KEY = "releaseCenterKey";
+	private static final String PRODUCT_KEY = "productKey";
+	private static final String STORAGE_PATH = "storagePath";
+	private static final String PUBLISHED = "published";
+
+	private static final String PRODUCT_BUILDS = "from BuildMetadata metadata " +
+			"where metadata.releaseCenterKey = :releaseCenterKey " +
+			" and metadata.productKey = :productKey " +
+			" and metadata.storagePath = :storagePath ";
+
+	// Statuses are sorted in the order they are declared in, like the build list sorted in memory
+	private static final String STATUS_ORDER = statusOrder();
+
+	protected BuildMetadataDaoImpl() {
+		super(BuildMetadata.class);
+	}
+
+	@Override
+	public BuildMetadata find(String releaseCenterKey, String productKey, String storagePath, String buildId) {
+		Query<BuildMetadata> query = getCurrentSession().createQuery(
+				"select metadata " + PRODUCT_BUILDS + " and metadata.buildId = :buildId",
+				BuildMetadata.class);
+		setProductParameters(query, releaseCenterKey, productKey, storagePath);
+		query.setParameter("buildId", buildId);
+		return query.uniqueResult();
+	}
+
+	@Override
+	public List<BuildMetadata> findBuilds(String releaseCenterKey, String productKey, String storagePath, Boolean visibility,
+			BuildService.View viewMode, List<Integer> forYears, Sort sort, int firstResult, int maxResults) {
+		Query<BuildMetadata> query = getCurrentSession().createQuery(
+				"select metadata " + buildsQuery(visibility, viewMode, forYears) + orderBy(sort),
+				BuildMetadata.class);
+		setBuildsParameters(query, releaseCenterKey, productKey, storagePath, visibility, viewMode, forYears);
+		query.setFirstResult(firstResult);
+		query.setMaxResults(maxResults);
+		return query.list();
+	}
+
+	@Override
+	public long countBuilds(String releaseCenterKey, String productKey, String storagePath, Boolean visibility,
+			BuildService.View viewMode, List<Integer> forYears) {
+		Query<Long> query = getCurrentSession().createQuery(
+				"select count(metadata) " + buildsQuery(visibility, viewMode, forYears),
+				Long.class);
+		setBuildsParameters(query, releaseCenterKey, productKey, storagePath, visibility, viewMode, forYears);
+		return query.uniqueResult();
+	}
+
+	@Override
+	public void deleteAll(String releaseCenterKey, String productKey, String storagePath) {
+		MutationQuery query = getCurrentSession().createMutationQuery(
+				"delete from BuildMetadata metadata " +
+						"where metadata.releaseCenterKey = :releaseCenterKey " +
+						" and metadata.productKey = :productKey " +
+						" and metadata.storagePath = :storagePath");
+		query.setParameter(RELEASE_CENTER_KEY, releaseCenterKey);
+		query.setParameter(PRODUCT_KEY, productKey);
+		query.setParameter(STORAGE_PATH, storagePath);
+		query.executeUpdate();
+	}
+
+	private String buildsQuery(Boolean visibility, BuildService.View viewMode, List<Integer> forYears) {
+		StringBuilder builder = new StringBuilder(PRODUCT_BUILDS).append(" and metadata.deleted = :deleted ");
+		if (visibility != null) {
+			builder.append(" and metadata.visible = :visible ");
+		}
+		builder.append(yearsCondition("metadata", forYears));
+		if (viewMode == BuildService.View.PUBLISHED) {
+			builder.append(" and metadata.published = :published ");
+		} else if (viewMode == BuildService.View.UNPUBLISHED) {
+			builder.append(" and metadata.published <> :published ");
+		} else if (viewMode == BuildService.View.DEFAULT) {
+			// Builds since the latest published build, and the earlier published builds.
+			// Deleted and hidden builds count when finding the latest published build, as they do in the build list.
+			builder.append(" and (metadata.published = :published or metadata.buildId >= coalesce((" +
+					"select max(latest.buildId) from BuildMetadata latest " +
+					"where latest.releaseCenterKey = :releaseCenterKey " +
+					" and latest.productKey = :productKey " +
+					" and latest.storagePath = :storagePath " +
+					" and latest.published = :published ")
+					.append(yearsCondition("latest", forYears))
+					.append("), '')) ");
+		}
+		return builder.toString();
+	}
+
+	private String yearsCondition(String alias, List<Integer> forYears) {
+		if (CollectionUtils.isEmpty(forYears)) {
+			return "";
+		}
+		StringBuilder builder = new StringBuilder(" and (");
+		for (int i = 0; i < forYears.size(); i++) {
+			if (i > 0) {
+				builder.append(" or ");
+			}
+			builder.append(alias).append(".buildId like :year").append(i);
+		}
+		return builder.append(") ").toString();
+	}
+
+	private void setBuildsParameters(Query<?> query, String releaseCenterKey, String productKey, String storagePath,
+			Boolean visibility, BuildService.View viewMode, List<Integer> forYears) {
+		setProductParameters(query, releaseCenterKey, productKey, storagePath);
+		query.setParameter("deleted", false);
+		if (visibility != null) {
+			query.setParameter("visible", visibility);
+		}
+		if (!CollectionUtils.isEmpty(forYears)) {
+			for (int i = 0; i < forYears.size(); i++) {
+				query.setParameter("year" + i, forYears.get(i) + "%");
+			}
+		}
+		if (viewMode == BuildService.View.PUBLISHED || viewMode == BuildService.View.UNPUBLISHED || viewMode == BuildService.View.DEFAULT) {
+			query.setParameter(PUBLISHED, true);
+		}
+	}
+
+	private void setProductParameters(Query<?> query, String releaseCenterKey, String productKey, String storagePath) {
+		query.setParameter(RELEASE_CENTER_KEY, releaseCenterKey);
+		query.setParameter(PRODUCT_KEY, productKey);
+		query.setParameter(STORAGE_PATH, storagePath);
+	}
+
+	private String orderBy(Sort sort) {
+		if (sort == null || sort.isUnsorted()) {
+			return " order by metadata.buildId desc";
+		}
+		StringBuilder builder = new StringBuilder(" order by ");
+		for (Sort.Order order : sort) {
+			String expression = switch (order.getProperty()) {
+				case "buildName" -> "metadata.buildName";
+				case "creationTime" -> "metadata.buildId";
+				case "status" -> STATUS_ORDER;
+				case "buildUser" -> "metadata.buildUser";
+				default -> null;
+			};
+			if (expression != null) {
+				builder.append(expression).append(order.isDescending() ? " desc" : " asc").append(" nulls last, ");
+			}
+		}
+		// Builds which sort the same stay in build id order
+		return builder.append("metadata.buildId asc").toString();
+	}
+
+	private static String statusOrder() {
+		StringBuilder builder = new StringBuilder("case metadata.status");
+		for (Build.Status status : Build.Status.values()) {
+			builder.append(" when '").append(status.name()).append("' then ").append(status.ordinal());
+		}
+		return builder.append(" else ").append(Build.Status.UNKNOWN.ordinal()).append(" end").toString();
+	}
+}
@@ -0,0 +1,125 @@
+package org.ihtsdo.buildcloud.core.dao.helper;
+
+import org.ihtsdo.buildcloud.core.service.helper.Rf2FileNameTransformation;
+import org.ihtsdo.otf.utils.FileUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The files of an extracted published package, so that files can be found in the package without listing it.
+ * Written alongside the package when it is published, one line per file in the listing order of the package with
+ * its path, NFC normalized name, name without the version date, size and MD5. Indexes rebuilt from a listing of
+ * packages published before indexes existed have no sizes or checksums.
+ */
+public class PublishedPackageIndex {
+
+	private static final String HEADER = "path\tname\tkey\tsize\tmd5";
+	private static final String COLUMN_SEPARATOR = "\t";
+	private static final String LINE_SEPARATOR = "\n";
+	private static final long UNKNOWN_SIZE = -1;
+
+	private static final Rf2FileNameTransformation FILE_NAME_TRANSFORMATION = new Rf2FileNameTransformation();
+
+	public record Entry(String path, String name, String key, long size, String md5) {
+	}
+
+	private final List<Entry> entries;
+
+	// The file found for a name is the first one in the package containing that name, like a search of the listing
+	private final Map<String, Entry> firstEntryContainingKey = new HashMap<>();
+	private final Map<String, Optional<Entry>> firstEntryContaining = new ConcurrentHashMap<>();
+
+	public PublishedPackageIndex(List<Entry> entries) {
+		this.entries = List.copyOf(entries);
+		for (Entry entry : this.entries) {
+			firstEntryContainingKey.computeIfAbsent(entry.key(), this::searchFirstEntryContaining);
+		}
+	}
+
+	public static Entry newEntry(String path, long size, String md5) {
+		String name = FileUtils.getFilenameFromPath(path);
+		if (!Normalizer.isNormalized(name, Normalizer.Form.NFC)) {
+			name = Normalizer.normalize(name, Normalizer.Form.NFC);
+		}
+		return new Entry(path, name, FILE_NAME_TRANSFORMATION.transformFilename(name), size, md5 != null ? md5 : "");
+	}
+
+	public static PublishedPackageIndex fromFilePaths(List<String> filePaths) {
+		final List<Entry> entries = new ArrayList<>(filePaths.size());
+		for (String filePath : filePaths) {
+			entries.add(newEntry(filePath, UNKNOWN_SIZE, null));
+		}
+		return new PublishedPackageIndex(entries);
+	}
+
+	public static PublishedPackageIndex read(InputStream inputStream) throws IOException {
+		final List<Entry> entries = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+			final String header = reader.readLine();
+			if (!HEADER.equals(header)) {
+				throw new IOException("Unexpected published package index header " + header);
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty()) {
+					continue;
+				}
+				final String[] columns = line.split(COLUMN_SEPARATOR, -1);
+				if (columns.length != 5) {
+					throw new IOException("Invalid published package index line " + line);
+				}
+				try {
+					entries.add(new Entry(columns[0], columns[1], columns[2], Long.parseLong(columns[3]), columns[4]));
+				} catch (NumberFormatException e) {
+					throw new IOException("Invalid published package index line " + line, e);
+				}
+			}
+		}
+		return new PublishedPackageIndex(entries);
+	}
+
+	public byte[] toBytes() {
+		final StringBuilder builder = new StringBuilder(HEADER).append(LINE_SEPARATOR);
+		for (Entry entry : entries) {
+			builder.append(entry.path()).append(COLUMN_SEPARATOR)
+					.append(entry.name()).append(COLUMN_SEPARATOR)
+					.append(entry.key()).append(COLUMN_SEPARATOR)
+					.append(entry.size()).append(COLUMN_SEPARATOR)
+					.append(entry.md5()).append(LINE_SEPARATOR);
+		}
+		return builder.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	public List<Entry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * @return the first file of the package whose name contains the given name, or null if there is none.
+	 * Candidate release files, with an x prefix, are found by the name of the release file.
+	 */
+	public Entry findFileContaining(String name) {
+		final Entry entry = firstEntryContainingKey.get(name);
+		if (entry != null) {
+			return entry;
+		}
+		return firstEntryContaining.computeIfAbsent(name, n -> Optional.ofNullable(searchFirstEntryContaining(n))).orElse(null);
+	}
+
+	private Entry searchFirstEntryContaining(String name) {
+		for (Entry entry : entries) {
+			if (entry.name().contains(name)) {
+				return entry;
+			}
+		}
+		return null;
+	}
+}
@@ -62,6 +62,8 @@ public class S3PathHelper {
 	public static final String BUILD_REPORT_JSON = "build_report.json";
 	public static final String BUILD_COMPARISON_REPORT = "build-comparison-reports";
 	public static final String FILE_COMPARISON_REPORT = "file-comparison-reports";
+	private static final String SCTID_CACHE = "sctid-cache";
+	private static final String SCTID_CACHE_FILE_EXTENSION = ".bin";
 
 	public StringBuilder getReleaseCenterPath(final String releaseCenterKey, final String storagePath) {
 		final StringBuilder path = new StringBuilder(storagePath);
@@ -228,6 +230,18 @@ public class S3PathHelper {
 		return getReleaseCenterPath(releaseCenterKey, publishedReleasesStoragePath).append(fileName).toString();
 	}
 
+	public String getPublishedPackageIndexPath(final String publishedZipPath) {
+		return publishedZipPath.replace(".zip", ".index");
+	}
+
+	public String getSctidCacheFilePath(final Integer namespaceId) {
+		final StringBuilder path = new StringBuilder(buildStoragePath);
+		if (!buildStoragePath.endsWith(SEPARATOR)) {
+			path.append(SEPARATOR);
+		}
+		return path.append(SCTID_CACHE).append(SEPARATOR).append(namespaceId).append(SCTID_CACHE_FILE_EXTENSION).toString();
+	}
+
 	public String getReportPath(final Build build) {
 		return getBuildPath(build).append(BUILD_REPORT_JSON).toString();
 	}
@@ -17,12 +17,21 @@ public class AsyncPipedStreamBean implements Closeable {
 	private final OutputStream outputStream;
 	private final Future<String> future;
 	private final String outputFilePath;
+	private final Closeable inputStream;
 	private static final Logger LOGGER = LoggerFactory.getLogger(AsyncPipedStreamBean.class);
 
 	public AsyncPipedStreamBean(OutputStream outputStream, Future<String> future, String outputFilePath) {
+		this(outputStream, future, outputFilePath, null);
+	}
+
+	/**
+	 * @param inputStream the end of the pipe the upload reads from, which is closed when the upload is aborted.
+	 */
+	public AsyncPipedStreamBean(OutputStream outputStream, Future<String> future, String outputFilePath, Closeable inputStream) {
 		this.outputStream = outputStream;
 		this.future = future;
 		this.outputFilePath = outputFilePath;
+		this.inputStream = inputStream;
 	}
 
 	public void waitForFinish() throws ExecutionException, InterruptedException {
@@ -43,6 +52,24 @@ public class AsyncPipedStreamBean implements Closeable {
 		}
 	}
 
+	/**
+	 * Stops the upload without completing it, for a file which failed part way through being written.
+	 * The output stream is not closed, as closing it ends the upload with what has been written so far.
+	 */
+	public void abort() {
+		if (future != null) {
+			future.cancel(true);
+		}
+		if (inputStream != null) {
+			try {
+				inputStream.close();
+			} catch (IOException e) {
+				LOGGER.warn("Error closing the input of aborted stream {}", outputFilePath, e);
+			}
+		}
+		LOGGER.debug("Aborted writing stream {}", outputFilePath);
+	}
+
 	public OutputStream getOutputStream() {
 		return outputStream;
 	}
@@ -0,0 +1,191 @@
+package org.ihtsdo.buildcloud.core.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.type.YesNoConverter;
+
+import java.sql.Timestamp;
+import java.util.StringJoiner;
+
+/**
+ * The status, tags, user, visibility and configuration of a build, as held by the marker files of the build in S3,
+ * so that the builds of a product can be filtered, sorted and paged without reading them all from S3.
+ */
+@Entity
+@Table(name = "build_metadata")
+public class BuildMetadata {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(name = "id")
+	private long id;
+
+	@Column(name = "release_center_key")
+	private String releaseCenterKey;
+
+	@Column(name = "product_key")
+	private String productKey;
+
+	@Column(name = "storage_path")
+	private String storagePath;
+
+	@Column(name = "build_id")
+	private String buildId;
+
+	@Column(name = "status")
+	private String status;
+
+	@Column(name = "build_name")
+	private String buildName;
+
+	@Column(name = "build_user")
+	private String buildUser;
+
+	@Column(name = "user_roles")
+	private String userRoles;
+
+	@Column(name = "tags")
+	private String tags;
+
+	@Convert(converter = YesNoConverter.class)
+	@Column(name = "published")
+	private boolean published;
+
+	@Convert(converter = YesNoConverter.class)
+	@Column(name = "visible")
+	private boolean visible = true;
+
+	@Convert(converter = YesNoConverter.class)
+	@Column(name = "deleted")
+	private boolean deleted;
+
+	@Column(name = "retry_count")
+	private int retryCount;
+
+	@Column(name = "last_updated_time")
+	private Timestamp lastUpdatedTime;
+
+	public BuildMetadata() {
+	}
+
+	public BuildMetadata(final String releaseCenterKey, final String productKey, final String storagePath, final String buildId) {
+		this.releaseCenterKey = releaseCenterKey;
+		this.productKey = productKey;
+		this.storagePath = storagePath;
+		this.buildId = buildId;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getReleaseCenterKey() {
+		return releaseCenterKey;
+	}
+
+	public String getProductKey() {
+		return productKey;
+	}
+
+	public String getStoragePath() {
+		return storagePath;
+	}
+
+	public String getBuildId() {
+		return buildId;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public String getBuildName() {
+		return buildName;
+	}
+
+	public void setBuildName(String buildName) {
+		this.buildName = buildName;
+	}
+
+	public String getBuildUser() {
+		return buildUser;
+	}
+
+	public void setBuildUser(String buildUser) {
+		this.buildUser = buildUser;
+	}
+
+	public String getUserRoles() {
+		return userRoles;
+	}
+
+	public void setUserRoles(String userRoles) {
+		this.userRoles = userRoles;
+	}
+
+	public String getTags() {
+		return tags;
+	}
+
+	public void setTags(String tags) {
+		this.tags = tags;
+	}
+
+	public boolean isPublished() {
+		return published;
+	}
+
+	public void setPublished(boolean published) {
+		this.published = published;
+	}
+
+	public boolean isVisible() {
+		return visible;
+	}
+
+	public void setVisible(boolean visible) {
+		this.visible = visible;
+	}
+
+	public boolean isDeleted() {
+		return deleted;
+	}
+
+	public void setDeleted(boolean deleted) {
+		this.deleted = deleted;
+	}
+
+	public int getRetryCount() {
+		return retryCount;
+	}
+
+	public void setRetryCount(int retryCount) {
+		this.retryCount = retryCount;
+	}
+
+	public Timestamp getLastUpdatedTime() {
+		return lastUpdatedTime;
+	}
+
+	public void setLastUpdatedTime(Timestamp lastUpdatedTime) {
+		this.lastUpdatedTime = lastUpdatedTime;
+	}
+
+	@Override
+	public String toString() {
+		return new StringJoiner(", ", BuildMetadata.class.getSimpleName() + "[", "]")
+				.add("id=" + id)
+				.add("releaseCenterKey='" + releaseCenterKey + "'")
+				.add("productKey='" + productKey + "'")
+				.add("storagePath='" + storagePath + "'")
+				.add("buildId='" + buildId + "'")
+				.add("status='" + status + "'")
+				.add("tags='" + tags + "'")
+				.add("visible=" + visible)
+				.add("deleted=" + deleted)
+				.toString();
+	}
+}
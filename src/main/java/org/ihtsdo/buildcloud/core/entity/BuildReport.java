@@ -8,6 +8,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
 
 public class BuildReport {
 
@@ -21,7 +22,7 @@ public class BuildReport {
 		report = new HashMap<>();
 	}
 
-	public void add(String buildStage, String result) {
+	public synchronized void add(String buildStage, String result) {
 		report.put(buildStage, result);
 	}
 
@@ -38,7 +39,7 @@ public class BuildReport {
 		return stringMapHashMap;
 	}
 
-	public void add(String buildStage, String fileName, String problem, int lineNumber) {
+	public synchronized void add(String buildStage, String fileName, String problem, int lineNumber) {
 
 		Map<String, Map<String, String>> reportDetail = getDetails(buildStage);
 
@@ -58,28 +59,47 @@ public class BuildReport {
 		fileReport.put(ERROR_COUNT, Integer.toString(++currentErrorCount));
 	}
 
+	public synchronized void addDetail(String buildStage, String key, String value) {
+		@SuppressWarnings("unchecked")
+		Map<String, String> details = (Map<String, String>) report.computeIfAbsent(buildStage, stage -> new TreeMap<String, String>());
+		details.put(key, value);
+	}
+
 	public static BuildReport getDummyReport() {
 		return new BuildReport();
 	}
 
 	@JsonAnySetter
-	public void setReport(String key, Object value) {
+	public synchronized void setReport(String key, Object value) {
 		this.report.put(key, value);
 	}
 
 	// JsonUnwrapped doesn't work for maps apparently. See https://jira.codehaus.org/browse/JACKSON-765
+	/**
+	 * @return a copy of the report, as files are transformed concurrently and add to the report while it is being read.
+	 */
 	@JsonAnyGetter
-	public Map<String, Object> getReport() {
-		return report;
+	public synchronized Map<String, Object> getReport() {
+		return copy(report);
 	}
 
 	@Override
 	public String toString() {
 		ObjectMapper mapper = new ObjectMapper();
 		try {
-			return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(report);
+			return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(getReport());
 		} catch (IOException e) {
 			return "Unable to persist Build Report due to " + e.getLocalizedMessage();
 		}
 	}
+
+	@SuppressWarnings("unchecked")
+	private static <V> Map<String, V> copy(Map<String, V> map) {
+		Map<String, V> copy = map instanceof TreeMap ? new TreeMap<>() : new HashMap<>();
+		for (Map.Entry<String, V> entry : map.entrySet()) {
+			V value = entry.getValue();
+			copy.put(entry.getKey(), value instanceof Map ? (V) copy((Map<String, Object>) value) : value);
+		}
+		return copy;
+	}
 }
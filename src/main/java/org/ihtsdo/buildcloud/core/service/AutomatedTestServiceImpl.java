@@ -1,7 +1,5 @@
 package org.ihtsdo.buildcloud.core.service;
 
-import com.github.difflib.text.DiffRowGenerator;
-import org.apache.commons.collections.CollectionUtils;
 import org.ihtsdo.buildcloud.core.dao.BuildDAO;
 import org.ihtsdo.buildcloud.core.dao.RegressionTestReportDAO;
 import org.ihtsdo.buildcloud.core.entity.Build;
@@ -22,18 +20,15 @@ import org.springframework.scheduling.annotation.Async;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
 
-import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.stream.Collectors;
 
 @Service
 public class AutomatedTestServiceImpl implements AutomatedTestService {
@@ -43,8 +38,6 @@ public class AutomatedTestServiceImpl implements AutomatedTestService {
 
 	private static final int maxPollPeriod = 24 * 60 * 60 * 1000; // 24 hours
 
-	private final String SPACE_OF_FOUR = "    ";
-
 	private Status[] BUILD_FINAL_STATES = { 	Status.FAILED_INPUT_GATHER_REPORT_VALIDATION,
 											Status.FAILED_INPUT_PREPARE_REPORT_VALIDATION,
 											Status.FAILED_PRE_CONDITIONS,
@@ -81,6 +74,11 @@ public class AutomatedTestServiceImpl implements AutomatedTestService {
 	@Autowired
 	private BuildComparisonManager buildComparisonManager;
 
+	@Autowired
+	private ReleasePackageCache releasePackageCache;
+
+	private final FileDiffGenerator fileDiffGenerator = new FileDiffGenerator();
+
 	private final LinkedBlockingQueue<BuildComparisonQueue> buildComparisonBlockingQueue = new LinkedBlockingQueue<>();
 
 	private final LinkedBlockingQueue<FileComparisonQueue> fileComparisonBlockingQueue = new LinkedBlockingQueue<>();
@@ -295,25 +293,32 @@ public class AutomatedTestServiceImpl implements AutomatedTestService {
 				Build rightBuild = automatePromoteProcess.getRightBuild();
 				String fileName = automatePromoteProcess.getFileName();
 				LOGGER.info("Staring file comparison for: {}", fileName);
-				try (InputStream leftInputStream = buildDAO.getOutputFileInputStream(leftBuild, fileName);
-					 InputStream rightInputStream = buildDAO.getOutputFileInputStream(rightBuild, fileName)) {
-					List<String> leftList = new BufferedReader(new InputStreamReader(leftInputStream, StandardCharsets.UTF_8)).lines().collect(Collectors.toList());
-					List<String> rightList = new BufferedReader(new InputStreamReader(rightInputStream, StandardCharsets.UTF_8)).lines().collect(Collectors.toList());
-
-					DiffRowGenerator generator = DiffRowGenerator.create()
-							.showInlineDiffs(false)
-							.inlineDiffByWord(true)
-							.reportLinesUnchanged(false)
-							.build();
-					List<com.github.difflib.text.DiffRow> diffRows = generator.generateDiffRows(leftList, rightList);
-					leftList.clear();
-					rightList.clear();
-
-					extractResults(automatePromoteProcess, leftBuild, diffRows, automatePromoteProcess.isIgnoreIdComparison());
+				ReleasePackageCache.ExtractedPackage leftPackage = getExtractedPackageOrNull(leftBuild);
+				ReleasePackageCache.ExtractedPackage rightPackage = getExtractedPackageOrNull(rightBuild);
+				try {
+					File leftFile = leftPackage != null ? leftPackage.getFile(fileName) : null;
+					String rightFileName = rightPackage != null ? rightPackage.getFileNamesByNormalizedName().get(ReleasePackageCache.normalizeFileName(fileName)) : null;
+					FileDiffReport report = automatePromoteProcess.getReport();
+					if (leftFile != null && rightFileName != null && leftPackage.getDigests().get(fileName).equals(rightPackage.getDigests().get(rightFileName))) {
+						// The files are the same, so there is nothing to read
+						report.setDeleteRows(new ArrayList<>());
+						report.setInsertRows(new ArrayList<>());
+						report.setChangeRows(new ArrayList<>());
+					} else {
+						try (InputStream leftInputStream = leftFile != null ? new FileInputStream(leftFile) : buildDAO.getOutputFileInputStream(leftBuild, fileName);
+							 InputStream rightInputStream = rightFileName != null ? new FileInputStream(rightPackage.getFile(rightFileName)) : buildDAO.getOutputFileInputStream(rightBuild, fileName)) {
+							fileDiffGenerator.findDiff(leftInputStream, rightInputStream, automatePromoteProcess.isIgnoreIdComparison(), report);
+						}
+					}
+					report.setStatus(FileDiffReport.Status.COMPLETED);
+					regressionTestReportDAO.saveFileComparisonReport(leftBuild.getReleaseCenterKey(), leftBuild.getProductKey(), automatePromoteProcess.getCompareId(), automatePromoteProcess.isIgnoreIdComparison(), report);
 					LOGGER.info("Completed file comparison for: {}", fileName);
 				} catch (Exception e) {
 					LOGGER.error(e.getMessage(), e);
 					throw new BusinessServiceException("Failed to compare file. Error message: " + e.getMessage());
+				} finally {
+					releasePackageCache.release(leftPackage);
+					releasePackageCache.release(rightPackage);
 				}
 			} catch (Exception e) {
 				LOGGER.error(e.getMessage(), e);
@@ -321,85 +326,12 @@ public class AutomatedTestServiceImpl implements AutomatedTestService {
 		});
 	}
 
-	private void extractResults(FileComparisonQueue automatePromoteProcess, Build leftBuild, List<com.github.difflib.text.DiffRow> diffRows, boolean ignoreIdComparison) throws IOException {
-		if (diffRows.size() > 0) {
-			diffRows = diffRows.stream().filter(r -> !com.github.difflib.text.DiffRow.Tag.EQUAL.equals(r.getTag()))
-									.collect(Collectors.toList());
-		} else {
-			diffRows = Collections.EMPTY_LIST;
-		}
-
-		Map<String, String> leftIdToLineMap = new HashMap<>();
-		Map<String, String> rightIdToLineMap = new HashMap<>();
-		diffRows.forEach(row -> {
-			if (StringUtils.hasLength(row.getOldLine())) {
-				String[] arr = row.getOldLine().split(SPACE_OF_FOUR);
-				if (StringUtils.hasLength(arr[0])) {
-					leftIdToLineMap.put(arr[0], row.getOldLine());
-				}
-			}
-			if (StringUtils.hasLength(row.getNewLine())) {
-				String[] arr = row.getNewLine().split(SPACE_OF_FOUR);
-				if (StringUtils.hasLength(arr[0])) {
-					rightIdToLineMap.put(arr[0], row.getNewLine());
-				}
-			}
-		});
-		Set<String> leftIds = leftIdToLineMap.keySet();
-		Set<String> rightIds = rightIdToLineMap.keySet();
-		List<String> deleteIds = (ArrayList<String>) CollectionUtils.subtract(leftIds, rightIds);
-		List<String> insertIds = (ArrayList<String>) CollectionUtils.subtract(rightIds, leftIds);
-		List<String> changeIds = (ArrayList<String>) CollectionUtils.intersection(leftIds, rightIds);
-
-		List<DiffRow> changeRows = new ArrayList<>();
-		List<DiffRow> deleteRows = new ArrayList<>();
-		List<DiffRow> insertRows = new ArrayList<>();
-
-		findChangedRowsWithoutId(changeRows, deleteIds, insertIds, leftIdToLineMap, rightIdToLineMap, ignoreIdComparison);
-
-		changeIds.forEach(id -> {
-			if (!leftIdToLineMap.get(id).equals(rightIdToLineMap.get(id))) {
-				changeRows.add(new DiffRow(leftIdToLineMap.get(id), rightIdToLineMap.get(id)));
-			}
-		});
-		deleteIds.forEach(id -> deleteRows.add(new DiffRow(leftIdToLineMap.get(id),"")));
-		insertIds.forEach(id -> insertRows.add(new DiffRow("", rightIdToLineMap.get(id))));
-
-		FileDiffReport report = automatePromoteProcess.getReport();
-		report.setStatus(FileDiffReport.Status.COMPLETED);
-		report.setDeleteRows(deleteRows);
-		report.setInsertRows(insertRows);
-		report.setChangeRows(changeRows);
-		regressionTestReportDAO.saveFileComparisonReport(leftBuild.getReleaseCenterKey(), leftBuild.getProductKey(), automatePromoteProcess.getCompareId(), ignoreIdComparison, report);
-
-		// clear temp list
-		deleteIds.clear();
-		insertIds.clear();
-		changeIds.clear();
-		leftIds.clear();
-		rightIds.clear();
-		leftIdToLineMap.clear();
-		rightIdToLineMap.clear();
-	}
-
-	private void findChangedRowsWithoutId(List<DiffRow> changeRows, List<String> deleteIds, List<String> insertIds, Map<String, String> leftIdToLineMap, Map<String, String> rightIdToLineMap, boolean ignoreIdComparison) {
-		Map<String, String> leftLineToIdMap = new HashMap<>();
-		Map<String, String> rightLineToIdMap = new HashMap<>();
-		for (String id : deleteIds) {
-			leftLineToIdMap.put(leftIdToLineMap.get(id).replaceFirst(id, ""), id);
-		}
-		for (String id : insertIds) {
-			rightLineToIdMap.put(rightIdToLineMap.get(id).replaceFirst(id, ""), id);
-		}
-		List<String> changeLines = (ArrayList<String>) CollectionUtils.intersection(leftLineToIdMap.keySet(), rightLineToIdMap.keySet());
-		for (String changedLine : changeLines) {
-			String leftId = leftLineToIdMap.get(changedLine);
-			String rightId = rightLineToIdMap.get(changedLine);
-			deleteIds.remove(leftId);
-			insertIds.remove(rightId);
-			if (!ignoreIdComparison) {
-				changeRows.add(new DiffRow(leftIdToLineMap.get(leftId), rightIdToLineMap.get(rightId)));
-			}
+	private ReleasePackageCache.ExtractedPackage getExtractedPackageOrNull(Build build) {
+		try {
+			return releasePackageCache.getExtractedPackage(build);
+		} catch (Exception e) {
+			LOGGER.warn("Release package of build {} not available, the file is read from the build output files instead. {}", build.getId(), e.getMessage());
+			return null;
 		}
 	}
 
@@ -129,6 +129,33 @@ public class BuildServiceImpl implements BuildService {
 	@Value("${srs.file-processing.failureMaxRetry}")
 	private Integer fileProcessingFailureMaxRetry;
 
+	@Value("${srs.file-export.parallelism:1}")
+	private Integer fileExportParallelism;
+
+	@Value("${srs.file-export.memory-per-file-mb:2048}")
+	private Integer fileExportMemoryPerFileMB;
+
+	@Value("${srs.file-export.table-store:treemap}")
+	private String fileExportTableStore;
+
+	@Value("${srs.file-export.streaming-merge:false}")
+	private Boolean fileExportStreamingMerge;
+
+	@Value("${srs.file-export.streaming-merge.run-size:500000}")
+	private Integer fileExportStreamingMergeRunSize;
+
+	@Value("${srs.build.zip.streaming-upload:false}")
+	private Boolean zipStreamingUpload;
+
+	@Value("${srs.build.zip.read-ahead:0}")
+	private Integer zipReadAhead;
+
+	@Value("${srs.build.zip.compression-parallelism:1}")
+	private Integer zipCompressionParallelism;
+
+	@Value("${srs.build.zip.daily-build-compression-level:-1}")
+	private Integer dailyBuildZipCompressionLevel;
+
 	@Value("${rvf.url}")
 	private String releaseValidationFrameworkUrl;
 
@@ -170,6 +197,9 @@ public class BuildServiceImpl implements BuildService {
 	@Autowired
 	private ModuleStorageCoordinator moduleStorageCoordinator;
 
+	@Autowired
+	private ModuleStorageCoordinatorPackageCache packageCache;
+
 	@Autowired
 	private ReleaseManifestService releaseManifestService;
 
@@ -703,20 +733,26 @@ public class BuildServiceImpl implements BuildService {
 			final Map<String, TableSchema> inputFileSchemaMap = getInputFileSchemaMap(build);
 			if (dao.isBuildCancelRequested(build)) return;
 
-			File previousReleaseDirectory = getReleaseFileFromMscOrNull(configuration.getPreviousPublishedPackage());
-			File dependencyReleaseDirectory = getDependencyFileFromModuleStorageCoordinatorOrNull(build);
-			if (org.springframework.util.StringUtils.hasLength(configuration.getPreviousPublishedPackage())
-				&& !emptyRf2Filename.equals(configuration.getPreviousPublishedPackage())
-				&& previousReleaseDirectory == null
-				&& !Boolean.TRUE.equals(offlineMode)) {
-				throw new BusinessServiceException("No previous package found from MSC for " + configuration.getPreviousPublishedPackage());
-			}
+			// The packages are leased from the cache as they are fetched, so they are released whatever fails after that
+			File previousReleaseDirectory = null;
+			File dependencyReleaseDirectory = null;
 			try {
+				previousReleaseDirectory = getReleaseFileFromMscOrNull(configuration.getPreviousPublishedPackage());
+				dependencyReleaseDirectory = getDependencyFileFromModuleStorageCoordinatorOrNull(build);
+				if (org.springframework.util.StringUtils.hasLength(configuration.getPreviousPublishedPackage())
+					&& !emptyRf2Filename.equals(configuration.getPreviousPublishedPackage())
+					&& previousReleaseDirectory == null
+					&& !Boolean.TRUE.equals(offlineMode)) {
+					throw new BusinessServiceException("No previous package found from MSC for " + configuration.getPreviousPublishedPackage());
+				}
 				transformationService.transformFiles(build, inputFileSchemaMap, previousReleaseDirectory);
 				// Convert Delta input files to Full, Snapshot and Delta release files
 				if (dao.isBuildCancelRequested(build)) return;
 
-				final Rf2FileExportRunner generator = new Rf2FileExportRunner(build, dao, previousReleaseDirectory, dependencyReleaseDirectory, fileProcessingFailureMaxRetry);
+				final Rf2FileExportRunner generator = new Rf2FileExportRunner(build, dao, previousReleaseDirectory, dependencyReleaseDirectory, fileProcessingFailureMaxRetry,
+						fileExportParallelism, fileExportMemoryPerFileMB);
+				generator.setTableStore(fileExportTableStore);
+				generator.setStreamingMerge(Boolean.TRUE.equals(fileExportStreamingMerge), fileExportStreamingMergeRunSize);
 
 				if (!generator.isInferredRelationshipFileExist(rf2DeltaFilesSpecifiedByManifest(build))) {
 					throw new BusinessServiceException("There is no inferred relationship delta file");
@@ -732,11 +768,10 @@ public class BuildServiceImpl implements BuildService {
 					retrieveAdditionalRelationshipsInputDelta(build, transformedDelta);
 				}
 			} finally {
-				if (previousReleaseDirectory != null) {
-					org.apache.commons.io.FileUtils.deleteDirectory(previousReleaseDirectory);
-				}
-				if (dependencyReleaseDirectory != null) {
-					org.apache.commons.io.FileUtils.deleteDirectory(dependencyReleaseDirectory);
+				try {
+					packageCache.release(previousReleaseDirectory);
+				} finally {
+					packageCache.release(dependencyReleaseDirectory);
 				}
 			}
 		}
@@ -756,17 +791,25 @@ public class BuildServiceImpl implements BuildService {
 		File zipPackage = null;
 		String packageName;
 		try {
-			final Zipper zipper = new Zipper(build, dao);
-			zipPackage = zipper.createZipFile(Zipper.FileTypeOption.NONE);
-			packageName = zipPackage.getName();
-			LOGGER.info("Start: Upload zipPackage file {}", zipPackage.getName());
-			dao.putOutputFile(build, zipPackage, true);
-			LOGGER.info("Finish: Upload zipPackage file {}", zipPackage.getName());
+			final Zipper zipper = createZipper(build);
+			if (Boolean.TRUE.equals(zipStreamingUpload)) {
+				LOGGER.info("Start: Stream zipPackage to the output files");
+				packageName = zipper.createZipFileInOutput(Zipper.FileTypeOption.NONE);
+				LOGGER.info("Finish: Stream zipPackage file {}", packageName);
+			} else {
+				zipPackage = zipper.createZipFile(Zipper.FileTypeOption.NONE);
+				packageName = zipPackage.getName();
+				LOGGER.info("Start: Upload zipPackage file {}", zipPackage.getName());
+				dao.putOutputFile(build, zipPackage, true);
+				LOGGER.info("Finish: Upload zipPackage file {}", zipPackage.getName());
+			}
 			if (build.getConfiguration().isDailyBuild()) {
-				DailyBuildRF2DeltaExtractor deltaExtractor = new DailyBuildRF2DeltaExtractor(build, dao);
+				final Zipper dailyBuildZipper = createZipper(build);
+				dailyBuildZipper.setCompressionLevel(dailyBuildZipCompressionLevel);
+				DailyBuildRF2DeltaExtractor deltaExtractor = new DailyBuildRF2DeltaExtractor(build, dailyBuildZipper);
 				deltaExtractor.outputDailyBuildPackage(dailyBuildResourceManager);
 
-				DailyBuildRF2SnapshotExtractor snapshotExtractor = new DailyBuildRF2SnapshotExtractor(build, dao);
+				DailyBuildRF2SnapshotExtractor snapshotExtractor = new DailyBuildRF2SnapshotExtractor(build, dailyBuildZipper);
 				snapshotExtractor.outputDailyBuildPackage(dailyBuildResourceManager);
 			}
 		} catch (Exception e) {
@@ -809,6 +852,13 @@ public class BuildServiceImpl implements BuildService {
 		dao.persistReport(build);
 	}
 
+	private Zipper createZipper(Build build) {
+		final Zipper zipper = new Zipper(build, dao);
+		zipper.setReadAhead(zipReadAhead);
+		zipper.setCompressionParallelism(zipCompressionParallelism);
+		return zipper;
+	}
+
 	private File getReleaseFileFromMscOrNull(String releasePackageFilename) {
 		if (org.springframework.util.StringUtils.hasLength(releasePackageFilename)) {
 			try {
@@ -821,12 +871,7 @@ public class BuildServiceImpl implements BuildService {
 					return null;
 				}
 
-				List<ModuleMetadata> moduleMetadataList = moduleStorageCoordinator.getRelease(moduleMetadata.getCodeSystemShortName(), moduleMetadata.getIdentifyingModuleId(), moduleMetadata.getEffectiveTimeString(), true, false);
-				File releasePackage = moduleMetadataList.get(0).getFile();
-				File extractedDirectory = Files.createTempDirectory("temp-rf2-unzip").toFile();
-				ZipFileUtils.extractFilesFromZipToOneFolder(releasePackage, extractedDirectory.getAbsolutePath());
-				Files.delete(releasePackage.toPath());
-				return extractedDirectory;
+				return getExtractedReleasePackage(moduleMetadata);
 			} catch (Exception e) {
 				LOGGER.error("Error retrieving the release file from MSC: {}", e.getMessage());
 				return null;
@@ -835,6 +880,11 @@ public class BuildServiceImpl implements BuildService {
 		return null;
 	}
 
+	private File getExtractedReleasePackage(ModuleMetadata moduleMetadata) throws IOException {
+		return packageCache.getExtractedPackage(moduleMetadata.getCodeSystemShortName(), moduleMetadata.getIdentifyingModuleId(), moduleMetadata.getEffectiveTimeString(),
+				() -> moduleStorageCoordinator.getRelease(moduleMetadata.getCodeSystemShortName(), moduleMetadata.getIdentifyingModuleId(), moduleMetadata.getEffectiveTimeString(), true, false).get(0).getFile());
+	}
+
 	private File getDependencyFileFromModuleStorageCoordinatorOrNull(Build build) throws IOException, ProcessingException {
 		File rf2DeltaZipFile = downloadInputDelta(build);
 		try {
@@ -845,7 +895,8 @@ public class BuildServiceImpl implements BuildService {
 			if (build.getConfiguration().getExtensionConfig() != null) {
 				expectedModules = new HashSet<>(build.getConfiguration().getExtensionConfig().getModuleIdsAsList());
 			}
-			Set<ModuleMetadata> dependencies = moduleStorageCoordinator.getDependencies(mdrsRows, expectedModules, true);
+			// Dependency packages are only downloaded when they are not in the local package cache
+			Set<ModuleMetadata> dependencies = moduleStorageCoordinator.getDependencies(mdrsRows, expectedModules, !packageCache.isEnabled());
 			File extractedDirectory = null;
 			if (dependencies.isEmpty()) {
 				LOGGER.info("No dependency found from Module Storage Coordinator");
@@ -860,8 +911,9 @@ public class BuildServiceImpl implements BuildService {
 				File dependencyFile = dependency.getFile();
 				// At the moment, SRS only allows one dependency. So that the first one will be picked up
 				if (index == 0) {
-					extractedDirectory = Files.createTempDirectory("temp-rf2-unzip").toFile();
-					ZipFileUtils.extractFilesFromZipToOneFolder(dependencyFile, extractedDirectory.getAbsolutePath());
+					extractedDirectory = dependencyFile != null
+							? packageCache.getExtractedPackage(dependency.getCodeSystemShortName(), dependency.getIdentifyingModuleId(), dependency.getEffectiveTimeString(), () -> dependencyFile)
+							: getExtractedReleasePackage(dependency);
 					LOGGER.info("Dependency {} found from Module Storage Coordinator", dependency.getFilename());
 					if (build.getConfiguration().getExtensionConfig() != null) {
 						build.getConfiguration().getExtensionConfig().setDependencyRelease(dependency.getFilename());
@@ -871,7 +923,9 @@ public class BuildServiceImpl implements BuildService {
 					LOGGER.info("Other dependency {} found from Module Storage Coordinator", dependency.getFilename());
 				}
 				index++;
-				Files.delete(dependencyFile.toPath());
+				if (dependencyFile != null) {
+					Files.deleteIfExists(dependencyFile.toPath());
+				}
 			}
 			return extractedDirectory;
 		} catch (Exception e) {
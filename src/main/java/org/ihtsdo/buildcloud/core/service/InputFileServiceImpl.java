@@ -71,6 +71,9 @@ public class InputFileServiceImpl implements InputFileService {
 	@Value("${srs.file-processing.failureMaxRetry}")
 	private Integer fileProcessingFailureMaxRetry;
 
+	@Value("${srs.file-processing.input-preparation-parallelism:4}")
+	private int inputPreparationParallelism;
+
 	@Autowired
 	public InputFileServiceImpl(@Value("${srs.storage.bucketName}") final String storageBucketName,
 							final S3Client s3Client) {
@@ -125,6 +128,7 @@ public class InputFileServiceImpl implements InputFileService {
 	@Override
 	public SourceFileProcessingReport prepareInputFiles(Build build, boolean copyFilesInManifest) throws BusinessServiceException {
 		InputSourceFileProcessor fileProcessor = new InputSourceFileProcessor(fileHelper, s3PathHelper, build.getReleaseCenterKey(), build.getProductKey(), copyFilesInManifest);
+		fileProcessor.setParallelism(inputPreparationParallelism);
 		// check manifest file is present and valid
 		SourceFileProcessingReport report = fileProcessor.getFileProcessingReport();
 		checkAndValidateManifestFile(report, build);
@@ -0,0 +1,490 @@
+package org.ihtsdo.buildcloud.core.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.FileUtils;
+import org.ihtsdo.otf.utils.ZipFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the extracted files of release packages downloaded from the Module Storage Coordinator on local disk, so that
+ * builds depending on the same release don't download and unzip it again.
+ * Packages are known by the SHA-256 of the package file, with an index from code system, module and effective time
+ * to that checksum, and are evicted least recently used first once the extracted files take more than
+ * srs.msc.package-cache.max-size-mb. Each package is extracted to a directory of its own, so a package evicted or
+ * discarded while a build is using it keeps its files until that build releases them, whatever is added meanwhile.
+ * An empty srs.msc.package-cache.directory disables the cache, packages are then extracted to a temporary directory
+ * which is deleted when released.
+ */
+@Service
+public class ModuleStorageCoordinatorPackageCache {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ModuleStorageCoordinatorPackageCache.class);
+
+	private static final String PACKAGES = "packages";
+	private static final String KEYS = "keys";
+	private static final String MANIFEST_EXTENSION = ".manifest";
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	/**
+	 * Downloads a release package to a local zip file, which is deleted once extracted.
+	 */
+	@FunctionalInterface
+	public interface PackageDownloader {
+		File download() throws Exception;
+	}
+
+	private static final class CachedPackage {
+		private final String checksum;
+		private final File directory;
+		private final long packageSize;
+		private final long extractedSize;
+		private int leases;
+
+		private CachedPackage(String checksum, File directory, long packageSize, long extractedSize) {
+			this.checksum = checksum;
+			this.directory = directory;
+			this.packageSize = packageSize;
+			this.extractedSize = extractedSize;
+		}
+	}
+
+	private final File packagesDirectory;
+	private final File keysDirectory;
+	private final long maxSizeBytes;
+	private final boolean verifyOnReuse;
+
+	// Access ordered, so that iteration starts from the least recently used package
+	private final LinkedHashMap<String, CachedPackage> packagesByChecksum = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<String, String> checksumsByKey = new HashMap<>();
+	private final Map<File, CachedPackage> packagesByDirectory = new HashMap<>();
+	// Packages no longer in the cache whose directories are still used by builds
+	private final Map<File, CachedPackage> removedPackagesByDirectory = new HashMap<>();
+	private final Map<String, ReentrantLock> keyLocks = new ConcurrentHashMap<>();
+	private long totalSize;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong bytesSaved = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	@Autowired(required = false)
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	public ModuleStorageCoordinatorPackageCache(@Value("${srs.msc.package-cache.directory:}") final String directory,
+			@Value("${srs.msc.package-cache.max-size-mb:20480}") final long maxSizeMB,
+			@Value("${srs.msc.package-cache.verify-on-reuse:true}") final boolean verifyOnReuse) {
+		this.packagesDirectory = StringUtils.hasLength(directory) ? new File(directory, PACKAGES) : null;
+		this.keysDirectory = StringUtils.hasLength(directory) ? new File(directory, KEYS) : null;
+		this.maxSizeBytes = maxSizeMB * 1024 * 1024;
+		this.verifyOnReuse = verifyOnReuse;
+	}
+
+	@PostConstruct
+	public void init() throws IOException {
+		if (isEnabled()) {
+			loadCachedPackages();
+			registerMetrics();
+		}
+	}
+
+	public boolean isEnabled() {
+		return packagesDirectory != null;
+	}
+
+	/**
+	 * @return a directory holding the extracted files of the package, which must be given back with {@link #release(File)}
+	 * once the build is done with it. The files must not be changed.
+	 */
+	public File getExtractedPackage(String codeSystem, String moduleId, String effectiveTime, PackageDownloader downloader) throws IOException {
+		if (!isEnabled()) {
+			final File extractedDirectory = Files.createTempDirectory("temp-rf2-unzip").toFile();
+			extract(download(downloader), extractedDirectory);
+			return extractedDirectory;
+		}
+		final String key = toKey(codeSystem, moduleId, effectiveTime);
+		// Builds asking for the same package wait for one download rather than each downloading it
+		final ReentrantLock keyLock = keyLocks.computeIfAbsent(key, k -> new ReentrantLock());
+		keyLock.lock();
+		try {
+			final CachedPackage cachedPackage = lease(checksumsByKeyGet(key));
+			if (cachedPackage != null) {
+				if (!verifyOnReuse || verify(cachedPackage)) {
+					hits.incrementAndGet();
+					bytesSaved.addAndGet(cachedPackage.packageSize);
+					LOGGER.info("Release package {} found in the local package cache", key);
+					return cachedPackage.directory;
+				}
+				LOGGER.warn("Cached files of release package {} failed verification and will be downloaded again", key);
+				discard(cachedPackage);
+			}
+			misses.incrementAndGet();
+			return addPackage(key, download(downloader)).directory;
+		} finally {
+			keyLock.unlock();
+		}
+	}
+
+	/**
+	 * Gives back a directory returned by {@link #getExtractedPackage}. Directories which are not in the cache are deleted.
+	 */
+	public void release(File directory) throws IOException {
+		if (directory == null) {
+			return;
+		}
+		synchronized (this) {
+			CachedPackage cachedPackage = packagesByDirectory.get(directory);
+			if (cachedPackage != null) {
+				cachedPackage.leases--;
+				evictIfFull();
+				return;
+			}
+			cachedPackage = removedPackagesByDirectory.get(directory);
+			if (cachedPackage != null) {
+				// Deleted with the last lease of the removed package
+				if (--cachedPackage.leases > 0) {
+					return;
+				}
+				removedPackagesByDirectory.remove(directory);
+			}
+		}
+		FileUtils.deleteDirectory(directory);
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getBytesSaved() {
+		return bytesSaved.get();
+	}
+
+	public synchronized long getSize() {
+		return totalSize;
+	}
+
+	private File download(PackageDownloader downloader) throws IOException {
+		try {
+			final File packageFile = downloader.download();
+			if (packageFile == null || !packageFile.isFile()) {
+				throw new FileNotFoundException("Release package was not downloaded");
+			}
+			return packageFile;
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException("Failed to download release package", e);
+		}
+	}
+
+	private void extract(File packageFile, File targetDirectory) throws IOException {
+		try {
+			ZipFileUtils.extractFilesFromZipToOneFolder(packageFile, targetDirectory.getAbsolutePath());
+		} finally {
+			Files.deleteIfExists(packageFile.toPath());
+		}
+	}
+
+	private CachedPackage addPackage(String key, File packageFile) throws IOException {
+		final long packageSize = packageFile.length();
+		final String checksum;
+		try {
+			checksum = sha256(packageFile);
+		} catch (IOException e) {
+			Files.deleteIfExists(packageFile.toPath());
+			throw e;
+		}
+		CachedPackage cachedPackage = lease(checksum);
+		if (cachedPackage != null) {
+			// The same package is already cached for another key
+			Files.deleteIfExists(packageFile.toPath());
+		} else {
+			final CachedPackage extractedPackage = extractPackage(checksum, packageFile, packageSize);
+			synchronized (this) {
+				cachedPackage = lease(checksum);
+				if (cachedPackage == null) {
+					cachedPackage = extractedPackage;
+					cachedPackage.leases++;
+					packagesByChecksum.put(checksum, cachedPackage);
+					packagesByDirectory.put(cachedPackage.directory, cachedPackage);
+					totalSize += cachedPackage.extractedSize;
+				}
+			}
+			if (cachedPackage != extractedPackage) {
+				// Extracted for another key at the same time
+				FileUtils.deleteQuietly(getManifestFile(extractedPackage.directory));
+				FileUtils.deleteQuietly(extractedPackage.directory);
+			}
+		}
+		Files.writeString(new File(keysDirectory, key).toPath(), checksum, StandardCharsets.UTF_8);
+		synchronized (this) {
+			checksumsByKey.put(key, checksum);
+			evictIfFull();
+		}
+		LOGGER.info("Release package {} added to the local package cache", key);
+		return cachedPackage;
+	}
+
+	/**
+	 * Extracts the package to a new directory named by its checksum and a unique suffix.
+	 */
+	private CachedPackage extractPackage(String checksum, File packageFile, long packageSize) throws IOException {
+		final File directory = new File(packagesDirectory, checksum + "-" + UUID.randomUUID());
+		final File tempDirectory = new File(packagesDirectory, directory.getName() + TEMP_SUFFIX);
+		try {
+			Files.createDirectories(tempDirectory.toPath());
+			extract(packageFile, tempDirectory);
+			final long extractedSize = writeManifest(tempDirectory, getManifestFile(directory), packageSize);
+			Files.move(tempDirectory.toPath(), directory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			return new CachedPackage(checksum, directory, packageSize, extractedSize);
+		} catch (IOException e) {
+			FileUtils.deleteQuietly(tempDirectory);
+			FileUtils.deleteQuietly(getManifestFile(directory));
+			throw e;
+		}
+	}
+
+	private synchronized String checksumsByKeyGet(String key) {
+		return checksumsByKey.get(key);
+	}
+
+	private synchronized CachedPackage lease(String checksum) {
+		final CachedPackage cachedPackage = checksum != null ? packagesByChecksum.get(checksum) : null;
+		if (cachedPackage != null) {
+			cachedPackage.leases++;
+			cachedPackage.directory.setLastModified(System.currentTimeMillis());
+		}
+		return cachedPackage;
+	}
+
+	private synchronized void discard(CachedPackage cachedPackage) {
+		cachedPackage.leases--;
+		remove(cachedPackage);
+	}
+
+	private synchronized void evictIfFull() {
+		final Iterator<CachedPackage> leastRecentlyUsed = new ArrayList<>(packagesByChecksum.values()).iterator();
+		while (totalSize > maxSizeBytes && leastRecentlyUsed.hasNext()) {
+			final CachedPackage cachedPackage = leastRecentlyUsed.next();
+			if (cachedPackage.leases == 0) {
+				LOGGER.info("Evicting release package {} from the local package cache", cachedPackage.checksum);
+				remove(cachedPackage);
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	private void remove(CachedPackage cachedPackage) {
+		packagesByChecksum.remove(cachedPackage.checksum);
+		checksumsByKey.entrySet().removeIf(entry -> {
+			if (entry.getValue().equals(cachedPackage.checksum)) {
+				FileUtils.deleteQuietly(new File(keysDirectory, entry.getKey()));
+				return true;
+			}
+			return false;
+		});
+		totalSize -= cachedPackage.extractedSize;
+		packagesByDirectory.remove(cachedPackage.directory);
+		FileUtils.deleteQuietly(getManifestFile(cachedPackage.directory));
+		// A package still used by builds is deleted when the last of them releases it
+		if (cachedPackage.leases == 0) {
+			FileUtils.deleteQuietly(cachedPackage.directory);
+		} else {
+			removedPackagesByDirectory.put(cachedPackage.directory, cachedPackage);
+		}
+	}
+
+	/**
+	 * The manifest has the package size on the first line, then the name, size and CRC32 of each extracted file.
+	 * @return the size of the extracted files.
+	 */
+	private long writeManifest(File directory, File manifestFile, long packageSize) throws IOException {
+		long extractedSize = 0;
+		final File[] files = directory.listFiles();
+		try (BufferedWriter writer = Files.newBufferedWriter(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+			writer.write(Long.toString(packageSize));
+			writer.newLine();
+			if (files != null) {
+				for (File file : files) {
+					writer.write(file.getName() + "\t" + file.length() + "\t" + crc32(file));
+					writer.newLine();
+					extractedSize += file.length();
+				}
+			}
+		}
+		return extractedSize;
+	}
+
+	private boolean verify(CachedPackage cachedPackage) {
+		try {
+			final List<String> lines = Files.readAllLines(getManifestFile(cachedPackage.directory).toPath(), StandardCharsets.UTF_8);
+			for (String line : lines.subList(1, lines.size())) {
+				final String[] columns = line.split("\t");
+				final File file = new File(cachedPackage.directory, columns[0]);
+				if (!file.isFile() || file.length() != Long.parseLong(columns[1]) || !crc32(file).equals(columns[2])) {
+					return false;
+				}
+			}
+			return true;
+		} catch (IOException | RuntimeException e) {
+			LOGGER.warn("Failed to verify cached release package {}", cachedPackage.checksum, e);
+			return false;
+		}
+	}
+
+	private void loadCachedPackages() throws IOException {
+		Files.createDirectories(packagesDirectory.toPath());
+		Files.createDirectories(keysDirectory.toPath());
+		final File[] files = packagesDirectory.listFiles();
+		if (files == null) {
+			return;
+		}
+		final List<CachedPackage> cachedPackages = new ArrayList<>();
+		for (File file : files) {
+			if (file.getName().contains(TEMP_SUFFIX)) {
+				// Left behind by a worker stopped while extracting
+				FileUtils.deleteQuietly(file);
+			} else if (file.getName().endsWith(MANIFEST_EXTENSION)) {
+				if (!new File(packagesDirectory, file.getName().substring(0, file.getName().length() - MANIFEST_EXTENSION.length())).isDirectory()) {
+					FileUtils.deleteQuietly(file);
+				}
+			} else if (file.isDirectory()) {
+				final CachedPackage cachedPackage = readCachedPackage(file);
+				if (cachedPackage != null) {
+					cachedPackages.add(cachedPackage);
+				} else {
+					FileUtils.deleteQuietly(file);
+				}
+			}
+		}
+		cachedPackages.sort(Comparator.comparingLong(cachedPackage -> cachedPackage.directory.lastModified()));
+		synchronized (this) {
+			for (CachedPackage cachedPackage : cachedPackages) {
+				final CachedPackage replaced = packagesByChecksum.put(cachedPackage.checksum, cachedPackage);
+				if (replaced != null) {
+					// Keep the most recently used copy of a package extracted more than once
+					packagesByDirectory.remove(replaced.directory);
+					totalSize -= replaced.extractedSize;
+					FileUtils.deleteQuietly(getManifestFile(replaced.directory));
+					FileUtils.deleteQuietly(replaced.directory);
+				}
+				packagesByDirectory.put(cachedPackage.directory, cachedPackage);
+				totalSize += cachedPackage.extractedSize;
+			}
+			final File[] keyFiles = keysDirectory.listFiles();
+			if (keyFiles != null) {
+				for (File keyFile : keyFiles) {
+					final String checksum = Files.readString(keyFile.toPath(), StandardCharsets.UTF_8).trim();
+					if (packagesByChecksum.containsKey(checksum)) {
+						checksumsByKey.put(keyFile.getName(), checksum);
+					} else {
+						FileUtils.deleteQuietly(keyFile);
+					}
+				}
+			}
+			evictIfFull();
+		}
+		LOGGER.info("Local release package cache holds {} packages, {} MB", packagesByChecksum.size(), totalSize / (1024 * 1024));
+	}
+
+	private CachedPackage readCachedPackage(File directory) {
+		final File manifestFile = getManifestFile(directory);
+		if (!manifestFile.isFile()) {
+			return null;
+		}
+		try {
+			final List<String> lines = Files.readAllLines(manifestFile.toPath(), StandardCharsets.UTF_8);
+			long extractedSize = 0;
+			for (String line : lines.subList(1, lines.size())) {
+				extractedSize += Long.parseLong(line.split("\t")[1]);
+			}
+			return new CachedPackage(getChecksum(directory), directory, Long.parseLong(lines.get(0)), extractedSize);
+		} catch (IOException | RuntimeException e) {
+			LOGGER.warn("Ignoring unreadable cached release package {}", directory.getName(), e);
+			FileUtils.deleteQuietly(manifestFile);
+			return null;
+		}
+	}
+
+	private File getManifestFile(File directory) {
+		return new File(packagesDirectory, directory.getName() + MANIFEST_EXTENSION);
+	}
+
+	/**
+	 * @return the checksum the directory of a package is named by, before its unique suffix.
+	 */
+	private static String getChecksum(File directory) {
+		final int suffixStart = directory.getName().indexOf('-');
+		return suffixStart < 0 ? directory.getName() : directory.getName().substring(0, suffixStart);
+	}
+
+	private void registerMetrics() {
+		if (meterRegistry != null) {
+			FunctionCounter.builder("srs.msc.package-cache.hits", hits, AtomicLong::get)
+					.description("Release packages found in the local package cache").register(meterRegistry);
+			FunctionCounter.builder("srs.msc.package-cache.misses", misses, AtomicLong::get)
+					.description("Release packages downloaded from the Module Storage Coordinator").register(meterRegistry);
+			FunctionCounter.builder("srs.msc.package-cache.bytes-saved", bytesSaved, AtomicLong::get)
+					.description("Size of the release packages not downloaded again").baseUnit("bytes").register(meterRegistry);
+			FunctionCounter.builder("srs.msc.package-cache.evictions", evictions, AtomicLong::get)
+					.description("Release packages evicted from the local package cache").register(meterRegistry);
+			Gauge.builder("srs.msc.package-cache.size", this, ModuleStorageCoordinatorPackageCache::getSize)
+					.description("Size of the extracted release packages in the local package cache").baseUnit("bytes").register(meterRegistry);
+		}
+	}
+
+	private static String toKey(String codeSystem, String moduleId, String effectiveTime) {
+		return (codeSystem + "_" + moduleId + "_" + effectiveTime).replaceAll("[^A-Za-z0-9._-]", "-");
+	}
+
+	private static String sha256(File file) throws IOException {
+		try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			final byte[] buffer = new byte[64 * 1024];
+			int read;
+			while ((read = inputStream.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+			return Hex.encodeHexString(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException("Failed to calculate checksum of " + file.getName(), e);
+		}
+	}
+
+	private static String crc32(File file) throws IOException {
+		final CRC32 crc = new CRC32();
+		try (InputStream inputStream = new FileInputStream(file)) {
+			final byte[] buffer = new byte[64 * 1024];
+			int read;
+			while ((read = inputStream.read(buffer)) != -1) {
+				crc.update(buffer, 0, read);
+			}
+		}
+		return Long.toHexString(crc.getValue());
+	}
+}
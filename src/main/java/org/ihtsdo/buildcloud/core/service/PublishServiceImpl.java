@@ -6,10 +6,13 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 import io.swagger.v3.core.util.Constants;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.MDC;
 import org.ihtsdo.buildcloud.core.dao.BuildDAO;
 import org.ihtsdo.buildcloud.core.dao.ReleaseCenterDAO;
+import org.ihtsdo.buildcloud.core.dao.helper.PublishedPackageIndex;
 import org.ihtsdo.buildcloud.core.dao.helper.S3PathHelper;
 import org.ihtsdo.buildcloud.core.entity.Build;
 import org.ihtsdo.buildcloud.core.entity.ReleaseCenter;
@@ -44,6 +47,8 @@ import org.springframework.util.StreamUtils;
 
 import java.io.*;
 import java.nio.file.Files;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
@@ -614,6 +619,7 @@ public class PublishServiceImpl implements PublishService {
 	private void publishExtractedVersionOfPackage(final String publishFilePath, final InputStream fileStream) throws IOException {
 		String zipExtractPath = publishFilePath.replace(".zip", S3PathHelper.SEPARATOR);
 		LOGGER.info("Start: Upload extracted package to {}", zipExtractPath);
+		final List<PublishedPackageIndex.Entry> indexEntries = new ArrayList<>();
 		try (ZipInputStream zipInputStream = new ZipInputStream(fileStream)) {
 			ZipEntry entry;
 			zipInputStream.closeEntry();
@@ -623,8 +629,10 @@ public class PublishServiceImpl implements PublishService {
 
 					// Copy to temp file first to prevent zip input stream being closed
 					File tempFile = Files.createTempFile(getClass().getCanonicalName(), "zip-entry").toFile();
-					try (FileOutputStream out = new FileOutputStream(tempFile)) {
-						StreamUtils.copy(zipInputStream, out);
+					final MessageDigest md5 = DigestUtils.getMd5Digest();
+					final long size;
+					try (OutputStream out = new DigestOutputStream(new FileOutputStream(tempFile), md5)) {
+						size = zipInputStream.transferTo(out);
 					}
 
 					String targetFilePath = zipExtractPath + name;
@@ -634,9 +642,13 @@ public class PublishServiceImpl implements PublishService {
 					if (!tempFile.delete()) {
 						LOGGER.warn("Failed to delete file {}", tempFile.getAbsolutePath());
 					}
+					indexEntries.add(PublishedPackageIndex.newEntry(name, size, Hex.encodeHexString(md5.digest())));
 				}
 			}
 		}
+		// Written after the files so that the index only lists files which have been uploaded
+		final byte[] indexBytes = new PublishedPackageIndex(indexEntries).toBytes();
+		srsFileHelper.putFile(new ByteArrayInputStream(indexBytes), indexBytes.length, s3PathHelper.getPublishedPackageIndexPath(publishFilePath));
 		LOGGER.info("Finish: Upload extracted package to {}", zipExtractPath);
 	}
 
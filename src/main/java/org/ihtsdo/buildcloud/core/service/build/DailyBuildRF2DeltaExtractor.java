@@ -27,19 +27,22 @@ public class DailyBuildRF2DeltaExtractor {
 	
 	private static final Logger LOGGER = LoggerFactory.getLogger(DailyBuildRF2DeltaExtractor.class);
 	private final Build build;
-	private final BuildDAO buildDAO;
+	private final Zipper zipper;
 
 	
 	public DailyBuildRF2DeltaExtractor(Build build, BuildDAO dao) {
+		this(build, new Zipper(build, dao));
+	}
+
+	public DailyBuildRF2DeltaExtractor(Build build, Zipper zipper) {
 		this.build = build;
-		this.buildDAO = dao;
+		this.zipper = zipper;
 	}
 
 	public void outputDailyBuildPackage(ResourceManager resourceManager) throws IOException, ResourceNotFoundException, JAXBException {
 		File deltaZip = null;
 		try {
 			if (build.getConfiguration().isDailyBuild()) {
-				Zipper zipper = new Zipper(build, buildDAO);
 				deltaZip = zipper.createZipFile(Zipper.FileTypeOption.DELTA_ONLY);
 				ExtensionConfig extensionConfig = build.getConfiguration().getExtensionConfig();
 				// for edition release the international content is not required for the daily build browser import
@@ -76,9 +79,9 @@ public class DailyBuildRF2DeltaExtractor {
 		String line = reader.readLine();
 		writer.append(line);
 		writer.append(RF2Constants.LINE_ENDING);
+		final RF2Record record = new RF2Record();
 		while ((line = reader.readLine()) != null) {
-			String[] splits = line.split(RF2Constants.COLUMN_SEPARATOR, -1);
-			if (effectiveTimeFormatted.equals(splits[1])) {
+			if (record.reset(line).fieldEquals(1, effectiveTimeFormatted)) {
 				writer.append(line);
 				writer.append(RF2Constants.LINE_ENDING);
 			}
@@ -18,20 +18,23 @@ public class DailyBuildRF2SnapshotExtractor {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(DailyBuildRF2SnapshotExtractor.class);
 	private final Build build;
-	private final BuildDAO buildDAO;
+	private final Zipper zipper;
 	private static final String SNAPSHOTS_FOLDER = "SNAPSHOTS";
 
 
 	public DailyBuildRF2SnapshotExtractor(Build build, BuildDAO dao) {
+		this(build, new Zipper(build, dao));
+	}
+
+	public DailyBuildRF2SnapshotExtractor(Build build, Zipper zipper) {
 		this.build = build;
-		this.buildDAO = dao;
+		this.zipper = zipper;
 	}
 
 	public void outputDailyBuildPackage(ResourceManager resourceManager) throws IOException, ResourceNotFoundException, JAXBException {
 		File snapshotZip = null;
 		try {
 			if (build.getConfiguration().isDailyBuild()) {
-				Zipper zipper = new Zipper(build, buildDAO);
 				snapshotZip = zipper.createZipFile(Zipper.FileTypeOption.SNAPSHOT_ONLY);
 				uploadDailyBuildToS3(build, snapshotZip, resourceManager);
 			}
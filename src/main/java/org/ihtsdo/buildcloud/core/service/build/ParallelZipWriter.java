@@ -0,0 +1,358 @@
+package org.ihtsdo.buildcloud.core.service.build;
+
+import com.google.common.io.CountingOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a zip archive to a stream one entry after another, laid out as {@link java.util.zip.ZipOutputStream} does:
+ * the checksum and sizes of each entry follow its data, so the archive never has to be seeked back into and can be
+ * streamed straight to its destination.
+ * With a parallelism above 1 the content of each entry is split into blocks which are deflated at the same time.
+ * Each block is primed with the end of the block before it and all but the last are flushed to a byte boundary,
+ * so that the compressed blocks joined in order are a single deflate stream.
+ */
+final class ParallelZipWriter implements Closeable {
+
+	static final int BLOCK_SIZE = 1024 * 1024;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int DICTIONARY_SIZE = 32 * 1024;
+	private static final byte[] NO_BYTES = new byte[0];
+
+	private static final long LOCAL_HEADER_SIGNATURE = 0x04034b50L;
+	private static final long DATA_DESCRIPTOR_SIGNATURE = 0x08074b50L;
+	private static final long CENTRAL_HEADER_SIGNATURE = 0x02014b50L;
+	private static final long ZIP64_END_SIGNATURE = 0x06064b50L;
+	private static final long ZIP64_LOCATOR_SIGNATURE = 0x07064b50L;
+	private static final long END_SIGNATURE = 0x06054b50L;
+	private static final int ZIP64_EXTRA_ID = 0x0001;
+	private static final int ZIP64_END_SIZE = 44;
+	private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+	private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+
+	private static final int FLAGS = 0x0008 /* data descriptor */ | 0x0800 /* UTF-8 names */;
+	private static final int METHOD_DEFLATED = 8;
+	private static final int VERSION_DEFLATED = 20;
+	private static final int VERSION_ZIP64 = 45;
+
+	private record Entry(byte[] name, long crc, long compressedSize, long size, long offset) {
+	}
+
+	private final CountingOutputStream out;
+	private final int level;
+	private final ExecutorService compressionExecutorService;
+	private final int maxBlocksInFlight;
+	private final long dosTime = toDosTime(System.currentTimeMillis());
+	private final List<Entry> entries = new ArrayList<>();
+	private final Set<String> names = new HashSet<>();
+	private final byte[] writeBuffer = new byte[8];
+	private boolean closed;
+
+	/**
+	 * @param level the deflate level, from {@link Deflater#NO_COMPRESSION} which only stores the content
+	 *              to {@link Deflater#BEST_COMPRESSION}, or {@link Deflater#DEFAULT_COMPRESSION}.
+	 * @param parallelism the number of blocks of an entry deflated at the same time. 1 deflates entries as a whole.
+	 */
+	ParallelZipWriter(OutputStream out, int level, int parallelism) {
+		this.out = new CountingOutputStream(out);
+		this.level = level;
+		this.compressionExecutorService = parallelism > 1 ? Executors.newFixedThreadPool(parallelism) : null;
+		this.maxBlocksInFlight = parallelism * 2;
+	}
+
+	void putFolder(String name) throws IOException {
+		putFile(name, InputStream.nullInputStream());
+	}
+
+	void putFile(String name, InputStream content) throws IOException {
+		if (closed) {
+			throw new IOException("Zip writer closed");
+		}
+		if (!names.add(name)) {
+			throw new ZipException("duplicate entry: " + name);
+		}
+		final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		final long offset = out.getCount();
+		writeInt(LOCAL_HEADER_SIGNATURE);
+		writeShort(VERSION_DEFLATED);
+		writeShort(FLAGS);
+		writeShort(METHOD_DEFLATED);
+		writeInt(dosTime);
+		// Checksum and sizes are in the data descriptor
+		writeInt(0);
+		writeInt(0);
+		writeInt(0);
+		writeShort(nameBytes.length);
+		writeShort(0);
+		out.write(nameBytes);
+
+		final CRC32 crc = new CRC32();
+		final long dataStart = out.getCount();
+		final long size = compressionExecutorService == null ? deflate(content, crc) : deflateInBlocks(content, crc);
+		final long compressedSize = out.getCount() - dataStart;
+
+		writeInt(DATA_DESCRIPTOR_SIGNATURE);
+		writeInt(crc.getValue());
+		if (compressedSize >= ZIP64_MAGIC || size >= ZIP64_MAGIC) {
+			writeLong(compressedSize);
+			writeLong(size);
+		} else {
+			writeInt(compressedSize);
+			writeInt(size);
+		}
+		entries.add(new Entry(nameBytes, crc.getValue(), compressedSize, size, offset));
+	}
+
+	private long deflate(InputStream content, CRC32 crc) throws IOException {
+		final Deflater deflater = new Deflater(level, true);
+		final byte[] input = new byte[BUFFER_SIZE];
+		final byte[] output = new byte[BUFFER_SIZE];
+		long size = 0;
+		try {
+			int read;
+			while ((read = content.read(input)) != -1) {
+				crc.update(input, 0, read);
+				size += read;
+				deflater.setInput(input, 0, read);
+				while (!deflater.needsInput()) {
+					out.write(output, 0, deflater.deflate(output));
+				}
+			}
+			deflater.finish();
+			while (!deflater.finished()) {
+				out.write(output, 0, deflater.deflate(output));
+			}
+		} finally {
+			deflater.end();
+		}
+		return size;
+	}
+
+	private long deflateInBlocks(InputStream content, CRC32 crc) throws IOException {
+		final Deque<Future<byte[]>> blocksInFlight = new ArrayDeque<>();
+		long size = 0;
+		try {
+			byte[] previous = null;
+			byte[] current = content.readNBytes(BLOCK_SIZE);
+			while (true) {
+				// Read on to find out whether this is the last block, which has to finish the deflate stream
+				final byte[] next = current.length == BLOCK_SIZE ? content.readNBytes(BLOCK_SIZE) : NO_BYTES;
+				final boolean last = next.length == 0;
+				crc.update(current);
+				size += current.length;
+				final byte[] block = current;
+				final byte[] dictionary = previous;
+				blocksInFlight.add(compressionExecutorService.submit(() -> deflateBlock(block, dictionary, last)));
+				while (blocksInFlight.size() > maxBlocksInFlight) {
+					out.write(getDeflatedBlock(blocksInFlight.poll()));
+				}
+				if (last) {
+					break;
+				}
+				previous = current;
+				current = next;
+			}
+			while (!blocksInFlight.isEmpty()) {
+				out.write(getDeflatedBlock(blocksInFlight.poll()));
+			}
+		} finally {
+			for (Future<byte[]> block : blocksInFlight) {
+				block.cancel(true);
+			}
+		}
+		return size;
+	}
+
+	private byte[] deflateBlock(byte[] block, byte[] previousBlock, boolean last) {
+		final Deflater deflater = new Deflater(level, true);
+		try {
+			if (previousBlock != null) {
+				// Previous blocks are always full
+				deflater.setDictionary(previousBlock, previousBlock.length - DICTIONARY_SIZE, DICTIONARY_SIZE);
+			}
+			deflater.setInput(block);
+			final ByteArrayOutputStream deflated = new ByteArrayOutputStream(block.length / 2 + 64);
+			final byte[] output = new byte[BUFFER_SIZE];
+			if (last) {
+				deflater.finish();
+				while (!deflater.finished()) {
+					deflated.write(output, 0, deflater.deflate(output));
+				}
+			} else {
+				int length;
+				do {
+					length = deflater.deflate(output, 0, output.length, Deflater.SYNC_FLUSH);
+					deflated.write(output, 0, length);
+				} while (length == output.length);
+			}
+			return deflated.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private byte[] getDeflatedBlock(Future<byte[]> block) throws IOException {
+		try {
+			return block.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while compressing zip entry", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to compress zip entry", e.getCause());
+		}
+	}
+
+	/**
+	 * Finishes the archive with its central directory and closes the stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			writeCentralDirectory();
+			out.close();
+		} finally {
+			shutdownCompression();
+		}
+	}
+
+	/**
+	 * Stops writing without finishing the archive, so that a partly written zip can't be read as a complete one.
+	 * The stream is left open for the caller to discard, as closing it may complete its destination.
+	 */
+	void abort() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		shutdownCompression();
+	}
+
+	private void shutdownCompression() {
+		if (compressionExecutorService != null) {
+			compressionExecutorService.shutdownNow();
+		}
+	}
+
+	private void writeCentralDirectory() throws IOException {
+		final long centralDirectoryOffset = out.getCount();
+		for (Entry entry : entries) {
+			final boolean zip64Size = entry.size() >= ZIP64_MAGIC;
+			final boolean zip64CompressedSize = entry.compressedSize() >= ZIP64_MAGIC;
+			final boolean zip64Offset = entry.offset() >= ZIP64_MAGIC;
+			int extraLength = (zip64Size ? 8 : 0) + (zip64CompressedSize ? 8 : 0) + (zip64Offset ? 8 : 0);
+			if (extraLength > 0) {
+				extraLength += 4;
+			}
+			final int version = extraLength > 0 ? VERSION_ZIP64 : VERSION_DEFLATED;
+			writeInt(CENTRAL_HEADER_SIGNATURE);
+			writeShort(version);
+			writeShort(version);
+			writeShort(FLAGS);
+			writeShort(METHOD_DEFLATED);
+			writeInt(dosTime);
+			writeInt(entry.crc());
+			writeInt(zip64CompressedSize ? ZIP64_MAGIC : entry.compressedSize());
+			writeInt(zip64Size ? ZIP64_MAGIC : entry.size());
+			writeShort(entry.name().length);
+			writeShort(extraLength);
+			// Comment length, disk number, internal and external attributes
+			writeShort(0);
+			writeShort(0);
+			writeShort(0);
+			writeInt(0);
+			writeInt(zip64Offset ? ZIP64_MAGIC : entry.offset());
+			out.write(entry.name());
+			if (extraLength > 0) {
+				writeShort(ZIP64_EXTRA_ID);
+				writeShort(extraLength - 4);
+				if (zip64Size) {
+					writeLong(entry.size());
+				}
+				if (zip64CompressedSize) {
+					writeLong(entry.compressedSize());
+				}
+				if (zip64Offset) {
+					writeLong(entry.offset());
+				}
+			}
+		}
+		final long centralDirectoryLength = out.getCount() - centralDirectoryOffset;
+		final int count = entries.size();
+		if (count >= ZIP64_MAGIC_COUNT || centralDirectoryOffset >= ZIP64_MAGIC || centralDirectoryLength >= ZIP64_MAGIC) {
+			final long zip64EndOffset = out.getCount();
+			writeInt(ZIP64_END_SIGNATURE);
+			writeLong(ZIP64_END_SIZE);
+			writeShort(VERSION_ZIP64);
+			writeShort(VERSION_ZIP64);
+			writeInt(0);
+			writeInt(0);
+			writeLong(count);
+			writeLong(count);
+			writeLong(centralDirectoryLength);
+			writeLong(centralDirectoryOffset);
+			writeInt(ZIP64_LOCATOR_SIGNATURE);
+			writeInt(0);
+			writeLong(zip64EndOffset);
+			writeInt(1);
+		}
+		writeInt(END_SIGNATURE);
+		writeShort(0);
+		writeShort(0);
+		writeShort(Math.min(count, ZIP64_MAGIC_COUNT));
+		writeShort(Math.min(count, ZIP64_MAGIC_COUNT));
+		writeInt(Math.min(centralDirectoryLength, ZIP64_MAGIC));
+		writeInt(Math.min(centralDirectoryOffset, ZIP64_MAGIC));
+		writeShort(0);
+	}
+
+	private void writeShort(int value) throws IOException {
+		writeBuffer[0] = (byte) value;
+		writeBuffer[1] = (byte) (value >>> 8);
+		out.write(writeBuffer, 0, 2);
+	}
+
+	private void writeInt(long value) throws IOException {
+		for (int i = 0; i < 4; i++) {
+			writeBuffer[i] = (byte) (value >>> (8 * i));
+		}
+		out.write(writeBuffer, 0, 4);
+	}
+
+	private void writeLong(long value) throws IOException {
+		for (int i = 0; i < 8; i++) {
+			writeBuffer[i] = (byte) (value >>> (8 * i));
+		}
+		out.write(writeBuffer, 0, 8);
+	}
+
+	private static long toDosTime(long time) {
+		final LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+		final int year = dateTime.getYear() - 1980;
+		if (year < 0) {
+			return (1 << 21) | (1 << 16);
+		}
+		return (year << 25 | dateTime.getMonthValue() << 21 | dateTime.getDayOfMonth() << 16
+				| dateTime.getHour() << 11 | dateTime.getMinute() << 5 | dateTime.getSecond() >> 1) & 0xFFFFFFFFL;
+	}
+}
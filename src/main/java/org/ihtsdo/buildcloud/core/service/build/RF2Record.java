@@ -0,0 +1,195 @@
+package org.ihtsdo.buildcloud.core.service.build;
+
+import java.util.Arrays;
+
+/**
+ * View of the tab separated fields of an RF2 line, found by offset rather than by splitting the line.
+ * Fields are only found as far as they are asked for, and are only copied to a String by {@link #get} and {@link #getFrom}.
+ * SCTIDs, effectiveTimes and the active flag can be read without a copy. A record is reset to each line in turn and is not thread safe.
+ */
+public final class RF2Record {
+
+	private static final int ID = 0;
+	private static final int EFFECTIVE_TIME = 1;
+	private static final int ACTIVE = 2;
+	private static final char TAB = '\t';
+
+	private CharSequence line;
+	private int length;
+	// Offset of the first character of each field found so far
+	private int[] starts = new int[16];
+	private int fieldsFound;
+	private boolean allFieldsFound;
+
+	public RF2Record() {
+	}
+
+	public RF2Record(final CharSequence line) {
+		reset(line);
+	}
+
+	public RF2Record reset(final CharSequence line) {
+		this.line = line;
+		length = line.length();
+		fieldsFound = 1;
+		allFieldsFound = false;
+		return this;
+	}
+
+	public CharSequence getLine() {
+		return line;
+	}
+
+	public int getFieldCount() {
+		findField(Integer.MAX_VALUE);
+		return fieldsFound;
+	}
+
+	public boolean hasField(final int field) {
+		return findField(field);
+	}
+
+	/**
+	 * @return the value of the field, as String.split would give it.
+	 */
+	public String get(final int field) {
+		return line.subSequence(start(field), end(field)).toString();
+	}
+
+	/**
+	 * @return the rest of the line from the start of the field, as the last value given by String.split with a limit of field + 1.
+	 */
+	public String getFrom(final int field) {
+		return line.subSequence(start(field), length).toString();
+	}
+
+	/**
+	 * @return the line up to the end of the field.
+	 */
+	public String getTo(final int field) {
+		return line.subSequence(0, end(field)).toString();
+	}
+
+	public boolean isEmpty(final int field) {
+		return start(field) == end(field);
+	}
+
+	public boolean fieldEquals(final int field, final CharSequence value) {
+		final int start = start(field);
+		final int fieldLength = end(field) - start;
+		if (fieldLength != value.length()) {
+			return false;
+		}
+		if (line instanceof String && value instanceof String) {
+			return ((String) line).regionMatches(start, (String) value, 0, fieldLength);
+		}
+		for (int i = 0; i < fieldLength; i++) {
+			if (line.charAt(start + i) != value.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @throws NumberFormatException if the field is not a number.
+	 */
+	public long getLong(final int field) {
+		return Long.parseLong(line, start(field), end(field), 10);
+	}
+
+	/**
+	 * @throws NumberFormatException if the field is not a number.
+	 */
+	public int getInt(final int field) {
+		return Integer.parseInt(line, start(field), end(field), 10);
+	}
+
+	public long getSctid() {
+		return getLong(ID);
+	}
+
+	public int getEffectiveTime() {
+		return getInt(EFFECTIVE_TIME);
+	}
+
+	public boolean isActive() {
+		return fieldEquals(ACTIVE, RF2Constants.BOOLEAN_TRUE);
+	}
+
+	/**
+	 * @return the values of all the fields, the same as String.split(RF2Constants.COLUMN_SEPARATOR, -1).
+	 */
+	public String[] toArray() {
+		final String[] values = new String[getFieldCount()];
+		for (int field = 0; field < values.length; field++) {
+			values[field] = get(field);
+		}
+		return values;
+	}
+
+	/**
+	 * @return the same as String.split(RF2Constants.COLUMN_SEPARATOR, limit), the last value holding the rest of the line.
+	 */
+	public String[] toArray(final int limit) {
+		if (limit <= 0) {
+			return toArray();
+		}
+		final boolean rest = findField(limit);
+		final String[] values = new String[Math.min(fieldsFound, limit)];
+		for (int field = 0; field < values.length; field++) {
+			values[field] = rest && field == limit - 1 ? getFrom(field) : get(field);
+		}
+		return values;
+	}
+
+	@Override
+	public String toString() {
+		return String.valueOf(line);
+	}
+
+	private int start(final int field) {
+		if (field < 0 || !findField(field)) {
+			throw new IndexOutOfBoundsException("Field " + field + " out of bounds for line with " + getFieldCount() + " fields: " + line);
+		}
+		return starts[field];
+	}
+
+	private int end(final int field) {
+		return findField(field + 1) ? starts[field + 1] - 1 : length;
+	}
+
+	/**
+	 * Finds the offsets of the fields up to the given one.
+	 * @return true if the line has the field.
+	 */
+	private boolean findField(final int field) {
+		while (fieldsFound <= field) {
+			if (allFieldsFound) {
+				return false;
+			}
+			final int tab = indexOfTab(starts[fieldsFound - 1]);
+			if (tab < 0) {
+				allFieldsFound = true;
+				return false;
+			}
+			if (fieldsFound == starts.length) {
+				starts = Arrays.copyOf(starts, fieldsFound << 1);
+			}
+			starts[fieldsFound++] = tab + 1;
+		}
+		return true;
+	}
+
+	private int indexOfTab(final int from) {
+		if (line instanceof String) {
+			return ((String) line).indexOf(TAB, from);
+		}
+		for (int i = from; i < length; i++) {
+			if (line.charAt(i) == TAB) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
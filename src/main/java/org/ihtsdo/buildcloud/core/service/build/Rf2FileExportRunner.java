@@ -7,21 +7,29 @@ import org.ihtsdo.buildcloud.core.dao.io.AsyncPipedStreamBean;
 import org.ihtsdo.buildcloud.core.entity.Build;
 import org.ihtsdo.buildcloud.core.entity.BuildConfiguration;
 import org.ihtsdo.buildcloud.core.entity.ExtensionConfig;
+import org.ihtsdo.buildcloud.core.service.build.database.PreviousSnapshotFixup;
 import org.ihtsdo.buildcloud.core.service.build.database.RF2TableExportDAO;
 import org.ihtsdo.buildcloud.core.service.build.database.RF2TableResults;
 import org.ihtsdo.buildcloud.core.service.build.database.Rf2FileWriter;
 import org.ihtsdo.buildcloud.core.service.build.database.map.Key;
 import org.ihtsdo.buildcloud.core.service.build.database.map.RF2TableExportDAOImpl;
+import org.ihtsdo.buildcloud.core.service.build.database.merge.ExternalRF2Sorter;
+import org.ihtsdo.buildcloud.core.service.build.database.merge.StreamingMergeResults;
+import org.ihtsdo.buildcloud.core.service.build.database.primitive.ByteArena;
+import org.ihtsdo.buildcloud.core.service.build.database.primitive.RF2TableExportDAOPrimitiveImpl;
 import org.ihtsdo.buildcloud.core.service.helper.StatTimer;
 import org.ihtsdo.snomed.util.rf2.schema.ComponentType;
+import org.ihtsdo.snomed.util.rf2.schema.DataType;
 import org.ihtsdo.snomed.util.rf2.schema.TableSchema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.channels.ClosedByInterruptException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.*;
 
 import static org.ihtsdo.buildcloud.core.entity.BuildConfiguration.BETA_PREFIX;
 import static org.ihtsdo.buildcloud.core.service.build.RF2Constants.*;
@@ -29,6 +37,13 @@ import static org.ihtsdo.buildcloud.core.service.build.RF2Constants.*;
 public class Rf2FileExportRunner {
 
 	private static final String HYPHEN = "-";
+	private static final String WORKBENCH_DATA_FIXES = "Workbench Data Fixes";
+	public static final String TREEMAP_TABLE_STORE = "treemap";
+	private static final int DEFAULT_STREAMING_MERGE_RUN_SIZE = 500000;
+	private static final long MB = 1024L * 1024L;
+	private static final long WORKER_TERMINATION_TIMEOUT_MINUTES = 5;
+	// Files containing these identifiers are the biggest in a release so should be started first
+	private static final List<String> LARGE_FILE_IDENTIFIERS = Arrays.asList("Relationship", "OWL", "Description", "Language");
 	private final Build build;
 	private final BuildDAO buildDao;
 	private final int maxRetries;
@@ -36,15 +51,31 @@ public class Rf2FileExportRunner {
 	private final BuildConfiguration configuration;
 	private final File previousReleaseDirectory;
 	private final File dependencyReleaseDirectory;
+	private final int parallelism;
+	private final long memoryPerFileBytes;
+	private String tableStore = TREEMAP_TABLE_STORE;
+	private boolean streamingMerge;
+	private int streamingMergeRunSize = DEFAULT_STREAMING_MERGE_RUN_SIZE;
 
 
 	public Rf2FileExportRunner(final Build build, final BuildDAO dao, File previousReleaseDirectory, File dependencyReleaseDirectory, final int maxRetries) {
+		this(build, dao, previousReleaseDirectory, dependencyReleaseDirectory, maxRetries, 1, 0);
+	}
+
+	/**
+	 * @param parallelism        the maximum number of files to generate at the same time, 1 means files are generated one after another.
+	 * @param memoryPerFileMB    the heap in MB a single file generation is expected to need, used to cap the parallelism. 0 means no cap.
+	 */
+	public Rf2FileExportRunner(final Build build, final BuildDAO dao, File previousReleaseDirectory, File dependencyReleaseDirectory, final int maxRetries,
+			final int parallelism, final int memoryPerFileMB) {
 		this.build = build;
 		this.configuration = build.getConfiguration();
 		this.buildDao = dao;
 		this.previousReleaseDirectory = previousReleaseDirectory;
 		this.dependencyReleaseDirectory = dependencyReleaseDirectory;
 		this.maxRetries = maxRetries;
+		this.parallelism = Math.max(1, parallelism);
+		this.memoryPerFileBytes = Math.max(0, memoryPerFileMB) * MB;
 	}
 
 	public final void generateReleaseFiles() throws ReleaseFileGenerationException {
@@ -54,32 +85,130 @@ public class Rf2FileExportRunner {
 		final List<String> transformedFiles = getTransformedDeltaFiles();
 		final Set<String> newRF2InputFiles = configuration.getNewRF2InputFileSet();
 		final Set<String> removeRF2Files = configuration.getRemoveRF2FileSet();
-		final Map<String,Set<String>> includedFilesMap = configuration.getIncludedFilesInNewFilesMap();
+		final List<String> filesToGenerate = new ArrayList<>();
 		for (String thisFile : transformedFiles) {
-			String cleanFileName  = thisFile;
-			if (configuration.isBetaRelease()) {
-				cleanFileName = thisFile.substring(1);
+			if (thisFile.endsWith(RF2Constants.TXT_FILE_EXTENSION) && removeRF2Files.stream().noneMatch(getFilenameToCheck(thisFile)::contains)) {
+				filesToGenerate.add(thisFile);
 			}
-			String filenameToCheck = cleanFileName.replace(SCT2, INPUT_FILE_PREFIX).replace(DER2, INPUT_FILE_PREFIX);
-			if (!thisFile.endsWith(RF2Constants.TXT_FILE_EXTENSION) || removeRF2Files.stream().anyMatch(filenameToCheck::contains)) {
-				continue;
+		}
+
+		final int concurrencyLimit = getConcurrencyLimit(filesToGenerate.size());
+		if (concurrencyLimit <= 1) {
+			for (String thisFile : filesToGenerate) {
+				generateReleaseFileWithRetry(thisFile, newRF2InputFiles);
 			}
+		} else {
+			generateReleaseFilesConcurrently(filesToGenerate, newRF2InputFiles, concurrencyLimit);
+		}
+	}
+
+	private void generateReleaseFilesConcurrently(final List<String> filesToGenerate, final Set<String> newRF2InputFiles, final int concurrencyLimit) throws ReleaseFileGenerationException {
+		final List<String> orderedFiles = new ArrayList<>(filesToGenerate);
+		orderedFiles.sort(Comparator.comparingInt(Rf2FileExportRunner::getGenerationPriority));
+		LOGGER.info("Generating {} release files using {} concurrent workers", orderedFiles.size(), concurrencyLimit);
+		generateConcurrently(orderedFiles, concurrencyLimit, thisFile -> generateReleaseFileWithRetry(thisFile, newRF2InputFiles));
+	}
 
-			int failureCount = 0;
-			boolean success = false;
-			while (!success) {
+	/**
+	 * Generates the files in the given order on at most concurrencyLimit threads. When a file fails, the files still
+	 * running are interrupted, the files still waiting are not started, and the failure is thrown once the interrupted files have stopped.
+	 */
+	static void generateConcurrently(final List<String> orderedFiles, final int concurrencyLimit, final FileGenerator generator) throws ReleaseFileGenerationException {
+		final ExecutorService executorService = Executors.newFixedThreadPool(concurrencyLimit);
+		final CompletionService<String> completionService = new ExecutorCompletionService<>(executorService);
+		try {
+			for (String thisFile : orderedFiles) {
+				completionService.submit(() -> {
+					try {
+						generator.generate(thisFile);
+					} catch (RuntimeException e) {
+						throw new ReleaseFileGenerationException("Failed to generate release file:" + thisFile, e);
+					}
+					return thisFile;
+				});
+			}
+			// Take the files as they finish, so that a failure stops the others straight away
+			for (int i = 0; i < orderedFiles.size(); i++) {
 				try {
-					boolean fileFirstTimeRelease = newRF2InputFiles.contains(filenameToCheck) || configuration.isFirstTimeRelease();
-					Set<String> includedFilesInNewFile = includedFilesMap.get(filenameToCheck);
-					generateReleaseFile(thisFile, configuration.getCustomRefsetCompositeKeys(), fileFirstTimeRelease, includedFilesInNewFile);
-					success = true;
-				} catch (final Exception e) {
-					failureCount = handleException(e, thisFile, failureCount);
+					completionService.take().get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof ReleaseFileGenerationException releaseFileGenerationException) {
+						throw releaseFileGenerationException;
+					}
+					throw new ReleaseFileGenerationException("Failed to generate release files", e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new ReleaseFileGenerationException("Interrupted while generating release files", e);
 				}
 			}
+		} finally {
+			// Stop any files still waiting or running when one has failed, and wait so that none is still writing once this returns
+			executorService.shutdownNow();
+			awaitTermination(executorService);
 		}
 	}
 
+	private static void awaitTermination(final ExecutorService executorService) {
+		try {
+			if (!executorService.awaitTermination(WORKER_TERMINATION_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+				LOGGER.warn("Release file workers still running {} minutes after being stopped", WORKER_TERMINATION_TIMEOUT_MINUTES);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@FunctionalInterface
+	interface FileGenerator {
+		void generate(String transformedFile) throws ReleaseFileGenerationException;
+	}
+
+	private void generateReleaseFileWithRetry(final String thisFile, final Set<String> newRF2InputFiles) throws ReleaseFileGenerationException {
+		final String filenameToCheck = getFilenameToCheck(thisFile);
+		final Map<String,Set<String>> includedFilesMap = configuration.getIncludedFilesInNewFilesMap();
+		int failureCount = 0;
+		boolean success = false;
+		while (!success) {
+			try {
+				boolean fileFirstTimeRelease = newRF2InputFiles.contains(filenameToCheck) || configuration.isFirstTimeRelease();
+				Set<String> includedFilesInNewFile = includedFilesMap.get(filenameToCheck);
+				generateReleaseFile(thisFile, configuration.getCustomRefsetCompositeKeys(), fileFirstTimeRelease, includedFilesInNewFile);
+				success = true;
+			} catch (final Exception e) {
+				failureCount = handleException(e, thisFile, failureCount);
+			}
+		}
+	}
+
+	private String getFilenameToCheck(final String transformedFile) {
+		String cleanFileName  = transformedFile;
+		if (configuration.isBetaRelease()) {
+			cleanFileName = transformedFile.substring(1);
+		}
+		return cleanFileName.replace(SCT2, INPUT_FILE_PREFIX).replace(DER2, INPUT_FILE_PREFIX);
+	}
+
+	/**
+	 * Limits the configured parallelism by the heap available so that concurrent files don't run the worker out of memory.
+	 */
+	int getConcurrencyLimit(final int numberOfFiles) {
+		int limit = Math.min(parallelism, Math.max(1, numberOfFiles));
+		if (memoryPerFileBytes > 0) {
+			final long memoryBound = Math.max(1, Runtime.getRuntime().maxMemory() / memoryPerFileBytes);
+			limit = (int) Math.min(limit, memoryBound);
+		}
+		return limit;
+	}
+
+	static int getGenerationPriority(final String transformedFile) {
+		for (int i = 0; i < LARGE_FILE_IDENTIFIERS.size(); i++) {
+			if (transformedFile.contains(LARGE_FILE_IDENTIFIERS.get(i))) {
+				return i;
+			}
+		}
+		return LARGE_FILE_IDENTIFIERS.size();
+	}
+
 	public boolean isInferredRelationshipFileExist(final List<String> rf2DeltaFilesSpecifiedByManifest) throws ReleaseFileGenerationException{
 		boolean isRelationshipDeltaFileSpecifiedInManifest = false;
 		for (String thisFile : rf2DeltaFilesSpecifiedByManifest) {
@@ -118,7 +247,7 @@ public class Rf2FileExportRunner {
 			final InputStream transformedDeltaInputStream = buildDao.getTransformedFileAsInputStream(build, transformedDeltaDataFile);
 
 			Set<Key> deltaKeysToDiscard = new HashSet<>();
-			rf2TableDAO = new RF2TableExportDAOImpl(customRefsetCompositeKeys);
+			rf2TableDAO = createTableExportDAO(customRefsetCompositeKeys);
 			timer.split();
 			final boolean workbenchDataFixesRequired = configuration.isWorkbenchDataFixesRequired();
 			tableSchema = rf2TableDAO.createTable(transformedDeltaDataFile, transformedDeltaInputStream, workbenchDataFixesRequired);
@@ -173,24 +302,24 @@ public class Rf2FileExportRunner {
 			}
 
 			if (workbenchDataFixesRequired && !fileFirstTimeRelease) {
+				// Workbench workarounds, applied together in one read of the previous snapshot file.
+				// See interface javadoc for more info.
+				final List<PreviousSnapshotFixup> fixups = new ArrayList<>();
 				if (tableSchema.getComponentType() == ComponentType.REFSET) {
-					// Workbench workaround - correct refset member ids using previous snapshot file.
-					// See interface javadoc for more info.
-					InputStream previousFileStream = getPreviousFileFromLocalDirectory(previousPublishedPackage, cleanCurrentSnapshotFileName);
-					rf2TableDAO.reconcileRefsetMemberIds(previousFileStream, currentSnapshotFileName, effectiveTime);
+					// Correct refset member ids
+					fixups.add(rf2TableDAO.newRefsetMemberIdReconciliation(currentSnapshotFileName, effectiveTime));
 				}
-
-				// Workbench workaround for dealing Attribute Value File with empty valueId
-				// ideally we should combine all workbench workaround together so that don't read snapshot file twice
 				if (transformedDeltaDataFile.contains(RF2Constants.ATTRIBUTE_VALUE_FILE_IDENTIFIER)) {
-					InputStream previousFileStream = getPreviousFileFromLocalDirectory(previousPublishedPackage, cleanCurrentSnapshotFileName);
-					rf2TableDAO.resolveEmptyValueId(previousFileStream, effectiveTime);
+					// Deal with Attribute Value File with empty valueId
+					fixups.add(rf2TableDAO.newEmptyValueIdResolution(effectiveTime));
 				}
-
-				// Workbench workaround - use full file to discard invalid delta entries
-				// See interface javadoc for more info.
+				// Discard invalid delta entries
+				fixups.add(rf2TableDAO.newAlreadyPublishedDeltaStateDiscard(currentSnapshotFileName, effectiveTime));
 				InputStream previousFileStream = getPreviousFileFromLocalDirectory(previousPublishedPackage, cleanCurrentSnapshotFileName);
-				rf2TableDAO.discardAlreadyPublishedDeltaStates(previousFileStream, currentSnapshotFileName, effectiveTime);
+				rf2TableDAO.applyPreviousSnapshotFixups(previousFileStream, currentSnapshotFileName, fixups);
+				for (PreviousSnapshotFixup fixup : fixups) {
+					build.getBuildReport().addDetail(WORKBENCH_DATA_FIXES, transformedDeltaDataFile + " " + fixup.getName(), Long.toString(fixup.getCount()));
+				}
 			}
 
 			LOGGER.debug("Start: Exporting delta file for {}", tableSchema.getTableName());
@@ -213,33 +342,19 @@ public class Rf2FileExportRunner {
 			LOGGER.debug("Finish: Exporting delta file for {}", tableSchema.getTableName());
 
 			final String currentFullFileName = constructFullOrSnapshotFilename(transformedDeltaDataFile, RF2Constants.FULL);
+			final List<InputStream> previousFullFileStreams = new ArrayList<>();
 			if (!fileFirstTimeRelease) {
 				String cleanFullFileName = currentFullFileName;
 				if (configuration.isBetaRelease() && currentFullFileName.startsWith(BETA_PREFIX)) {
 					cleanFullFileName = currentFullFileName.substring(1); // Previous file will not be a beta release
 				}
-
-				InputStream previousFullFileStream = getPreviousFileFromLocalDirectory(previousPublishedPackage, cleanFullFileName);
-				// Append transformed previous full file
-				LOGGER.debug("Start: Insert previous release data into table {}", tableSchema.getTableName());
-				timer.split();
-				rf2TableDAO.appendData(tableSchema, previousFullFileStream, workbenchDataFixesRequired);
-				timer.logTimeTaken("Insert previous release data");
-				LOGGER.debug("Finish: Insert previous release data into table {}", tableSchema.getTableName());
+				previousFullFileStreams.add(getPreviousFileFromLocalDirectory(previousPublishedPackage, cleanFullFileName));
 			}
 
-			
 			if (includedFilesInNewFile != null && !includedFilesInNewFile.isEmpty()) {
 				for (String includedFile : includedFilesInNewFile) {
 					final String includedFileFullName = constructFullOrSnapshotFilename(includedFile, RF2Constants.FULL);
-					InputStream previousCombinedFullFileStream = getPreviousFileFromLocalDirectory(previousPublishedPackage, includedFileFullName);
-
-					// Append transformed previous full file
-					LOGGER.debug("Start: Insert previous release data from {} into table {}", includedFileFullName, tableSchema.getTableName());
-					timer.split();
-					rf2TableDAO.appendData(tableSchema, previousCombinedFullFileStream, workbenchDataFixesRequired);
-					timer.logTimeTaken("Insert previous release data");
-					LOGGER.debug("Finish: Insert previous release data from {} into table {}", includedFileFullName, tableSchema.getTableName());
+					previousFullFileStreams.add(getPreviousFileFromLocalDirectory(previousPublishedPackage, includedFileFullName));
 				}
 			}
 
@@ -248,13 +363,42 @@ public class Rf2FileExportRunner {
 			final String snapshotOutputFilePath = constructFullOrSnapshotFilename(transformedDeltaDataFile, SNAPSHOT);
 			final AsyncPipedStreamBean snapshotAsyncPipe = buildDao.getOutputFileOutputStream(build, snapshotOutputFilePath);
 
-			timer.split();
-			final RF2TableResults fullResultSet = rf2TableDAO.selectAllOrdered(tableSchema);
-			timer.logTimeTaken("selectAllOrdered");
+			if (streamingMerge && isStreamingMergeSupported(tableSchema)) {
+				// Merge the sorted table rows with the previous full files sorted on local disk rather than loading them into the table
+				LOGGER.debug("Start: Streaming merge of previous release data with table {}", tableSchema.getTableName());
+				timer.split();
+				try (ExternalRF2Sorter sorter = new ExternalRF2Sorter(tableSchema.getFields().get(0).getType(), streamingMergeRunSize)) {
+					for (InputStream previousFullFileStream : previousFullFileStreams) {
+						sorter.addFile(previousFullFileStream);
+					}
+					final List<File> runs = sorter.finish();
+					timer.logTimeTaken("Sort previous release data");
+					try (StreamingMergeResults fullResultSet = new StreamingMergeResults(tableSchema.getFields().get(0).getType(),
+							rf2TableDAO.selectAllOrdered(tableSchema), runs)) {
+						rf2FileWriter.exportFullAndSnapshot(fullResultSet, tableSchema,
+								build.getConfiguration().getEffectiveTime(), fullFileAsyncPipe.getOutputStream(),
+								snapshotAsyncPipe.getOutputStream());
+					}
+				}
+				LOGGER.debug("Finish: Streaming merge of previous release data with table {}", tableSchema.getTableName());
+			} else {
+				for (InputStream previousFullFileStream : previousFullFileStreams) {
+					// Append transformed previous full file
+					LOGGER.debug("Start: Insert previous release data into table {}", tableSchema.getTableName());
+					timer.split();
+					rf2TableDAO.appendData(tableSchema, previousFullFileStream, workbenchDataFixesRequired);
+					timer.logTimeTaken("Insert previous release data");
+					LOGGER.debug("Finish: Insert previous release data into table {}", tableSchema.getTableName());
+				}
 
-			rf2FileWriter.exportFullAndSnapshot(fullResultSet, tableSchema,
-					build.getConfiguration().getEffectiveTime(), fullFileAsyncPipe.getOutputStream(),
-					snapshotAsyncPipe.getOutputStream());
+				timer.split();
+				final RF2TableResults fullResultSet = rf2TableDAO.selectAllOrdered(tableSchema);
+				timer.logTimeTaken("selectAllOrdered");
+
+				rf2FileWriter.exportFullAndSnapshot(fullResultSet, tableSchema,
+						build.getConfiguration().getEffectiveTime(), fullFileAsyncPipe.getOutputStream(),
+						snapshotAsyncPipe.getOutputStream());
+			}
 			LOGGER.debug("Completed processing full and snapshot files for {}, waiting for network.", tableSchema.getTableName());
 			fullFileAsyncPipe.waitForFinish();
 			snapshotAsyncPipe.waitForFinish();
@@ -273,6 +417,48 @@ public class Rf2FileExportRunner {
 		}
 	}
 
+	/**
+	 * @param tableStore "treemap" to hold rows in a TreeMap, otherwise the {@link ByteArena.Mode} (heap, direct or mapped)
+	 *                   used by the primitive keyed table.
+	 */
+	public void setTableStore(final String tableStore) {
+		this.tableStore = StringUtils.isBlank(tableStore) ? TREEMAP_TABLE_STORE : tableStore.trim();
+	}
+
+	/**
+	 * When enabled the previous full files are sorted on local disk and merged with the ordered table rows in a single pass
+	 * instead of being loaded into the table, so memory use no longer grows with the size of the previous release.
+	 * @param runSize the maximum number of rows held in memory while sorting the previous full files.
+	 */
+	public void setStreamingMerge(final boolean streamingMerge, final int runSize) {
+		this.streamingMerge = streamingMerge;
+		if (runSize > 0) {
+			this.streamingMergeRunSize = runSize;
+		}
+	}
+
+	/**
+	 * Identifier files use a composite key which can't be parsed from the id and effectiveTime columns alone.
+	 */
+	private boolean isStreamingMergeSupported(final TableSchema tableSchema) {
+		if (tableSchema.getComponentType() == ComponentType.IDENTIFIER) {
+			return false;
+		}
+		final DataType idType = tableSchema.getFields().get(0).getType();
+		return idType == DataType.SCTID || idType == DataType.UUID;
+	}
+
+	private RF2TableExportDAO createTableExportDAO(final Map<String, List<Integer>> customRefsetCompositeKeys) throws ReleaseFileGenerationException {
+		if (TREEMAP_TABLE_STORE.equalsIgnoreCase(tableStore)) {
+			return new RF2TableExportDAOImpl(customRefsetCompositeKeys);
+		}
+		try {
+			return new RF2TableExportDAOPrimitiveImpl(customRefsetCompositeKeys, ByteArena.Mode.valueOf(tableStore.toUpperCase()));
+		} catch (IllegalArgumentException e) {
+			throw new ReleaseFileGenerationException("Unknown file export table store: " + tableStore, e);
+		}
+	}
+
 	private InputStream getEquivalentInternationalFullFromLocalDirectory(ExtensionConfig extensionConfig, String transformedDeltaDataFile) throws IOException {
 		String equivalentFullFile = getEquivalentInternationalFile(extensionConfig, transformedDeltaDataFile).replace(DELTA, FULL);
 		LOGGER.info("Equivalent full file {}", equivalentFullFile);
@@ -348,6 +534,10 @@ public class Rf2FileExportRunner {
 	private int handleException(final Exception e, final String thisFile, int failureCount) throws ReleaseFileGenerationException {
 		// Is this an error that it's worth retrying eg root cause IOException or AWS Related?
 		final Throwable cause = e.getCause();
+		if (isInterrupted(e)) {
+			// Stopped because another file failed, so retrying would only keep writing after the build has failed
+			throw new ReleaseFileGenerationException("Interrupted while generating release file:" + thisFile, e);
+		}
 		failureCount++;
 		if (failureCount > maxRetries) {
 			throw new ReleaseFileGenerationException("Maximum failure recount of " + maxRetries + " exceeeded. Last error: "
@@ -361,6 +551,19 @@ public class Rf2FileExportRunner {
 		return failureCount;
 	}
 
+	private static boolean isInterrupted(final Throwable e) {
+		if (Thread.currentThread().isInterrupted()) {
+			return true;
+		}
+		for (Throwable throwable : ExceptionUtils.getThrowableList(e)) {
+			if (throwable instanceof InterruptedException || throwable instanceof InterruptedIOException || throwable instanceof ClosedByInterruptException) {
+				Thread.currentThread().interrupt();
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private boolean isNetworkRelated(final Throwable cause) {
 		boolean isNetworkRelated = false;
 		if (cause instanceof IOException) {
@@ -2,8 +2,12 @@ package org.ihtsdo.buildcloud.core.service.build;
 
 import com.google.common.io.Files;
 
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.ihtsdo.buildcloud.core.dao.BuildDAO;
+import org.ihtsdo.buildcloud.core.dao.io.AsyncPipedStreamBean;
 import org.ihtsdo.buildcloud.core.entity.Build;
 import org.ihtsdo.buildcloud.core.manifest.FileType;
 import org.ihtsdo.buildcloud.core.manifest.FolderType;
@@ -14,10 +18,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.text.Normalizer;
 import java.text.Normalizer.Form;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
 
 import javax.xml.bind.JAXBException;
 
@@ -36,6 +46,9 @@ public class Zipper {
 
 	private static final int BUFFER_SIZE = 64 * 1024;
 
+	// The most read of each file fetched ahead, which bounds the memory held by files waiting to be zipped
+	private static final int READ_AHEAD_BUFFER_SIZE = 8 * 1024 * 1024;
+
 	private static final String SNAPSHOT = "snapshot";
 
 	private static final String FULL = "full";
@@ -49,6 +62,21 @@ public class Zipper {
 	private boolean isInitialised = false;
 
 	private FolderType rootFolder;
+
+	private int readAhead = 0;
+
+	private int compressionParallelism = 1;
+
+	private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+	/**
+	 * A folder, when there is no file name, or an output file and its path in the zip.
+	 */
+	private record ZipEntryToWrite(String path, String filename) {
+		boolean isFolder() {
+			return filename == null;
+		}
+	}
 	
 	public Zipper(Build build, BuildDAO buildDAO) {
 		this.build = build;
@@ -72,35 +100,201 @@ public class Zipper {
 		isInitialised = true;
 	}
 
+	/**
+	 * Zips the files listed in the manifest straight into the build output files, without a local copy of the zip.
+	 * The MD5 file of the zip is written alongside it, as when a local zip is put with its checksum.
+	 * @return the name of the zip file in the output files.
+	 */
+	public String createZipFileInOutput(FileTypeOption fileTypeOption) throws JAXBException, IOException, ResourceNotFoundException {
+		loadManifest();
+		assert (isInitialised);
+		final String zipFilename = rootFolder.getName() + ".zip";
+		LOGGER.debug("Start: Zipping file structure {} to the output files", rootFolder.getName());
+		final AsyncPipedStreamBean zipFileAsyncPipe = buildDAO.getOutputFileOutputStream(build, zipFilename);
+		final MessageDigest md5 = DigestUtils.getMd5Digest();
+		try {
+			writeArchive(new DigestOutputStream(zipFileAsyncPipe.getOutputStream(), md5), fileTypeOption);
+		} catch (IOException | RuntimeException e) {
+			// Leave no partial zip in the output files
+			zipFileAsyncPipe.abort();
+			throw e;
+		}
+		try {
+			zipFileAsyncPipe.waitForFinish();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while uploading " + zipFilename, e);
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to upload " + zipFilename, e.getCause());
+		}
+		putMD5FileInOutput(zipFilename, Hex.encodeHexString(md5.digest()));
+		LOGGER.debug("Finished: Zipping file structure {} to the output files", rootFolder.getName());
+		return zipFilename;
+	}
+
+	private void putMD5FileInOutput(String zipFilename, String md5) throws IOException {
+		final File md5Directory = Files.createTempDir();
+		try {
+			final File md5File = org.ihtsdo.otf.utils.FileUtils.createMD5File(new File(md5Directory, zipFilename), md5);
+			buildDAO.putOutputFile(build, md5File);
+		} finally {
+			FileUtils.deleteQuietly(md5Directory);
+		}
+	}
+
+	/**
+	 * @param readAhead the number of files fetched ahead of the file being zipped. 0 fetches each file when it is zipped.
+	 */
+	public void setReadAhead(int readAhead) {
+		this.readAhead = readAhead;
+	}
+
+	/**
+	 * @param compressionParallelism the number of blocks of a file compressed at the same time.
+	 */
+	public void setCompressionParallelism(int compressionParallelism) {
+		this.compressionParallelism = compressionParallelism;
+	}
+
+	/**
+	 * @param compressionLevel the deflate level, 0 to store files without compression up to 9, or -1 for the default level.
+	 */
+	public void setCompressionLevel(int compressionLevel) {
+		if (compressionLevel != Deflater.DEFAULT_COMPRESSION && (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION)) {
+			throw new IllegalArgumentException("Invalid zip compression level " + compressionLevel);
+		}
+		this.compressionLevel = compressionLevel;
+	}
+
 	private File createArchive(FileTypeOption fileTypeOption) throws IOException {
 
 		assert (isInitialised);  //Would be a coding error if this tripped
 
-
 		String targetPath = Files.createTempDir().getAbsolutePath();
 		String zipLocation = targetPath + File.separator + rootFolder.getName() + ".zip";
 
-		//Option to use Google's InputStreamFromOutputStream here to feed directly 
-		//up to S3, but that would use another thread in parallel, so not without risk.
-		//Simpler to write to local disk for now and upload when complete.
-
 		LOGGER.debug("Start: Zipping file structure {}", rootFolder.getName());
 		File zipFile = new File(zipLocation);
-		FileOutputStream fos = new FileOutputStream(zipFile);
-		BufferedOutputStream bos = new BufferedOutputStream(fos, BUFFER_SIZE);
-		ZipOutputStream zos = new ZipOutputStream(bos);
-		walkFolders(rootFolder, zos, "", fileTypeOption);
-		zos.close();
+		final FileOutputStream outputStream = new FileOutputStream(zipFile);
+		try {
+			writeArchive(outputStream, fileTypeOption);
+		} catch (IOException | RuntimeException e) {
+			IOUtils.closeQuietly(outputStream);
+			FileUtils.deleteQuietly(new File(targetPath));
+			throw e;
+		}
 		LOGGER.debug("Finished: Zipping file structure {}", rootFolder.getName());
 		return zipFile;
 	}
 
-	private void walkFolders(final FolderType f, final ZipOutputStream zos, final String parentPath, FileTypeOption fileTypeOption) throws IOException {
+	private void writeArchive(OutputStream outputStream, FileTypeOption fileTypeOption) throws IOException {
+		final List<ZipEntryToWrite> entries = new ArrayList<>();
+		walkFolders(rootFolder, entries, "", fileTypeOption);
+		final ParallelZipWriter zipWriter = new ParallelZipWriter(new BufferedOutputStream(outputStream, BUFFER_SIZE), compressionLevel, compressionParallelism);
+		try {
+			if (readAhead > 0) {
+				writeEntriesWithReadAhead(entries, zipWriter);
+			} else {
+				for (ZipEntryToWrite entry : entries) {
+					if (entry.isFolder()) {
+						zipWriter.putFolder(entry.path());
+					} else {
+						try (InputStream is = buildDAO.getOutputFileInputStream(build, entry.filename())) {
+							writeFile(zipWriter, entry, is);
+						}
+					}
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			// Closing would finish the archive with the entries written so far
+			zipWriter.abort();
+			throw e;
+		}
+		zipWriter.close();
+	}
+
+	private void writeEntriesWithReadAhead(List<ZipEntryToWrite> entries, ParallelZipWriter zipWriter) throws IOException {
+		// Files are fetched in the order they are zipped, so the head of the queue is always the next file to zip
+		final Iterator<ZipEntryToWrite> filesToFetch = entries.stream().filter(entry -> !entry.isFolder()).iterator();
+		final Deque<Future<InputStream>> fetchedFiles = new ArrayDeque<>();
+		final ExecutorService fetchExecutorService = Executors.newFixedThreadPool(readAhead);
+		try {
+			for (ZipEntryToWrite entry : entries) {
+				while (fetchedFiles.size() < readAhead && filesToFetch.hasNext()) {
+					final String filename = filesToFetch.next().filename();
+					fetchedFiles.add(fetchExecutorService.submit(() -> fetchFile(filename)));
+				}
+				if (entry.isFolder()) {
+					zipWriter.putFolder(entry.path());
+				} else {
+					try (InputStream is = getFetchedFile(fetchedFiles.poll(), entry.filename())) {
+						writeFile(zipWriter, entry, is);
+					}
+				}
+			}
+		} finally {
+			fetchExecutorService.shutdownNow();
+			for (Future<InputStream> fetchedFile : fetchedFiles) {
+				if (!fetchedFile.cancel(true) && !fetchedFile.isCancelled()) {
+					try {
+						IOUtils.closeQuietly(fetchedFile.get());
+					} catch (InterruptedException | ExecutionException e) {
+						LOGGER.debug("Failed to fetch a file which was not zipped", e);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Opens an output file and reads its start, so that small files are read completely while an earlier file is being zipped.
+	 */
+	private InputStream fetchFile(String filename) throws IOException {
+		final InputStream is = buildDAO.getOutputFileInputStream(build, filename);
+		if (is == null) {
+			return null;
+		}
+		try {
+			final byte[] head = is.readNBytes(READ_AHEAD_BUFFER_SIZE);
+			if (head.length < READ_AHEAD_BUFFER_SIZE) {
+				is.close();
+				return new ByteArrayInputStream(head);
+			}
+			return new SequenceInputStream(new ByteArrayInputStream(head), is);
+		} catch (IOException e) {
+			IOUtils.closeQuietly(is);
+			throw e;
+		}
+	}
+
+	private InputStream getFetchedFile(Future<InputStream> fetchedFile, String filename) throws IOException {
+		try {
+			return fetchedFile.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while fetching " + filename, e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException ioException) {
+				throw ioException;
+			}
+			throw new IOException("Failed to fetch " + filename, e.getCause());
+		}
+	}
+
+	private void writeFile(ParallelZipWriter zipWriter, ZipEntryToWrite entry, InputStream is) throws IOException {
+		if (is != null) {
+			zipWriter.putFile(entry.path(), is);
+		} else {
+			LOGGER.info(RF2Constants.DATA_PROBLEM + " Failed to find output file listed in manifest: " + entry.filename());
+		}
+	}
+
+	private void walkFolders(final FolderType f, final List<ZipEntryToWrite> entries, final String parentPath, FileTypeOption fileTypeOption) {
 		//Create an entry for this folder
 		String thisFolder = parentPath + f.getName() + PATH_CHAR;
-		zos.putNextEntry(new ZipEntry(thisFolder));
+		entries.add(new ZipEntryToWrite(thisFolder, null));
 
-		//Pull down and compress any child files
+		//Add any child files
 		for (FileType file : f.getFile()) {
 			String filename = file.getName();
 			if (FileTypeOption.DELTA_ONLY.equals(fileTypeOption) && !filename.toLowerCase().contains(DELTA)) {
@@ -117,20 +311,7 @@ public class Zipper {
 				filename = Normalizer.normalize(filename, Form.NFC);
 				LOGGER.debug("NFC Normalized file name from manifest " + filename);
 			}
-			try (InputStream is = buildDAO.getOutputFileInputStream(build, filename)) {
-				if (is != null) {
-				BufferedInputStream bis = new BufferedInputStream(is, BUFFER_SIZE);
-					try {
-						zos.putNextEntry(new ZipEntry(thisFolder + filename));
-						IOUtils.copy(bis, zos);
-					} finally {
-						zos.closeEntry();
-						is.close();
-					}
-				} else {
-					LOGGER.info(RF2Constants.DATA_PROBLEM + " Failed to find output file listed in manifest: " + filename);
-				}
-			}
+			entries.add(new ZipEntryToWrite(thisFolder + filename, filename));
 		}
 
 		//Recurse through child folders
@@ -144,7 +325,7 @@ public class Zipper {
 			if (FileTypeOption.FULL_ONLY.equals(fileTypeOption) && (childFolder.getName().equalsIgnoreCase(DELTA) || childFolder.getName().equalsIgnoreCase(SNAPSHOT))) {
 				continue;
 			}
-			walkFolders(childFolder, zos, thisFolder, fileTypeOption);
+			walkFolders(childFolder, entries, thisFolder, fileTypeOption);
 		}
 	}
 
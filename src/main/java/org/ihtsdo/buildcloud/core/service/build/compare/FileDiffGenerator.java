@@ -0,0 +1,138 @@
+package org.ihtsdo.buildcloud.core.service.build.compare;
+
+import com.github.difflib.text.DiffRowGenerator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Finds the rows deleted, inserted and changed between two versions of an RF2 file. Lines found in both files are not reported,
+ * and the remaining lines are matched on their component id. When an id has more than one such line in a file, as in Full files,
+ * they are matched on their id and effectiveTime instead. Lines are normalized the same way as the rows of a line diff.
+ */
+public class FileDiffGenerator {
+
+	private static final String SPACE_OF_FOUR = "    ";
+
+	public void findDiff(InputStream leftInputStream, InputStream rightInputStream, boolean ignoreIdComparison, FileDiffReport report) throws IOException {
+		// Only the lines of the left file are held, those also in the right file are let go as it is read
+		final Set<String> leftLines = new LinkedHashSet<>();
+		readLines(leftInputStream, leftLines::add);
+		final List<String> rightLines = new ArrayList<>();
+		readLines(rightInputStream, line -> {
+			if (!leftLines.remove(line)) {
+				rightLines.add(line);
+			}
+		});
+
+		Map<String, String> leftKeyToLineMap = getKeyToLineMap(leftLines, false);
+		Map<String, String> rightKeyToLineMap = getKeyToLineMap(rightLines, false);
+		if (leftKeyToLineMap == null || rightKeyToLineMap == null) {
+			leftKeyToLineMap = getKeyToLineMap(leftLines, true);
+			rightKeyToLineMap = getKeyToLineMap(rightLines, true);
+		}
+
+		final Set<String> deleteKeys = new LinkedHashSet<>(leftKeyToLineMap.keySet());
+		deleteKeys.removeAll(rightKeyToLineMap.keySet());
+		final Set<String> insertKeys = new LinkedHashSet<>(rightKeyToLineMap.keySet());
+		insertKeys.removeAll(leftKeyToLineMap.keySet());
+
+		final List<DiffRow> changeRows = new ArrayList<>();
+		final List<DiffRow> deleteRows = new ArrayList<>();
+		final List<DiffRow> insertRows = new ArrayList<>();
+
+		findChangedRowsWithoutId(changeRows, deleteKeys, insertKeys, leftKeyToLineMap, rightKeyToLineMap, ignoreIdComparison);
+
+		for (Map.Entry<String, String> leftEntry : leftKeyToLineMap.entrySet()) {
+			final String rightLine = rightKeyToLineMap.get(leftEntry.getKey());
+			if (rightLine != null && !leftEntry.getValue().equals(rightLine)) {
+				changeRows.add(new DiffRow(leftEntry.getValue(), rightLine));
+			}
+		}
+		for (String key : deleteKeys) {
+			deleteRows.add(new DiffRow(leftKeyToLineMap.get(key), ""));
+		}
+		for (String key : insertKeys) {
+			insertRows.add(new DiffRow("", rightKeyToLineMap.get(key)));
+		}
+
+		report.setDeleteRows(deleteRows);
+		report.setInsertRows(insertRows);
+		report.setChangeRows(changeRows);
+	}
+
+	private void readLines(InputStream inputStream, Consumer<String> consumer) throws IOException {
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			final String normalizedLine = DiffRowGenerator.LINE_NORMALIZER_FOR_HTML.apply(line);
+			if (!getId(normalizedLine).isEmpty()) {
+				consumer.accept(normalizedLine);
+			}
+		}
+	}
+
+	/**
+	 * @return the lines keyed on their id, or on their id and effectiveTime, or null if a line has the same id as another.
+	 * Lines which still repeat an id and effectiveTime are keyed on the whole line, so that none is lost.
+	 */
+	private Map<String, String> getKeyToLineMap(Collection<String> lines, boolean withEffectiveTime) {
+		final Map<String, String> keyToLineMap = new LinkedHashMap<>();
+		for (String line : lines) {
+			final String key = withEffectiveTime ? getIdAndEffectiveTime(line) : getId(line);
+			if (keyToLineMap.putIfAbsent(key, line) != null) {
+				if (!withEffectiveTime) {
+					return null;
+				}
+				keyToLineMap.put(line, line);
+			}
+		}
+		return keyToLineMap;
+	}
+
+	/**
+	 * Matches deleted and inserted rows which only differ by their id.
+	 */
+	private void findChangedRowsWithoutId(List<DiffRow> changeRows, Set<String> deleteKeys, Set<String> insertKeys, Map<String, String> leftKeyToLineMap,
+			Map<String, String> rightKeyToLineMap, boolean ignoreIdComparison) {
+		final Map<String, String> leftLineToKeyMap = new HashMap<>();
+		for (String key : deleteKeys) {
+			leftLineToKeyMap.put(withoutId(leftKeyToLineMap.get(key)), key);
+		}
+		final List<String[]> changedKeys = new ArrayList<>();
+		for (String key : insertKeys) {
+			final String leftKey = leftLineToKeyMap.remove(withoutId(rightKeyToLineMap.get(key)));
+			if (leftKey != null) {
+				changedKeys.add(new String[] {leftKey, key});
+			}
+		}
+		for (String[] keys : changedKeys) {
+			deleteKeys.remove(keys[0]);
+			insertKeys.remove(keys[1]);
+			if (!ignoreIdComparison) {
+				changeRows.add(new DiffRow(leftKeyToLineMap.get(keys[0]), rightKeyToLineMap.get(keys[1])));
+			}
+		}
+	}
+
+	private static String getId(String line) {
+		final int idEnd = line.indexOf(SPACE_OF_FOUR);
+		return idEnd < 0 ? line : line.substring(0, idEnd);
+	}
+
+	private static String getIdAndEffectiveTime(String line) {
+		final int idEnd = line.indexOf(SPACE_OF_FOUR);
+		final int effectiveTimeEnd = idEnd < 0 ? -1 : line.indexOf(SPACE_OF_FOUR, idEnd + SPACE_OF_FOUR.length());
+		return effectiveTimeEnd < 0 ? line : line.substring(0, effectiveTimeEnd);
+	}
+
+	private static String withoutId(String line) {
+		final int idEnd = line.indexOf(SPACE_OF_FOUR);
+		return idEnd < 0 ? "" : line.substring(idEnd);
+	}
+}
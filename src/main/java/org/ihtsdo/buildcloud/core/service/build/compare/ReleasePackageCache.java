@@ -0,0 +1,363 @@
+package org.ihtsdo.buildcloud.core.service.build.compare;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.ihtsdo.buildcloud.core.dao.BuildDAO;
+import org.ihtsdo.buildcloud.core.dao.helper.S3PathHelper;
+import org.ihtsdo.buildcloud.core.entity.Build;
+import org.ihtsdo.buildcloud.core.service.PublishService;
+import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
+import org.ihtsdo.buildcloud.core.service.helper.Rf2FileNameTransformation;
+import org.ihtsdo.otf.rest.exception.ResourceNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Keeps the extracted files of the release packages of recently compared builds, so that comparing the same builds again,
+ * or looking at the differences of their files, doesn't download and unzip the packages again.
+ * The SHA-256 of each extracted file is worked out once, on several threads, so that files which are the same in two
+ * packages are found without reading them side by side. Packages not used by a comparison are deleted once more than
+ * srs.build-comparison.package-cache.max-packages are held, least recently used first.
+ */
+@Service
+public class ReleasePackageCache {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReleasePackageCache.class);
+
+	private static final Rf2FileNameTransformation FILE_NAME_TRANSFORMATION = new Rf2FileNameTransformation();
+
+	/**
+	 * Downloads the release package of a build to a local zip file, which is deleted once extracted.
+	 */
+	@FunctionalInterface
+	public interface PackageDownloader {
+		File download() throws IOException;
+	}
+
+	/**
+	 * The extracted files of the release package of a build.
+	 */
+	public static final class ExtractedPackage {
+		private final String key;
+		private final File directory;
+		private final ExecutorService digestExecutorService;
+		private Map<String, String> digests;
+		private Map<String, String> fileNamesByNormalizedName;
+		private int leases;
+
+		private ExtractedPackage(String key, File directory, ExecutorService digestExecutorService) {
+			this.key = key;
+			this.directory = directory;
+			this.digestExecutorService = digestExecutorService;
+		}
+
+		public File getDirectory() {
+			return directory;
+		}
+
+		/**
+		 * @return the extracted file with the given name, or null if the package doesn't have it.
+		 */
+		public File getFile(String fileName) {
+			final File file = new File(directory, fileName);
+			return file.isFile() ? file : null;
+		}
+
+		/**
+		 * @return the names of the extracted files by their name without the beta prefix and release date, as
+		 * files are matched between packages by that name.
+		 */
+		public synchronized Map<String, String> getFileNamesByNormalizedName() {
+			if (fileNamesByNormalizedName == null) {
+				final Map<String, String> fileNames = new HashMap<>();
+				final File[] files = directory.listFiles(File::isFile);
+				if (files != null) {
+					for (File file : files) {
+						fileNames.put(normalizeFileName(file.getName()), file.getName());
+					}
+				}
+				fileNamesByNormalizedName = Collections.unmodifiableMap(fileNames);
+			}
+			return fileNamesByNormalizedName;
+		}
+
+		/**
+		 * @return the SHA-256 of each extracted file by file name. Worked out the first time it is asked for, with the
+		 * files read at the same time.
+		 */
+		public Map<String, String> getDigests() throws IOException {
+			synchronized (this) {
+				if (digests != null) {
+					return digests;
+				}
+			}
+			final Map<String, Future<String>> futures = new LinkedHashMap<>();
+			for (String fileName : getFileNamesByNormalizedName().values()) {
+				final File file = new File(directory, fileName);
+				futures.put(fileName, digestExecutorService.submit(() -> sha256(file)));
+			}
+			final Map<String, String> fileDigests = new HashMap<>();
+			for (Map.Entry<String, Future<String>> entry : futures.entrySet()) {
+				fileDigests.put(entry.getKey(), waitForDigest(entry.getValue()));
+			}
+			synchronized (this) {
+				if (digests == null) {
+					digests = Collections.unmodifiableMap(fileDigests);
+				}
+				return digests;
+			}
+		}
+	}
+
+	private final int maxPackages;
+
+	private final ExecutorService digestExecutorService;
+
+	@Autowired
+	private BuildDAO buildDAO;
+
+	@Autowired
+	private PublishService publishService;
+
+	// Access ordered, so that iteration starts from the least recently used package
+	private final LinkedHashMap<String, ExtractedPackage> packages = new LinkedHashMap<>(16, 0.75f, true);
+	// Only held while a package is being looked up or downloaded, so that the map doesn't grow with every build compared
+	private final Map<String, KeyLock> keyLocks = new HashMap<>();
+
+	public ReleasePackageCache(@Value("${srs.build-comparison.package-cache.max-packages:2}") final int maxPackages,
+			@Value("${srs.build-comparison.digest-parallelism:4}") final int digestParallelism) {
+		this.maxPackages = Math.max(0, maxPackages);
+		this.digestExecutorService = Executors.newFixedThreadPool(Math.max(1, digestParallelism));
+	}
+
+	/**
+	 * @return the extracted release package of the build, downloaded and extracted if it is not held already.
+	 * It must be given back with {@link #release(ExtractedPackage)} once used.
+	 * @throws ResourceNotFoundException if the build has no release package.
+	 */
+	public ExtractedPackage getExtractedPackage(Build build) throws IOException {
+		return getExtractedPackage(build, () -> getReleaseFile(build));
+	}
+
+	public ExtractedPackage getExtractedPackage(Build build, PackageDownloader downloader) throws IOException {
+		final String key = toKey(build);
+		// Comparisons asking for the same package wait for one download rather than each downloading it
+		final KeyLock keyLock;
+		synchronized (this) {
+			keyLock = keyLocks.computeIfAbsent(key, k -> new KeyLock());
+			keyLock.users++;
+		}
+		keyLock.lock.lock();
+		try {
+			synchronized (this) {
+				final ExtractedPackage extractedPackage = packages.get(key);
+				if (extractedPackage != null) {
+					extractedPackage.leases++;
+					LOGGER.info("Release package of build {} found in the local comparison cache", key);
+					return extractedPackage;
+				}
+			}
+			final File packageFile = downloader.download();
+			final File directory = Files.createTempDirectory("release-package-compare").toFile();
+			try {
+				unzipFlat(packageFile, directory);
+			} catch (IOException e) {
+				FileUtils.deleteQuietly(directory);
+				throw e;
+			} finally {
+				Files.deleteIfExists(packageFile.toPath());
+			}
+			final ExtractedPackage extractedPackage = new ExtractedPackage(key, directory, digestExecutorService);
+			synchronized (this) {
+				extractedPackage.leases++;
+				packages.put(key, extractedPackage);
+				evictIfFull();
+			}
+			return extractedPackage;
+		} finally {
+			keyLock.lock.unlock();
+			synchronized (this) {
+				if (--keyLock.users == 0) {
+					keyLocks.remove(key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gives back a package returned by {@link #getExtractedPackage}. Does nothing when given null.
+	 */
+	public synchronized void release(ExtractedPackage extractedPackage) {
+		if (extractedPackage == null) {
+			return;
+		}
+		extractedPackage.leases--;
+		if (packages.get(extractedPackage.key) == extractedPackage) {
+			evictIfFull();
+		} else if (extractedPackage.leases == 0) {
+			FileUtils.deleteQuietly(extractedPackage.directory);
+		}
+	}
+
+	public synchronized int size() {
+		return packages.size();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		digestExecutorService.shutdownNow();
+		synchronized (this) {
+			for (ExtractedPackage extractedPackage : packages.values()) {
+				FileUtils.deleteQuietly(extractedPackage.directory);
+			}
+			packages.clear();
+		}
+	}
+
+	/**
+	 * @return the file name without the beta prefix and the release date, for example sct2_Concept_Snapshot_INT for
+	 * xsct2_Concept_Snapshot_INT_20240101.txt.
+	 */
+	public static String normalizeFileName(String fileName) {
+		final String name = fileName.startsWith(RF2Constants.BETA_RELEASE_PREFIX) ? fileName.substring(RF2Constants.BETA_RELEASE_PREFIX.length()) : fileName;
+		return FILE_NAME_TRANSFORMATION.transformFilename(name);
+	}
+
+	private void evictIfFull() {
+		final Iterator<ExtractedPackage> leastRecentlyUsed = packages.values().iterator();
+		while (packages.size() > maxPackages && leastRecentlyUsed.hasNext()) {
+			final ExtractedPackage extractedPackage = leastRecentlyUsed.next();
+			// A package still used by a comparison is evicted once that comparison releases it
+			if (extractedPackage.leases == 0) {
+				LOGGER.info("Evicting release package of build {} from the local comparison cache", extractedPackage.key);
+				leastRecentlyUsed.remove();
+				FileUtils.deleteQuietly(extractedPackage.directory);
+			}
+		}
+	}
+
+	private File getReleaseFile(Build build) throws IOException {
+		Build found = buildDAO.find(build.getReleaseCenterKey(), build.getProductKey(), build.getId(), false, false, false, null);
+		if (found != null) {
+			// Trying to find the output files from build folder
+			List<String> outputFiles = buildDAO.listOutputFilePaths(build);
+			String releaseFilePath = outputFiles.stream().filter(path -> path.endsWith(RF2Constants.ZIP_FILE_EXTENSION)).findAny().orElse(null);
+			if (releaseFilePath != null) {
+				return downloadReleasePackage(releaseFilePath, () -> buildDAO.getOutputFileInputStream(build, releaseFilePath));
+			}
+		} else {
+			// Trying to find the output files from published folder
+			Map<String, String> publishedBuildPathMap = publishService.getPublishedBuildPathMap(build.getReleaseCenterKey(), build.getProductKey());
+			if (publishedBuildPathMap.containsKey(build.getId())) {
+				String absoluteBuildPath = publishedBuildPathMap.get(build.getId());
+				String sourceBuildPath = absoluteBuildPath.substring(absoluteBuildPath.indexOf(S3PathHelper.SEPARATOR) + 1);
+				String sourceBucketName = absoluteBuildPath.substring(0, absoluteBuildPath.indexOf(S3PathHelper.SEPARATOR));
+				List<String> outputFiles = buildDAO.listOutputFilePaths(sourceBucketName, sourceBuildPath + S3PathHelper.OUTPUT_FILES);
+				String releaseFilePath = outputFiles.stream().filter(path -> path.endsWith(RF2Constants.ZIP_FILE_EXTENSION)).findAny().orElse(null);
+				if (releaseFilePath != null) {
+					return downloadReleasePackage(releaseFilePath, () -> buildDAO.getOutputFileInputStream(sourceBucketName, sourceBuildPath, releaseFilePath));
+				}
+			}
+		}
+		throw new ResourceNotFoundException("Release file not found for build " + build.getId());
+	}
+
+	private File downloadReleasePackage(String releaseFilePath, PackageSource packageSource) throws IOException {
+		final String fileName = Paths.get(releaseFilePath).getFileName().toString();
+		final File releaseFile = File.createTempFile(fileName, RF2Constants.ZIP_FILE_EXTENSION);
+		try (InputStream inputStream = packageSource.open();
+			 FileOutputStream out = new FileOutputStream(releaseFile)) {
+			if (inputStream == null) {
+				throw new ResourceNotFoundException("Release file " + releaseFilePath + " could not be read");
+			}
+			StreamUtils.copy(inputStream, out);
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(releaseFile.toPath());
+			throw e;
+		}
+		return releaseFile;
+	}
+
+	private static final class KeyLock {
+		private final ReentrantLock lock = new ReentrantLock();
+		// Comparisons holding or waiting for the lock, guarded by the cache
+		private int users;
+	}
+
+	@FunctionalInterface
+	private interface PackageSource {
+		InputStream open() throws IOException;
+	}
+
+	private static void unzipFlat(File archive, File targetDir) throws IOException {
+		try (ZipInputStream zis = new ZipInputStream(new FileInputStream(archive))) {
+			ZipEntry ze = zis.getNextEntry();
+			while (ze != null) {
+				if (!ze.isDirectory()) {
+					Path p = Paths.get(ze.getName());
+					String extractedFileName = p.getFileName().toString();
+					File extractedFile = new File(targetDir, extractedFileName);
+					try (OutputStream out = new FileOutputStream(extractedFile)) {
+						IOUtils.copy(zis, out);
+					}
+				}
+				ze = zis.getNextEntry();
+			}
+		}
+	}
+
+	private static String waitForDigest(Future<String> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while working out the checksums of a release package");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException ioException) {
+				throw ioException;
+			} else if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private static String sha256(File file) throws IOException {
+		try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			final byte[] buffer = new byte[64 * 1024];
+			int read;
+			while ((read = inputStream.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+			return Hex.encodeHexString(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException("Failed to calculate checksum of " + file.getName(), e);
+		}
+	}
+
+	private static String toKey(Build build) {
+		return build.getReleaseCenterKey() + "/" + build.getProductKey() + "/" + build.getId();
+	}
+}
@@ -1,32 +1,22 @@
 package org.ihtsdo.buildcloud.core.service.build.compare.type;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.ihtsdo.buildcloud.core.dao.BuildDAO;
 import org.ihtsdo.buildcloud.core.dao.helper.S3PathHelper;
 import org.ihtsdo.buildcloud.core.entity.Build;
 import org.ihtsdo.buildcloud.core.service.PublishService;
-import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
 import org.ihtsdo.buildcloud.core.service.build.compare.BuildComparisonManager;
 import org.ihtsdo.buildcloud.core.service.build.compare.ComponentComparison;
 import org.ihtsdo.buildcloud.core.service.build.compare.DefaultComponentComparisonReport;
-import org.ihtsdo.otf.rest.exception.ResourceNotFoundException;
+import org.ihtsdo.buildcloud.core.service.build.compare.ReleasePackageCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StreamUtils;
 
-import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 @Service
 public class ReleasePackageComparison extends ComponentComparison {
@@ -51,10 +41,13 @@ public class ReleasePackageComparison extends ComponentComparison {
 
     private final PublishService publishService;
 
+    private final ReleasePackageCache releasePackageCache;
+
     @Autowired
-    public ReleasePackageComparison(BuildDAO buildDAO, PublishService publishService) {
+    public ReleasePackageComparison(BuildDAO buildDAO, PublishService publishService, ReleasePackageCache releasePackageCache) {
         this.buildDAO = buildDAO;
         this.publishService =publishService;
+        this.releasePackageCache = releasePackageCache;
     }
 
     @Override
@@ -75,27 +68,21 @@ public class ReleasePackageComparison extends ComponentComparison {
     @Override
     public void findDiff(Build leftBuild, Build rightBuild) throws IOException {
         List<DefaultComponentComparisonReport> result = new ArrayList<>();
-        File leftReleasePackage = null;
-        File rightReleasePackage = null;
-        File leftDir = null;
-        File rightDir = null;
+        ReleasePackageCache.ExtractedPackage leftPackage = null;
+        ReleasePackageCache.ExtractedPackage rightPackage = null;
         try {
             try {
-                leftReleasePackage = getReleaseFile(leftBuild);
+                leftPackage = releasePackageCache.getExtractedPackage(leftBuild);
             } catch (Exception e) {
                 LOGGER.error(e.getMessage(), e);
             }
             try {
-                rightReleasePackage = getReleaseFile(rightBuild);
+                rightPackage = releasePackageCache.getExtractedPackage(rightBuild);
             } catch (Exception e) {
                 LOGGER.error(e.getMessage(), e);
             }
-            if (leftReleasePackage != null && rightReleasePackage != null) {
-                leftDir = Files.createTempDirectory("left-package-temp").toFile();
-                rightDir = Files.createTempDirectory("right-package-temp").toFile();
-                unzipFlat(leftReleasePackage, leftDir);
-                unzipFlat(rightReleasePackage, rightDir);
-                compareFiles(leftDir, rightDir, result);
+            if (leftPackage != null && rightPackage != null) {
+                compareFiles(leftPackage, rightPackage, result);
 
                 if (result.size() > 0) {
                     fail(result);
@@ -103,140 +90,65 @@ public class ReleasePackageComparison extends ComponentComparison {
                     pass();
                 }
             } else {
-                if ((leftReleasePackage == null && rightReleasePackage != null)
-                    || (leftReleasePackage != null && rightReleasePackage == null)) {
+                if ((leftPackage == null && rightPackage != null)
+                    || (leftPackage != null && rightPackage == null)) {
                     DefaultComponentComparisonReport dto = new DefaultComponentComparisonReport();
                     dto.setName(PackageTestName.PACKAGE_FILE.name());
                     dto.setStatus(BuildComparisonManager.ComparisonState.NOT_FOUND.name());
-                    dto.setExpected(leftReleasePackage != null ? getReleaseFileName(leftBuild) : null);
-                    dto.setActual(rightReleasePackage != null ? getReleaseFileName(rightBuild) : null);
+                    dto.setExpected(leftPackage != null ? getReleaseFileName(leftBuild) : null);
+                    dto.setActual(rightPackage != null ? getReleaseFileName(rightBuild) : null);
                     result.add(dto);
                     fail(result);
                 }
             }
         } finally {
-            if (leftReleasePackage != null) FileUtils.forceDelete(leftReleasePackage);
-            if (rightReleasePackage != null) FileUtils.forceDelete(rightReleasePackage);
-            if (leftDir != null) FileUtils.forceDelete(leftDir);
-            if (rightDir != null) FileUtils.forceDelete(rightDir);
+            releasePackageCache.release(leftPackage);
+            releasePackageCache.release(rightPackage);
         }
     }
 
     @Override
     public ComponentComparison newInstance(BuildDAO buildDAO, PublishService publishService, String releaseValidationFrameworkUrl, String authenticationToken) {
-        return new ReleasePackageComparison(buildDAO, publishService);
+        return new ReleasePackageComparison(buildDAO, publishService, releasePackageCache);
     }
 
-    private void compareFiles(File leftDir, File rightDir, List<DefaultComponentComparisonReport> result) throws IOException {
-        File[] leftFiles = leftDir.listFiles();
-        File[] rightFiles = rightDir.listFiles();
-        for (File leftFile : leftFiles) {
-            File rightFile = Arrays.stream(rightFiles).filter(file -> file.getName().equals(leftFile.getName())).findAny().orElse(null);
+    /**
+     * Files are matched by their name without the beta prefix and release date, and only the files whose SHA-256
+     * differs are reported as changed.
+     */
+    private void compareFiles(ReleasePackageCache.ExtractedPackage leftPackage, ReleasePackageCache.ExtractedPackage rightPackage,
+                              List<DefaultComponentComparisonReport> result) throws IOException {
+        Map<String, String> leftFileNames = leftPackage.getFileNamesByNormalizedName();
+        Map<String, String> rightFileNames = rightPackage.getFileNamesByNormalizedName();
+        Map<String, String> leftDigests = leftPackage.getDigests();
+        Map<String, String> rightDigests = rightPackage.getDigests();
+        for (Map.Entry<String, String> leftEntry : leftFileNames.entrySet()) {
+            String leftFileName = leftEntry.getValue();
+            String rightFileName = rightFileNames.get(leftEntry.getKey());
             DefaultComponentComparisonReport dto = new DefaultComponentComparisonReport();
-            if (rightFile != null) {
-                boolean contentEqual = IOUtils.contentEquals(new FileInputStream(leftFile), new FileInputStream(rightFile));
-                if(!contentEqual) {
-                    dto.setName(PackageTestName.FILE_CONTENT.name());
-                    dto.setStatus(BuildComparisonManager.ComparisonState.CONTENT_MISMATCH.name());
-                    dto.setExpected(leftFile.getName());
-                    dto.setActual(rightFile.getName());
-                    result.add(dto);
-                }
-            } else {
-                dto.setName(PackageTestName.FILE_CONTENT.name());
+            dto.setName(PackageTestName.FILE_CONTENT.name());
+            dto.setExpected(leftFileName);
+            if (rightFileName == null) {
                 dto.setStatus(BuildComparisonManager.ComparisonState.DELETED.name());
-                dto.setExpected(leftFile.getName());
+                result.add(dto);
+            } else if (!leftDigests.get(leftFileName).equals(rightDigests.get(rightFileName))) {
+                dto.setStatus(BuildComparisonManager.ComparisonState.CONTENT_MISMATCH.name());
+                dto.setActual(rightFileName);
                 result.add(dto);
             }
         }
 
-        for (File rightFile : rightFiles) {
-            File leftFile = Arrays.stream(leftFiles).filter(file -> file.getName().equals(rightFile.getName())).findAny().orElse(null);
-            if (leftFile == null) {
+        for (Map.Entry<String, String> rightEntry : rightFileNames.entrySet()) {
+            if (!leftFileNames.containsKey(rightEntry.getKey())) {
                 DefaultComponentComparisonReport dto = new DefaultComponentComparisonReport();
                 dto.setName(PackageTestName.FILE_CONTENT.name());
                 dto.setStatus(BuildComparisonManager.ComparisonState.ADD_NEW.name());
-                dto.setExpected(leftFile.getName());
+                dto.setActual(rightEntry.getValue());
                 result.add(dto);
             }
         }
     }
 
-    private File downloadReleasePackage(Build build, String fileName) throws IOException {
-        File releaseFile = File.createTempFile(fileName, RF2Constants.ZIP_FILE_EXTENSION);
-        try (InputStream inputFileStream = buildDAO.getOutputFileInputStream(build, fileName);
-             FileOutputStream out = new FileOutputStream(releaseFile)) {
-            if (inputFileStream != null) {
-                StreamUtils.copy(inputFileStream, out);
-            } else {
-                FileUtils.forceDelete(releaseFile);
-                return null;
-            }
-        }
-
-        return releaseFile;
-    }
-
-    private File downloadReleasePackage(String bucketName, String buildPath, String fileName) throws IOException {
-        File releaseFile = File.createTempFile(fileName, RF2Constants.ZIP_FILE_EXTENSION);
-        try (InputStream inputFileStream =  buildDAO.getOutputFileInputStream(bucketName, buildPath, fileName);
-             FileOutputStream out = new FileOutputStream(releaseFile)) {
-            if (inputFileStream != null) {
-                StreamUtils.copy(inputFileStream, out);
-            } else {
-                FileUtils.forceDelete(releaseFile);
-                return null;
-            }
-        }
-
-        return releaseFile;
-    }
-
-    private void unzipFlat(File archive, File targetDir) throws IOException {
-        try (ZipInputStream zis = new ZipInputStream(new FileInputStream(archive))) {
-            ZipEntry ze = zis.getNextEntry();
-            while (ze != null) {
-                if (!ze.isDirectory()) {
-                    Path p = Paths.get(ze.getName());
-                    String extractedFileName = p.getFileName().toString();
-                    File extractedFile = new File(targetDir, extractedFileName);
-                    try (OutputStream out = new FileOutputStream(extractedFile)) {
-                        IOUtils.copy(zis, out);
-                    }
-                }
-                ze = zis.getNextEntry();
-            }
-        }
-    }
-
-    private File getReleaseFile(Build build) throws IOException {
-        Build found = buildDAO.find(build.getReleaseCenterKey(), build.getProductKey(), build.getId(), false, false, false, null);
-        if (found != null) {
-            // Trying to find the output files from build folder
-            List<String> outputFiles = buildDAO.listOutputFilePaths(build);
-            String releaseFilePath = outputFiles.stream().filter(path -> path.endsWith(".zip")).findAny().orElse(null);
-            if (releaseFilePath != null) {
-                return downloadReleasePackage(build, releaseFilePath);
-            }
-        } else {
-            // Trying to find  the output files from published folder
-            Map<String, String> publishedBuildPathMap = publishService.getPublishedBuildPathMap(build.getReleaseCenterKey(), build.getProductKey());
-            if (publishedBuildPathMap.containsKey(build.getId())) {
-                String absoluteBuildPath = publishedBuildPathMap.get(build.getId());
-                String sourceBuildPath = absoluteBuildPath.substring(absoluteBuildPath.indexOf(S3PathHelper.SEPARATOR) + 1);
-                String sourceBucketName = absoluteBuildPath.substring(0, absoluteBuildPath.indexOf(S3PathHelper.SEPARATOR));
-                List<String> outputFiles = buildDAO.listOutputFilePaths(sourceBucketName, sourceBuildPath + S3PathHelper.OUTPUT_FILES);
-
-                String releaseFilePath = outputFiles.stream().filter(path -> path.endsWith(".zip")).findAny().orElse(null);
-                if (releaseFilePath != null) {
-                    return downloadReleasePackage(sourceBucketName, sourceBuildPath, releaseFilePath);
-                }
-            }
-        }
-
-        throw new ResourceNotFoundException("Release file not found for build " + build.getId());
-    }
-
     private String getReleaseFileName(Build build) {
         Build found = buildDAO.find(build.getReleaseCenterKey(), build.getProductKey(), build.getId(), false, false, false, null);
         if (found != null) {
@@ -0,0 +1,33 @@
+package org.ihtsdo.buildcloud.core.service.build.database;
+
+import org.ihtsdo.otf.rest.exception.BadConfigurationException;
+
+/**
+ * A workbench data fix applied to the current table using the lines of the previous published snapshot.
+ * All the fixes of a file visit each line of the previous snapshot in turn, so the snapshot is read once however many fixes there are.
+ * See {@link RF2TableExportDAO#applyPreviousSnapshotFixups}.
+ */
+public interface PreviousSnapshotFixup {
+
+	/**
+	 * @return name of the fix, used with the count in the build report.
+	 */
+	String getName();
+
+	/**
+	 * @param line line of the previous snapshot, without the header.
+	 */
+	void visit(String line) throws DatabasePopulatorException, BadConfigurationException;
+
+	/**
+	 * Called after the last line of the previous snapshot.
+	 */
+	default void finish() {
+	}
+
+	/**
+	 * @return number of rows of the current table changed by the fix.
+	 */
+	long getCount();
+
+}
@@ -9,6 +9,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.sql.SQLException;
 import java.text.ParseException;
+import java.util.List;
 import java.util.Set;
 
 public interface RF2TableExportDAO {
@@ -61,5 +62,28 @@ public interface RF2TableExportDAO {
 	 */
 	void resolveEmptyValueId(InputStream previousFileStream, String effectiveTime) throws IOException;
 
+	/**
+	 * The fix of {@link #reconcileRefsetMemberIds}, to be applied with {@link #applyPreviousSnapshotFixups}.
+	 */
+	PreviousSnapshotFixup newRefsetMemberIdReconciliation(String currentSnapshotFileName, String effectiveTime);
+
+	/**
+	 * The fix of {@link #resolveEmptyValueId}, to be applied with {@link #applyPreviousSnapshotFixups}.
+	 */
+	PreviousSnapshotFixup newEmptyValueIdResolution(String effectiveTime);
+
+	/**
+	 * The fix of {@link #discardAlreadyPublishedDeltaStates}, to be applied with {@link #applyPreviousSnapshotFixups}.
+	 */
+	PreviousSnapshotFixup newAlreadyPublishedDeltaStateDiscard(String currentSnapshotFileName, String effectiveTime);
+
+	/**
+	 * Reads the previous snapshot once, applying each of the fixes to every line in the order given.
+	 * @param previousSnapshotFileStream InputStream of previous published snapshot RF2 file, closed once read.
+	 * @param currentSnapshotFileName
+	 * @param fixups
+	 */
+	void applyPreviousSnapshotFixups(InputStream previousSnapshotFileStream, String currentSnapshotFileName, List<PreviousSnapshotFixup> fixups) throws IOException, DatabasePopulatorException, BadConfigurationException;
+
 }
 
@@ -1,6 +1,7 @@
 package org.ihtsdo.buildcloud.core.service.build.database;
 
 import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
+import org.ihtsdo.buildcloud.core.service.build.RF2Record;
 import org.ihtsdo.buildcloud.core.service.build.database.map.Key;
 import org.ihtsdo.snomed.util.rf2.schema.ComponentType;
 import org.ihtsdo.snomed.util.rf2.schema.Field;
@@ -47,25 +48,22 @@ public class Rf2FileWriter {
 
 			String line;
 			String currentId;
+			final RF2Record record = new RF2Record();
 			while ((line = tableResults.nextLine()) != null) {
-				String[] lineParts;
+				record.reset(line);
 				String languageRefsetId = null;
 				if (isIdentifier) {
-					lineParts = line.split(RF2Constants.COLUMN_SEPARATOR, 6);
-					currentId = lineParts[0] + RF2Constants.COLUMN_SEPARATOR + lineParts[1];
+					currentId = record.getTo(1);
 					// Replace the composite key by identifierSchemeId
-					line = line.replace(currentId, lineParts[0]);
+					line = line.replace(currentId, record.get(0));
 				} else {
 					if (isLanguageFile) {
-						lineParts = line.split(RF2Constants.COLUMN_SEPARATOR, 6);
-						languageRefsetId = lineParts[4];
-					} else {
-						lineParts = line.split(RF2Constants.COLUMN_SEPARATOR, 3);
+						languageRefsetId = record.get(4);
 					}
-					currentId = lineParts[0];
+					currentId = record.get(0);
 				}
 
-				final String effectiveTime = isIdentifier ? lineParts[2] : lineParts[1];
+				final String effectiveTime = isIdentifier ? record.get(2) : record.get(1);
 				if (isIgnoredKey(ignoredKeyLookup, currentId, effectiveTime)
 				 || (!isIdentifier && isRF2LineExcluded(tableSchema, currentId, languageRefsetId))) {
 					continue;
@@ -127,30 +125,28 @@ public class Rf2FileWriter {
 			String validLine = null;
 			boolean movedToNewMember;
 			boolean passedTargetEffectiveTime;
+			final boolean isLanguageFile = Pattern.compile(RF2Constants.LANGUAGE_FILE_PATTERN).matcher(schema.getFilename()).matches();
+			final RF2Record record = new RF2Record();
 
 			// Iterate through data
 			while ((currentLine = tableResults.nextLine()) != null) {
 				// Parse out id and effectiveTime
-				String[] lineParts;
+				record.reset(currentLine);
 				String languageRefsetId = null;
 				if (ComponentType.IDENTIFIER.equals(schema.getComponentType())) {
-					lineParts = currentLine.split(RF2Constants.COLUMN_SEPARATOR, 6);
-					currentId = lineParts[0] + RF2Constants.COLUMN_SEPARATOR + lineParts[1];
+					currentId = record.getTo(1);
 					// effective time is on the third column
-					currentEffectiveTimeInt = Integer.parseInt(lineParts[2]);
+					currentEffectiveTimeInt = record.getInt(2);
 					// Replace the composite key by identifierSchemeId
-					currentLine = currentLine.replace(currentId, lineParts[0]);
+					currentLine = currentLine.replace(currentId, record.get(0));
 				} else {
-					if (Pattern.compile(RF2Constants.LANGUAGE_FILE_PATTERN).matcher(schema.getFilename()).matches()) {
-						lineParts = currentLine.split(RF2Constants.COLUMN_SEPARATOR, 6);
-						languageRefsetId = lineParts[4];
-					} else {
-						lineParts = currentLine.split(RF2Constants.COLUMN_SEPARATOR, 3);
+					if (isLanguageFile) {
+						languageRefsetId = record.get(4);
 					}
 
-					currentId = lineParts[0];
+					currentId = record.get(0);
 					// effective time is on the second column
-					currentEffectiveTimeInt = Integer.parseInt(lineParts[1]);
+					currentEffectiveTimeInt = record.getEffectiveTime();
 
 					if (isRF2LineExcluded(schema, currentId, languageRefsetId)) {
 						continue;
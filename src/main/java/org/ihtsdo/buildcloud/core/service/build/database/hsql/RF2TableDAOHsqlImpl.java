@@ -2,6 +2,7 @@ package org.ihtsdo.buildcloud.core.service.build.database.hsql;
 
 import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
 import org.ihtsdo.buildcloud.core.service.build.database.DatabasePopulatorException;
+import org.ihtsdo.buildcloud.core.service.build.database.PreviousSnapshotFixup;
 import org.ihtsdo.buildcloud.core.service.build.database.RF2TableExportDAO;
 import org.ihtsdo.buildcloud.core.service.build.database.RF2TableResults;
 import org.ihtsdo.buildcloud.core.service.build.database.map.Key;
@@ -254,4 +255,25 @@ public class RF2TableDAOHsqlImpl implements RF2TableExportDAO {
 		throw new UnsupportedOperationException("This method is not supported yet for current implementation (" + getClass().getName() + ")");
 	}
 
+	@Override
+	public PreviousSnapshotFixup newRefsetMemberIdReconciliation(String currentSnapshotFileName, String effectiveTime) {
+		throw new UnsupportedOperationException("This method is not yet implemented in this class (" + getClass().getName() + ")");
+	}
+
+	@Override
+	public PreviousSnapshotFixup newEmptyValueIdResolution(String effectiveTime) {
+		throw new UnsupportedOperationException("This method is not yet implemented in this class (" + getClass().getName() + ")");
+	}
+
+	@Override
+	public PreviousSnapshotFixup newAlreadyPublishedDeltaStateDiscard(String currentSnapshotFileName, String effectiveTime) {
+		throw new UnsupportedOperationException("This method is not yet implemented in this class (" + getClass().getName() + ")");
+	}
+
+	@Override
+	public void applyPreviousSnapshotFixups(InputStream previousSnapshotFileStream, String currentSnapshotFileName, List<PreviousSnapshotFixup> fixups) throws IOException {
+		previousSnapshotFileStream.close();
+		throw new UnsupportedOperationException("This method is not yet implemented in this class (" + getClass().getName() + ")");
+	}
+
 }
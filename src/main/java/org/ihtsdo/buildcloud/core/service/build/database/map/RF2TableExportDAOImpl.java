@@ -1,9 +1,12 @@
 package org.ihtsdo.buildcloud.core.service.build.database.map;
 
 import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
+import org.ihtsdo.buildcloud.core.service.build.RF2Record;
 import org.ihtsdo.buildcloud.core.service.build.database.DatabasePopulatorException;
+import org.ihtsdo.buildcloud.core.service.build.database.PreviousSnapshotFixup;
 import org.ihtsdo.buildcloud.core.service.build.database.RF2TableExportDAO;
 import org.ihtsdo.buildcloud.core.service.build.database.RF2TableResults;
+import org.ihtsdo.buildcloud.core.service.build.database.primitive.LongPairHashSet;
 import org.ihtsdo.otf.rest.exception.BadConfigurationException;
 import org.ihtsdo.otf.utils.FileUtils;
 import org.ihtsdo.snomed.util.rf2.schema.*;
@@ -37,11 +40,21 @@ public class RF2TableExportDAOImpl implements RF2TableExportDAO {
 
 	private Map<StringKey,Key> dirtyKeys;
 
+	// Member ids of the rows with an empty value id while they are being resolved
+	private LongPairHashSet emptyValueIds;
+
 	private final ReferenceSetCompositeKeyPatternFactory refsetCompositeKeyPatternFactory;
 
 	public RF2TableExportDAOImpl(final Map<String, List<Integer>> customRefsetCompositeKeys) {
+		this(customRefsetCompositeKeys, new TreeMap<>());
+	}
+
+	/**
+	 * @param table empty map used to hold the rows, iteration over its keys must be in key order.
+	 */
+	protected RF2TableExportDAOImpl(final Map<String, List<Integer>> customRefsetCompositeKeys, final Map<Key, String> table) {
 		schemaFactory = new SchemaFactory();
-		table = new TreeMap<>();
+		this.table = table;
 		refsetCompositeKeyPatternCache = new HashMap<>();
 		refsetCompositeKeyPatternFactory = new ReferenceSetCompositeKeyPatternFactory(customRefsetCompositeKeys);
 	}
@@ -86,23 +99,27 @@ public class RF2TableExportDAOImpl implements RF2TableExportDAO {
 	@Override
 	public Set<Key> findAlreadyPublishedDeltaKeys(TableSchema tableSchema, InputStream previousSnapshotFileStream) throws IOException {
 		if (this.table.isEmpty()) return Collections.emptySet();
+		final boolean identifier = tableSchema.getComponentType() == ComponentType.IDENTIFIER;
 		Set<Key> keysToDiscard = new HashSet<>();
-		Map<String, List<Key>> idStringToKeyMap = new HashMap<>();
+		// Keys by id alone, the UUID or SCTID rather than its string form
+		Map<Object, List<Key>> idToKeyMap = new HashMap<>();
 		for (Key key : table.keySet()) {
-			idStringToKeyMap.computeIfAbsent(key.getIdString(),  k-> new ArrayList<>()).add(key);
+			idToKeyMap.computeIfAbsent(getId(key), k -> new ArrayList<>(1)).add(key);
 		}
 		try (BufferedReader reader = new BufferedReader(new InputStreamReader(previousSnapshotFileStream, RF2Constants.UTF_8))) {
 			String line = reader.readLine(); // Discard header line
-			String[] parts;
-			String idString;
+			final RF2Record record = new RF2Record();
+			List<Key> keys;
+			int effectiveTime;
 			while ((line = reader.readLine()) != null) {
-				parts = line.split(RF2Constants.COLUMN_SEPARATOR, 3);
-				idString = tableSchema.getComponentType() == ComponentType.IDENTIFIER ? getIdentifierCompositeKey(line).getIdString() : getKey(parts[0], parts[1]).getIdString();
-				if (!idStringToKeyMap.containsKey(idString)) {
+				record.reset(line);
+				keys = idToKeyMap.get(identifier ? getIdentifierCompositeKey(record).getIdString() : getId(getKey(record.get(0), null)));
+				if (keys == null) {
 					continue;
 				}
-				for (Key key : idStringToKeyMap.get(idString)) {
-					if (Integer.parseInt(parts[1]) >= Integer.parseInt(key.getDate())) {
+				effectiveTime = record.getEffectiveTime();
+				for (Key key : keys) {
+					if (effectiveTime >= Integer.parseInt(key.getDate())) {
 						keysToDiscard.add(key);
 					}
 				}
@@ -146,118 +163,255 @@ public class RF2TableExportDAOImpl implements RF2TableExportDAO {
 
 	@Override
 	public void discardAlreadyPublishedDeltaStates(final InputStream previousSnapshotFileStream, final String currentSnapshotFileName, final String effectiveTime) throws IOException, DatabasePopulatorException {
-		try (BufferedReader reader = new BufferedReader(new InputStreamReader(previousSnapshotFileStream, RF2Constants.UTF_8))) {
-			getHeader(currentSnapshotFileName, reader);
+		try {
+			applyPreviousSnapshotFixups(previousSnapshotFileStream, currentSnapshotFileName,
+					List.of(newAlreadyPublishedDeltaStateDiscard(currentSnapshotFileName, effectiveTime)));
+		} catch (BadConfigurationException e) {
+			// Not thrown when discarding states
+			throw new DatabasePopulatorException("Failed to discard already published Delta states in " + currentSnapshotFileName, e);
+		}
+	}
+
+	@Override
+	public void reconcileRefsetMemberIds(final InputStream previousSnapshotFileStream, final String currentSnapshotFileName, final String effectiveTime) throws IOException, DatabasePopulatorException, BadConfigurationException {
+		applyPreviousSnapshotFixups(previousSnapshotFileStream, currentSnapshotFileName,
+				List.of(newRefsetMemberIdReconciliation(currentSnapshotFileName, effectiveTime)));
+	}
+
+	@Override
+	public void resolveEmptyValueId(final InputStream previousSnapshotFileStream, final String effectiveTime) throws IOException {
+		final EmptyValueIdResolution resolution = new EmptyValueIdResolution(effectiveTime);
+		if (emptyValueIds.isEmpty()) {
+			//no empty value id is found.
+			emptyValueIds = null;
+			previousSnapshotFileStream.close();
+			return;
+		}
+		try {
+			applyPreviousSnapshotFixups(previousSnapshotFileStream, "previous attribute value snapshot", List.of(resolution));
+		} catch (DatabasePopulatorException | BadConfigurationException e) {
+			throw new IOException("Failed to resolve empty value ids", e);
+		}
+	}
+
+	@Override
+	public PreviousSnapshotFixup newRefsetMemberIdReconciliation(final String currentSnapshotFileName, final String effectiveTime) {
+		return new RefsetMemberIdReconciliation(currentSnapshotFileName, effectiveTime);
+	}
 
+	@Override
+	public PreviousSnapshotFixup newEmptyValueIdResolution(final String effectiveTime) {
+		return new EmptyValueIdResolution(effectiveTime);
+	}
+
+	@Override
+	public PreviousSnapshotFixup newAlreadyPublishedDeltaStateDiscard(final String currentSnapshotFileName, final String effectiveTime) {
+		return new AlreadyPublishedDeltaStateDiscard(currentSnapshotFileName, effectiveTime);
+	}
+
+	@Override
+	public void applyPreviousSnapshotFixups(final InputStream previousSnapshotFileStream, final String currentSnapshotFileName, final List<PreviousSnapshotFixup> fixups) throws IOException, DatabasePopulatorException, BadConfigurationException {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(previousSnapshotFileStream, RF2Constants.UTF_8))) {
+			getHeader("previous to " + currentSnapshotFileName, reader);
 			String line;
-			String value;
 			while ((line = reader.readLine()) != null) {
-				final String[] parts = line.split(RF2Constants.COLUMN_SEPARATOR, 3);
-				final Key key = getKey(parts[0], effectiveTime);
-				if ((value = table.get(key)) != null) {
-					if (value.equals(parts[2])) {
-						// Fields after second column
-						LOGGER.debug("Removing already published Delta state in {} : {}", currentSnapshotFileName, line);
-						table.remove(key);
-					}
+				for (final PreviousSnapshotFixup fixup : fixups) {
+					fixup.visit(line);
 				}
 			}
 		}
+		for (final PreviousSnapshotFixup fixup : fixups) {
+			fixup.finish();
+			LOGGER.info("{} in {}: {}", fixup.getName(), currentSnapshotFileName, fixup.getCount());
+		}
 	}
 
-	@Override
-	public void reconcileRefsetMemberIds(final InputStream previousSnapshotFileStream, final String currentSnapshotFileName, final String effectiveTime) throws IOException, DatabasePopulatorException, BadConfigurationException {
-		LOGGER.info("Reconciling reference set member ids with previous published version of {}", currentSnapshotFileName);
-		try (BufferedReader prevSnapshotReader = new BufferedReader(new InputStreamReader(previousSnapshotFileStream, RF2Constants.UTF_8))) {
-			getHeader("previous to " + currentSnapshotFileName, prevSnapshotReader);
-
-			String line, refsetId, compositeKey, newValues;
-			String[] parts;
-			Key matcherKey;
-			Matcher refsetIdMatcher;
-			Pattern keyPattern;
-			while ((line = prevSnapshotReader.readLine()) != null) {
-				// Get refset id
-				refsetIdMatcher = REFSET_ID_PATTERN.matcher(line);
-				if (refsetIdMatcher.matches()) {
-					refsetId = refsetIdMatcher.group(1);
-					keyPattern = getRefsetCompositeKeyPattern(tableSchema, refsetId);
-					compositeKey = getCompositeKey(keyPattern, line);
-					matcherKey = new StringKey(compositeKey);
-					if ( dirtyKeys.get(matcherKey) != null) {
-						newValues = table.get(dirtyKeys.get(matcherKey));
-						if (newValues != null) {
-							parts = line.split(RF2Constants.COLUMN_SEPARATOR, 3);
-							replaceDirtyKey(matcherKey, parts[0], effectiveTime);
-						}
-					}
-				} else {
-					throw new DatabasePopulatorException("Can't find refsetId id column");
+	private static boolean hasEmptyValueId(final String value) {
+		// The value id is the last column
+		return value.isEmpty() || value.endsWith(RF2Constants.COLUMN_SEPARATOR);
+	}
+
+	/**
+	 * See {@link RF2TableExportDAO#reconcileRefsetMemberIds}.
+	 */
+	private class RefsetMemberIdReconciliation implements PreviousSnapshotFixup {
+
+		private final String effectiveTime;
+
+		private long count;
+
+		RefsetMemberIdReconciliation(final String currentSnapshotFileName, final String effectiveTime) {
+			this.effectiveTime = effectiveTime;
+			LOGGER.info("Reconciling reference set member ids with previous published version of {}", currentSnapshotFileName);
+		}
+
+		@Override
+		public String getName() {
+			return "Refset member ids reconciled";
+		}
+
+		@Override
+		public void visit(final String line) throws DatabasePopulatorException, BadConfigurationException {
+			// Get refset id
+			final Matcher refsetIdMatcher = REFSET_ID_PATTERN.matcher(line);
+			if (refsetIdMatcher.matches()) {
+				final Pattern keyPattern = getRefsetCompositeKeyPattern(tableSchema, refsetIdMatcher.group(1));
+				final Key matcherKey = new StringKey(getCompositeKey(keyPattern, line));
+				final Key dirtyKey = dirtyKeys.get(matcherKey);
+				if (dirtyKey != null && table.get(dirtyKey) != null) {
+					replaceDirtyKey(matcherKey, line.substring(0, line.indexOf(RF2Constants.COLUMN_SEPARATOR)), effectiveTime);
+					count++;
 				}
+			} else {
+				throw new DatabasePopulatorException("Can't find refsetId id column");
 			}
 		}
+
+		@Override
+		public long getCount() {
+			return count;
+		}
 	}
 
-	@Override
-	public void resolveEmptyValueId(final InputStream previousSnapshotFileStream, final String effectiveTime) throws IOException {
-		//check whether there are any empty value id
-		final List<Key> emptyValueKeys = new ArrayList<>();
-		for (final Key key : table.keySet()) {
-			final String value = table.get(key);
-			final String[] data = value.split(RF2Constants.COLUMN_SEPARATOR, -1);
-			if (RF2Constants.EMPTY_SPACE.equals(data[data.length - 1])) {
-				emptyValueKeys.add(key);
+	/**
+	 * See {@link RF2TableExportDAO#resolveEmptyValueId}.
+	 * The member ids of the rows with an empty value id are indexed in one scan of the table, so only the lines of the
+	 * previous snapshot with those ids are parsed. Rows moved to another member id by an earlier fix in the same pass
+	 * are indexed by {@link #replaceDirtyKey}.
+	 */
+	private class EmptyValueIdResolution implements PreviousSnapshotFixup {
+
+		private final String effectiveTime;
+
+		private final LongPairHashSet visitedIds = new LongPairHashSet();
+
+		private final RF2Record record = new RF2Record();
+
+		private long count;
+
+		EmptyValueIdResolution(final String effectiveTime) {
+			this.effectiveTime = effectiveTime;
+			//check whether there are any empty value id
+			emptyValueIds = new LongPairHashSet();
+			int emptyValueRows = 0;
+			for (final Map.Entry<Key, String> entry : table.entrySet()) {
+				if (hasEmptyValueId(entry.getValue())) {
+					addId(emptyValueIds, entry.getKey());
+					emptyValueRows++;
+				}
 			}
+			LOGGER.info("Total number of rows with empty value id found: {}", emptyValueRows);
 		}
-		LOGGER.info("Total number of rows with empty value id found: {}", emptyValueKeys.size());
-		if (emptyValueKeys.isEmpty()) {
-			//no empty value id is found.
-			return;
+
+		@Override
+		public String getName() {
+			return "Empty value ids resolved";
 		}
-		try (BufferedReader reader = new BufferedReader(new InputStreamReader(previousSnapshotFileStream, RF2Constants.UTF_8))) {
-			String line;
-			line = reader.readLine();
-			if (line == null) {
-				throw new IOException("Privious attribute value snapshot file has no data");
+
+		@Override
+		public void visit(final String line) {
+			record.reset(line);
+			if (!containsId(emptyValueIds, record)) {
+				return;
 			}
-			while ((line = reader.readLine()) != null) {
-				final String[] parts = line.split(RF2Constants.COLUMN_SEPARATOR, -1);
-				final Key key = getKey(parts[0], effectiveTime);
-				if (emptyValueKeys.contains(key)) {
-					final String value = table.get(key);
-					final boolean isPreviousActive = RF2Constants.BOOLEAN_TRUE.equals(parts[2]);
-					//check data in delta file has got empty value id and with inactive flag
-					final String[] data = value.split(RF2Constants.COLUMN_SEPARATOR, -1);
-					final boolean isCurrentActive = RF2Constants.BOOLEAN_TRUE.equals(data[0]);
-					if (!isCurrentActive) {
-						if (isPreviousActive) {
-							//add previous value id
-							table.put(key, value + parts[6]);
-						} else {
-							//remove line from table and dirty key set
-							table.remove(key);
-							dirtyKeys.remove(key);
-						}
-					}
-					emptyValueKeys.remove(key);
+			final Key key = getKey(record.get(0), effectiveTime);
+			final String value = table.get(key);
+			if (value == null || !hasEmptyValueId(value) || !addId(visitedIds, key)) {
+				return;
+			}
+			final boolean isPreviousActive = record.isActive();
+			//check data in delta file has got empty value id and with inactive flag
+			final boolean isCurrentActive = value.startsWith(RF2Constants.BOOLEAN_TRUE + RF2Constants.COLUMN_SEPARATOR);
+			if (!isCurrentActive) {
+				if (isPreviousActive) {
+					//add previous value id
+					table.put(key, value + record.get(6));
+				} else {
+					//remove line from table and dirty key set
+					table.remove(key);
+					dirtyKeys.remove(key);
 				}
+				count++;
 			}
 		}
-		//remove any rows with empty value id as not existing in previous file
-		if (!emptyValueKeys.isEmpty()) {
-			LOGGER.info("Found total number of rows with empty value id but member id doesn't exist in previous snapshot file: {}", emptyValueKeys.size());
+
+		@Override
+		public void finish() {
+			//remove any rows with empty value id as not existing in previous file
+			final List<Key> notFoundKeys = new ArrayList<>();
+			for (final Map.Entry<Key, String> entry : table.entrySet()) {
+				// Only rows keyed by the effectiveTime are resolved
+				if (hasEmptyValueId(entry.getValue()) && !(effectiveTime.equals(entry.getKey().getDate()) && containsId(visitedIds, entry.getKey()))) {
+					notFoundKeys.add(entry.getKey());
+				}
+			}
+			emptyValueIds = null;
+			if (!notFoundKeys.isEmpty()) {
+				LOGGER.info("Found total number of rows with empty value id but member id doesn't exist in previous snapshot file: {}", notFoundKeys.size());
+			}
+			for (final Key k : notFoundKeys) {
+				table.remove(k);
+				dirtyKeys.remove(k);
+			}
+			count += notFoundKeys.size();
 		}
-		for (final Key k : emptyValueKeys) {
-			table.remove(k);
-			dirtyKeys.remove(k);
+
+		@Override
+		public long getCount() {
+			return count;
 		}
 	}
 
+	/**
+	 * See {@link RF2TableExportDAO#discardAlreadyPublishedDeltaStates}.
+	 */
+	private class AlreadyPublishedDeltaStateDiscard implements PreviousSnapshotFixup {
+
+		private final String currentSnapshotFileName;
+
+		private final String effectiveTime;
+
+		private final RF2Record record = new RF2Record();
+
+		private long count;
+
+		AlreadyPublishedDeltaStateDiscard(final String currentSnapshotFileName, final String effectiveTime) {
+			this.currentSnapshotFileName = currentSnapshotFileName;
+			this.effectiveTime = effectiveTime;
+		}
+
+		@Override
+		public String getName() {
+			return "Already published delta states discarded";
+		}
+
+		@Override
+		public void visit(final String line) {
+			record.reset(line);
+			final Key key = getKey(record.get(0), effectiveTime);
+			final String value = table.get(key);
+			if (value != null && value.equals(record.getFrom(2))) {
+				// Fields after second column
+				LOGGER.debug("Removing already published Delta state in {} : {}", currentSnapshotFileName, line);
+				table.remove(key);
+				count++;
+			}
+		}
+
+		@Override
+		public long getCount() {
+			return count;
+		}
+	}
 
 	private void replaceDirtyKey(final Key existingDirtyKey, final String newKeyUUID, final String effectiveTime) throws DatabasePopulatorException {
 		final String existingData = table.remove(dirtyKeys.get(existingDirtyKey));
 		if (existingData != null) {
-			table.put(new UUIDKey(newKeyUUID, effectiveTime), existingData);
+			final Key newKey = new UUIDKey(newKeyUUID, effectiveTime);
+			table.put(newKey, existingData);
+			if (emptyValueIds != null && hasEmptyValueId(existingData)) {
+				addId(emptyValueIds, newKey);
+			}
 			if (dirtyKeys.remove(existingDirtyKey) == null) {
 				throw new DatabasePopulatorException("Failed to remove dirty key " + existingDirtyKey + "'");
 			}
@@ -281,20 +435,22 @@ public class RF2TableExportDAOImpl implements RF2TableExportDAO {
 	private void insertData(final BufferedReader reader, final TableSchema tableSchema, final boolean deltaData, final boolean workbenchDataFixesRequired, String previousEffectiveDate) throws IOException, DatabasePopulatorException, BadConfigurationException {
 		dirtyKeys = new LinkedHashMap<>();
 		// Declare variables at top to prevent constant memory reallocation during recursion
-		String line, refsetId, compositeKey;
-		String[] parts;
+		String line, refsetId, compositeKey, value;
+		final RF2Record record = new RF2Record();
 		Key key;
 		Matcher refsetIdMatcher;
 		Pattern keyPattern;
 		// date format is always in yyyyMMdd so it is faster to compare as integer
 		Integer previousDate = previousEffectiveDate != null ? Integer.parseInt(previousEffectiveDate) : null;
 		while ((line = reader.readLine()) != null) {
-			parts = line.split(RF2Constants.COLUMN_SEPARATOR, 3);
-			if (previousDate != null && Integer.parseInt(parts[1]) <= previousDate) {
+			record.reset(line);
+			if (previousDate != null && record.getEffectiveTime() <= previousDate) {
 				// skip data from previous release
 				continue;
 			}
-			key = tableSchema.getComponentType() == ComponentType.IDENTIFIER ? getIdentifierCompositeKey(line) : getKey(parts[0], parts[1]);
+			key = tableSchema.getComponentType() == ComponentType.IDENTIFIER ? getIdentifierCompositeKey(record) : getKey(record);
+			// Fields after second column
+			value = record.getFrom(2);
 			if (workbenchDataFixesRequired && deltaData && tableSchema.getComponentType() == ComponentType.REFSET) {
 				// Get refset id
 				refsetIdMatcher = REFSET_ID_PATTERN.matcher(line);
@@ -305,7 +461,7 @@ public class RF2TableExportDAOImpl implements RF2TableExportDAO {
 					StringKey composite = new StringKey(compositeKey);
 					if (dirtyKeys.containsKey(composite)) {
 						LOGGER.info(RF2Constants.DATA_PROBLEM + "Duplicate refset member found. Rows are logically equivalent, the first one will be discarded: [{}], [{}].",
-								table.get(dirtyKeys.get(composite)), parts[2]);
+								table.get(dirtyKeys.get(composite)), value);
 						table.remove(dirtyKeys.get(composite));
 					} 
 					dirtyKeys.put(composite, key);
@@ -313,7 +469,7 @@ public class RF2TableExportDAOImpl implements RF2TableExportDAO {
 					throw new DatabasePopulatorException("Can't find refsetId id column");
 				}
 			} 
-			table.put(key, parts[2]);
+			table.put(key, value);
 		}
 	}
 
@@ -341,9 +497,54 @@ public class RF2TableExportDAOImpl implements RF2TableExportDAO {
 		}
 	}
 
-	private Key getIdentifierCompositeKey(final String line) {
-		String[] parts = line.split(RF2Constants.COLUMN_SEPARATOR, 6);
-		return new StringKey(parts[0] + RF2Constants.COLUMN_SEPARATOR + parts[4], parts[1]);
+	private Key getIdentifierCompositeKey(final RF2Record record) {
+		return new StringKey(record.get(0) + RF2Constants.COLUMN_SEPARATOR + record.get(4), record.get(1));
+	}
+
+	/**
+	 * @return the UUID, SCTID or string id of the key, without the effectiveTime.
+	 */
+	private static Object getId(final Key key) {
+		if (key instanceof UUIDKey) {
+			return ((UUIDKey) key).getUuid();
+		} else if (key instanceof SCTIDKey) {
+			return ((SCTIDKey) key).getId();
+		}
+		return key.getIdString();
+	}
+
+	private static boolean addId(final LongPairHashSet ids, final Key key) {
+		if (key instanceof UUIDKey) {
+			final UUID uuid = ((UUIDKey) key).getUuid();
+			return ids.add(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+		}
+		return ids.add(((SCTIDKey) key).getId(), 0);
+	}
+
+	private static boolean containsId(final LongPairHashSet ids, final Key key) {
+		if (key instanceof UUIDKey) {
+			final UUID uuid = ((UUIDKey) key).getUuid();
+			return ids.contains(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+		}
+		return ids.contains(((SCTIDKey) key).getId(), 0);
+	}
+
+	/**
+	 * Looks up the id of the record without building its key, as most lines of a previous snapshot are not in the set.
+	 */
+	private boolean containsId(final LongPairHashSet ids, final RF2Record record) {
+		if (idType == DataType.SCTID) {
+			return ids.contains(record.getSctid(), 0);
+		}
+		final UUID uuid = UUID.fromString(record.get(0));
+		return ids.contains(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+	}
+
+	private Key getKey(final RF2Record record) {
+		if (idType == DataType.SCTID) {
+			return new SCTIDKey(record.getSctid(), record.get(1));
+		}
+		return new UUIDKey(record.get(0), record.get(1));
 	}
 
 	private Key getKey(final String part0, final String part1) {
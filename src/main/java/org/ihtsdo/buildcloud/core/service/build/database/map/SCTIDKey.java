@@ -12,6 +12,15 @@ public class SCTIDKey implements Key {
 		this.effectiveTime = effectiveTime;
 	}
 
+	public SCTIDKey(long id, String effectiveTime) {
+		this.id = id;
+		this.effectiveTime = effectiveTime;
+	}
+
+	public long getId() {
+		return id;
+	}
+
 	@Override
 	public int compareTo(Key otherKey) {
 		SCTIDKey other = (SCTIDKey) otherKey;
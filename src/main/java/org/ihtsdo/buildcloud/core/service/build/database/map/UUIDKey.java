@@ -12,6 +12,15 @@ public class UUIDKey implements Key {
 		this.date = date;
 	}
 
+	public UUIDKey(UUID uuid, String date) {
+		this.uuid = uuid;
+		this.date = date;
+	}
+
+	public UUID getUuid() {
+		return uuid;
+	}
+
 	public int compareTo(Key other) {
 		int result;
 		if (other instanceof StringKey) {
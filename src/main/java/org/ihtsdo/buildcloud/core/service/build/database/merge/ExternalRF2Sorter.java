@@ -0,0 +1,276 @@
+package org.ihtsdo.buildcloud.core.service.build.database.merge;
+
+import org.apache.commons.io.FileUtils;
+import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
+import org.ihtsdo.buildcloud.core.service.build.RF2Record;
+import org.ihtsdo.snomed.util.rf2.schema.DataType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts RF2 rows by id and effectiveTime, or by the SCTID in one field, using a bounded buffer which is spilled to sorted run
+ * files on local disk. Rows with the same key keep the order they were added in so the last one added can be preferred when
+ * the runs are merged.
+ */
+public class ExternalRF2Sorter implements Closeable {
+
+	public static final int DEFAULT_MAX_LINES_PER_RUN = 500_000;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ExternalRF2Sorter.class);
+
+	private static final int NO_KEY_FIELD = -1;
+
+	private final DataType idType;
+	private final int keyField;
+	private final int maxLinesPerRun;
+	private final List<SortEntry> buffer;
+	private final List<File> runs;
+	private final RF2Record record;
+	private File workDirectory;
+	private String header;
+
+	public ExternalRF2Sorter(final DataType idType, final int maxLinesPerRun) {
+		this(idType, NO_KEY_FIELD, maxLinesPerRun);
+	}
+
+	/**
+	 * @param keyField the field holding the SCTID the rows are sorted by, such as 4 for the sourceId of relationships.
+	 */
+	public ExternalRF2Sorter(final int keyField, final int maxLinesPerRun) {
+		this(DataType.SCTID, keyField, maxLinesPerRun);
+	}
+
+	private ExternalRF2Sorter(final DataType idType, final int keyField, final int maxLinesPerRun) {
+		this.idType = idType;
+		this.keyField = keyField;
+		this.maxLinesPerRun = Math.max(1, maxLinesPerRun);
+		this.buffer = new ArrayList<>();
+		this.runs = new ArrayList<>();
+		this.record = new RF2Record();
+	}
+
+	/**
+	 * Adds the rows of an RF2 file, the header line is kept from the first file only. The stream is closed once read.
+	 */
+	public void addFile(final InputStream rf2InputStream) throws IOException {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(rf2InputStream, RF2Constants.UTF_8))) {
+			final String fileHeader = reader.readLine();
+			if (header == null) {
+				header = fileHeader;
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				add(line);
+			}
+		}
+	}
+
+	public void add(final String line) throws IOException {
+		buffer.add(new SortEntry(parseKey(line), line));
+		if (buffer.size() >= maxLinesPerRun) {
+			spill();
+		}
+	}
+
+	/**
+	 * @return the header of the first file added, or null if rows were only added one at a time.
+	 */
+	public String getHeader() {
+		return header;
+	}
+
+	/**
+	 * @return the sorted run files holding every row added.
+	 */
+	public List<File> finish() throws IOException {
+		if (!buffer.isEmpty()) {
+			spill();
+		}
+		return runs;
+	}
+
+	/**
+	 * Reads every row added in order, from memory if no run was spilled and otherwise by merging the runs.
+	 * Closing the rows closes this sorter, which must not be added to afterwards.
+	 */
+	public SortedRows sortedRows() throws IOException {
+		if (runs.isEmpty()) {
+			buffer.sort(Comparator.comparing(SortEntry::getKey));
+			return new InMemoryRows();
+		}
+		return new MergedRuns(finish());
+	}
+
+	private RF2SortKey parseKey(final String line) {
+		if (keyField == NO_KEY_FIELD) {
+			return RF2SortKey.parse(line, idType);
+		}
+		return RF2SortKey.ofSctid(record.reset(line).getLong(keyField));
+	}
+
+	private void spill() throws IOException {
+		// List.sort is stable so rows with the same key stay in the order they were added
+		buffer.sort(Comparator.comparing(SortEntry::getKey));
+		if (workDirectory == null) {
+			workDirectory = Files.createTempDirectory("rf2-sort-").toFile();
+		}
+		final File run = new File(workDirectory, "run-" + runs.size() + RF2Constants.TXT_FILE_EXTENSION);
+		try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(run), RF2Constants.UTF_8))) {
+			for (SortEntry entry : buffer) {
+				writer.write(entry.getLine());
+				writer.newLine();
+			}
+		}
+		LOGGER.debug("Spilled {} rows to sorted run {}", buffer.size(), run.getName());
+		runs.add(run);
+		buffer.clear();
+	}
+
+	@Override
+	public void close() {
+		buffer.clear();
+		if (workDirectory != null) {
+			FileUtils.deleteQuietly(workDirectory);
+			workDirectory = null;
+		}
+		runs.clear();
+	}
+
+	/**
+	 * Rows in sorted order, read one at a time.
+	 */
+	public abstract class SortedRows implements Closeable {
+
+		private SortEntry current;
+
+		/**
+		 * Moves to the next row.
+		 * @return false after the last row.
+		 */
+		public boolean next() throws IOException {
+			current = nextEntry();
+			return current != null;
+		}
+
+		abstract SortEntry nextEntry() throws IOException;
+
+		public String getLine() {
+			return current.getLine();
+		}
+
+		/**
+		 * @return the SCTID the current row is sorted by, for a sorter created with a key field.
+		 */
+		public long getKey() {
+			return current.getKey().getSctid();
+		}
+
+		public String getHeader() {
+			return header;
+		}
+
+		@Override
+		public void close() throws IOException {
+			ExternalRF2Sorter.this.close();
+		}
+	}
+
+	private final class InMemoryRows extends SortedRows {
+
+		private int index;
+
+		@Override
+		SortEntry nextEntry() {
+			if (index == buffer.size()) {
+				return null;
+			}
+			// Let each row go once read
+			return buffer.set(index++, null);
+		}
+	}
+
+	private final class MergedRuns extends SortedRows {
+
+		// Ordered by key and then by run, so that rows with the same key come out in the order they were added
+		private final PriorityQueue<RunHead> heads = new PriorityQueue<>(Comparator.comparing((RunHead head) -> head.entry.getKey())
+				.thenComparingInt(head -> head.run));
+		private final List<BufferedReader> readers = new ArrayList<>();
+
+		private MergedRuns(final List<File> runFiles) throws IOException {
+			try {
+				for (File runFile : runFiles) {
+					readers.add(new BufferedReader(new InputStreamReader(new FileInputStream(runFile), RF2Constants.UTF_8)));
+					readHead(readers.size() - 1);
+				}
+			} catch (IOException | RuntimeException e) {
+				close();
+				throw e;
+			}
+		}
+
+		@Override
+		SortEntry nextEntry() throws IOException {
+			final RunHead head = heads.poll();
+			if (head == null) {
+				return null;
+			}
+			readHead(head.run);
+			return head.entry;
+		}
+
+		private void readHead(final int run) throws IOException {
+			final String line = readers.get(run).readLine();
+			if (line != null) {
+				heads.add(new RunHead(run, new SortEntry(parseKey(line), line)));
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				for (BufferedReader reader : readers) {
+					reader.close();
+				}
+			} finally {
+				super.close();
+			}
+		}
+	}
+
+	private static final class RunHead {
+
+		private final int run;
+		private final SortEntry entry;
+
+		private RunHead(final int run, final SortEntry entry) {
+			this.run = run;
+			this.entry = entry;
+		}
+	}
+
+	private static final class SortEntry {
+
+		private final RF2SortKey key;
+		private final String line;
+
+		private SortEntry(final RF2SortKey key, final String line) {
+			this.key = key;
+			this.line = line;
+		}
+
+		RF2SortKey getKey() {
+			return key;
+		}
+
+		String getLine() {
+			return line;
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package org.ihtsdo.buildcloud.core.service.build.database.merge;
+
+import org.ihtsdo.snomed.util.rf2.schema.DataType;
+
+import java.util.UUID;
+
+/**
+ * Sort key of an RF2 line made from the id and effectiveTime columns.
+ * Orders lines the same way as the SCTIDKey and UUIDKey of the map table so merged output matches selectAllOrdered.
+ */
+final class RF2SortKey implements Comparable<RF2SortKey> {
+
+	private final long mostSignificant;
+	private final long leastSignificant;
+	private final int effectiveTime;
+
+	private RF2SortKey(final long mostSignificant, final long leastSignificant, final int effectiveTime) {
+		this.mostSignificant = mostSignificant;
+		this.leastSignificant = leastSignificant;
+		this.effectiveTime = effectiveTime;
+	}
+
+	static RF2SortKey parse(final String line, final DataType idType) {
+		final int idEnd = line.indexOf('\t');
+		int dateEnd = line.indexOf('\t', idEnd + 1);
+		if (dateEnd < 0) {
+			dateEnd = line.length();
+		}
+		final int effectiveTime = Integer.parseInt(line.substring(idEnd + 1, dateEnd));
+		final String id = line.substring(0, idEnd);
+		if (idType == DataType.SCTID) {
+			return new RF2SortKey(Long.parseLong(id), 0, effectiveTime);
+		}
+		final UUID uuid = UUID.fromString(id);
+		return new RF2SortKey(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), effectiveTime);
+	}
+
+	/**
+	 * @return the key of a line ordered by the SCTID in one field alone, such as the sourceId of a relationship.
+	 */
+	static RF2SortKey ofSctid(final long sctid) {
+		return new RF2SortKey(sctid, 0, 0);
+	}
+
+	long getSctid() {
+		return mostSignificant;
+	}
+
+	@Override
+	public int compareTo(final RF2SortKey other) {
+		int result = Long.compare(mostSignificant, other.mostSignificant);
+		if (result == 0) {
+			result = Long.compare(leastSignificant, other.leastSignificant);
+			if (result == 0) {
+				result = Integer.compare(effectiveTime, other.effectiveTime);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof RF2SortKey)) {
+			return false;
+		}
+		final RF2SortKey other = (RF2SortKey) o;
+		return mostSignificant == other.mostSignificant && leastSignificant == other.leastSignificant && effectiveTime == other.effectiveTime;
+	}
+
+	@Override
+	public int hashCode() {
+		int result = Long.hashCode(mostSignificant);
+		result = 31 * result + Long.hashCode(leastSignificant);
+		result = 31 * result + effectiveTime;
+		return result;
+	}
+}
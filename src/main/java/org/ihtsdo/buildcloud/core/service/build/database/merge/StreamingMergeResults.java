@@ -0,0 +1,143 @@
+package org.ihtsdo.buildcloud.core.service.build.database.merge;
+
+import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
+import org.ihtsdo.buildcloud.core.service.build.database.RF2TableResults;
+import org.ihtsdo.snomed.util.rf2.schema.DataType;
+
+import java.io.*;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Merges already sorted RF2 rows with sorted run files in a single pass, holding only one line per source in memory.
+ * When more than one source has a row with the same id and effectiveTime the row from the latest source wins,
+ * which is the same outcome as appending the sources, in order, to the map table.
+ */
+public class StreamingMergeResults implements RF2TableResults, Closeable {
+
+	private final DataType idType;
+	private final PriorityQueue<Cursor> queue;
+	private final List<Cursor> cursors;
+
+	/**
+	 * @param sortedResults rows already in (id, effectiveTime) order, formatted as by the table results.
+	 * @param runs          sorted run files added after sortedResults, in the order they were added.
+	 */
+	public StreamingMergeResults(final DataType idType, final RF2TableResults sortedResults, final List<File> runs) throws IOException, SQLException {
+		this.idType = idType;
+		this.queue = new PriorityQueue<>();
+		this.cursors = new ArrayList<>();
+		cursors.add(new TableResultsCursor(0, sortedResults));
+		int source = 1;
+		for (File run : runs) {
+			cursors.add(new RunFileCursor(source++, run));
+		}
+		for (Cursor cursor : cursors) {
+			if (cursor.advance()) {
+				queue.add(cursor);
+			}
+		}
+	}
+
+	@Override
+	public String nextLine() throws SQLException {
+		Cursor cursor = queue.poll();
+		if (cursor == null) {
+			return null;
+		}
+		RF2SortKey key = cursor.key;
+		String line = cursor.line;
+		advance(cursor);
+		// Keep the last row for the same key
+		while (!queue.isEmpty() && queue.peek().key.equals(key)) {
+			cursor = queue.poll();
+			line = cursor.line;
+			advance(cursor);
+		}
+		return line;
+	}
+
+	private void advance(final Cursor cursor) throws SQLException {
+		if (cursor.advance()) {
+			queue.add(cursor);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		queue.clear();
+		for (Cursor cursor : cursors) {
+			cursor.close();
+		}
+	}
+
+	private abstract class Cursor implements Comparable<Cursor>, Closeable {
+
+		private final int source;
+		RF2SortKey key;
+		String line;
+
+		Cursor(final int source) {
+			this.source = source;
+		}
+
+		boolean advance() throws SQLException {
+			line = readLine();
+			key = line != null ? RF2SortKey.parse(line, idType) : null;
+			return line != null;
+		}
+
+		abstract String readLine() throws SQLException;
+
+		@Override
+		public int compareTo(final Cursor other) {
+			final int result = key.compareTo(other.key);
+			return result != 0 ? result : Integer.compare(source, other.source);
+		}
+
+		@Override
+		public void close() throws IOException {
+		}
+	}
+
+	private class TableResultsCursor extends Cursor {
+
+		private final RF2TableResults results;
+
+		TableResultsCursor(final int source, final RF2TableResults results) {
+			super(source);
+			this.results = results;
+		}
+
+		@Override
+		String readLine() throws SQLException {
+			return results.nextLine();
+		}
+	}
+
+	private class RunFileCursor extends Cursor {
+
+		private final BufferedReader reader;
+
+		RunFileCursor(final int source, final File run) throws IOException {
+			super(source);
+			this.reader = new BufferedReader(new InputStreamReader(new FileInputStream(run), RF2Constants.UTF_8));
+		}
+
+		@Override
+		String readLine() {
+			try {
+				return reader.readLine();
+			} catch (IOException e) {
+				throw new UncheckedIOException("Failed to read sorted run", e);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package org.ihtsdo.buildcloud.core.service.build.database.primitive;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append only store of UTF-8 encoded row payloads held in fixed size chunks.
+ * Chunks are allocated on the heap, off-heap as direct buffers or memory-mapped from a temporary file depending on the {@link Mode}.
+ * Each payload is addressed by a long reference made of the chunk index and the offset within the chunk.
+ */
+public class ByteArena implements Closeable {
+
+	public enum Mode {
+		HEAP, DIRECT, MAPPED
+	}
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ByteArena.class);
+
+	static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+	private final Mode mode;
+	private final int chunkSize;
+	private final List<ByteBuffer> chunks;
+	private ByteBuffer current;
+	private RandomAccessFile mappedFile;
+	private File mappedFilePath;
+	private long mappedFileLength;
+	private long bytesUsed;
+
+	public ByteArena(final Mode mode) {
+		this(mode, DEFAULT_CHUNK_SIZE);
+	}
+
+	ByteArena(final Mode mode, final int chunkSize) {
+		this.mode = mode;
+		this.chunkSize = chunkSize;
+		this.chunks = new ArrayList<>();
+	}
+
+	/**
+	 * @return reference to be used with {@link #get(long, int)}
+	 */
+	public long add(final byte[] bytes) throws IOException {
+		if (current == null || current.remaining() < bytes.length) {
+			current = allocate(Math.max(chunkSize, bytes.length));
+			chunks.add(current);
+		}
+		final long reference = ((long) (chunks.size() - 1) << 32) | current.position();
+		current.put(bytes);
+		bytesUsed += bytes.length;
+		return reference;
+	}
+
+	public String get(final long reference, final int length) {
+		final ByteBuffer chunk = chunks.get((int) (reference >>> 32));
+		final int offset = (int) reference;
+		if (chunk.hasArray()) {
+			return new String(chunk.array(), chunk.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+		}
+		return new String(getBytes(reference, length), StandardCharsets.UTF_8);
+	}
+
+	public byte[] getBytes(final long reference, final int length) {
+		final ByteBuffer chunk = chunks.get((int) (reference >>> 32));
+		final byte[] bytes = new byte[length];
+		chunk.get((int) reference, bytes, 0, length);
+		return bytes;
+	}
+
+	public long getBytesUsed() {
+		return bytesUsed;
+	}
+
+	private ByteBuffer allocate(final int size) throws IOException {
+		switch (mode) {
+			case DIRECT:
+				return ByteBuffer.allocateDirect(size);
+			case MAPPED:
+				if (mappedFile == null) {
+					mappedFilePath = File.createTempFile("rf2-table-", ".arena");
+					mappedFilePath.deleteOnExit();
+					mappedFile = new RandomAccessFile(mappedFilePath, "rw");
+				}
+				final ByteBuffer buffer = mappedFile.getChannel().map(FileChannel.MapMode.READ_WRITE, mappedFileLength, size);
+				mappedFileLength += size;
+				return buffer;
+			default:
+				return ByteBuffer.allocate(size);
+		}
+	}
+
+	@Override
+	public void close() {
+		chunks.clear();
+		current = null;
+		if (mappedFile != null) {
+			try {
+				mappedFile.close();
+			} catch (IOException e) {
+				LOGGER.warn("Failed to close memory-mapped arena file {}", mappedFilePath, e);
+			}
+			if (!mappedFilePath.delete()) {
+				LOGGER.warn("Failed to delete memory-mapped arena file {}", mappedFilePath);
+			}
+			mappedFile = null;
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package org.ihtsdo.buildcloud.core.service.build.database.primitive;
+
+import java.util.Arrays;
+
+/**
+ * Set of long ids, such as SCTIDs, in open addressing arrays rather than an object per id. Ids can be added but not removed.
+ */
+public class LongHashSet {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private long[] ids;
+	private boolean[] used;
+	private int size;
+
+	public LongHashSet() {
+		this(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize number of ids the set can hold before it grows.
+	 */
+	public LongHashSet(final int expectedSize) {
+		int capacity = INITIAL_CAPACITY;
+		while (capacity * 6L < expectedSize * 10L) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	/**
+	 * @return true if the id was not already in the set.
+	 */
+	public boolean add(final long id) {
+		if ((size + 1) * 10L > used.length * 6L) {
+			grow();
+		}
+		final int slot = find(id);
+		if (used[slot]) {
+			return false;
+		}
+		used[slot] = true;
+		ids[slot] = id;
+		size++;
+		return true;
+	}
+
+	public boolean contains(final long id) {
+		return used[find(id)];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		Arrays.fill(used, false);
+		size = 0;
+	}
+
+	/**
+	 * @return the ids in a sorted array, taking 8 bytes per id, for a set which is not added to any more.
+	 */
+	public SortedLongSet toSortedSet() {
+		final long[] values = new long[size];
+		int count = 0;
+		for (int slot = 0; slot < used.length; slot++) {
+			if (used[slot]) {
+				values[count++] = ids[slot];
+			}
+		}
+		return SortedLongSet.of(values, count);
+	}
+
+	/**
+	 * @return the slot holding the id, or the empty slot where it would be added.
+	 */
+	private int find(final long id) {
+		final int mask = used.length - 1;
+		int slot = hash(id) & mask;
+		while (used[slot] && ids[slot] != id) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void grow() {
+		final long[] oldIds = ids;
+		final boolean[] oldUsed = used;
+		allocate(oldUsed.length << 1);
+		size = 0;
+		for (int slot = 0; slot < oldUsed.length; slot++) {
+			if (oldUsed[slot]) {
+				add(oldIds[slot]);
+			}
+		}
+	}
+
+	private void allocate(final int capacity) {
+		ids = new long[capacity];
+		used = new boolean[capacity];
+	}
+
+	private static int hash(final long id) {
+		long h = id * 0x9E3779B97F4A7C15L;
+		h ^= (h >>> 32);
+		h ^= (h >>> 16);
+		return (int) h;
+	}
+}
@@ -0,0 +1,149 @@
+package org.ihtsdo.buildcloud.core.service.build.database.primitive;
+
+import java.util.Arrays;
+
+/**
+ * Map of long keys to long values, such as SCTIDs to SCTIDs, in open addressing arrays rather than an object per entry.
+ * Entries can be added and replaced but not removed.
+ */
+public class LongLongHashMap {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private long[] keys;
+	private long[] values;
+	private boolean[] used;
+	private int size;
+
+	public LongLongHashMap() {
+		this(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize number of entries the map can hold before it grows.
+	 */
+	public LongLongHashMap(final int expectedSize) {
+		int capacity = INITIAL_CAPACITY;
+		while (capacity * 6L < expectedSize * 10L) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	/**
+	 * @return true if the key was not already in the map.
+	 */
+	public boolean put(final long key, final long value) {
+		final int slot = slotFor(key);
+		final boolean added = !used[slot];
+		if (added) {
+			used[slot] = true;
+			keys[slot] = key;
+			size++;
+		}
+		values[slot] = value;
+		return added;
+	}
+
+	/**
+	 * @return true if the key was not already in the map and the value was added.
+	 */
+	public boolean putIfAbsent(final long key, final long value) {
+		final int slot = slotFor(key);
+		if (used[slot]) {
+			return false;
+		}
+		used[slot] = true;
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+		return true;
+	}
+
+	public boolean containsKey(final long key) {
+		return used[find(key)];
+	}
+
+	/**
+	 * @return the value of the key, or missingValue if the key is not in the map.
+	 */
+	public long get(final long key, final long missingValue) {
+		final int slot = find(key);
+		return used[slot] ? values[slot] : missingValue;
+	}
+
+	public void forEach(final EntryConsumer consumer) {
+		for (int slot = 0; slot < used.length; slot++) {
+			if (used[slot]) {
+				consumer.accept(keys[slot], values[slot]);
+			}
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		Arrays.fill(used, false);
+		size = 0;
+	}
+
+	@FunctionalInterface
+	public interface EntryConsumer {
+
+		void accept(long key, long value);
+	}
+
+	/**
+	 * @return the slot of the key, growing the map first if there might not be room to add it.
+	 */
+	private int slotFor(final long key) {
+		if ((size + 1) * 10L > used.length * 6L) {
+			grow();
+		}
+		return find(key);
+	}
+
+	/**
+	 * @return the slot holding the key, or the empty slot where it would be added.
+	 */
+	private int find(final long key) {
+		final int mask = used.length - 1;
+		int slot = hash(key) & mask;
+		while (used[slot] && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void grow() {
+		final long[] oldKeys = keys;
+		final long[] oldValues = values;
+		final boolean[] oldUsed = used;
+		allocate(oldUsed.length << 1);
+		size = 0;
+		for (int slot = 0; slot < oldUsed.length; slot++) {
+			if (oldUsed[slot]) {
+				putIfAbsent(oldKeys[slot], oldValues[slot]);
+			}
+		}
+	}
+
+	private void allocate(final int capacity) {
+		keys = new long[capacity];
+		values = new long[capacity];
+		used = new boolean[capacity];
+	}
+
+	private static int hash(final long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		h ^= (h >>> 32);
+		h ^= (h >>> 16);
+		return (int) h;
+	}
+}
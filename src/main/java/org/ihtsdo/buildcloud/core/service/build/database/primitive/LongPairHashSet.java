@@ -0,0 +1,106 @@
+package org.ihtsdo.buildcloud.core.service.build.database.primitive;
+
+import java.util.Arrays;
+
+/**
+ * Set of ids held as two longs, the most and least significant bits of a UUID or an SCTID and 0,
+ * in open addressing arrays rather than an object per id. Ids can be added but not removed.
+ */
+public class LongPairHashSet {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private long[] mostSignificant;
+	private long[] leastSignificant;
+	private boolean[] used;
+	private int size;
+
+	public LongPairHashSet() {
+		this(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize number of ids the set can hold before it grows.
+	 */
+	public LongPairHashSet(final int expectedSize) {
+		int capacity = INITIAL_CAPACITY;
+		while (capacity * 6L < expectedSize * 10L) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	/**
+	 * @return true if the id was not already in the set.
+	 */
+	public boolean add(final long msb, final long lsb) {
+		if ((size + 1) * 10L > used.length * 6L) {
+			grow();
+		}
+		final int mask = used.length - 1;
+		int slot = hash(msb, lsb) & mask;
+		while (used[slot]) {
+			if (mostSignificant[slot] == msb && leastSignificant[slot] == lsb) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		used[slot] = true;
+		mostSignificant[slot] = msb;
+		leastSignificant[slot] = lsb;
+		size++;
+		return true;
+	}
+
+	public boolean contains(final long msb, final long lsb) {
+		final int mask = used.length - 1;
+		int slot = hash(msb, lsb) & mask;
+		while (used[slot]) {
+			if (mostSignificant[slot] == msb && leastSignificant[slot] == lsb) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		Arrays.fill(used, false);
+		size = 0;
+	}
+
+	private void grow() {
+		final long[] oldMostSignificant = mostSignificant;
+		final long[] oldLeastSignificant = leastSignificant;
+		final boolean[] oldUsed = used;
+		allocate(oldUsed.length << 1);
+		size = 0;
+		for (int slot = 0; slot < oldUsed.length; slot++) {
+			if (oldUsed[slot]) {
+				add(oldMostSignificant[slot], oldLeastSignificant[slot]);
+			}
+		}
+	}
+
+	private void allocate(final int capacity) {
+		mostSignificant = new long[capacity];
+		leastSignificant = new long[capacity];
+		used = new boolean[capacity];
+	}
+
+	private static int hash(final long msb, final long lsb) {
+		long h = msb * 0x9E3779B97F4A7C15L;
+		h ^= lsb * 0xC2B2AE3D27D4EB4FL;
+		h ^= (h >>> 32);
+		h ^= (h >>> 16);
+		return (int) h;
+	}
+}
@@ -0,0 +1,478 @@
+package org.ihtsdo.buildcloud.core.service.build.database.primitive;
+
+import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
+import org.ihtsdo.buildcloud.core.service.build.database.map.Key;
+import org.ihtsdo.buildcloud.core.service.build.database.map.SCTIDKey;
+import org.ihtsdo.buildcloud.core.service.build.database.map.StringKey;
+import org.ihtsdo.buildcloud.core.service.build.database.map.UUIDKey;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Map of RF2 rows keyed by id and effectiveTime which keeps the keys in primitive columns rather than a key object per row.
+ * SCTIDs are held as a long, UUIDs as two longs and the effectiveTime as an int. Row payloads are held in a {@link ByteArena}.
+ * Iteration is in the same (id, effectiveTime) order as a TreeMap of the equivalent {@link Key} objects.
+ * Identifier tables, which are keyed by {@link StringKey}, are small and are delegated to a TreeMap, as is any table given an
+ * effectiveTime which is not an eight digit date.
+ * Removed rows are reclaimed by compacting the table once they outweigh the live rows.
+ */
+public class PrimitiveKeyTable extends AbstractMap<Key, String> {
+
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final int NO_DATE = Integer.MIN_VALUE;
+	private static final int EMPTY_SLOT = 0;
+	private static final int DELETED_SLOT = -1;
+	private static final int DATE_LENGTH = 8;
+
+	private enum KeyType {
+		SCTID, UUID, STRING
+	}
+
+	private final ByteArena.Mode mode;
+	private ByteArena arena;
+	private KeyType keyType;
+	private TreeMap<Key, String> treeMapTable;
+
+	// Row columns
+	private long[] mostSignificant = new long[INITIAL_CAPACITY];
+	private long[] leastSignificant = new long[INITIAL_CAPACITY];
+	private int[] dates = new int[INITIAL_CAPACITY];
+	private long[] payloadReferences = new long[INITIAL_CAPACITY];
+	private int[] payloadLengths = new int[INITIAL_CAPACITY];
+	private boolean[] removed = new boolean[INITIAL_CAPACITY];
+	private int rowCount;
+	private int size;
+	private long removedBytes;
+	// Live row numbers in key order, kept until the next row is added
+	private int[] sortedRows;
+
+	// Open addressing index holding row number + 1
+	private int[] slots = new int[INITIAL_CAPACITY * 2];
+	private int usedSlots;
+
+	public PrimitiveKeyTable(final ByteArena.Mode mode) {
+		this.mode = mode;
+		this.arena = new ByteArena(mode);
+	}
+
+	@Override
+	public String get(final Object key) {
+		if (treeMapTable != null) {
+			return treeMapTable.get(key);
+		}
+		final int row = findRow(key);
+		return row < 0 ? null : arena.get(payloadReferences[row], payloadLengths[row]);
+	}
+
+	@Override
+	public boolean containsKey(final Object key) {
+		if (treeMapTable != null) {
+			return treeMapTable.containsKey(key);
+		}
+		return findRow(key) >= 0;
+	}
+
+	@Override
+	public String put(final Key key, final String value) {
+		if (keyType == null) {
+			keyType = getKeyType(key);
+			if (keyType == KeyType.STRING) {
+				treeMapTable = new TreeMap<>();
+			}
+		}
+		if (keyType != KeyType.STRING && getKeyType(key) != keyType) {
+			throw new IllegalArgumentException("Key " + key + " can not be mixed with keys of type " + keyType);
+		}
+		if (treeMapTable == null && !isEncodableDate(key.getDate())) {
+			moveRowsToTreeMap();
+		}
+		if (treeMapTable != null) {
+			return treeMapTable.put(key, value);
+		}
+		final int row = findRow(key);
+		final String previous = row < 0 ? null : arena.get(payloadReferences[row], payloadLengths[row]);
+		if (row >= 0) {
+			removeRow(row);
+		}
+		addRow(key, value);
+		return previous;
+	}
+
+	@Override
+	public String remove(final Object key) {
+		if (treeMapTable != null) {
+			return treeMapTable.remove(key);
+		}
+		final int row = findRow(key);
+		if (row < 0) {
+			return null;
+		}
+		final String previous = arena.get(payloadReferences[row], payloadLengths[row]);
+		removeRow(row);
+		return previous;
+	}
+
+	@Override
+	public int size() {
+		return treeMapTable != null ? treeMapTable.size() : size;
+	}
+
+	@Override
+	public void clear() {
+		keyType = null;
+		treeMapTable = null;
+		clearRows();
+	}
+
+	public long getPayloadBytes() {
+		return arena.getBytesUsed();
+	}
+
+	@Override
+	public Set<Entry<Key, String>> entrySet() {
+		return new AbstractSet<>() {
+			@Override
+			public Iterator<Entry<Key, String>> iterator() {
+				if (treeMapTable != null) {
+					return treeMapTable.entrySet().iterator();
+				}
+				if (sortedRows == null) {
+					sortedRows = sortRows();
+				}
+				return new OrderedRowIterator(sortedRows);
+			}
+
+			@Override
+			public int size() {
+				return PrimitiveKeyTable.this.size();
+			}
+		};
+	}
+
+	private KeyType getKeyType(final Key key) {
+		if (key instanceof SCTIDKey) {
+			return KeyType.SCTID;
+		} else if (key instanceof UUIDKey) {
+			return KeyType.UUID;
+		}
+		return KeyType.STRING;
+	}
+
+	private void clearRows() {
+		Arrays.fill(slots, EMPTY_SLOT);
+		usedSlots = 0;
+		rowCount = 0;
+		size = 0;
+		removedBytes = 0;
+		sortedRows = null;
+		arena.close();
+		arena = new ByteArena(mode);
+	}
+
+	/**
+	 * Switches to a TreeMap once a key can not be held in the primitive columns.
+	 */
+	private void moveRowsToTreeMap() {
+		final TreeMap<Key, String> rows = new TreeMap<>();
+		for (final Entry<Key, String> entry : entrySet()) {
+			rows.put(entry.getKey(), entry.getValue());
+		}
+		clearRows();
+		treeMapTable = rows;
+	}
+
+	private void addRow(final Key key, final String value) {
+		if (isCompactionDue()) {
+			compact();
+		}
+		sortedRows = null;
+		if (rowCount == removed.length) {
+			growRows();
+		}
+		if ((usedSlots + 1) * 10 > slots.length * 6) {
+			rehash();
+		}
+		final int row = rowCount++;
+		setKeyColumns(row, key);
+		final byte[] bytes = value.getBytes(RF2Constants.UTF_8);
+		try {
+			payloadReferences[row] = arena.add(bytes);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to store row for " + key, e);
+		}
+		payloadLengths[row] = bytes.length;
+		removed[row] = false;
+		size++;
+		insertSlot(row);
+	}
+
+	private void setKeyColumns(final int row, final Key key) {
+		if (key instanceof SCTIDKey) {
+			mostSignificant[row] = ((SCTIDKey) key).getId();
+			leastSignificant[row] = 0;
+		} else {
+			final UUID uuid = ((UUIDKey) key).getUuid();
+			mostSignificant[row] = uuid.getMostSignificantBits();
+			leastSignificant[row] = uuid.getLeastSignificantBits();
+		}
+		dates[row] = encodeDate(key.getDate());
+	}
+
+	private void removeRow(final int row) {
+		removed[row] = true;
+		size--;
+		removedBytes += payloadLengths[row];
+		int slot = slotOf(row);
+		slots[slot] = DELETED_SLOT;
+	}
+
+	private int findRow(final Object object) {
+		if (!(object instanceof SCTIDKey) && !(object instanceof UUIDKey) || keyType == null || getKeyType((Key) object) != keyType) {
+			return -1;
+		}
+		final Key key = (Key) object;
+		if (!isEncodableDate(key.getDate())) {
+			return -1;
+		}
+		final long msb;
+		final long lsb;
+		if (key instanceof SCTIDKey) {
+			msb = ((SCTIDKey) key).getId();
+			lsb = 0;
+		} else {
+			msb = ((UUIDKey) key).getUuid().getMostSignificantBits();
+			lsb = ((UUIDKey) key).getUuid().getLeastSignificantBits();
+		}
+		final int date = encodeDate(key.getDate());
+		final int mask = slots.length - 1;
+		int slot = hash(msb, lsb, date) & mask;
+		int value;
+		while ((value = slots[slot]) != EMPTY_SLOT) {
+			if (value != DELETED_SLOT) {
+				final int row = value - 1;
+				if (mostSignificant[row] == msb && leastSignificant[row] == lsb && dates[row] == date) {
+					return row;
+				}
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private int slotOf(final int row) {
+		final int mask = slots.length - 1;
+		int slot = hash(mostSignificant[row], leastSignificant[row], dates[row]) & mask;
+		while (slots[slot] != row + 1) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void insertSlot(final int row) {
+		final int mask = slots.length - 1;
+		int slot = hash(mostSignificant[row], leastSignificant[row], dates[row]) & mask;
+		while (slots[slot] != EMPTY_SLOT) {
+			slot = (slot + 1) & mask;
+		}
+		slots[slot] = row + 1;
+		usedSlots++;
+	}
+
+	private void rehash() {
+		int capacity = slots.length;
+		// Only grow when live rows need it, otherwise just clear out deleted slots
+		if ((size + 1) * 10 > capacity * 3) {
+			capacity <<= 1;
+		}
+		slots = new int[capacity];
+		usedSlots = 0;
+		for (int row = 0; row < rowCount; row++) {
+			if (!removed[row]) {
+				insertSlot(row);
+			}
+		}
+	}
+
+	private boolean isCompactionDue() {
+		final int removedRows = rowCount - size;
+		return removedRows >= INITIAL_CAPACITY && removedRows > size
+				|| removedBytes >= ByteArena.DEFAULT_CHUNK_SIZE && removedBytes * 2 > arena.getBytesUsed();
+	}
+
+	/**
+	 * Copies the live rows, in row order, into new columns and a new arena so removed rows no longer take up space.
+	 */
+	private void compact() {
+		final ByteArena compacted = new ByteArena(mode);
+		int live = 0;
+		try {
+			for (int row = 0; row < rowCount; row++) {
+				if (!removed[row]) {
+					mostSignificant[live] = mostSignificant[row];
+					leastSignificant[live] = leastSignificant[row];
+					dates[live] = dates[row];
+					payloadReferences[live] = compacted.add(arena.getBytes(payloadReferences[row], payloadLengths[row]));
+					payloadLengths[live] = payloadLengths[row];
+					removed[live] = false;
+					live++;
+				}
+			}
+		} catch (IOException e) {
+			compacted.close();
+			throw new UncheckedIOException("Failed to compact table", e);
+		}
+		arena.close();
+		arena = compacted;
+		rowCount = live;
+		removedBytes = 0;
+		sortedRows = null;
+		Arrays.fill(slots, EMPTY_SLOT);
+		usedSlots = 0;
+		for (int row = 0; row < rowCount; row++) {
+			insertSlot(row);
+		}
+	}
+
+	private void growRows() {
+		final int capacity = rowCount << 1;
+		mostSignificant = Arrays.copyOf(mostSignificant, capacity);
+		leastSignificant = Arrays.copyOf(leastSignificant, capacity);
+		dates = Arrays.copyOf(dates, capacity);
+		payloadReferences = Arrays.copyOf(payloadReferences, capacity);
+		payloadLengths = Arrays.copyOf(payloadLengths, capacity);
+		removed = Arrays.copyOf(removed, capacity);
+	}
+
+	private static int hash(final long msb, final long lsb, final int date) {
+		long h = msb * 0x9E3779B97F4A7C15L;
+		h ^= lsb * 0xC2B2AE3D27D4EB4FL;
+		h ^= date * 0x165667B19E3779F9L;
+		h ^= (h >>> 32);
+		h ^= (h >>> 16);
+		return (int) h;
+	}
+
+	/**
+	 * Only eight digit dates are held as an int, as for those the int order is the same as the String order of the Key.
+	 */
+	private static boolean isEncodableDate(final String date) {
+		if (date == null) {
+			return true;
+		}
+		if (date.length() != DATE_LENGTH) {
+			return false;
+		}
+		for (int i = 0; i < DATE_LENGTH; i++) {
+			final char c = date.charAt(i);
+			if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int encodeDate(final String date) {
+		if (date == null) {
+			return NO_DATE;
+		}
+		return Integer.parseInt(date);
+	}
+
+	private static String decodeDate(final int date) {
+		return date == NO_DATE ? null : Integer.toString(date);
+	}
+
+	private int compareRows(final int a, final int b) {
+		int result = Long.compare(mostSignificant[a], mostSignificant[b]);
+		if (result == 0) {
+			result = Long.compare(leastSignificant[a], leastSignificant[b]);
+			if (result == 0) {
+				result = Integer.compare(dates[a], dates[b]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the live row numbers in key order.
+	 */
+	private int[] sortRows() {
+		int[] rows = new int[size];
+		int count = 0;
+		for (int row = 0; row < rowCount; row++) {
+			if (!removed[row]) {
+				rows[count++] = row;
+			}
+		}
+		mergeSort(rows, new int[rows.length], 0, rows.length);
+		return rows;
+	}
+
+	private void mergeSort(final int[] rows, final int[] buffer, final int from, final int to) {
+		if (to - from < 2) {
+			return;
+		}
+		final int middle = (from + to) >>> 1;
+		mergeSort(rows, buffer, from, middle);
+		mergeSort(rows, buffer, middle, to);
+		if (compareRows(rows[middle - 1], rows[middle]) <= 0) {
+			return;
+		}
+		System.arraycopy(rows, from, buffer, from, to - from);
+		int left = from;
+		int right = middle;
+		for (int i = from; i < to; i++) {
+			if (right >= to || (left < middle && compareRows(buffer[left], buffer[right]) <= 0)) {
+				rows[i] = buffer[left++];
+			} else {
+				rows[i] = buffer[right++];
+			}
+		}
+	}
+
+	private Key createKey(final int row) {
+		if (keyType == KeyType.SCTID) {
+			return new SCTIDKey(mostSignificant[row], decodeDate(dates[row]));
+		}
+		return new UUIDKey(new UUID(mostSignificant[row], leastSignificant[row]), decodeDate(dates[row]));
+	}
+
+	private class OrderedRowIterator implements Iterator<Entry<Key, String>> {
+
+		private final int[] rows;
+		private int position;
+		private int lastRow = -1;
+
+		OrderedRowIterator(final int[] rows) {
+			this.rows = rows;
+		}
+
+		@Override
+		public boolean hasNext() {
+			// Rows removed since the order was cached are skipped
+			while (position < rows.length && removed[rows[position]]) {
+				position++;
+			}
+			return position < rows.length;
+		}
+
+		@Override
+		public Entry<Key, String> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			lastRow = rows[position++];
+			return new SimpleImmutableEntry<>(createKey(lastRow), arena.get(payloadReferences[lastRow], payloadLengths[lastRow]));
+		}
+
+		@Override
+		public void remove() {
+			if (lastRow < 0 || removed[lastRow]) {
+				throw new IllegalStateException();
+			}
+			removeRow(lastRow);
+		}
+	}
+}
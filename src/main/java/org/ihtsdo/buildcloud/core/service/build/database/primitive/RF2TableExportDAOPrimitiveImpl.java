@@ -0,0 +1,32 @@
+package org.ihtsdo.buildcloud.core.service.build.database.primitive;
+
+import org.ihtsdo.buildcloud.core.service.build.database.map.RF2TableExportDAOImpl;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Same behaviour as {@link RF2TableExportDAOImpl} but rows are held in a {@link PrimitiveKeyTable} rather than a TreeMap,
+ * avoiding a key object per row and allowing the row payloads to be held off-heap or in memory-mapped temporary files.
+ */
+public class RF2TableExportDAOPrimitiveImpl extends RF2TableExportDAOImpl {
+
+	private final PrimitiveKeyTable primitiveKeyTable;
+
+	public RF2TableExportDAOPrimitiveImpl(final Map<String, List<Integer>> customRefsetCompositeKeys, final ByteArena.Mode arenaMode) {
+		this(customRefsetCompositeKeys, new PrimitiveKeyTable(arenaMode));
+	}
+
+	private RF2TableExportDAOPrimitiveImpl(final Map<String, List<Integer>> customRefsetCompositeKeys, final PrimitiveKeyTable primitiveKeyTable) {
+		super(customRefsetCompositeKeys, primitiveKeyTable);
+		this.primitiveKeyTable = primitiveKeyTable;
+	}
+
+	@Override
+	public void closeConnection() throws SQLException {
+		// Releases the arena chunks, including any memory-mapped temporary file
+		primitiveKeyTable.clear();
+		super.closeConnection();
+	}
+}
@@ -0,0 +1,81 @@
+package org.ihtsdo.buildcloud.core.service.build.database.primitive;
+
+import java.util.Arrays;
+
+/**
+ * Set of long ids held in one sorted array and looked up by binary search, for ids which do not change once loaded,
+ * such as the ids of a previous release snapshot. Takes 8 bytes per id.
+ */
+public final class SortedLongSet {
+
+	private static final SortedLongSet EMPTY = new SortedLongSet(new long[0]);
+
+	private final long[] ids;
+
+	private SortedLongSet(final long[] ids) {
+		this.ids = ids;
+	}
+
+	public static SortedLongSet empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Sorts the first count values in place and removes repeated ids.
+	 * The array becomes part of the set and must not be changed afterwards.
+	 */
+	public static SortedLongSet of(final long[] values, final int count) {
+		Arrays.sort(values, 0, count);
+		int unique = 0;
+		for (int i = 0; i < count; i++) {
+			if (unique == 0 || values[unique - 1] != values[i]) {
+				values[unique++] = values[i];
+			}
+		}
+		return new SortedLongSet(unique == values.length ? values : Arrays.copyOf(values, unique));
+	}
+
+	public boolean contains(final long id) {
+		return Arrays.binarySearch(ids, id) >= 0;
+	}
+
+	public int size() {
+		return ids.length;
+	}
+
+	public boolean isEmpty() {
+		return ids.length == 0;
+	}
+
+	/**
+	 * Collects ids in a growing array, without hashing, before they are sorted into a set.
+	 */
+	public static class Builder {
+
+		private long[] values;
+		private int count;
+
+		public Builder() {
+			this(1024);
+		}
+
+		public Builder(final int expectedSize) {
+			values = new long[Math.max(16, expectedSize)];
+		}
+
+		public Builder add(final long id) {
+			if (count == values.length) {
+				values = Arrays.copyOf(values, values.length + (values.length >> 1));
+			}
+			values[count++] = id;
+			return this;
+		}
+
+		public SortedLongSet build() {
+			final SortedLongSet set = of(values, count);
+			values = new long[0];
+			count = 0;
+			return set;
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package org.ihtsdo.buildcloud.core.service.build.database.primitive;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Map of UUIDs to long values, such as component UUIDs to SCTIDs, held as the two longs of each UUID in open addressing
+ * arrays rather than an object per entry. Entries can be added and replaced but not removed.
+ */
+public class UuidLongHashMap {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private long[] mostSignificant;
+	private long[] leastSignificant;
+	private long[] values;
+	private boolean[] used;
+	private int size;
+
+	public UuidLongHashMap() {
+		this(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize number of entries the map can hold before it grows.
+	 */
+	public UuidLongHashMap(final int expectedSize) {
+		int capacity = INITIAL_CAPACITY;
+		while (capacity * 6L < expectedSize * 10L) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	/**
+	 * @return true if the UUID was not already in the map.
+	 */
+	public boolean put(final long msb, final long lsb, final long value) {
+		if ((size + 1) * 10L > used.length * 6L) {
+			grow();
+		}
+		final int slot = find(msb, lsb);
+		final boolean added = !used[slot];
+		if (added) {
+			used[slot] = true;
+			mostSignificant[slot] = msb;
+			leastSignificant[slot] = lsb;
+			size++;
+		}
+		values[slot] = value;
+		return added;
+	}
+
+	public boolean put(final UUID uuid, final long value) {
+		return put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), value);
+	}
+
+	public boolean containsKey(final long msb, final long lsb) {
+		return used[find(msb, lsb)];
+	}
+
+	/**
+	 * @return the value of the UUID, or missingValue if the UUID is not in the map.
+	 */
+	public long get(final long msb, final long lsb, final long missingValue) {
+		final int slot = find(msb, lsb);
+		return used[slot] ? values[slot] : missingValue;
+	}
+
+	public long get(final UUID uuid, final long missingValue) {
+		return get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), missingValue);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		Arrays.fill(used, false);
+		size = 0;
+	}
+
+	/**
+	 * @return the slot holding the UUID, or the empty slot where it would be added.
+	 */
+	private int find(final long msb, final long lsb) {
+		final int mask = used.length - 1;
+		int slot = hash(msb, lsb) & mask;
+		while (used[slot] && (mostSignificant[slot] != msb || leastSignificant[slot] != lsb)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void grow() {
+		final long[] oldMostSignificant = mostSignificant;
+		final long[] oldLeastSignificant = leastSignificant;
+		final long[] oldValues = values;
+		final boolean[] oldUsed = used;
+		allocate(oldUsed.length << 1);
+		size = 0;
+		for (int slot = 0; slot < oldUsed.length; slot++) {
+			if (oldUsed[slot]) {
+				put(oldMostSignificant[slot], oldLeastSignificant[slot], oldValues[slot]);
+			}
+		}
+	}
+
+	private void allocate(final int capacity) {
+		mostSignificant = new long[capacity];
+		leastSignificant = new long[capacity];
+		values = new long[capacity];
+		used = new boolean[capacity];
+	}
+
+	private static int hash(final long msb, final long lsb) {
+		long h = msb * 0x9E3779B97F4A7C15L;
+		h ^= lsb * 0xC2B2AE3D27D4EB4FL;
+		h ^= (h >>> 32);
+		h ^= (h >>> 16);
+		return (int) h;
+	}
+}
@@ -0,0 +1,19 @@
+package org.ihtsdo.buildcloud.core.service.build.transform;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Batch transformation which can work on several batches at the same time, for example while waiting on a remote service.
+ * Later transformations of a batch must wait for the returned future to complete.
+ */
+public interface AsyncBatchLineTransformation extends BatchLineTransformation {
+
+	/**
+	 * @return the number of batches which may be in progress at the same time, 1 meaning one after another.
+	 */
+	int getMaxBatchesInFlight();
+
+	Future<?> transformLinesAsync(List<String[]> columnValues);
+
+}
@@ -1,11 +1,19 @@
 package org.ihtsdo.buildcloud.core.service.build.transform;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.ihtsdo.buildcloud.core.dao.BuildDAO;
 import org.ihtsdo.buildcloud.core.entity.Build;
@@ -26,6 +34,17 @@ public class CachedSctidFactory {
 	private final int retryDelaySeconds;
 	private Build build;
 	private BuildDAO buildDAO;
+	private int maxRequestsInFlight = 1;
+	private ExecutorService requestExecutor;
+	private PersistentSctidCache persistentCache;
+
+	// Id service request metrics
+	private final AtomicLong requestCount = new AtomicLong();
+	private final AtomicLong requestTimeMillis = new AtomicLong();
+	private final AtomicLong maxRequestTimeMillis = new AtomicLong();
+	private final AtomicInteger queueDepth = new AtomicInteger();
+	private final AtomicInteger maxQueueDepth = new AtomicInteger();
+	private final AtomicLong persistentCacheHits = new AtomicLong();
 
 	public CachedSctidFactory(final Integer namespaceId, final String releaseId, final String buildId, final IdServiceRestClient idRestClient, final int maxtries, final int retryDelayDeconds) {
 		this.namespaceId = namespaceId;
@@ -49,9 +68,14 @@ public class CachedSctidFactory {
 
 	public Long getSCTID(final String componentUuid, final String partitionId, final String moduleId) throws Exception{
 		if (!uuidToSctidCache.containsKey(componentUuid)) {
-			Long sctid = idServiceRestClient.getOrCreateSctId(UUID.fromString(componentUuid), namespaceId, partitionId, comment);
+			Long sctid = getFromPersistentCache(componentUuid);
+			if (sctid != null) {
+				return sctid;
+			}
+			sctid = idServiceRestClient.getOrCreateSctId(UUID.fromString(componentUuid), namespaceId, partitionId, comment);
 			if ( sctid != null) {
 				uuidToSctidCache.put(componentUuid, sctid);
+				addToPersistentCache(Map.of(UUID.fromString(componentUuid), sctid));
 			}
 		}
 		return uuidToSctidCache.get(componentUuid);
@@ -64,10 +88,21 @@ public class CachedSctidFactory {
 			return uuidStringToSctidMapResults;
 		}
 		Map<UUID, Long> uuidToSctidMap = null;
-		// Convert uuid strings to UUID objects
+		// Convert uuid strings to UUID objects, skipping any already looked up
 		final List<UUID> componentUuids = new ArrayList<>();
 		for (final String componentUuidString : componentUuidStrings) {
-			componentUuids.add(UUID.fromString(componentUuidString));
+			Long cachedSctid = uuidToSctidCache.get(componentUuidString);
+			if (cachedSctid == null) {
+				cachedSctid = getFromPersistentCache(componentUuidString);
+			}
+			if (cachedSctid != null) {
+				uuidStringToSctidMapResults.put(componentUuidString, cachedSctid);
+			} else {
+				componentUuids.add(UUID.fromString(componentUuidString));
+			}
+		}
+		if (componentUuids.isEmpty()) {
+			return uuidStringToSctidMapResults;
 		}
 		// Lookup with retries
 		int attempt = 1;
@@ -78,9 +113,9 @@ public class CachedSctidFactory {
 					throw new BusinessServiceRuntimeException("Stop requesting ID from CIS. Build status has been changed to CANCEL_REQUESTED");
 				}
 				LOGGER.info("Batch ID service request, batch size {}.", componentUuids.size());
-				if ( !componentUuids.isEmpty()) {
-					uuidToSctidMap = idServiceRestClient.getOrCreateSctIds(componentUuids, namespaceId, partitionId, comment);
-				}
+				final long start = System.currentTimeMillis();
+				uuidToSctidMap = idServiceRestClient.getOrCreateSctIds(componentUuids, namespaceId, partitionId, comment);
+				recordRequestTime(System.currentTimeMillis() - start);
 			} catch (RestClientException e) {
 				if (attempt < maxTries) {
 					LOGGER.warn("Batch ID service lookup failed on attempt {}. Waiting {} seconds before retrying.", attempt, retryDelaySeconds, e);
@@ -97,6 +132,7 @@ public class CachedSctidFactory {
 		}
 		
 		// Store results in cache
+		addToPersistentCache(uuidToSctidMap);
 		for (final UUID uuid : uuidToSctidMap.keySet()) {
 			final String uuidString = uuid.toString();
 			final Long value = uuidToSctidMap.get(uuid);
@@ -106,8 +142,101 @@ public class CachedSctidFactory {
 		return uuidStringToSctidMapResults;
 	}
 
+	public Integer getNamespaceId() {
+		return namespaceId;
+	}
+
 	public Long getSCTIDFromCache(final String uuidString) {
 		return uuidToSctidCache.get(uuidString);
 	}
 
+	/**
+	 * Uses the given cache, which lasts longer than this build, before asking the id service.
+	 */
+	public void setPersistentCache(final PersistentSctidCache persistentCache) {
+		this.persistentCache = persistentCache;
+	}
+
+	private Long getFromPersistentCache(final String uuidString) {
+		if (persistentCache == null) {
+			return null;
+		}
+		final Long sctid = persistentCache.get(UUID.fromString(uuidString));
+		if (sctid != null) {
+			uuidToSctidCache.put(uuidString, sctid);
+			persistentCacheHits.incrementAndGet();
+		}
+		return sctid;
+	}
+
+	private void addToPersistentCache(final Map<UUID, Long> uuidToSctidMap) {
+		if (persistentCache != null) {
+			try {
+				persistentCache.putAll(uuidToSctidMap);
+			} catch (IOException e) {
+				// The ids are still cached for this build
+				LOGGER.warn("Failed to write SCTIDs to persistent cache {}", persistentCache.getFile(), e);
+			}
+		}
+	}
+
+	/**
+	 * Allows up to the given number of id service requests to be made at the same time through {@link #submitRequest(Callable)}.
+	 */
+	public void setMaxRequestsInFlight(final int maxRequestsInFlight) {
+		shutdown();
+		this.maxRequestsInFlight = Math.max(1, maxRequestsInFlight);
+		if (this.maxRequestsInFlight > 1) {
+			requestExecutor = Executors.newFixedThreadPool(this.maxRequestsInFlight);
+		}
+	}
+
+	public int getMaxRequestsInFlight() {
+		return maxRequestsInFlight;
+	}
+
+	/**
+	 * Runs a request which uses the id service, on a request thread when concurrent requests are allowed
+	 * or straight away otherwise.
+	 */
+	public <T> Future<T> submitRequest(final Callable<T> request) {
+		if (requestExecutor == null) {
+			try {
+				return CompletableFuture.completedFuture(request.call());
+			} catch (Exception e) {
+				return CompletableFuture.failedFuture(e);
+			}
+		}
+		maxQueueDepth.accumulateAndGet(queueDepth.incrementAndGet(), Math::max);
+		return requestExecutor.submit(() -> {
+			try {
+				return request.call();
+			} finally {
+				queueDepth.decrementAndGet();
+			}
+		});
+	}
+
+	public String getRequestStatistics() {
+		final long count = requestCount.get();
+		return "Requests: " + count
+				+ ", average time: " + (count == 0 ? 0 : requestTimeMillis.get() / count) + " ms"
+				+ ", max time: " + maxRequestTimeMillis.get() + " ms"
+				+ ", max queue depth: " + maxQueueDepth.get()
+				+ ", persistent cache hits: " + persistentCacheHits.get();
+	}
+
+	public void shutdown() {
+		if (requestExecutor != null) {
+			requestExecutor.shutdownNow();
+			requestExecutor = null;
+		}
+	}
+
+	private void recordRequestTime(final long millis) {
+		requestCount.incrementAndGet();
+		requestTimeMillis.addAndGet(millis);
+		maxRequestTimeMillis.accumulateAndGet(millis, Math::max);
+	}
+
 }
@@ -1,47 +1,185 @@
 package org.ihtsdo.buildcloud.core.service.build.transform;
 
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
+import com.google.common.io.ByteStreams;
+import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
+import org.ihtsdo.buildcloud.core.service.build.RF2Record;
+import org.ihtsdo.buildcloud.core.service.build.database.primitive.LongHashSet;
+import org.ihtsdo.buildcloud.core.service.build.database.primitive.LongLongHashMap;
+
+/**
+ * Finds the parent of concepts from the first IS-A relationship of each concept in a stated relationship file.
+ * A source id listed more than once takes its parent from a later IS-A relationship for each repeat, up to the last one found.
+ * Lines are checked field by field rather than with a regular expression, lines with fewer than nine fields are ignored.
+ */
 public class ParentSctIdFinder {
-	
-	private static final String IS_A_RELATIONSHIP_ID = "116680003";
 
-	public static final Pattern IS_A_RELATIONSHIP_PATTERN = Pattern.compile("[^\t]*\t[^\t]*\t[^\t]*\t[^\t]*\t([^\t]*)\t([^\t]*)\t[^\t]*\t" + IS_A_RELATIONSHIP_ID + "\t.*");
+	// RF2 Relationship fields:
+	// id effectiveTime active moduleId sourceId destinationId relationshipGroup typeId characteristicTypeId modifierId
+	private static final int SOURCE_ID = 4;
+	private static final int DESTINATION_ID = 5;
+	private static final int TYPE_ID = 7;
+	private static final int CHARACTERISTIC_TYPE_ID = 8;
 
 	public ParentSctIdFinder() {
-		
-	}
-	
-	public Map<Long, Long> getParentSctIdFromStatedRelationship(final InputStream input, final List<Long> sourceIds) throws TransformationException {
-		final Map<Long, Long> result = new HashMap<>();
-		final List<Long> sourceIdsToFind = new ArrayList<>(sourceIds);
-		if (input != null) {
-			try (final BufferedReader reader = new BufferedReader(new InputStreamReader(input))) {
-				//find the line matches isA relationship
-				String line;
-				while (!sourceIdsToFind.isEmpty() && (line = reader.readLine()) != null) {
-					final Matcher matcher = IS_A_RELATIONSHIP_PATTERN.matcher(line);
-					if (matcher.matches()) {
-						final String sourceId = matcher.group(1);
-						if (sourceIdsToFind.contains(Long.valueOf(sourceId))) {
-							result.put(Long.valueOf(sourceId), Long.valueOf(matcher.group(2)));
-							sourceIdsToFind.remove(Long.parseLong(sourceId));
+
+	}
+
+	/**
+	 * @return map of source id to the destination id of its first IS-A relationship, for the source ids which have one.
+	 */
+	public LongLongHashMap getParentSctIdFromStatedRelationship(final InputStream input, final Collection<Long> sourceIds) throws TransformationException {
+		final LongHashSet sourceIdsToFind = toSet(sourceIds);
+		if (input == null) {
+			return new LongLongHashMap(0);
+		}
+		try (final BufferedReader reader = new BufferedReader(new InputStreamReader(input, RF2Constants.UTF_8))) {
+			return findParents(reader, sourceIdsToFind, countRepeats(sourceIds, sourceIdsToFind), sourceIds.size());
+		} catch (final IOException e) {
+			throw new TransformationException("Failed to read from inputStream", e);
+		}
+	}
+
+	/**
+	 * Scans the file in line aligned chunks at the same time, giving the same parents as reading the file from the start.
+	 * @param parallelism number of chunks scanned at the same time.
+	 */
+	public LongLongHashMap getParentSctIdFromStatedRelationship(final File file, final Collection<Long> sourceIds, final int parallelism) throws TransformationException {
+		final LongHashSet sourceIdsToFind = toSet(sourceIds);
+		try {
+			final long[] chunkStarts = getChunkStarts(file, Math.max(1, parallelism));
+			// A chunk can't tell how many IS-A relationships of a repeated source id come before it, so those are read from the start
+			if (chunkStarts.length == 2 || sourceIdsToFind.size() < sourceIds.size()) {
+				return getParentSctIdFromStatedRelationship(new FileInputStream(file), sourceIds);
+			}
+			final ForkJoinPool pool = new ForkJoinPool(chunkStarts.length - 1);
+			try {
+				final List<Future<LongLongHashMap>> chunkParents = new ArrayList<>();
+				for (int i = 0; i < chunkStarts.length - 1; i++) {
+					final long start = chunkStarts[i];
+					final long end = chunkStarts[i + 1];
+					chunkParents.add(pool.submit(() -> findParents(file, start, end, sourceIdsToFind)));
+				}
+				// The first chunk with a parent for a source id has the parent found when reading from the start
+				final LongLongHashMap parents = new LongLongHashMap(sourceIdsToFind.size());
+				for (Future<LongLongHashMap> future : chunkParents) {
+					future.get().forEach(parents::putIfAbsent);
+				}
+				return parents;
+			} finally {
+				pool.shutdown();
+			}
+		} catch (final IOException e) {
+			throw new TransformationException("Failed to read from file " + file.getName(), e);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TransformationException("Interrupted while reading file " + file.getName(), e);
+		} catch (final ExecutionException e) {
+			throw new TransformationException("Failed to read from file " + file.getName(), e.getCause());
+		}
+	}
+
+	private static LongLongHashMap findParents(final File file, final long start, final long end, final LongHashSet sourceIdsToFind) throws IOException {
+		try (final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+			randomAccessFile.seek(start);
+			final InputStream chunk = ByteStreams.limit(Channels.newInputStream(randomAccessFile.getChannel()), end - start);
+			return findParents(new BufferedReader(new InputStreamReader(chunk, RF2Constants.UTF_8)), sourceIdsToFind, new LongLongHashMap(0), sourceIdsToFind.size());
+		}
+	}
+
+	/**
+	 * @param repeats the number of times each repeated source id is listed after the first.
+	 * @param parentsToFind the number of IS-A relationships to take, one for each time a source id is listed.
+	 */
+	private static LongLongHashMap findParents(final BufferedReader reader, final LongHashSet sourceIdsToFind, final LongLongHashMap repeats,
+			final int parentsToFind) throws IOException {
+		final LongLongHashMap parents = new LongLongHashMap(sourceIdsToFind.size());
+		final RF2Record record = new RF2Record();
+		int parentsFound = 0;
+		String line;
+		while (parentsFound < parentsToFind && (line = reader.readLine()) != null) {
+			record.reset(line);
+			// The type must be followed by another field
+			if (record.hasField(CHARACTERISTIC_TYPE_ID) && record.fieldEquals(TYPE_ID, RF2Constants.IS_A)) {
+				final long sourceId = record.getLong(SOURCE_ID);
+				if (sourceIdsToFind.contains(sourceId)) {
+					if (parents.putIfAbsent(sourceId, record.getLong(DESTINATION_ID))) {
+						parentsFound++;
+					} else {
+						// Each repeat of a source id takes the next IS-A relationship in its place
+						final long repeatsLeft = repeats.get(sourceId, 0);
+						if (repeatsLeft > 0) {
+							parents.put(sourceId, record.getLong(DESTINATION_ID));
+							repeats.put(sourceId, repeatsLeft - 1);
+							parentsFound++;
 						}
 					}
 				}
-			} catch (final IOException e) {
-				throw new TransformationException("Failed to read from inputStream", e);
 			}
 		}
-		return result;
+		return parents;
+	}
+
+	/**
+	 * @return the start of each chunk followed by the length of the file, every chunk but the first starting after a line feed.
+	 */
+	private static long[] getChunkStarts(final File file, final int chunks) throws IOException {
+		final long length = file.length();
+		final List<Long> starts = new ArrayList<>();
+		starts.add(0L);
+		try (final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+			for (int i = 1; i < chunks; i++) {
+				long position = Math.max(length * i / chunks, starts.get(starts.size() - 1));
+				randomAccessFile.seek(position);
+				int b;
+				while ((b = randomAccessFile.read()) != -1 && b != '\n') {
+					position++;
+				}
+				final long start = position + 1;
+				if (start >= length) {
+					break;
+				}
+				if (start > starts.get(starts.size() - 1)) {
+					starts.add(start);
+				}
+			}
+		}
+		starts.add(length);
+		return starts.stream().mapToLong(Long::longValue).toArray();
+	}
+
+	private static LongLongHashMap countRepeats(final Collection<Long> sourceIds, final LongHashSet sourceIdsToFind) {
+		final LongLongHashMap repeats = new LongLongHashMap(sourceIds.size() - sourceIdsToFind.size());
+		if (sourceIdsToFind.size() < sourceIds.size()) {
+			final LongHashSet seen = new LongHashSet(sourceIdsToFind.size());
+			for (Long sourceId : sourceIds) {
+				if (!seen.add(sourceId)) {
+					repeats.put(sourceId, repeats.get(sourceId, 0) + 1);
+				}
+			}
+		}
+		return repeats;
+	}
+
+	private static LongHashSet toSet(final Collection<Long> sourceIds) {
+		final LongHashSet set = new LongHashSet(sourceIds.size());
+		for (Long sourceId : sourceIds) {
+			set.add(sourceId);
+		}
+		return set;
 	}
 }
@@ -0,0 +1,138 @@
+package org.ihtsdo.buildcloud.core.service.build.transform;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * UUID to SCTID lookups for one namespace which outlive a single build.
+ * Entries are held in memory as two longs for the UUID and one long for the SCTID, and appended to a local file
+ * of fixed size records in the same layout so that the next build can preload them in bulk.
+ * The id service always gives the same SCTID for a UUID so entries never need updating.
+ */
+public class PersistentSctidCache {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PersistentSctidCache.class);
+
+	static final int RECORD_SIZE = 3 * Long.BYTES;
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final File file;
+
+	// Open addressing table, a zero SCTID marks an empty slot
+	private long[] uuids = new long[INITIAL_CAPACITY * 2];
+	private long[] sctids = new long[INITIAL_CAPACITY];
+	private int size;
+
+	private PersistentSctidCache(final File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Loads all entries from the given file, which is created on the first {@link #putAll(Map)} if it doesn't exist.
+	 */
+	public static PersistentSctidCache load(final File file) throws IOException {
+		final PersistentSctidCache cache = new PersistentSctidCache(file);
+		if (file.isFile()) {
+			final long start = System.currentTimeMillis();
+			try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+				// Ignore any partly written record at the end of the file
+				final long records = file.length() / RECORD_SIZE;
+				for (long i = 0; i < records; i++) {
+					cache.putInMemory(inputStream.readLong(), inputStream.readLong(), inputStream.readLong());
+				}
+			}
+			LOGGER.info("Loaded {} SCTIDs from {} in {} ms", cache.size, file, System.currentTimeMillis() - start);
+		}
+		return cache;
+	}
+
+	public synchronized Long get(final UUID uuid) {
+		final int slot = findSlot(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+		return sctids[slot] == 0 ? null : sctids[slot];
+	}
+
+	/**
+	 * Adds any entries not already known, appending them to the cache file.
+	 */
+	public synchronized void putAll(final Map<UUID, Long> uuidToSctidMap) throws IOException {
+		final ByteBuffer records = ByteBuffer.allocate(uuidToSctidMap.size() * RECORD_SIZE);
+		for (final Map.Entry<UUID, Long> entry : uuidToSctidMap.entrySet()) {
+			final UUID uuid = entry.getKey();
+			final Long sctid = entry.getValue();
+			if (sctid != null && putInMemory(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), sctid)) {
+				records.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).putLong(sctid);
+			}
+		}
+		if (records.position() > 0) {
+			if (file.getParentFile() != null) {
+				file.getParentFile().mkdirs();
+			}
+			try (OutputStream outputStream = new FileOutputStream(file, true)) {
+				outputStream.write(records.array(), 0, records.position());
+			}
+		}
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return true if the entry was not already present.
+	 */
+	private boolean putInMemory(final long msb, final long lsb, final long sctid) {
+		if ((size + 1) * 10 > sctids.length * 6) {
+			resize();
+		}
+		final int slot = findSlot(msb, lsb);
+		if (sctids[slot] != 0) {
+			return false;
+		}
+		uuids[slot * 2] = msb;
+		uuids[slot * 2 + 1] = lsb;
+		sctids[slot] = sctid;
+		size++;
+		return true;
+	}
+
+	private int findSlot(final long msb, final long lsb) {
+		final int mask = sctids.length - 1;
+		int slot = hash(msb, lsb) & mask;
+		while (sctids[slot] != 0 && (uuids[slot * 2] != msb || uuids[slot * 2 + 1] != lsb)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void resize() {
+		final long[] oldUuids = uuids;
+		final long[] oldSctids = sctids;
+		uuids = new long[oldUuids.length * 2];
+		sctids = new long[oldSctids.length * 2];
+		for (int i = 0; i < oldSctids.length; i++) {
+			if (oldSctids[i] != 0) {
+				final int slot = findSlot(oldUuids[i * 2], oldUuids[i * 2 + 1]);
+				uuids[slot * 2] = oldUuids[i * 2];
+				uuids[slot * 2 + 1] = oldUuids[i * 2 + 1];
+				sctids[slot] = oldSctids[i];
+			}
+		}
+	}
+
+	private static int hash(final long msb, final long lsb) {
+		long h = msb * 0x9E3779B97F4A7C15L ^ lsb * 0xC2B2AE3D27D4EB4FL;
+		h ^= (h >>> 32);
+		h ^= (h >>> 16);
+		return (int) h;
+	}
+}
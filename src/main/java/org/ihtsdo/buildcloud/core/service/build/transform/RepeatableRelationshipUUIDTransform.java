@@ -1,7 +1,7 @@
 package org.ihtsdo.buildcloud.core.service.build.transform;
 
-import java.io.UnsupportedEncodingException;
 import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
 
 import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
 import org.ihtsdo.buildcloud.core.service.helper.Type5UuidFactory;
@@ -26,27 +26,25 @@ public class RepeatableRelationshipUUIDTransform implements LineTransformation {
 		// sourceId + destinationId + typeId + relationshipGroup	
 		//include moduleId for extension
 		if (columnValues[0] == null || columnValues[0].equals(RF2Constants.NULL_STRING) || columnValues[0].isEmpty()) {
-			try {
-				columnValues[0] = getCalculatedUuidFromRelationshipValues(columnValues);
-			} catch (UnsupportedEncodingException e) {
-				throw new TransformationException("Failed to create UUID.", e);
-			}
+			columnValues[0] = getCalculatedUuidFromRelationshipValues(columnValues);
 		}
 	}
 
-	public String getCalculatedUuidFromRelationshipValues(String[] columnValues) throws UnsupportedEncodingException {
-		StringBuilder sb = new StringBuilder();
+	public String getCalculatedUuidFromRelationshipValues(String[] columnValues) {
+		return getCalculatedUuid(columnValues).toString();
+	}
+
+	public UUID getCalculatedUuid(String[] columnValues) {
+		// The fields are hashed as they are, without joining them into a String first
 		String moduleId = columnValues[3];
-		if (moduleId != null && !RF2Constants.INTERNATIONAL_CORE_MODULE_ID.equals(moduleId) 
-				&& !RF2Constants.INTERNATIONAL_MODEL_COMPONENT_ID.equals(moduleId)) {
-			sb.append(moduleId);
-		}
-		sb.append(columnValues[4]).append(columnValues[5]).append(columnValues[7]).append(columnValues[6]);
+		boolean includeModuleId = moduleId != null && !RF2Constants.INTERNATIONAL_CORE_MODULE_ID.equals(moduleId)
+				&& !RF2Constants.INTERNATIONAL_MODEL_COMPONENT_ID.equals(moduleId);
 		// Stated relationships need to be different from inferred ones, for the same triple + group
-		if (relationshipFileType == RF2Constants.RelationshipFileType.STATED) {
-			sb.append(STATED_RELATIONSHIP_MODIFIER);
+		String modifier = relationshipFileType == RF2Constants.RelationshipFileType.STATED ? STATED_RELATIONSHIP_MODIFIER : "";
+		if (includeModuleId) {
+			return type5UuidFactory.get(moduleId, columnValues[4], columnValues[5], columnValues[7], columnValues[6], modifier);
 		}
-		return type5UuidFactory.get(sb.toString()).toString();
+		return type5UuidFactory.get(columnValues[4], columnValues[5], columnValues[7], columnValues[6], modifier);
 	}
 
 	@Override
@@ -3,8 +3,9 @@ package org.ihtsdo.buildcloud.core.service.build.transform;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 
-public class SCTIDTransformation implements BatchLineTransformation {
+public class SCTIDTransformation implements AsyncBatchLineTransformation {
 
 	public static final String ID_GEN_MODULE_ID_PARAM = "1";
 	
@@ -53,6 +54,19 @@ public class SCTIDTransformation implements BatchLineTransformation {
 		transformLineGroup(columnValuesList, uuidStrings);
 	}
 
+	@Override
+	public int getMaxBatchesInFlight() {
+		return sctidFactory.getMaxRequestsInFlight();
+	}
+
+	@Override
+	public Future<?> transformLinesAsync(List<String[]> columnValuesList) {
+		return sctidFactory.submitRequest(() -> {
+			transformLines(columnValuesList);
+			return null;
+		});
+	}
+
 	public void transformLineGroup(List<String[]> columnValuesList, List<String> uuidStrings) throws TransformationException {
 		try {
 			Map<String, Long> sctiDs = sctidFactory.getSCTIDs(uuidStrings, partitionId, ID_GEN_MODULE_ID_PARAM);
@@ -0,0 +1,91 @@
+package org.ihtsdo.buildcloud.core.service.build.transform;
+
+import org.ihtsdo.buildcloud.core.dao.BuildDAO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a {@link PersistentSctidCache} per namespace so that retries and later builds don't ask the id service again
+ * for UUIDs it has already resolved. Cache files are kept in srs.sctid-cache.directory and,
+ * when srs.sctid-cache.upload is enabled, copied to and from the build bucket so they survive the worker.
+ */
+@Service
+public class SctidCacheService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SctidCacheService.class);
+
+	private final Map<Integer, PersistentSctidCache> caches = new ConcurrentHashMap<>();
+
+	@Autowired
+	private BuildDAO dao;
+
+	@Value("${srs.sctid-cache.directory:}")
+	private String cacheDirectory;
+
+	@Value("${srs.sctid-cache.upload:false}")
+	private boolean upload;
+
+	public boolean isEnabled() {
+		return StringUtils.hasLength(cacheDirectory);
+	}
+
+	/**
+	 * @return the cache for the namespace, loading it on first use, or null if the cache is disabled or can't be loaded.
+	 */
+	public PersistentSctidCache getCache(final Integer namespaceId) {
+		if (!isEnabled()) {
+			return null;
+		}
+		return caches.computeIfAbsent(namespaceId, this::loadCache);
+	}
+
+	/**
+	 * Copies the namespace cache file to the build bucket when uploads are enabled.
+	 */
+	public void saveCache(final Integer namespaceId) {
+		final PersistentSctidCache cache = caches.get(namespaceId);
+		if (!upload || cache == null || !cache.getFile().isFile()) {
+			return;
+		}
+		try {
+			dao.putSctidCache(namespaceId, cache.getFile());
+			LOGGER.info("Uploaded SCTID cache for namespace {} with {} entries", namespaceId, cache.size());
+		} catch (IOException e) {
+			LOGGER.warn("Failed to upload SCTID cache for namespace {}", namespaceId, e);
+		}
+	}
+
+	private PersistentSctidCache loadCache(final Integer namespaceId) {
+		final File file = new File(cacheDirectory, namespaceId + ".bin");
+		try {
+			if (!file.isFile() && upload) {
+				downloadCache(namespaceId, file);
+			}
+			return PersistentSctidCache.load(file);
+		} catch (IOException e) {
+			LOGGER.warn("Failed to load SCTID cache for namespace {} from {}", namespaceId, file, e);
+			return null;
+		}
+	}
+
+	private void downloadCache(final Integer namespaceId, final File file) throws IOException {
+		try (InputStream inputStream = dao.getSctidCacheStream(namespaceId)) {
+			if (inputStream != null) {
+				file.getParentFile().mkdirs();
+				Files.copy(inputStream, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+}
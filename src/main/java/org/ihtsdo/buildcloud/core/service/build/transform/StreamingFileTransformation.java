@@ -7,8 +7,12 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.ihtsdo.buildcloud.core.entity.BuildReport;
 import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
@@ -23,6 +27,8 @@ public class StreamingFileTransformation {
 
 	private final int transformBufferSize;
 
+	private TransformationPlan plan;
+
 	public StreamingFileTransformation(int transformBufferSize) {
 		this.transformBufferSize = transformBufferSize;
 		transformations = new ArrayList<>();
@@ -37,31 +43,57 @@ public class StreamingFileTransformation {
 			LOGGER.info("Start: Transform file {} with buffer size {}", fileName, transformBufferSize);
 			// Iterate input lines
 			String line;
-			StringBuilder stringBuilder = new StringBuilder();
 			boolean firstLine = true;
 			int lineNumber = 0;
 			List<String[]> columnValuesList = new ArrayList<>();
-			while ((line = reader.readLine()) != null) {
-				lineNumber++;
-				if (firstLine) {
-					firstLine = false;
-					writer.write(line);
-					writer.write(RF2Constants.LINE_ENDING);
-				} else {
-
-					// Split column values
-					String[] columnValues = line.split(RF2Constants.COLUMN_SEPARATOR, -1);
-
-					columnValuesList.add(columnValues);
-
-					if (columnValuesList.size() == transformBufferSize) {
-						processLinesInBuffer(columnValuesList, writer, fileName, lineNumber, report, stringBuilder);
-						columnValuesList.clear();
+			final TransformationPlan plan = getPlan();
+			final int asyncIndex = plan.getAsyncIndex();
+			final int maxBatchesInFlight = asyncIndex < 0 ? 1 : plan.getAsyncTransformation().getMaxBatchesInFlight();
+			// Buffers waiting on an asynchronous transformation, oldest first
+			final Deque<PendingBatch> pendingBatches = new ArrayDeque<>();
+			try {
+				while ((line = reader.readLine()) != null) {
+					lineNumber++;
+					if (firstLine) {
+						firstLine = false;
+						writer.write(line);
+						writer.write(RF2Constants.LINE_ENDING);
+					} else {
+
+						// Split column values
+						String[] columnValues = line.split(RF2Constants.COLUMN_SEPARATOR, -1);
+
+						columnValuesList.add(columnValues);
+
+						if (columnValuesList.size() == transformBufferSize) {
+							if (asyncIndex < 0) {
+								processLinesInBuffer(plan, columnValuesList, writer, fileName, lineNumber, report);
+								columnValuesList.clear();
+							} else {
+								pendingBatches.add(startBatch(plan, columnValuesList, fileName, lineNumber, report));
+								columnValuesList = new ArrayList<>();
+								if (pendingBatches.size() >= maxBatchesInFlight) {
+									finishBatch(plan, pendingBatches.poll(), writer, fileName, report);
+								}
+							}
+						}
 					}
 				}
-			}
-			if (!columnValuesList.isEmpty()) {
-				processLinesInBuffer(columnValuesList, writer, fileName, lineNumber, report, stringBuilder);
+				if (!columnValuesList.isEmpty()) {
+					if (asyncIndex < 0) {
+						processLinesInBuffer(plan, columnValuesList, writer, fileName, lineNumber, report);
+					} else {
+						pendingBatches.add(startBatch(plan, columnValuesList, fileName, lineNumber, report));
+					}
+				}
+				// Write out the remaining batches in the order they were read
+				while (!pendingBatches.isEmpty()) {
+					finishBatch(plan, pendingBatches.poll(), writer, fileName, report);
+				}
+			} finally {
+				for (PendingBatch pendingBatch : pendingBatches) {
+					pendingBatch.future().cancel(true);
+				}
 			}
 			LOGGER.info("Finish: Transform file {}.", fileName);
 		} finally {
@@ -78,55 +110,71 @@ public class StreamingFileTransformation {
 		}
 	}
 
-	private void processLinesInBuffer(List<String[]> columnValuesList, BufferedWriter writer, String fileName, int lineNumberAtEndOfBatch, BuildReport report, StringBuilder stringBuilder) throws IOException {
-		int listSize = columnValuesList.size();
-
-		for (Transformation transformation : transformations) {
-			if (transformation instanceof BatchLineTransformation batchLineTransform) {
-				try {
-					batchLineTransform.transformLines(columnValuesList);
-				} catch (TransformationException e) {
-					int batchLineStart = lineNumberAtEndOfBatch - listSize;
-					LOGGER.warn("TransformationException while processing {}, lines in buffer {}-{} caused by: {}", fileName, batchLineStart, lineNumberAtEndOfBatch, e.getMessage(), e);
-					report.add("File Transformation", fileName, e.getMessage(), lineNumberAtEndOfBatch);
-				}
-			} else {
-				LineTransformation lineTransformation = (LineTransformation) transformation;
-				for (int a = 0; a < listSize; a++) {
-					String[] columnValues = columnValuesList.get(a);
-					try {
-						lineTransformation.transformLine(columnValues);
-					} catch (TransformationException e) {
-						int currentLineNumber = lineNumberAtEndOfBatch - listSize + a;
-						LOGGER.warn("TransformationException while processing {} at line {} caused by: {}", fileName, currentLineNumber, e.getMessage(), e);
-						report.add("File Transformation", fileName, e.getMessage(), lineNumberAtEndOfBatch);
-					}
-				}
-			}
+	private void processLinesInBuffer(TransformationPlan plan, List<String[]> columnValuesList, BufferedWriter writer, String fileName, int lineNumberAtEndOfBatch, BuildReport report) throws IOException {
+		plan.apply(columnValuesList, 0, plan.size(), fileName, lineNumberAtEndOfBatch, report);
+		writeLines(columnValuesList, writer);
+	}
+
+	/**
+	 * Applies the transformations before the asynchronous one and then starts the asynchronous one.
+	 */
+	private PendingBatch startBatch(TransformationPlan plan, List<String[]> columnValuesList, String fileName, int lineNumberAtEndOfBatch, BuildReport report) {
+		plan.apply(columnValuesList, 0, plan.getAsyncIndex(), fileName, lineNumberAtEndOfBatch, report);
+		return new PendingBatch(columnValuesList, lineNumberAtEndOfBatch, plan.getAsyncTransformation().transformLinesAsync(columnValuesList));
+	}
+
+	/**
+	 * Waits for the asynchronous transformation of a batch, then applies the remaining transformations and writes the lines.
+	 */
+	private void finishBatch(TransformationPlan plan, PendingBatch batch, BufferedWriter writer, String fileName, BuildReport report)
+			throws IOException, TransformationException {
+		try {
+			batch.future().get();
+		} catch (ExecutionException e) {
+			int batchLineStart = batch.lineNumberAtEndOfBatch() - batch.columnValuesList().size();
+			String message = e.getCause().getMessage();
+			LOGGER.warn("TransformationException while processing {}, lines in buffer {}-{} caused by: {}", fileName, batchLineStart, batch.lineNumberAtEndOfBatch(), message, e.getCause());
+			report.add("File Transformation", fileName, message, batch.lineNumberAtEndOfBatch());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TransformationException("Interrupted while transforming " + fileName, e);
 		}
+		plan.apply(batch.columnValuesList(), plan.getAsyncIndex() + 1, plan.size(), fileName, batch.lineNumberAtEndOfBatch(), report);
+		writeLines(batch.columnValuesList(), writer);
+	}
 
+	private void writeLines(List<String[]> columnValuesList, BufferedWriter writer) throws IOException {
 		for (String[] columnValues : columnValuesList) {
-			// Write transformed line to temp file
-			stringBuilder.setLength(0);// reuse StringBuilder
+			// Write the transformed values straight into the writer's buffer
 			for (int a = 0; a < columnValues.length; a++) {
 				if (a > 0) {
-					stringBuilder.append(RF2Constants.COLUMN_SEPARATOR);
+					writer.write(RF2Constants.COLUMN_SEPARATOR);
 				}
-				stringBuilder.append(columnValues[a]);
+				writer.write(columnValues[a]);
 			}
-			stringBuilder.append(RF2Constants.LINE_ENDING);
+			writer.write(RF2Constants.LINE_ENDING);
+		}
+	}
 
-			writer.write(stringBuilder.toString());
+	/**
+	 * @return the compiled plan of the transformations, compiled again after transformations are added.
+	 */
+	public synchronized TransformationPlan getPlan() {
+		if (plan == null) {
+			plan = TransformationPlan.compile(transformations);
 		}
+		return plan;
 	}
 
-	public StreamingFileTransformation addTransformation(final Transformation transformation) {
+	public synchronized StreamingFileTransformation addTransformation(final Transformation transformation) {
 		transformations.add(transformation);
+		plan = null;
 		return this;
 	}
 
-	public StreamingFileTransformation addTransformationToFrontOfList(final Transformation transformation) {
+	public synchronized StreamingFileTransformation addTransformationToFrontOfList(final Transformation transformation) {
 		transformations.add(0, transformation);
+		plan = null;
 		return this;
 	}
 
@@ -134,4 +182,7 @@ public class StreamingFileTransformation {
 		return transformations;
 	}
 
+	private record PendingBatch(List<String[]> columnValuesList, int lineNumberAtEndOfBatch, Future<?> future) {
+	}
+
 }
@@ -1,6 +1,8 @@
 package org.ihtsdo.buildcloud.core.service.build.transform;
 
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -15,9 +17,17 @@ import org.ihtsdo.snomed.util.rf2.schema.Field;
 import org.ihtsdo.snomed.util.rf2.schema.FileRecognitionException;
 import org.ihtsdo.snomed.util.rf2.schema.SchemaFactory;
 import org.ihtsdo.snomed.util.rf2.schema.TableSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Builds the transformations of each kind of file. The transformations are built and compiled once per kind of file
+ * and then shared by all the files of that kind in the build, they are built again after the settings are changed.
+ */
 public class TransformationFactory {
 
+	private static final Logger LOGGER = LoggerFactory.getLogger(TransformationFactory.class);
+
 	private final String effectiveTimeInSnomedFormat;
 	private final CachedSctidFactory cachedSctidFactory;
 	private final UUIDGenerator uuidGenerator;
@@ -28,6 +38,7 @@ public class TransformationFactory {
 	private Map<String, String> existingUuidToSctidMap;
 	private final String namespaceId;
 	private boolean replaceEffectiveTime;
+	private final Map<String, StreamingFileTransformation> compiledTransformations = new HashMap<>();
 	enum PARTITION_ID_TYPE {
 		CONCEPT,
 		DESCRIPTION,
@@ -45,36 +56,55 @@ public class TransformationFactory {
 		this.transformBufferSize = transformBufferSize;
 	}
 
-	public StreamingFileTransformation getPreProcessFileTransformation(final ComponentType componentType) throws NoSuchAlgorithmException {
-		if (componentType == ComponentType.CONCEPT) {
-			return getPreProcessConceptFileTransformation();
-		} else if (componentType == ComponentType.DESCRIPTION) {
-			return getPreProcessDescriptionFileTransformation();
-		} else if (componentType == ComponentType.RELATIONSHIP) {
-			// PreProcess transform is similar to transform using modified UUID (so it's
-			// different from inferred UUIDs) but not doing reconciliation
-			return getPreProcessStatedRelationshipFileTransformation();
-		} else {
-			return null;
+	public synchronized StreamingFileTransformation getPreProcessFileTransformation(final ComponentType componentType) throws NoSuchAlgorithmException {
+		final String key = "Pre-process " + componentType;
+		StreamingFileTransformation transformation = compiledTransformations.get(key);
+		if (transformation == null) {
+			if (componentType == ComponentType.CONCEPT) {
+				transformation = getPreProcessConceptFileTransformation();
+			} else if (componentType == ComponentType.DESCRIPTION) {
+				transformation = getPreProcessDescriptionFileTransformation();
+			} else if (componentType == ComponentType.RELATIONSHIP) {
+				// PreProcess transform is similar to transform using modified UUID (so it's
+				// different from inferred UUIDs) but not doing reconciliation
+				transformation = getPreProcessStatedRelationshipFileTransformation();
+			} else {
+				return null;
+			}
+			compile(key, transformation);
 		}
+		return transformation;
 	}
 
-	public StreamingFileTransformation getSteamingFileTransformation(final TableSchema tableSchema) throws FileRecognitionException, NoSuchAlgorithmException {
-		StreamingFileTransformation transformation = switch (tableSchema.getComponentType()) {
-            case CONCEPT -> getConceptFileTransformation();
-            case DESCRIPTION -> getDescriptionFileTransformation();
-            case TEXT_DEFINITION -> getTextDefinitionFileTransformation();
-            case STATED_RELATIONSHIP -> getStatedRelationshipFileTransformation();
-            case RELATIONSHIP, RELATIONSHIP_CONCRETE_VALUES -> getInferredRelationshipFileTransformation();
-            case IDENTIFIER -> getIdentifierFileTransformation();
-            case REFSET -> createRefsetTransformation(tableSchema);
-        };
+	public synchronized StreamingFileTransformation getSteamingFileTransformation(final TableSchema tableSchema) throws FileRecognitionException, NoSuchAlgorithmException {
+		final ComponentType componentType = tableSchema.getComponentType();
+		// Refsets only differ by their additional SCTID columns
+		final List<Integer> refsetSctidColumns = componentType == ComponentType.REFSET ? getRefsetSctidColumns(tableSchema) : null;
+		final String key = refsetSctidColumns != null ? componentType + " " + refsetSctidColumns : componentType.toString();
+		StreamingFileTransformation transformation = compiledTransformations.get(key);
+		if (transformation == null) {
+			transformation = switch (componentType) {
+				case CONCEPT -> getConceptFileTransformation();
+				case DESCRIPTION -> getDescriptionFileTransformation();
+				case TEXT_DEFINITION -> getTextDefinitionFileTransformation();
+				case STATED_RELATIONSHIP -> getStatedRelationshipFileTransformation();
+				case RELATIONSHIP, RELATIONSHIP_CONCRETE_VALUES -> getInferredRelationshipFileTransformation();
+				case IDENTIFIER -> getIdentifierFileTransformation();
+				case REFSET -> createRefsetTransformation(refsetSctidColumns);
+			};
+			compile(key, transformation);
+		}
+		return transformation;
+	}
 
-        return transformation;
+	private void compile(final String key, final StreamingFileTransformation transformation) {
+		LOGGER.info("Transformation plan for {} files: {}", key, transformation.getPlan());
+		compiledTransformations.put(key, transformation);
 	}
 
-	public void setReplaceEffectiveTime(boolean replaceEffectiveTime) {
+	public synchronized void setReplaceEffectiveTime(boolean replaceEffectiveTime) {
 		this.replaceEffectiveTime = replaceEffectiveTime;
+		compiledTransformations.clear();
 	}
 
 	public boolean isReplaceEffectiveTime() {
@@ -266,18 +296,26 @@ public class TransformationFactory {
 		return streamingFileTransformation;
 	}
 
-	private StreamingFileTransformation createRefsetTransformation(final TableSchema tableSchema) {
+	private StreamingFileTransformation createRefsetTransformation(final List<Integer> sctidColumns) {
 		final StreamingFileTransformation transformation = createSimpleRefsetTransformation();
 
 		// Add any additional transformations for extended refsets.
+		for (Integer column : sctidColumns) {
+			transformation.addTransformation(new SCTIDTransformationFromCache(column, cachedSctidFactory));
+		}
+		return transformation;
+	}
+
+	private List<Integer> getRefsetSctidColumns(final TableSchema tableSchema) {
+		final List<Integer> sctidColumns = new ArrayList<>();
 		final List<Field> fields = tableSchema.getFields();
 		for (int i = SchemaFactory.SIMPLE_REFSET_FIELD_COUNT; i < fields.size(); i++) {
 			final Field field = fields.get(i);
 			if (field.getType().equals(DataType.SCTID) || field.getType().equals(DataType.SCTID_OR_UUID)) {
-				transformation.addTransformation(new SCTIDTransformationFromCache(i, cachedSctidFactory));
+				sctidColumns.add(i);
 			}
 		}
-		return transformation;
+		return sctidColumns;
 	}
 
 	private StreamingFileTransformation createSimpleRefsetTransformation() {
@@ -312,16 +350,18 @@ public class TransformationFactory {
 		return new StreamingFileTransformation(transformBufferSize);
 	}
 
-	public void setModelConceptIdsForModuleIdFix(final Set<String> modelConceptIdsForModuleIdFix) {
+	public synchronized void setModelConceptIdsForModuleIdFix(final Set<String> modelConceptIdsForModuleIdFix) {
 		this.modelConceptIdsForModuleIdFix = modelConceptIdsForModuleIdFix;
+		compiledTransformations.clear();
 	}
 
 	public CachedSctidFactory getCachedSctidFactory() {
 		return cachedSctidFactory;
 	}
 
-	public void setExistingUuidToSctidMap(Map<String, String> existingUuidToSctidMap) {
+	public synchronized void setExistingUuidToSctidMap(Map<String, String> existingUuidToSctidMap) {
 		this.existingUuidToSctidMap = existingUuidToSctidMap;
+		compiledTransformations.clear();
 	}
 	
 	private String getPartionId(String namespaceId, PARTITION_ID_TYPE idType) {
@@ -0,0 +1,170 @@
+package org.ihtsdo.buildcloud.core.service.build.transform;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.ihtsdo.buildcloud.core.entity.BuildReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The transformations of a {@link StreamingFileTransformation} compiled into the passes made over each buffer of lines.
+ * Consecutive line transformations are fused into one pass which applies all of them to a line before moving on to the next,
+ * batch transformations still get the whole buffer in a pass of their own.
+ * Lines come out the same as applying each transformation to the whole buffer in turn, as line transformations only
+ * change the line they are given. A plan does not change once compiled and can be used by several files at the same time.
+ */
+public final class TransformationPlan {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TransformationPlan.class);
+
+	private static final String FILE_TRANSFORMATION = "File Transformation";
+
+	private final List<Pass> passes;
+
+	private final int asyncIndex;
+
+	private TransformationPlan(List<Pass> passes) {
+		this.passes = Collections.unmodifiableList(passes);
+		int index = -1;
+		for (int i = 0; i < passes.size(); i++) {
+			if (passes.get(i) instanceof BatchPass batchPass && batchPass.transformation instanceof AsyncBatchLineTransformation asyncTransformation
+					&& asyncTransformation.getMaxBatchesInFlight() > 1) {
+				index = i;
+				break;
+			}
+		}
+		asyncIndex = index;
+	}
+
+	public static TransformationPlan compile(List<Transformation> transformations) {
+		final List<Pass> passes = new ArrayList<>();
+		List<LineTransformation> lineTransformations = new ArrayList<>();
+		for (Transformation transformation : transformations) {
+			if (transformation instanceof BatchLineTransformation batchLineTransformation) {
+				if (!lineTransformations.isEmpty()) {
+					passes.add(new LinePass(lineTransformations));
+					lineTransformations = new ArrayList<>();
+				}
+				passes.add(new BatchPass(batchLineTransformation));
+			} else {
+				lineTransformations.add((LineTransformation) transformation);
+			}
+		}
+		if (!lineTransformations.isEmpty()) {
+			passes.add(new LinePass(lineTransformations));
+		}
+		return new TransformationPlan(passes);
+	}
+
+	/**
+	 * @return the number of passes made over each buffer of lines.
+	 */
+	public int size() {
+		return passes.size();
+	}
+
+	/**
+	 * @return the index of the first pass which can work on several buffers at the same time, or -1 if there is none.
+	 */
+	public int getAsyncIndex() {
+		return asyncIndex;
+	}
+
+	public AsyncBatchLineTransformation getAsyncTransformation() {
+		return asyncIndex < 0 ? null : (AsyncBatchLineTransformation) ((BatchPass) passes.get(asyncIndex)).transformation;
+	}
+
+	/**
+	 * Applies the passes from fromIndex up to toIndex to the buffer. Failures are logged and added to the report,
+	 * the other lines and transformations are still applied.
+	 */
+	public void apply(List<String[]> columnValuesList, int fromIndex, int toIndex, String fileName, int lineNumberAtEndOfBatch, BuildReport report) {
+		for (int i = fromIndex; i < toIndex; i++) {
+			passes.get(i).apply(columnValuesList, fileName, lineNumberAtEndOfBatch, report);
+		}
+	}
+
+	/**
+	 * @return the passes in order, for example "lines[UUIDTransformation(0), ReplaceValueLineTransformation(1)] -> batch[SCTIDTransformation]".
+	 */
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		for (Pass pass : passes) {
+			if (!builder.isEmpty()) {
+				builder.append(" -> ");
+			}
+			pass.describe(builder);
+		}
+		return builder.toString();
+	}
+
+	private interface Pass {
+
+		void apply(List<String[]> columnValuesList, String fileName, int lineNumberAtEndOfBatch, BuildReport report);
+
+		void describe(StringBuilder builder);
+	}
+
+	private static final class LinePass implements Pass {
+
+		private final LineTransformation[] transformations;
+
+		private LinePass(List<LineTransformation> transformations) {
+			this.transformations = transformations.toArray(new LineTransformation[0]);
+		}
+
+		@Override
+		public void apply(List<String[]> columnValuesList, String fileName, int lineNumberAtEndOfBatch, BuildReport report) {
+			final int listSize = columnValuesList.size();
+			for (int a = 0; a < listSize; a++) {
+				final String[] columnValues = columnValuesList.get(a);
+				for (LineTransformation transformation : transformations) {
+					try {
+						transformation.transformLine(columnValues);
+					} catch (TransformationException e) {
+						int currentLineNumber = lineNumberAtEndOfBatch - listSize + a;
+						LOGGER.warn("TransformationException while processing {} at line {} caused by: {}", fileName, currentLineNumber, e.getMessage(), e);
+						report.add(FILE_TRANSFORMATION, fileName, e.getMessage(), lineNumberAtEndOfBatch);
+					}
+				}
+			}
+		}
+
+		@Override
+		public void describe(StringBuilder builder) {
+			builder.append("lines[");
+			for (int i = 0; i < transformations.length; i++) {
+				if (i > 0) {
+					builder.append(", ");
+				}
+				builder.append(transformations[i].getClass().getSimpleName());
+				if (transformations[i].getColumnIndex() >= 0) {
+					builder.append('(').append(transformations[i].getColumnIndex()).append(')');
+				}
+			}
+			builder.append(']');
+		}
+	}
+
+	private record BatchPass(BatchLineTransformation transformation) implements Pass {
+
+		@Override
+		public void apply(List<String[]> columnValuesList, String fileName, int lineNumberAtEndOfBatch, BuildReport report) {
+			try {
+				transformation.transformLines(columnValuesList);
+			} catch (TransformationException e) {
+				int batchLineStart = lineNumberAtEndOfBatch - columnValuesList.size();
+				LOGGER.warn("TransformationException while processing {}, lines in buffer {}-{} caused by: {}", fileName, batchLineStart, lineNumberAtEndOfBatch, e.getMessage(), e);
+				report.add(FILE_TRANSFORMATION, fileName, e.getMessage(), lineNumberAtEndOfBatch);
+			}
+		}
+
+		@Override
+		public void describe(StringBuilder builder) {
+			builder.append("batch[").append(transformation.getClass().getSimpleName()).append(']');
+		}
+	}
+}
@@ -7,8 +7,10 @@ import org.ihtsdo.buildcloud.core.entity.BuildConfiguration;
 import org.ihtsdo.buildcloud.core.entity.BuildReport;
 import org.ihtsdo.buildcloud.core.entity.ExtensionConfig;
 import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
+import org.ihtsdo.buildcloud.core.service.build.RF2Record;
 import org.ihtsdo.buildcloud.core.service.build.ReleaseFileGenerationException;
 import org.ihtsdo.buildcloud.core.service.build.FileUtils;
+import org.ihtsdo.buildcloud.core.service.build.database.primitive.SortedLongSet;
 import org.ihtsdo.buildcloud.core.service.identifier.client.IdServiceRestClient;
 import org.ihtsdo.buildcloud.core.service.workbenchdatafix.ModuleResolverService;
 import org.ihtsdo.otf.rest.client.RestClientException;
@@ -33,6 +35,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 @Service
 public class TransformationService {
@@ -43,7 +46,13 @@ public class TransformationService {
 	
 	private static final String CONCEPT_DELTA = "sct2_Concept_Delta_INT";
 
-	private final ExecutorService executorService;
+	private static final String TRANSFORMATION_FAILURES = "File Transformation Failures";
+
+	private static final String PRE_PROCESSING_TIMINGS = "File Pre-processing Timings";
+
+	private static final String TRANSFORMATION_TIMINGS = "File Transformation Timings";
+
+	private static final String ID_SERVICE_REQUESTS = "Id Service Requests";
 
 	@Autowired
 	private IdServiceRestClient idRestClient;
@@ -60,18 +69,26 @@ public class TransformationService {
 	@Value("${srs.file-processing.transformBufferSize}")
 	private Integer transformBufferSize;
 
+	@Value("${srs.file-processing.transform-parallelism:4}")
+	private Integer transformParallelism;
+
+	@Value("${srs.file-processing.max-concurrent-uploads:4}")
+	private Integer maxConcurrentUploads;
+
 	@Value("${cis.maxTries}")
 	private Integer idGenMaxTries;
 
 	@Value("${cis.retryDelaySeconds}")
 	private Integer idGenRetryDelaySeconds;
 
+	@Value("${cis.maxRequestsInFlight:4}")
+	private Integer idGenMaxRequestsInFlight;
+
 	@Autowired
 	private LegacyIdTransformationService legacyIdTransformation;
-	
-	public TransformationService() {
-		executorService = Executors.newCachedThreadPool();
-	}
+
+	@Autowired
+	private SctidCacheService sctidCacheService;
 
 	/**
 	 * A streaming transformation of build input files, creating build output files.
@@ -146,10 +163,11 @@ public class TransformationService {
 
 			// Phase 1
 			// Process just the id and moduleId columns of any Concept and Description files.
-
-			for (final String inputFileName : buildInputFileNames) {
-				try{
-					LOGGER.info("Processing file: {}", inputFileName);
+			final ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, transformParallelism));
+			final Semaphore uploadPermits = new Semaphore(Math.max(1, maxConcurrentUploads));
+			try {
+				final Map<String, Runnable> preProcessTasks = new LinkedHashMap<>();
+				for (final String inputFileName : buildInputFileNames) {
 					final TableSchema tableSchema = inputFileSchemaMap.get(inputFileName);
 					if (tableSchema == null) {
 						LOGGER.warn("No table schema found in map for file: {}", inputFileName);
@@ -157,76 +175,99 @@ public class TransformationService {
 						checkFileHasGotMatchingEffectiveDate(inputFileName, effectiveDateInSnomedFormat);
 						final ComponentType componentType = tableSchema.getComponentType();
 						if (isPreProcessType(componentType)) {
-							final InputStream buildInputFileInputStream = dao.getInputFileStream(build, inputFileName);
-							final OutputStream transformedOutputStream = dao.getLocalTransformedFileOutputStream(build, inputFileName);
-
-							final StreamingFileTransformation steamingFileTransformation = transformationFactory.getPreProcessFileTransformation(componentType);
-
-							// Apply transformations
-							steamingFileTransformation.transformFile(buildInputFileInputStream, transformedOutputStream, inputFileName, report);
+							preProcessTasks.put(inputFileName, () -> {
+								final long start = System.currentTimeMillis();
+								try {
+									LOGGER.info("Processing file: {}", inputFileName);
+									final InputStream buildInputFileInputStream = dao.getInputFileStream(build, inputFileName);
+									final OutputStream transformedOutputStream = dao.getLocalTransformedFileOutputStream(build, inputFileName);
+
+									final StreamingFileTransformation steamingFileTransformation = transformationFactory.getPreProcessFileTransformation(componentType);
+
+									// Apply transformations
+									steamingFileTransformation.transformFile(buildInputFileInputStream, transformedOutputStream, inputFileName, report);
+								} catch (TransformationException | IOException | NoSuchAlgorithmException e) {
+									// Catch blocks just log and let the next file get processed.
+									LOGGER.error("Exception occurred when transforming file {}", inputFileName, e);
+									report.add(TRANSFORMATION_FAILURES, inputFileName, getFailureMessage(e), 0);
+								} finally {
+									report.addDetail(PRE_PROCESSING_TIMINGS, inputFileName, (System.currentTimeMillis() - start) + " ms");
+								}
+							});
 						}
 					}
-				} catch (TransformationException | IOException e) {
-					// Catch blocks just log and let the next file get processed.
-					LOGGER.error("Exception occurred when transforming file {}", inputFileName, e);
-				}
-			}
-			// Phase 2
-			// Process all files
-			final List<Future<?>> concurrentTasks = new ArrayList<>();
-			for (final String inputFileName : buildInputFileNames) {
-				// Transform all txt files
-				final TableSchema tableSchema = inputFileSchemaMap.get(inputFileName);
-				if (tableSchema != null) {
-					// Recognised RF2 file
-
-					checkFileHasGotMatchingEffectiveDate(inputFileName, effectiveDateInSnomedFormat);
-					final String outputFilename = isBeta ? BuildConfiguration.BETA_PREFIX + tableSchema.getFilename() : tableSchema.getFilename();
-					final Future<?> future = executorService.submit(() -> {
-                        try {
-                            InputStream buildInputFileInputStream;
-                            if (isPreProcessType(tableSchema.getComponentType())) {
-                                buildInputFileInputStream = dao.getLocalInputFileStream(build, inputFileName);
-                            } else {
-                                buildInputFileInputStream = dao.getInputFileStream(build, inputFileName);
-                            }
-                            final AsyncPipedStreamBean asyncPipedStreamBean = dao.getTransformedFileOutputStream(build, outputFilename);
-                            final OutputStream buildTransformedOutputStream = asyncPipedStreamBean.getOutputStream();
-
-                            // Get appropriate transformations for this file.
-                            final StreamingFileTransformation steamingFileTransformation = transformationFactory.getSteamingFileTransformation(tableSchema);
-
-                            // Get the report to output to
-                            // Apply transformations
-                            steamingFileTransformation.transformFile(buildInputFileInputStream, buildTransformedOutputStream,
-                                    outputFilename, report);
-
-                            // Wait for upload of transformed file to finish
-                            asyncPipedStreamBean.waitForFinish();
-                        } catch (final FileRecognitionException e) {
-                            LOGGER.error("Did not recognise input file '{}'.", inputFileName, e);
-                        } catch (TransformationException | IOException | NoSuchAlgorithmException e) {
-                            // Catch blocks just log and let the next file get processed.
-                            LOGGER.error("Exception occurred when transforming file {}", inputFileName, e);
-                        } catch (ExecutionException | InterruptedException e) {
-                            dao.renameTransformedFile(build, outputFilename, outputFilename.replace(RF2Constants.TXT_FILE_EXTENSION, ".error"), true);
-                            LOGGER.error("Exception occurred when uploading transformed file {}", inputFileName, e);
-                        }
-                    });
-					concurrentTasks.add(future);
-				} else {
-					// Not recognised as an RF2 file, copy across without transform
-					dao.copyInputFileToOutputFile(build, inputFileName);
 				}
+				// All concept and description ids must be known before the other files are transformed
+				transformConcurrently(executorService, preProcessTasks, report);
+
+				// Phase 2
+				// Process all files
+				final Map<String, Runnable> concurrentTasks = new LinkedHashMap<>();
+				for (final String inputFileName : buildInputFileNames) {
+					// Transform all txt files
+					final TableSchema tableSchema = inputFileSchemaMap.get(inputFileName);
+					if (tableSchema != null) {
+						// Recognised RF2 file
 
-				// Wait for all concurrent tasks to finish
-				for (final Future<?> concurrentTask : concurrentTasks) {
-					try {
-						concurrentTask.get();
-					} catch (ExecutionException | InterruptedException e) {
-						LOGGER.error("Thread interrupted while waiting for future result.", e);
+						checkFileHasGotMatchingEffectiveDate(inputFileName, effectiveDateInSnomedFormat);
+						final String outputFilename = isBeta ? BuildConfiguration.BETA_PREFIX + tableSchema.getFilename() : tableSchema.getFilename();
+						concurrentTasks.put(inputFileName, () -> {
+							final long start = System.currentTimeMillis();
+							boolean uploading = false;
+							try {
+								InputStream buildInputFileInputStream;
+								if (isPreProcessType(tableSchema.getComponentType())) {
+									buildInputFileInputStream = dao.getLocalInputFileStream(build, inputFileName);
+								} else {
+									buildInputFileInputStream = dao.getInputFileStream(build, inputFileName);
+								}
+								// Limit the number of transformed files being uploaded at the same time
+								uploadPermits.acquire();
+								uploading = true;
+								final AsyncPipedStreamBean asyncPipedStreamBean = dao.getTransformedFileOutputStream(build, outputFilename);
+								final OutputStream buildTransformedOutputStream = asyncPipedStreamBean.getOutputStream();
+
+								// Get appropriate transformations for this file.
+								final StreamingFileTransformation steamingFileTransformation = transformationFactory.getSteamingFileTransformation(tableSchema);
+
+								// Get the report to output to
+								// Apply transformations
+								steamingFileTransformation.transformFile(buildInputFileInputStream, buildTransformedOutputStream,
+										outputFilename, report);
+
+								// Wait for upload of transformed file to finish
+								asyncPipedStreamBean.waitForFinish();
+							} catch (final FileRecognitionException e) {
+								LOGGER.error("Did not recognise input file '{}'.", inputFileName, e);
+								report.add(TRANSFORMATION_FAILURES, inputFileName, getFailureMessage(e), 0);
+							} catch (TransformationException | IOException | NoSuchAlgorithmException e) {
+								// Catch blocks just log and let the next file get processed.
+								LOGGER.error("Exception occurred when transforming file {}", inputFileName, e);
+								report.add(TRANSFORMATION_FAILURES, inputFileName, getFailureMessage(e), 0);
+							} catch (ExecutionException | InterruptedException e) {
+								dao.renameTransformedFile(build, outputFilename, outputFilename.replace(RF2Constants.TXT_FILE_EXTENSION, ".error"), true);
+								LOGGER.error("Exception occurred when uploading transformed file {}", inputFileName, e);
+								report.add(TRANSFORMATION_FAILURES, inputFileName, getFailureMessage(e), 0);
+							} finally {
+								if (uploading) {
+									uploadPermits.release();
+								}
+								report.addDetail(TRANSFORMATION_TIMINGS, inputFileName, (System.currentTimeMillis() - start) + " ms");
+							}
+						});
+					} else {
+						// Not recognised as an RF2 file, copy across without transform
+						dao.copyInputFileToOutputFile(build, inputFileName);
 					}
 				}
+				transformConcurrently(executorService, concurrentTasks, report);
+			} finally {
+				executorService.shutdownNow();
+				final CachedSctidFactory cachedSctidFactory = transformationFactory.getCachedSctidFactory();
+				cachedSctidFactory.shutdown();
+				sctidCacheService.saveCache(cachedSctidFactory.getNamespaceId());
+				report.add(ID_SERVICE_REQUESTS, cachedSctidFactory.getRequestStatistics());
+				LOGGER.info("Id service requests for build {}: {}", build.getUniqueId(), cachedSctidFactory.getRequestStatistics());
 			}
 			// Add legacy ids for new concepts in the simple map file
 			List<String> transformedFileNames = getTransformedDeltaFiles(build);
@@ -252,6 +293,38 @@ public class TransformationService {
 		}
 	}
 
+	/**
+	 * Runs the transformation of each file on the executor and waits for all of them, in the order given.
+	 * A file which fails is added to the report and does not stop the other files.
+	 * If the wait is interrupted the files not yet transformed are cancelled.
+	 */
+	static void transformConcurrently(final ExecutorService executorService, final Map<String, Runnable> tasks, final BuildReport report)
+			throws BusinessServiceException {
+		final Map<String, Future<?>> futures = new LinkedHashMap<>();
+		for (final Map.Entry<String, Runnable> task : tasks.entrySet()) {
+			futures.put(task.getKey(), executorService.submit(task.getValue()));
+		}
+		for (final Map.Entry<String, Future<?>> future : futures.entrySet()) {
+			try {
+				future.getValue().get();
+			} catch (ExecutionException e) {
+				LOGGER.error("Exception occurred when transforming file {}", future.getKey(), e.getCause());
+				report.add(TRANSFORMATION_FAILURES, future.getKey(), getFailureMessage(e.getCause()), 0);
+			} catch (InterruptedException e) {
+				futures.values().forEach(remaining -> remaining.cancel(true));
+				Thread.currentThread().interrupt();
+				throw new BusinessServiceException("Interrupted while waiting for file " + future.getKey() + " to be transformed.", e);
+			}
+		}
+	}
+
+	/**
+	 * @return the exception message, or the exception type when it has no message, so the report never holds a null.
+	 */
+	static String getFailureMessage(final Throwable e) {
+		return e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+	}
+
 	private String getTransformedDeltaFileName( List<String> transformedFileNames, String partOfFileName) {
 		for (final String filename : transformedFileNames) {
 			if ( filename.contains(partOfFileName)) {
@@ -298,7 +371,7 @@ public class TransformationService {
 	
 	private Map<String, Collection<Long>> getNewConcepIds(final File previousReleaseDirectory, final Build build, final String conceptDelta) throws IOException {
 		//load previous concept snapshot 
-		Collection<Long> conceptsInPreviousSnapshot = new ArrayList<>();
+		SortedLongSet conceptsInPreviousSnapshot = SortedLongSet.empty();
 		if (!build.getConfiguration().isFirstTimeRelease()) {
 			String conceptSnapshot = conceptDelta.replace(RF2Constants.DELTA, RF2Constants.SNAPSHOT);
 			if (build.getConfiguration().isBetaRelease()) {
@@ -324,15 +397,14 @@ public class TransformationService {
 			BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, RF2Constants.UTF_8))) {
 				String line;
 				boolean firstLine = true;
+				final RF2Record record = new RF2Record();
 				while ((line = reader.readLine()) != null) {
 					if (firstLine) {
 						firstLine = false;
 					} else {
-						// Split column values
-						final String[] columnValues = line.split(RF2Constants.COLUMN_SEPARATOR, -1);
-						
-						Long conceptId = Long.valueOf(columnValues[0]);
-						String moduleId = columnValues[3];
+						record.reset(line);
+						long conceptId = record.getSctid();
+						String moduleId = record.get(3);
 						if (!conceptsInPreviousSnapshot.contains(conceptId)) {
 							if(moduleIdAndConceptMap.containsKey(moduleId)) {
 								moduleIdAndConceptMap.get(moduleId).add(conceptId);
@@ -349,22 +421,22 @@ public class TransformationService {
 			return moduleIdAndConceptMap;
 		}
 		
-	private Collection<Long> getIdsFromFile(InputStream inputStream) throws IOException {
-		Set<Long> result = new HashSet<>();
+	private SortedLongSet getIdsFromFile(InputStream inputStream) throws IOException {
+		// The ids are only looked up once loaded, so they are kept in a sorted array rather than a set of Longs
+		final SortedLongSet.Builder result = new SortedLongSet.Builder();
 		try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, RF2Constants.UTF_8))) {
 			String line;
 			boolean firstLine = true;
+			final RF2Record record = new RF2Record();
 			while ((line = reader.readLine()) != null) {
 				if (firstLine) {
 					firstLine = false;
 				} else {
-					// Split column values
-					final String[] columnValues = line.split(RF2Constants.COLUMN_SEPARATOR, -1);
-					result.add(Long.valueOf(columnValues[0]));
+					result.add(record.reset(line).getSctid());
 				}
 			}
 		}
-		return result;
+		return result.build();
 	}
 
 	public TransformationFactory getTransformationFactory(Build build) {
@@ -382,6 +454,8 @@ public class TransformationService {
 		}
 		LOGGER.info("NamespaceId:" + namespaceId +  " module id:" + moduleId);
 		final CachedSctidFactory cachedSctidFactory = new CachedSctidFactory(namespaceId, effectiveDateInSnomedFormat, build, dao, idRestClient, idGenMaxTries, idGenRetryDelaySeconds);
+		cachedSctidFactory.setMaxRequestsInFlight(idGenMaxRequestsInFlight);
+		cachedSctidFactory.setPersistentCache(sctidCacheService.getCache(namespaceId));
 		TransformationFactory transformationFactory = new TransformationFactory(Integer.toString(namespaceId),effectiveDateInSnomedFormat, cachedSctidFactory,
 				uuidGenerator, moduleId, RF2Constants.INTERNATIONAL_MODEL_COMPONENT_ID, transformBufferSize);
 		transformationFactory.setReplaceEffectiveTime(build.getConfiguration().isReplaceExistingEffectiveTime());
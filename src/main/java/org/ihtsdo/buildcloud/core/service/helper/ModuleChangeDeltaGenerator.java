@@ -0,0 +1,230 @@
+package org.ihtsdo.buildcloud.core.service.helper;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
+import org.ihtsdo.buildcloud.core.service.build.RF2Record;
+import org.ihtsdo.buildcloud.core.service.build.database.merge.ExternalRF2Sorter;
+import org.ihtsdo.buildcloud.core.service.build.database.merge.ExternalRF2Sorter.SortedRows;
+import org.ihtsdo.buildcloud.core.service.build.database.primitive.LongLongHashMap;
+
+/**
+ * Finds the components whose module has changed since the previous release, and writes delta rows moving the components
+ * which belong to them, such as their relationships, to the same module. Inputs are sorted by id on disk where needed and then
+ * merge joined, so memory use stays the same whatever the size of the edition.
+ * Works for any component type, as all RF2 files have the id, effectiveTime and moduleId in the same fields.
+ */
+public class ModuleChangeDeltaGenerator {
+
+	private static final int ID = 0;
+	private static final int ACTIVE = 2;
+	private static final int MODULE_ID = 3;
+
+	private final int maxLinesInMemory;
+
+	private final RF2Record record = new RF2Record();
+
+	public ModuleChangeDeltaGenerator() {
+		this(ExternalRF2Sorter.DEFAULT_MAX_LINES_PER_RUN);
+	}
+
+	/**
+	 * @param maxLinesInMemory number of lines of each input sorted in memory before sorting on disk.
+	 */
+	public ModuleChangeDeltaGenerator(final int maxLinesInMemory) {
+		this.maxLinesInMemory = maxLinesInMemory;
+	}
+
+	/**
+	 * Joins the current and previous snapshots of a component type by id. Components only in one of them are ignored.
+	 * @return the components whose module differs from the previous snapshot, with their current module, in order of id.
+	 */
+	public ModuleChanges findModuleChanges(final InputStream currentSnapshot, final InputStream previousSnapshot) throws IOException {
+		final SortedRows current = sort(currentSnapshot, ID);
+		try {
+			return new SnapshotModuleChanges(current, sort(previousSnapshot, ID));
+		} catch (IOException | RuntimeException e) {
+			current.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes the previous snapshot rows whose referencing field holds a component with a module change, moved to the new module
+	 * with the given effectiveTime. Rows with an id in the delta are left out, as the delta already has a newer version of them.
+	 * The module changes are closed once read.
+	 * @param referencingField the field holding the id of the component the rows belong to, such as the sourceId of relationships.
+	 */
+	public void writeModuleChangeDelta(final ModuleChanges moduleChanges, final InputStream previousSnapshot, final int referencingField,
+			final InputStream delta, final String effectiveTime, final File output) throws IOException {
+		try (moduleChanges;
+			 SortedRows previousRows = sort(previousSnapshot, referencingField);
+			 SortedRows deltaRows = sort(delta, ID);
+			 ExternalRF2Sorter movedRowSorter = new ExternalRF2Sorter(ID, maxLinesInMemory)) {
+			// Join the previous rows with the module changes, then sort the moved rows by id to join them with the delta
+			boolean hasChange = moduleChanges.next();
+			boolean hasRow = previousRows.next();
+			while (hasChange && hasRow) {
+				if (previousRows.getKey() < moduleChanges.getComponentId()) {
+					hasRow = previousRows.next();
+				} else if (previousRows.getKey() > moduleChanges.getComponentId()) {
+					hasChange = moduleChanges.next();
+				} else {
+					movedRowSorter.add(moveToModule(previousRows.getLine(), moduleChanges.getModuleId(), effectiveTime));
+					hasRow = previousRows.next();
+				}
+			}
+			try (SortedRows movedRows = movedRowSorter.sortedRows();
+				 BufferedWriter writer = Files.newBufferedWriter(output.toPath(), RF2Constants.UTF_8)) {
+				if (previousRows.getHeader() != null) {
+					writer.write(previousRows.getHeader());
+					writer.write(RF2Constants.LINE_ENDING);
+				}
+				boolean hasDeltaRow = deltaRows.next();
+				while (movedRows.next()) {
+					while (hasDeltaRow && deltaRows.getKey() < movedRows.getKey()) {
+						hasDeltaRow = deltaRows.next();
+					}
+					if (!hasDeltaRow || deltaRows.getKey() != movedRows.getKey()) {
+						writer.write(movedRows.getLine());
+						writer.write(RF2Constants.LINE_ENDING);
+					}
+				}
+			}
+		}
+	}
+
+	private SortedRows sort(final InputStream input, final int keyField) throws IOException {
+		final ExternalRF2Sorter sorter = new ExternalRF2Sorter(keyField, maxLinesInMemory);
+		try {
+			sorter.addFile(input);
+			return sorter.sortedRows();
+		} catch (IOException | RuntimeException e) {
+			sorter.close();
+			throw e;
+		}
+	}
+
+	private String moveToModule(final String line, final long moduleId, final String effectiveTime) {
+		// Only the effectiveTime and moduleId fields change, the fields after the moduleId are copied as they are
+		record.reset(line);
+		return record.get(ID) + RF2Constants.COLUMN_SEPARATOR + effectiveTime + RF2Constants.COLUMN_SEPARATOR + record.get(ACTIVE)
+				+ RF2Constants.COLUMN_SEPARATOR + moduleId + RF2Constants.COLUMN_SEPARATOR + record.getFrom(MODULE_ID + 1);
+	}
+
+	/**
+	 * Components with their new module, in order of component id.
+	 */
+	public interface ModuleChanges extends Closeable {
+
+		/**
+		 * Moves to the next component.
+		 * @return false after the last one.
+		 */
+		boolean next() throws IOException;
+
+		long getComponentId();
+
+		long getModuleId();
+
+		/**
+		 * @return the components of the map moved to the module they are mapped to.
+		 */
+		static ModuleChanges of(final LongLongHashMap componentToModuleIds) {
+			final long[] componentIds = new long[componentToModuleIds.size()];
+			final int[] count = new int[1];
+			componentToModuleIds.forEach((componentId, moduleId) -> componentIds[count[0]++] = componentId);
+			Arrays.sort(componentIds);
+			return new ModuleChanges() {
+
+				private int index = -1;
+
+				@Override
+				public boolean next() {
+					return ++index < componentIds.length;
+				}
+
+				@Override
+				public long getComponentId() {
+					return componentIds[index];
+				}
+
+				@Override
+				public long getModuleId() {
+					return componentToModuleIds.get(componentIds[index], 0);
+				}
+
+				@Override
+				public void close() {
+				}
+			};
+		}
+	}
+
+	private static final class SnapshotModuleChanges implements ModuleChanges {
+
+		private final SortedRows current;
+		private final SortedRows previous;
+		private final RF2Record record = new RF2Record();
+
+		private boolean hasCurrent;
+		private boolean hasPrevious;
+		private long componentId;
+		private long moduleId;
+
+		private SnapshotModuleChanges(final SortedRows current, final SortedRows previous) throws IOException {
+			this.current = current;
+			this.previous = previous;
+			hasCurrent = current.next();
+			hasPrevious = previous.next();
+		}
+
+		@Override
+		public boolean next() throws IOException {
+			while (hasCurrent && hasPrevious) {
+				if (current.getKey() < previous.getKey()) {
+					hasCurrent = current.next();
+				} else if (current.getKey() > previous.getKey()) {
+					hasPrevious = previous.next();
+				} else {
+					final long id = current.getKey();
+					final long currentModuleId = record.reset(current.getLine()).getLong(MODULE_ID);
+					final long previousModuleId = record.reset(previous.getLine()).getLong(MODULE_ID);
+					hasCurrent = current.next();
+					hasPrevious = previous.next();
+					if (currentModuleId != previousModuleId) {
+						componentId = id;
+						moduleId = currentModuleId;
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public long getComponentId() {
+			return componentId;
+		}
+
+		@Override
+		public long getModuleId() {
+			return moduleId;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				current.close();
+			} finally {
+				previous.close();
+			}
+		}
+	}
+}
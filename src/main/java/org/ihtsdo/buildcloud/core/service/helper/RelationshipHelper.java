@@ -1,32 +1,37 @@
 package org.ihtsdo.buildcloud.core.service.helper;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.security.NoSuchAlgorithmException;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
 
 import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
+import org.ihtsdo.buildcloud.core.service.build.RF2Record;
+import org.ihtsdo.buildcloud.core.service.build.database.primitive.LongLongHashMap;
+import org.ihtsdo.buildcloud.core.service.build.database.primitive.UuidLongHashMap;
 import org.ihtsdo.buildcloud.core.service.build.transform.RepeatableRelationshipUUIDTransform;
 import org.ihtsdo.otf.rest.exception.ProcessingException;
 
 import com.google.common.io.Files;
 
 public class RelationshipHelper {
-	
-	public static Map<String, String> buildUuidSctidMapFromPreviousRelationshipFile(String previousRelationshipFilePath,
+
+	// RF2 Relationship fields:
+	// id effectiveTime active moduleId sourceId destinationId relationshipGroup typeId characteristicTypeId modifierId
+	private static final int MODULE_ID = 3;
+	private static final int SOURCE_ID = 4;
+
+	/**
+	 * @return map of the repeatable UUID of each relationship in the previous file to its SCTID.
+	 */
+	public static UuidLongHashMap buildUuidSctidMapFromPreviousRelationshipFile(String previousRelationshipFilePath,
 			RF2Constants.RelationshipFileType relFileType)
 			throws ProcessingException {
 		try {
-			Map<String, String> uuidSctidMap = new HashMap<>();
+			UuidLongHashMap uuidSctidMap = new UuidLongHashMap();
 			RepeatableRelationshipUUIDTransform relationshipUUIDTransform = new RepeatableRelationshipUUIDTransform(relFileType);
 			try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(previousRelationshipFilePath)))) {
 				String line;
@@ -34,7 +39,7 @@ public class RelationshipHelper {
 				reader.readLine(); // Discard header
 				while ((line = reader.readLine()) != null) {
 					columnValues = line.split(RF2Constants.COLUMN_SEPARATOR, -1);
-					uuidSctidMap.put(relationshipUUIDTransform.getCalculatedUuidFromRelationshipValues(columnValues), columnValues[0]);
+					uuidSctidMap.put(relationshipUUIDTransform.getCalculatedUuid(columnValues), Long.parseLong(columnValues[0]));
 				}
 			}
 			return uuidSctidMap;
@@ -46,64 +51,65 @@ public class RelationshipHelper {
 		}
 	}
 
-	public static Map<String, String> buildConceptToModuleIdMap(InputStream conceptSnapshotStream) throws IOException {
-		Map<String, String> conceptToModuleIdMap = new HashMap<>();
+	public static LongLongHashMap buildConceptToModuleIdMap(InputStream conceptSnapshotStream) throws IOException {
+		LongLongHashMap conceptToModuleIdMap = new LongLongHashMap();
 		if (conceptSnapshotStream != null) {
 			try (BufferedReader reader = new BufferedReader( new InputStreamReader(conceptSnapshotStream, RF2Constants.UTF_8))) {
 				//skip header
 				String line = reader.readLine();
+				final RF2Record record = new RF2Record();
 				while ((line = reader.readLine()) != null) {
-					String[] splits = line.split(RF2Constants.COLUMN_SEPARATOR);
-					conceptToModuleIdMap.put(splits[0], splits[3]);
+					record.reset(line);
+					conceptToModuleIdMap.put(record.getSctid(), record.getLong(MODULE_ID));
 				}
 			}
 		} 
 		return conceptToModuleIdMap;
 	}
 	
-	public static Map<String, String> getConceptsWithModuleChange(InputStream previousSnapshotStream, Map<String, String> conceptToModuleIdMap) throws IOException {
-		Map<String, String> result = new HashMap<>();
+	public static LongLongHashMap getConceptsWithModuleChange(InputStream previousSnapshotStream, LongLongHashMap conceptToModuleIdMap) throws IOException {
+		LongLongHashMap result = new LongLongHashMap();
 		try (BufferedReader reader = new BufferedReader(new InputStreamReader(previousSnapshotStream, RF2Constants.UTF_8))) {
 			String line = reader.readLine();
+			final RF2Record record = new RF2Record();
 			while ((line = reader.readLine()) != null) {
-				String[] splits = line.split(RF2Constants.COLUMN_SEPARATOR);
-				if (conceptToModuleIdMap.containsKey(splits[0]) && !splits[3].equals(conceptToModuleIdMap.get(splits[0]))) {
-					result.put(splits[0], conceptToModuleIdMap.get(splits[0]));
+				record.reset(line);
+				final long conceptId = record.getSctid();
+				if (conceptToModuleIdMap.containsKey(conceptId)) {
+					final long moduleId = conceptToModuleIdMap.get(conceptId, 0);
+					if (record.getLong(MODULE_ID) != moduleId) {
+						result.put(conceptId, moduleId);
+					}
 				}
 			}
 		}
 		return result;
 	}
 	
-	public static File generateRelationshipDeltaDueToModuleIdChange(Map<String, String> conceptToModuleMap, InputStream inferredDeltaStream,
+	/**
+	 * Writes the relationships of the previous snapshot whose source concept is in the map, moved to the concept's module,
+	 * leaving out those in the inferred delta.
+	 */
+	public static File generateRelationshipDeltaDueToModuleIdChange(LongLongHashMap conceptToModuleMap, InputStream inferredDeltaStream,
+			InputStream previousSnapshotInput, String effectiveTime) throws IOException {
+		return generateRelationshipDeltaDueToModuleIdChange(ModuleChangeDeltaGenerator.ModuleChanges.of(conceptToModuleMap), inferredDeltaStream,
+				previousSnapshotInput, effectiveTime);
+	}
+
+	/**
+	 * Writes the relationships of the previous snapshot whose source concept has changed module since the previous concept snapshot,
+	 * moved to the concept's module, leaving out those in the inferred delta. The files are merge joined rather than loaded into maps.
+	 */
+	public static File generateRelationshipDeltaDueToModuleIdChange(InputStream conceptSnapshotStream, InputStream previousConceptSnapshotStream,
+			InputStream inferredDeltaStream, InputStream previousSnapshotInput, String effectiveTime) throws IOException {
+		ModuleChangeDeltaGenerator.ModuleChanges moduleChanges = new ModuleChangeDeltaGenerator().findModuleChanges(conceptSnapshotStream, previousConceptSnapshotStream);
+		return generateRelationshipDeltaDueToModuleIdChange(moduleChanges, inferredDeltaStream, previousSnapshotInput, effectiveTime);
+	}
+
+	private static File generateRelationshipDeltaDueToModuleIdChange(ModuleChangeDeltaGenerator.ModuleChanges moduleChanges, InputStream inferredDeltaStream,
 			InputStream previousSnapshotInput, String effectiveTime) throws IOException {
-		//load the relationship id from the delta into map
-		Set<String> deltaRelationshipIds = new HashSet<>();
-		try (BufferedReader reader = new BufferedReader(new InputStreamReader(inferredDeltaStream, RF2Constants.UTF_8))) {
-			//skip header
-			String line = reader.readLine();
-			while ((line = reader.readLine()) != null) {
-				String[] splits = line.split(RF2Constants.COLUMN_SEPARATOR);
-				deltaRelationshipIds.add(splits[0]);
-			}
-		}
-		//read previous published inferred file and check for concept
 		File extraInferredDelta = new File(Files.createTempDir(), "sct2_Relationship_Delta_Module_Change_Only.txt");
-		try (BufferedReader reader = new BufferedReader(new InputStreamReader(previousSnapshotInput, RF2Constants.UTF_8));
-		     BufferedWriter writer = new BufferedWriter(new FileWriter(extraInferredDelta))) {
-			String line = reader.readLine();
-			writer.write(line);
-			writer.write(RF2Constants.LINE_ENDING);
-			while ((line = reader.readLine()) != null) {
-				String[] splits = line.split(RF2Constants.COLUMN_SEPARATOR);
-				if (conceptToModuleMap.containsKey(splits[4]) && !deltaRelationshipIds.contains(splits[0])) {
-					line = line.replace(splits[3], conceptToModuleMap.get(splits[4]))
-							.replace(splits[1], effectiveTime);
-					writer.write(line);
-					writer.write(RF2Constants.LINE_ENDING);
-				}
-			}
-		}
+		new ModuleChangeDeltaGenerator().writeModuleChangeDelta(moduleChanges, previousSnapshotInput, SOURCE_ID, inferredDeltaStream, effectiveTime, extraInferredDelta);
 		return extraInferredDelta;
 	}
 }
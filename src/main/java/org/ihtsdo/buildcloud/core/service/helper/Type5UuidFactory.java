@@ -1,8 +1,8 @@
 package org.ihtsdo.buildcloud.core.service.helper;
 
-import java.io.UnsupportedEncodingException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.UUID;
 
 /*
@@ -20,26 +20,116 @@ import java.util.UUID;
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
+/**
+ * Makes name based (version 5) UUIDs. Each thread hashes with a SHA-1 digest of its own so that threads do not wait for each other,
+ * and names are encoded straight into a reused buffer giving the same bytes as String.getBytes with ISO-8859-1.
+ */
 public class Type5UuidFactory {
 
 	public static final String encoding = "8859_1";
 	public static final String SHA_1 = "SHA-1";
 
-	private final MessageDigest sha1Algorithm;
+	private static final byte UNMAPPABLE = '?';
+
+	private static final String NULL_STRING = "null";
+
+	private final ThreadLocal<Digester> digesters;
 
 	public Type5UuidFactory() throws NoSuchAlgorithmException {
-		sha1Algorithm = MessageDigest.getInstance(SHA_1);
+		// Fail now rather than in the first thread to use the factory
+		MessageDigest.getInstance(SHA_1);
+		digesters = ThreadLocal.withInitial(Digester::new);
+	}
+
+	public UUID get(UUID namespace, String name) {
+		return digesters.get().digest(namespace, name);
 	}
 
-	public synchronized UUID get(UUID namespace, String name) throws UnsupportedEncodingException {
-		// Generate the digest.
-		sha1Algorithm.reset();
-		if (namespace != null) {
-			sha1Algorithm.update(getRawBytes(namespace));
+	public UUID get(String name) {
+		return get(null, name);
+	}
+
+	/**
+	 * @return the UUID of the parts joined together, as StringBuilder.append would join them, so null parts are hashed as "null".
+	 */
+	public UUID get(CharSequence... nameParts) {
+		return digesters.get().digest(null, nameParts);
+	}
+
+	private static final class Digester {
+
+		private final MessageDigest sha1Algorithm;
+
+		private byte[] buffer = new byte[128];
+
+		private UUID namespace;
+
+		// The digest state after hashing the namespace, cloned for each name in that namespace
+		private MessageDigest namespaceDigest;
+
+		private Digester() {
+			try {
+				sha1Algorithm = MessageDigest.getInstance(SHA_1);
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(SHA_1 + " is not available.", e);
+			}
+		}
+
+		private UUID digest(UUID namespace, CharSequence... nameParts) {
+			int length = 0;
+			for (CharSequence part : nameParts) {
+				length = encode(part == null ? NULL_STRING : part, length);
+			}
+			final MessageDigest digest = startDigest(namespace);
+			digest.update(buffer, 0, length);
+			return toUuid(digest.digest());
+		}
+
+		private MessageDigest startDigest(UUID namespace) {
+			if (namespace == null) {
+				sha1Algorithm.reset();
+				return sha1Algorithm;
+			}
+			try {
+				if (!namespace.equals(this.namespace)) {
+					sha1Algorithm.reset();
+					sha1Algorithm.update(getRawBytes(namespace));
+					namespaceDigest = (MessageDigest) sha1Algorithm.clone();
+					this.namespace = namespace;
+				}
+				return (MessageDigest) namespaceDigest.clone();
+			} catch (CloneNotSupportedException e) {
+				throw new IllegalStateException(SHA_1 + " digest can not be cloned.", e);
+			}
 		}
-		sha1Algorithm.update(name.getBytes(encoding));
-		byte[] sha1digest = sha1Algorithm.digest();
 
+		/**
+		 * Encodes the characters as ISO-8859-1 after those already in the buffer, with '?' for each code point which is not in it.
+		 * @return the length of the encoded bytes in the buffer.
+		 */
+		private int encode(CharSequence chars, int offset) {
+			final int charCount = chars.length();
+			if (buffer.length < offset + charCount) {
+				buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, offset + charCount));
+			}
+			int position = offset;
+			for (int i = 0; i < charCount; i++) {
+				final char c = chars.charAt(i);
+				if (c <= 0xFF) {
+					buffer[position++] = (byte) c;
+				} else {
+					// A surrogate pair is one character which is replaced once
+					if (Character.isHighSurrogate(c) && i + 1 < charCount && Character.isLowSurrogate(chars.charAt(i + 1))) {
+						i++;
+					}
+					buffer[position++] = UNMAPPABLE;
+				}
+			}
+			return position;
+		}
+	}
+
+	private static UUID toUuid(byte[] sha1digest) {
 		sha1digest[6] &= 0x0f; /* clear version */
 		sha1digest[6] |= 0x50; /* set to version 5 */
 		sha1digest[8] &= 0x3f; /* clear variant */
@@ -57,10 +147,6 @@ public class Type5UuidFactory {
 		return new UUID(msb, lsb);
 	}
 
-	public UUID get(String name) throws UnsupportedEncodingException {
-		return get(null, name);
-	}
-
 	/**
 	 * This routine adapted from org.safehaus.uuid.UUID,
 	 * which is licensed under Apache 2.
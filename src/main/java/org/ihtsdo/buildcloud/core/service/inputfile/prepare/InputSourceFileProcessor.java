@@ -1,10 +1,13 @@
 package org.ihtsdo.buildcloud.core.service.inputfile.prepare;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.text.Normalizer;
@@ -15,9 +18,15 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import org.apache.commons.io.FileUtils;
@@ -25,6 +34,7 @@ import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.CharEncoding;
 import org.ihtsdo.buildcloud.core.dao.helper.S3PathHelper;
 import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
+import org.ihtsdo.buildcloud.core.service.build.RF2Record;
 import org.ihtsdo.buildcloud.core.service.helper.ManifestXmlFileParser;
 import org.ihtsdo.buildcloud.core.manifest.FieldType;
 import org.ihtsdo.buildcloud.core.manifest.FileType;
@@ -53,6 +63,12 @@ public class InputSourceFileProcessor {
 
 	private static final String UNPROCESSABLE_MSG = "Can't be processed as the %s appears in multiple sources and no source is configured in the manifest.xml.";
 
+	private static final String SKIPPED_LINES_MSG = "Skipped %d lines with fewer columns than expected, the first being line %d.";
+
+	private static final String STAGING_DIR = "staging";
+
+	private static final String STAGED_LINES_DIR = "lines";
+
 	private final Logger logger = LoggerFactory.getLogger(InputSourceFileProcessor.class);
 
 	private static final String HEADER_CONCEPT = "id\teffectiveTime\tactive\tmoduleId\tdefinitionStatusId";
@@ -94,6 +110,9 @@ public class InputSourceFileProcessor {
 	private final SourceFileProcessingReport fileProcessingReport;
 	private final Map<String, Set<String>> skippedSourceFiles;
 	private final MultiValueMap<String, String> fileOrKeyWithMultipleSources;
+	//the source file each refset id is taken from, and the source each language code is taken from, when no source is configured, found as sources are merged
+	private final Map<String, String> refsetOwnerFiles;
+	private final Map<String, String> languageOwnerSources;
 	//processing instructions from the manifest.xml
 	private final Map<String, FileProcessingConfig> commonFileProcessingConfigs;
 	private final Map<String, FileProcessingConfig> refsetFileProcessingConfigs;
@@ -101,6 +120,7 @@ public class InputSourceFileProcessor {
 	private final Map<String, FileProcessingConfig> textDefinitionFileProcessingConfigs;
 	private final MultiValueMap<String, String> filesToCopyFromSource;
 	private final MultiValueMap<String, String> refsetWithAdditionalFields;
+	private int parallelism = 1;
 
 	public InputSourceFileProcessor(FileHelper fileHelper, S3PathHelper s3PathHelper, String releaseCenterKey, String productKey, boolean copyFilesDefinedInManifest) {
 		this.fileHelper = fileHelper;
@@ -119,6 +139,8 @@ public class InputSourceFileProcessor {
 		this.refsetWithAdditionalFields = new LinkedMultiValueMap<>();
 		this.fileProcessingReport = new SourceFileProcessingReport();
 		this.fileOrKeyWithMultipleSources = new LinkedMultiValueMap<>();
+		this.refsetOwnerFiles = new HashMap<>();
+		this.languageOwnerSources = new HashMap<>();
 	}
 
 	public SourceFileProcessingReport processFiles(InputStream manifestInputStream, List<String> sourceFileLists, String buildId, Integer fileProcessingFailureMaxRetry) throws BusinessServiceException {
@@ -152,6 +174,13 @@ public class InputSourceFileProcessor {
 	}
 
 
+	/**
+	 * Sets the max number of source files downloaded, and of sources prepared, at the same time.
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
 	public SourceFileProcessingReport getFileProcessingReport() {
 		return fileProcessingReport;
 	}
@@ -231,63 +260,33 @@ public class InputSourceFileProcessor {
 
 	private File copySourceFilesToLocal(List <String> sourceFileLists, String buildId, Integer fileProcessingFailureMaxRetry) throws IOException{
 		String storageRoot = s3PathHelper.resolveContentStorageRoot(releaseCenterKey, productKey, buildId, fileHelper::exists);
-		for (String sourceFilePath : sourceFileLists) {
-			if (sourceFilePath.trim().isEmpty()) {
-				// S3 creates zero byte file when copying files from other bucket.
-				continue;
-			}
-			//Copy files from S3 to local for processing
-			String s3FilePath = s3PathHelper.getBuildSourcesPath(releaseCenterKey, productKey, buildId, storageRoot).append(sourceFilePath).toString();
-			InputStream sourceFileStream = null;
-			try {
-				sourceFileStream = fileHelper.getFileStream(s3FilePath);
-				if (sourceFileStream == null && fileProcessingFailureMaxRetry != null) {
-					int attempt = 1;
-					do {
-						logger.warn("Failed to download file {} from S3 on attempt {}. Waiting {} seconds before retrying.", s3FilePath, attempt, 10);
-						try {
-							Thread.sleep(10000);
-						} catch (InterruptedException e) {
-							logger.warn("Retry delay interrupted.",e);
-						}
-						sourceFileStream = fileHelper.getFileStream(s3FilePath);
-						attempt++;
-					}
-					while (sourceFileStream == null && attempt < fileProcessingFailureMaxRetry + 1);
-				}
-				if (sourceFileStream == null) {
-					fileProcessingReport.add(ReportType.ERROR, String.format("Source file not found in S3 %s", s3FilePath));
-					logger.error(String.format("Source file not found in S3 %s", s3FilePath));
+		List<Future<DownloadedSourceFile>> downloads = new ArrayList<>();
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+		try {
+			for (String sourceFilePath : sourceFileLists) {
+				if (sourceFilePath.trim().isEmpty()) {
+					// S3 creates zero byte file when copying files from other bucket.
 					continue;
 				}
-				String sourceName = sourceFilePath;
-				if (sourceFilePath.contains("/")) {
-					sourceName = sourceFilePath.substring(0, sourceFilePath.indexOf("/"));
+				downloads.add(executor.submit(() -> downloadSourceFile(sourceFilePath, buildId, storageRoot, fileProcessingFailureMaxRetry)));
+			}
+			// Record the files in the order listed so that the processing order doesn't depend on download times
+			for (DownloadedSourceFile downloaded : waitForAll(downloads)) {
+				if (downloaded == null) {
+					continue;
 				}
 				//Keep track of the sources directories that are used
-				availableSources.add(sourceName);
-				File sourceDir = new File(localDir, sourceName);
-				if (!sourceDir.exists()) {
-					sourceDir.mkdir();
-				}
-				String fileName = FilenameUtils.getName(sourceFilePath);
-				fileName = fileName.startsWith(RF2Constants.BETA_RELEASE_PREFIX) ? fileName.substring(1) : fileName;
-				File outFile = new File(localDir + "/" + sourceName, fileName);
-				FileUtils.copyInputStreamToFile(sourceFileStream, outFile);
-				logger.info("Successfully created temp source file {}", outFile.getAbsolutePath());
-				if (!sourceFilesMap.containsKey(sourceName)) {
-					sourceFilesMap.put(sourceName, new ArrayList<>());
-				}
-				sourceFilesMap.get(sourceName).add(outFile.getAbsolutePath());
-				fileOrKeyWithMultipleSources.add(fileName, sourceName);
-			} catch (IOException e) {
-				String errorMsg = String.format("Failed to copy source file %s to local disk", sourceFilePath);
-				fileProcessingReport.add(ReportType.ERROR, errorMsg);
-			} finally {
-				if (sourceFileStream != null) {
-					sourceFileStream.close();
+				availableSources.add(downloaded.sourceName());
+				if (downloaded.file() != null) {
+					if (!sourceFilesMap.containsKey(downloaded.sourceName())) {
+						sourceFilesMap.put(downloaded.sourceName(), new ArrayList<>());
+					}
+					sourceFilesMap.get(downloaded.sourceName()).add(downloaded.file().getAbsolutePath());
+					fileOrKeyWithMultipleSources.add(downloaded.file().getName(), downloaded.sourceName());
 				}
 			}
+		} finally {
+			executor.shutdownNow();
 		}
 		for (String sourceName : sourceFilesMap.keySet()) {
 			fileProcessingReport.addSoureFiles(sourceName, sourceFilesMap.get(sourceName));
@@ -295,6 +294,57 @@ public class InputSourceFileProcessor {
 		return localDir;
 	}
 
+	/**
+	 * @return the source and local copy of the file, with no local copy if the copy failed, or null if the file was not found.
+	 */
+	private DownloadedSourceFile downloadSourceFile(String sourceFilePath, String buildId, String storageRoot, Integer fileProcessingFailureMaxRetry) throws IOException {
+		//Copy files from S3 to local for processing
+		String s3FilePath = s3PathHelper.getBuildSourcesPath(releaseCenterKey, productKey, buildId, storageRoot).append(sourceFilePath).toString();
+		InputStream sourceFileStream = null;
+		try {
+			sourceFileStream = fileHelper.getFileStream(s3FilePath);
+			if (sourceFileStream == null && fileProcessingFailureMaxRetry != null) {
+				int attempt = 1;
+				do {
+					logger.warn("Failed to download file {} from S3 on attempt {}. Waiting {} seconds before retrying.", s3FilePath, attempt, 10);
+					try {
+						Thread.sleep(10000);
+					} catch (InterruptedException e) {
+						logger.warn("Retry delay interrupted.",e);
+					}
+					sourceFileStream = fileHelper.getFileStream(s3FilePath);
+					attempt++;
+				}
+				while (sourceFileStream == null && attempt < fileProcessingFailureMaxRetry + 1);
+			}
+			if (sourceFileStream == null) {
+				fileProcessingReport.add(ReportType.ERROR, String.format("Source file not found in S3 %s", s3FilePath));
+				logger.error(String.format("Source file not found in S3 %s", s3FilePath));
+				return null;
+			}
+			String sourceName = sourceFilePath;
+			if (sourceFilePath.contains("/")) {
+				sourceName = sourceFilePath.substring(0, sourceFilePath.indexOf("/"));
+			}
+			String fileName = FilenameUtils.getName(sourceFilePath);
+			fileName = fileName.startsWith(RF2Constants.BETA_RELEASE_PREFIX) ? fileName.substring(1) : fileName;
+			File outFile = new File(localDir + "/" + sourceName, fileName);
+			try {
+				FileUtils.copyInputStreamToFile(sourceFileStream, outFile);
+			} catch (IOException e) {
+				String errorMsg = String.format("Failed to copy source file %s to local disk", sourceFilePath);
+				fileProcessingReport.add(ReportType.ERROR, errorMsg);
+				return new DownloadedSourceFile(sourceName, null);
+			}
+			logger.info("Successfully created temp source file {}", outFile.getAbsolutePath());
+			return new DownloadedSourceFile(sourceName, outFile);
+		} finally {
+			if (sourceFileStream != null) {
+				sourceFileStream.close();
+			}
+		}
+	}
+
 	void loadFileProcessConfigsFromManifest(InputStream manifestStream) {
 		if (manifestStream == null) {
 			fileProcessingReport.add(ReportType.ERROR, "Failed to load manifest");
@@ -449,10 +499,48 @@ public class InputSourceFileProcessor {
 		return filename.replace("_Snapshot", "_Delta").replace("Snapshot_", "Delta_").replace("Snapshot-", "Delta-");
 	}
 
-	private void prepareSourceFiles() {
-		List<FileProcessingReportDetail> fileProcessingReportDetails = new ArrayList<>();
-		for (String source : sourceFilesMap.keySet()) {
-			List<String> fileList = sourceFilesMap.get(source);
+	private void prepareSourceFiles() throws IOException {
+		// Sources are merged, and keys appearing in more than one source are given to the first, in name order whatever order they finish in
+		List<String> sources = new ArrayList<>(new TreeSet<>(sourceFilesMap.keySet()));
+		List<LanguageRule> descriptionRules = compileLanguageRules(descriptionFileProcessingConfigs);
+		List<LanguageRule> textDefinitionRules = compileLanguageRules(textDefinitionFileProcessingConfigs);
+		File stagingRoot = java.nio.file.Files.createTempDirectory(localDir.toPath(), STAGING_DIR).toFile();
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+		try {
+			List<Future<PreparedSource>> tasks = new ArrayList<>();
+			for (int i = 0; i < sources.size(); i++) {
+				String source = sources.get(i);
+				File stagingDir = new File(stagingRoot, Integer.toString(i));
+				tasks.add(executor.submit(() -> prepareSourceFiles(source, sourceFilesMap.get(source), stagingDir, descriptionRules, textDefinitionRules)));
+			}
+			for (PreparedSource preparedSource : waitForAll(tasks)) {
+				PreparedFileWriters.appendTo(preparedSource.stagingDir(), outDir);
+				fileProcessingReport.addReportDetails(preparedSource.reportDetails());
+				for (UnassignedKeyLines keyLines : preparedSource.unassignedKeyLines()) {
+					if (keyLines.isFirst()) {
+						PreparedFileWriters.appendTo(keyLines.stagingDir, outDir);
+						fileProcessingReport.addReportDetails(keyLines.firstReportDetails);
+					} else {
+						fileProcessingReport.addReportDetails(keyLines.otherReportDetails);
+					}
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+			FileUtils.deleteQuietly(stagingRoot);
+		}
+	}
+
+	/**
+	 * Prepares the files of one source in its own staging directory.
+	 * @return the report details of the source and the lines whose use depends on the sources before it.
+	 */
+	private PreparedSource prepareSourceFiles(String source, List<String> fileList, File stagingDir, List<LanguageRule> descriptionRules,
+									List<LanguageRule> textDefinitionRules) throws IOException {
+		List<FileProcessingReportDetail> reportDetails = new ArrayList<>();
+		File linesDir = new File(stagingDir, STAGED_LINES_DIR);
+		UnassignedKeys unassignedKeys = new UnassignedKeys(stagingDir);
+		try (PreparedFileWriters writers = new PreparedFileWriters(linesDir); unassignedKeys) {
 			for (String fileName : fileList) {
 				logger.info("Start processing file {}", fileName);
 				if (!fileName.endsWith(".txt")) {
@@ -460,31 +548,26 @@ public class InputSourceFileProcessor {
 					addFileToSkippedList(source, fileName);
 					continue;
 				}
-				File sourceFile = new File(fileName);
-				try {
-					List<String> lines = FileUtils.readLines(sourceFile, StandardCharsets.UTF_8);
-					if (lines != null && !lines.isEmpty()) {
-						String header = lines.get(0);
-						//remove header before processing
-						lines.remove(0);
-
+				try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(fileName), StandardCharsets.UTF_8))) {
+					String header = reader.readLine();
+					if (header != null) {
 						if (header.startsWith(HEADER_CONCEPT) && commonFileProcessingConfigs.containsKey(INPUT_FILE_TYPE_CONCEPT)) {
-							processCommonFiles(source, header, INPUT_FILE_TYPE_CONCEPT, lines);
+							processCommonFile(source, header, INPUT_FILE_TYPE_CONCEPT, reader, writers);
 						} else if (header.startsWith(HEADER_RELATIONSHIP_CONCRETE_VALUES) && commonFileProcessingConfigs.containsKey(INPUT_FILE_TYPE_RELATIONSHIP_CONCRETE_VALUES)) {
-							processCommonFiles(source, header, INPUT_FILE_TYPE_RELATIONSHIP_CONCRETE_VALUES, lines);
+							processCommonFile(source, header, INPUT_FILE_TYPE_RELATIONSHIP_CONCRETE_VALUES, reader, writers);
 						} else if (header.startsWith(HEADER_INFERRED_OR_STATED_RELATIONSHIP)) {
-							processRelationshipFiles(source,lines, header);
+							processRelationshipFile(reportDetails, source, fileName, header, reader, writers);
 						} else if (header.startsWith(HEADER_IDENTIFIER) && commonFileProcessingConfigs.containsKey(INPUT_FILE_TYPE_IDENTIFIER)) {
-							processCommonFiles(source, header, INPUT_FILE_TYPE_IDENTIFIER, lines);
+							processCommonFile(source, header, INPUT_FILE_TYPE_IDENTIFIER, reader, writers);
 						} else if (header.startsWith(HEADER_REFSETS)) {
-							processRefsetFiles(fileProcessingReportDetails,lines, source, fileName, outDir, header);
+							processRefsetFile(reportDetails, reader, source, fileName, header, writers, unassignedKeys);
 						} else if (header.startsWith(HEADER_TERM_DESCRIPTION)) {
 							//create delta file with header
-							writeHeaderToFile(outDir,header, descriptionFileProcessingConfigs.values());
+							writeHeaderToFile(writers, header, descriptionFileProcessingConfigs.values());
 							if (foundTextDefinitionFile) {
-								writeHeaderToFile(outDir,header, textDefinitionFileProcessingConfigs.values());
+								writeHeaderToFile(writers, header, textDefinitionFileProcessingConfigs.values());
 							}
-							processDescriptionsAndTextDefinitions(lines, source, fileName, outDir, header);
+							processDescriptionsAndTextDefinitions(reportDetails, reader, source, fileName, header, writers, unassignedKeys, descriptionRules, textDefinitionRules);
 						} else {
 							addFileToSkippedList(source, fileName);
 						}
@@ -493,120 +576,180 @@ public class InputSourceFileProcessor {
 				} catch (IOException e) {
 					String msg = "Failed to prepare source file " + fileName;
 					logger.error(msg, e);
-					fileProcessingReport.add(ReportType.ERROR, msg);
+					reportDetails.add(new FileProcessingReportDetail(ReportType.ERROR, msg));
 				}
 			}
 		}
-		fileProcessingReport.addReportDetails(fileProcessingReportDetails);
+		return new PreparedSource(linesDir, reportDetails, unassignedKeys.keyLines);
 	}
 
-	private void processCommonFiles(String source, String header, String inputFileType, List<String> lines) throws IOException {
-		Set<String> sources = commonFileProcessingConfigs.get(inputFileType).getSpecificSources();
-		if (sources.isEmpty() || sources.contains(source)) {
-			writeToFile(outDir, header,  lines, commonFileProcessingConfigs.get(inputFileType).getTargetFileName());
+	/**
+	 * @return the prepared file the lines of the given type from the source go to, or null if the source is not used for it.
+	 */
+	private String getCommonTargetFileName(String inputFileType, String source) {
+		FileProcessingConfig config = commonFileProcessingConfigs.get(inputFileType);
+		if (config == null) {
+			return null;
 		}
+		Set<String> sources = config.getSpecificSources();
+		return sources.isEmpty() || sources.contains(source) ? config.getTargetFileName() : null;
 	}
 
-	private void processRelationshipFiles(String source, List<String> lines, String header) throws IOException {
-		List<String> statedRelationships = new ArrayList<>(), inferredRelationships = new ArrayList<>();
-		for (String line : lines) {
-			String[] splits = line.split(TAB);
-			String characteristicTypeId = splits[CHARACTERISTICTYPEID_COL];
-			if (STATED_RELATIONSHIP_ID.equals(characteristicTypeId)) {
-				statedRelationships.add(line);
-			} else if (INFERRED_RELATIONSHIP_ID.equals(characteristicTypeId)) {
-				inferredRelationships.add(line);
+	private void processCommonFile(String source, String header, String inputFileType, BufferedReader reader, PreparedFileWriters writers) throws IOException {
+		String targetFileName = getCommonTargetFileName(inputFileType, source);
+		if (targetFileName != null) {
+			writers.open(targetFileName, header);
+			PreparedFileWriters.Batch batch = writers.newBatch(header);
+			String line;
+			while ((line = reader.readLine()) != null) {
+				batch.add(targetFileName, line);
 			}
+			batch.flush();
 		}
-		if (commonFileProcessingConfigs.containsKey(INPUT_FILE_TYPE_RELATIONSHIP)) {
-			Set<String> sources = commonFileProcessingConfigs.get(INPUT_FILE_TYPE_RELATIONSHIP).getSpecificSources();
-			if (sources.isEmpty() || sources.contains(source)) {
-				writeToFile(outDir, header, inferredRelationships, commonFileProcessingConfigs.get(INPUT_FILE_TYPE_RELATIONSHIP).getTargetFileName());
-			}
+	}
+
+	private void processRelationshipFile(List<FileProcessingReportDetail> reportDetails, String source, String inFileName, String header,
+										 BufferedReader reader, PreparedFileWriters writers) throws IOException {
+		String inferredTargetFileName = getCommonTargetFileName(INPUT_FILE_TYPE_RELATIONSHIP, source);
+		String statedTargetFileName = getCommonTargetFileName(INPUT_FILE_TYPE_STATED_RELATIONSHIP, source);
+		if (inferredTargetFileName == null && statedTargetFileName == null) {
+			return;
+		}
+		if (inferredTargetFileName != null) {
+			writers.open(inferredTargetFileName, header);
+		}
+		if (statedTargetFileName != null) {
+			writers.open(statedTargetFileName, header);
 		}
-		if (commonFileProcessingConfigs.containsKey(INPUT_FILE_TYPE_STATED_RELATIONSHIP)) {
-			Set<String> sources = commonFileProcessingConfigs.get(INPUT_FILE_TYPE_STATED_RELATIONSHIP).getSpecificSources();
-			if (sources.isEmpty() || sources.contains(source)) {
-				writeToFile(outDir, header, statedRelationships, commonFileProcessingConfigs.get(INPUT_FILE_TYPE_STATED_RELATIONSHIP).getTargetFileName());
+		PreparedFileWriters.Batch batch = writers.newBatch(header);
+		RF2Record record = new RF2Record();
+		SkippedLines skippedLines = new SkippedLines();
+		int lineNumber = 1;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			if (!record.reset(line).hasField(CHARACTERISTICTYPEID_COL)) {
+				skippedLines.add(lineNumber);
+				continue;
+			}
+			String characteristicTypeId = record.get(CHARACTERISTICTYPEID_COL);
+			if (STATED_RELATIONSHIP_ID.equals(characteristicTypeId)) {
+				if (statedTargetFileName != null) {
+					batch.add(statedTargetFileName, line);
+				}
+			} else if (INFERRED_RELATIONSHIP_ID.equals(characteristicTypeId)) {
+				if (inferredTargetFileName != null) {
+					batch.add(inferredTargetFileName, line);
+				}
 			}
 		}
+		batch.flush();
+		skippedLines.report(reportDetails, FilenameUtils.getName(inFileName), source);
 	}
 
-	private void processRefsetFiles(List<FileProcessingReportDetail> fileProcessingReportDetails, List<String> lines, String sourceName,
-									String inFileName, File outDir, String header) {
+	private boolean isCopiedWhole(String inputFilename, String sourceName) {
+		return filesToCopyFromSource.containsKey(inputFilename) && (filesToCopyFromSource.get(inputFilename).isEmpty()
+				|| filesToCopyFromSource.get(inputFilename).contains(sourceName));
+	}
+
+	private void processRefsetFile(List<FileProcessingReportDetail> reportDetails, BufferedReader reader, String sourceName,
+								   String inFileName, String header, PreparedFileWriters writers, UnassignedKeys unassignedKeys) {
 
 		String inputFilename = FilenameUtils.getName(inFileName);
-		if (lines == null || lines.isEmpty()) {
-			fileProcessingReport.add(ReportType.INFO, inputFilename, null, sourceName, NO_DATA_FOUND);
-		} else {
-			Set<String> refsetInUsed = new HashSet<>();
-			for (String line : lines) {
-				String[] splits = line.split(TAB);
-				String refsetId = splits[REFSETID_COL];
-				refsetInUsed.add(refsetId);
-			}
-			Set<String> refsetIdsInManifest = this.refsetFileProcessingConfigs.keySet();
-			refsetInUsed.forEach(refsetId -> {
-				if (!refsetIdsInManifest.contains(refsetId)) {
-					String warningMsg = "This Reference Set is not included in the Manifest.";
-					fileProcessingReport.add(ReportType.WARNING, inputFilename, refsetId, sourceName, warningMsg);
+		try {
+			boolean copyWholeFile = isCopiedWhole(inputFilename, sourceName);
+			if (copyWholeFile) {
+				writers.open(inputFilename, header);
+			}
+			// Refsets in use with their line counts, and where the lines of each refset go or null when they are not used
+			Map<String, Integer> refsetInUsed = new LinkedHashMap<>();
+			Map<String, Route> routesByRefsetId = new HashMap<>();
+			PreparedFileWriters.Batch batch = writers.newBatch(header);
+			RF2Record record = new RF2Record();
+			SkippedLines skippedLines = new SkippedLines();
+			int lineNumber = 1;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				if (!record.reset(line).hasField(REFSETID_COL)) {
+					skippedLines.add(lineNumber);
+					continue;
 				}
-			});
-			for (Map.Entry<String, FileProcessingConfig> entry : refsetFileProcessingConfigs.entrySet()) {
-				if (refsetInUsed.contains(entry.getKey()) && entry.getValue() != null
-					&& entry.getValue().getSpecificSources() != null && !entry.getValue().getSpecificSources().contains(sourceName)) {
-					String warningMsg = String.format("The Manifest states that this Reference Set content should come from the following sources: %s.", String.join(", ", entry.getValue().getSpecificSources()));
-					fileProcessingReport.add(ReportType.WARNING, entry.getValue().getTargetFileName(), entry.getKey(), sourceName, warningMsg);
+				String refsetId = record.get(REFSETID_COL);
+				refsetInUsed.merge(refsetId, 1, Integer::sum);
+				if (copyWholeFile) {
+					batch.add(inputFilename, line);
+				} else {
+					if (!routesByRefsetId.containsKey(refsetId)) {
+						routesByRefsetId.put(refsetId, getRefsetRoute(reportDetails, batch, unassignedKeys, refsetId, sourceName, inFileName, header));
+					}
+					Route route = routesByRefsetId.get(refsetId);
+					if (route != null) {
+						route.batch().add(route.targetFileName(), line);
+					}
 				}
 			}
-		}
-		try {
-			if (filesToCopyFromSource.containsKey(inputFilename) && (filesToCopyFromSource.get(inputFilename).isEmpty()
-					|| filesToCopyFromSource.get(inputFilename).contains(sourceName))) {
-				writeToFile(outDir, header, lines, inputFilename);
-			} else {
-				//map lines by refset id
-				MultiValueMap<String, String> linesByRefsetId = new LinkedMultiValueMap<>();
-				for (String line : lines) {
-					String[] splits = line.split(TAB);
-					String refsetId = splits[REFSETID_COL];
-					linesByRefsetId.add(refsetId, line);
-				}
+			batch.flush();
+			skippedLines.report(reportDetails, inputFilename, sourceName);
 
-				for (String refsetId : linesByRefsetId.keySet()) {
-					fileOrKeyWithMultipleSources.add(refsetId, sourceName);
-					FileProcessingConfig fileProcessingConfig = refsetFileProcessingConfigs.get(refsetId);
-					if (fileProcessingConfig == null) {
-						if (!filesToCopyFromSource.containsKey(inputFilename)) {
-							String warningMsg = String.format("Found lines %d with refset id %s in source file "
-									+ "but is not used by the manifest configuration", linesByRefsetId.get(refsetId).size(), refsetId);
-							fileProcessingReport.add(ReportType.WARNING, inputFilename, refsetId, sourceName, warningMsg);
-						}
-					} else {
-						if (fileProcessingConfig.getSpecificSources().contains(sourceName) ||
-								(fileProcessingConfig.getSpecificSources().isEmpty() && fileOrKeyWithMultipleSources.get(refsetId).size() == 1)) {
-							writeToFile(outDir, header, linesByRefsetId.get(refsetId), fileProcessingConfig.getTargetFileName());
-							String infoMessage = String.format("Added source %s/%s", sourceName, FilenameUtils.getName(inFileName));
-							fileProcessingReportDetails.add(new FileProcessingReportDetail(ReportType.INFO, fileProcessingConfig.getTargetFileName(),
-									refsetId, sourceName, infoMessage));
-						} else if (fileProcessingConfig.getSpecificSources().isEmpty() && fileOrKeyWithMultipleSources.get(refsetId).size() > 1) {
-							String errorMsg = String.format(UNPROCESSABLE_MSG, "refset id");
-							fileProcessingReport.add(ReportType.ERROR, inputFilename, refsetId, sourceName, errorMsg);
-						} else {
-							String warningMessage = String.format("Source %s is not specified in the manifest.xml therefore is skipped.", sourceName);
-							fileProcessingReport.add(ReportType.WARNING, inputFilename, refsetId, sourceName, warningMessage);
-						}
+			if (refsetInUsed.isEmpty()) {
+				reportDetails.add(new FileProcessingReportDetail(ReportType.INFO, inputFilename, null, sourceName, NO_DATA_FOUND));
+			}
+			for (Map.Entry<String, Integer> entry : refsetInUsed.entrySet()) {
+				String refsetId = entry.getKey();
+				FileProcessingConfig fileProcessingConfig = refsetFileProcessingConfigs.get(refsetId);
+				if (fileProcessingConfig == null) {
+					String warningMsg = "This Reference Set is not included in the Manifest.";
+					reportDetails.add(new FileProcessingReportDetail(ReportType.WARNING, inputFilename, refsetId, sourceName, warningMsg));
+					if (!filesToCopyFromSource.containsKey(inputFilename)) {
+						warningMsg = String.format("Found lines %d with refset id %s in source file "
+								+ "but is not used by the manifest configuration", entry.getValue(), refsetId);
+						reportDetails.add(new FileProcessingReportDetail(ReportType.WARNING, inputFilename, refsetId, sourceName, warningMsg));
 					}
+				} else if (fileProcessingConfig.getSpecificSources() != null && !fileProcessingConfig.getSpecificSources().contains(sourceName)) {
+					String warningMsg = String.format("The Manifest states that this Reference Set content should come from the following sources: %s.", String.join(", ", fileProcessingConfig.getSpecificSources()));
+					reportDetails.add(new FileProcessingReportDetail(ReportType.WARNING, fileProcessingConfig.getTargetFileName(), refsetId, sourceName, warningMsg));
 				}
 			}
 		} catch (Exception e) {
 			String msg = "Failed to process input file " + inFileName + ". Error message: " + e.getMessage();
 			logger.error(msg, e);
-			fileProcessingReport.add(ReportType.ERROR, inputFilename, null, null , msg);
+			reportDetails.add(new FileProcessingReportDetail(ReportType.ERROR, inputFilename, null, null , msg));
 		}
 	}
 
-	private void addFileToSkippedList(String sourceName, String filename) {
+	/**
+	 * Decides where the lines of a refset from the given source go when the refset is first seen in a source file.
+	 * Lines of a refset with no configured source are staged apart until it is known which file has the refset first.
+	 * @return the batch and prepared file name the lines go to, or null if the lines are not used.
+	 */
+	private Route getRefsetRoute(List<FileProcessingReportDetail> reportDetails, PreparedFileWriters.Batch batch, UnassignedKeys unassignedKeys,
+								 String refsetId, String sourceName, String inFileName, String header) throws IOException {
+		String inputFilename = FilenameUtils.getName(inFileName);
+		FileProcessingConfig fileProcessingConfig = refsetFileProcessingConfigs.get(refsetId);
+		if (fileProcessingConfig == null) {
+			return null;
+		}
+		String infoMessage = String.format("Added source %s/%s", sourceName, inputFilename);
+		FileProcessingReportDetail addedDetail = new FileProcessingReportDetail(ReportType.INFO, fileProcessingConfig.getTargetFileName(),
+				refsetId, sourceName, infoMessage);
+		if (fileProcessingConfig.getSpecificSources().contains(sourceName)) {
+			reportDetails.add(addedDetail);
+			return new Route(batch, fileProcessingConfig.getTargetFileName());
+		} else if (fileProcessingConfig.getSpecificSources().isEmpty()) {
+			UnassignedKeyLines keyLines = unassignedKeys.stage(refsetOwnerFiles, refsetId, inFileName, header);
+			keyLines.firstReportDetails.add(addedDetail);
+			String errorMsg = String.format(UNPROCESSABLE_MSG, "refset id");
+			keyLines.otherReportDetails.add(new FileProcessingReportDetail(ReportType.ERROR, inputFilename, refsetId, sourceName, errorMsg));
+			return new Route(keyLines.batch, fileProcessingConfig.getTargetFileName());
+		} else {
+			String warningMessage = String.format("Source %s is not specified in the manifest.xml therefore is skipped.", sourceName);
+			reportDetails.add(new FileProcessingReportDetail(ReportType.WARNING, inputFilename, refsetId, sourceName, warningMessage));
+		}
+		return null;
+	}
+
+	private synchronized void addFileToSkippedList(String sourceName, String filename) {
 		if (skippedSourceFiles.get(sourceName) == null) {
 			Set<String> files = new HashSet<>();
 			files.add(filename);
@@ -617,126 +760,150 @@ public class InputSourceFileProcessor {
 	}
 
 	/**
-	 *
-	 * @param rows description or text definition rows
-	 * @param moduleIdStr module Ids in string format. For example: fr-moduleId1-moduleId2
-	 * @return
+	 * @param configs description or text definition configs keyed by language code and optional module ids. For example: fr-moduleId1-moduleId2
 	 */
-	private List<String> filterRowsByModuleIds(List<String> rows, String moduleIdStr) {
-		if (!moduleIdStr.contains("-")) {
-			return rows;
-		}
-		String[] moduleIds = moduleIdStr.substring(moduleIdStr.indexOf("-") + 1).split("-");
-		List<String> results = new ArrayList<>();
-		for (String row : rows) {
-			String[] splits = row.split(TAB);
-			String moduleId = splits[DESCRIPTION_MODULE_ID_COL];
-			if (Arrays.asList(moduleIds).contains(moduleId)) {
-				results.add(row);
-			}
+	private List<LanguageRule> compileLanguageRules(Map<String, FileProcessingConfig> configs) {
+		List<LanguageRule> rules = new ArrayList<>();
+		for (Map.Entry<String, FileProcessingConfig> entry : configs.entrySet()) {
+			String key = entry.getKey();
+			Set<String> moduleIds = key.contains("-") ? new HashSet<>(Arrays.asList(key.substring(key.indexOf("-") + 1).split("-"))) : null;
+			rules.add(new LanguageRule(key, entry.getValue(), moduleIds));
 		}
+		return rules;
+	}
 
-		return results;
+	private boolean isTextDefinition(RF2Record record) {
+		return foundTextDefinitionFile && TEXT_DEFINITION_TYPE_ID.equals(record.get(DESCRIPTION_TYPE_COL));
 	}
 
-	private void processDataByLanguageCode(Map<String,FileProcessingConfig> fileProcessingConfigs, String sourceName, Map<String, List<String>> rows,
-										   String inputFilename, String header, boolean isTextDefinition) throws IOException {
-		for (String languageCode : rows.keySet()) {
-			List<String> fileProcessingKeys = new ArrayList<>();
-			for (String key : fileProcessingConfigs.keySet()) {
-				if (key.startsWith(languageCode)) {
-					fileProcessingKeys.add(key);
-				}
+	private static String getLanguageKey(String languageCode, boolean isTextDefinition) {
+		return isTextDefinition ? INPUT_FILE_TYPE_TEXT_DEFINITON + languageCode : INPUT_FILE_TYPE_DESCRIPTION + languageCode;
+	}
+
+	/**
+	 * Decides where the rows with the given language code from the given source go when the language code is first seen in a source file.
+	 * Rows for rules with no configured source are staged apart until it is known which source has the language code first.
+	 * @return the rules whose prepared files take the rows, with the batch the rows are added to.
+	 */
+	private List<LanguageRoute> getLanguageRoutes(List<FileProcessingReportDetail> reportDetails, PreparedFileWriters.Batch batch, UnassignedKeys unassignedKeys,
+												  List<LanguageRule> rules, String sourceName, String languageCode, String inputFilename, String header,
+												  boolean isTextDefinition) throws IOException {
+		List<LanguageRoute> routes = new ArrayList<>();
+		UnassignedKeyLines keyLines = null;
+		boolean foundRule = false;
+		for (LanguageRule rule : rules) {
+			if (!rule.key().startsWith(languageCode)) {
+				continue;
 			}
-			if (fileProcessingKeys.size() != 0) {
-				for (String fileProcessingKey : fileProcessingKeys) {
-					FileProcessingConfig fileProcessingConfig = fileProcessingConfigs.get(fileProcessingKey);
-					String key = isTextDefinition ? INPUT_FILE_TYPE_TEXT_DEFINITON + languageCode : INPUT_FILE_TYPE_DESCRIPTION + languageCode;
-					if (fileProcessingConfig.getSpecificSources().contains(sourceName) ||
-							(fileProcessingConfig.getSpecificSources().isEmpty() && fileOrKeyWithMultipleSources.get(key).size() == 1)) {
-						writeToFile(outDir, header, filterRowsByModuleIds(rows.get(languageCode), fileProcessingKey), fileProcessingConfig.getTargetFileName());
-					} else if (fileProcessingConfig.getSpecificSources().isEmpty() && fileOrKeyWithMultipleSources.get(key).size() > 1) {
-						String errorMsg = String.format(UNPROCESSABLE_MSG, "language code " + languageCode);
-						fileProcessingReport.add(ReportType.ERROR, inputFilename, null, sourceName, errorMsg);
-					} else {
-						String warningMsg = String.format("Source %s is not specified in the manifest.xml therefore is skipped.", sourceName);
-						fileProcessingReport.add(ReportType.WARNING, inputFilename , null, sourceName, warningMsg);
-					}
+			foundRule = true;
+			Set<String> specificSources = rule.config().getSpecificSources();
+			if (specificSources.contains(sourceName)) {
+				routes.add(new LanguageRoute(rule, batch));
+			} else if (specificSources.isEmpty()) {
+				if (keyLines == null) {
+					keyLines = unassignedKeys.stage(languageOwnerSources, getLanguageKey(languageCode, isTextDefinition), sourceName, header);
 				}
+				routes.add(new LanguageRoute(rule, keyLines.batch));
+				String errorMsg = String.format(UNPROCESSABLE_MSG, "language code " + languageCode);
+				keyLines.otherReportDetails.add(new FileProcessingReportDetail(ReportType.ERROR, inputFilename, null, sourceName, errorMsg));
 			} else {
-				String msg = String.format("Found language code: %s in source file but not specified in the manifest.xml", languageCode);
-				fileProcessingReport.add(ReportType.ERROR, inputFilename , null, sourceName, msg);
+				String warningMsg = String.format("Source %s is not specified in the manifest.xml therefore is skipped.", sourceName);
+				reportDetails.add(new FileProcessingReportDetail(ReportType.WARNING, inputFilename , null, sourceName, warningMsg));
 			}
 		}
+		if (!foundRule) {
+			String msg = String.format("Found language code: %s in source file but not specified in the manifest.xml", languageCode);
+			reportDetails.add(new FileProcessingReportDetail(ReportType.ERROR, inputFilename , null, sourceName, msg));
+		}
+		return routes;
 	}
 
-	private void processDescriptionsAndTextDefinitions(List<String> lines, String sourceName, String inFileName, File outDir, String header) throws IOException {
-		Map<String, List<String>> descriptionRows = new HashMap<>();
-		Map<String, List<String>> textDefinitionRows = new HashMap<>();
+	private void processDescriptionsAndTextDefinitions(List<FileProcessingReportDetail> reportDetails, BufferedReader reader, String sourceName, String inFileName,
+													   String header, PreparedFileWriters writers, UnassignedKeys unassignedKeys, List<LanguageRule> descriptionRules,
+													   List<LanguageRule> textDefinitionRules) throws IOException {
 		String inputFilename = FilenameUtils.getName(inFileName);
-		if (lines == null || lines.isEmpty()) {
-			fileProcessingReport.add(ReportType.WARNING, inputFilename, null, sourceName, NO_DATA_FOUND);
-		} else {
-			for (String line : lines) {
-				String[] splits = line.split(TAB);
-				String languageCode = splits[DESCRIPTION_LANGUAGE_CODE_COL];
-				String descriptionTypeValue = splits[DESCRIPTION_TYPE_COL];
-				boolean isTextDefinition = false;
-				if (foundTextDefinitionFile && TEXT_DEFINITION_TYPE_ID.equals(descriptionTypeValue)) {
-					isTextDefinition = true;
-					if (!textDefinitionRows.containsKey(languageCode)) {
-						textDefinitionRows.put(languageCode, new ArrayList<>());
-					}
-					textDefinitionRows.get(languageCode).add(line);
-				} else {
-					if (!descriptionRows.containsKey(languageCode)) {
-						descriptionRows.put(languageCode, new ArrayList<>());
+		Map<String, List<LanguageRoute>> descriptionRoutes = new HashMap<>();
+		Map<String, List<LanguageRoute>> textDefinitionRoutes = new HashMap<>();
+		PreparedFileWriters.Batch batch = writers.newBatch(header);
+		boolean foundData = false;
+		RF2Record record = new RF2Record();
+		SkippedLines skippedLines = new SkippedLines();
+		int lineNumber = 1;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			foundData = true;
+			lineNumber++;
+			if (!record.reset(line).hasField(DESCRIPTION_TYPE_COL)) {
+				skippedLines.add(lineNumber);
+				continue;
+			}
+			String languageCode = record.get(DESCRIPTION_LANGUAGE_CODE_COL);
+			boolean isTextDefinition = isTextDefinition(record);
+			Map<String, List<LanguageRoute>> routesByLanguageCode = isTextDefinition ? textDefinitionRoutes : descriptionRoutes;
+			List<LanguageRoute> routes = routesByLanguageCode.get(languageCode);
+			if (routes == null) {
+				routes = getLanguageRoutes(reportDetails, batch, unassignedKeys, isTextDefinition ? textDefinitionRules : descriptionRules, sourceName,
+						languageCode, inputFilename, header, isTextDefinition);
+				routesByLanguageCode.put(languageCode, routes);
+			}
+			if (!routes.isEmpty()) {
+				String moduleId = record.get(DESCRIPTION_MODULE_ID_COL);
+				for (LanguageRoute route : routes) {
+					if (route.rule().accepts(moduleId)) {
+						route.batch().add(route.rule().config().getTargetFileName(), line);
 					}
-					descriptionRows.get(languageCode).add(line);
-				}
-				String key = isTextDefinition ? INPUT_FILE_TYPE_TEXT_DEFINITON + languageCode : INPUT_FILE_TYPE_DESCRIPTION + languageCode;
-				if (!fileOrKeyWithMultipleSources.containsKey(key) || !fileOrKeyWithMultipleSources.get(key).contains(sourceName)) {
-					fileOrKeyWithMultipleSources.add(key, sourceName);
 				}
 			}
-			processDataByLanguageCode(descriptionFileProcessingConfigs, sourceName, descriptionRows, inputFilename, header, false);
-			if (foundTextDefinitionFile) {
-				processDataByLanguageCode(textDefinitionFileProcessingConfigs, sourceName, textDefinitionRows, inputFilename, header, true);
-			}
+		}
+		batch.flush();
+		skippedLines.report(reportDetails, inputFilename, sourceName);
+		if (!foundData) {
+			reportDetails.add(new FileProcessingReportDetail(ReportType.WARNING, inputFilename, null, sourceName, NO_DATA_FOUND));
 		}
 	}
 
-	private void writeHeaderToFile(File outDir, String headerLine, Collection<FileProcessingConfig> configs) throws IOException {
+	private void writeHeaderToFile(PreparedFileWriters writers, String headerLine, Collection<FileProcessingConfig> configs) throws IOException {
 		if (configs != null) {
 			Set<String> fileNamesToCreate = new HashSet<>();
 			for (FileProcessingConfig config : configs) {
 				fileNamesToCreate.add(config.getTargetFileName());
 			}
 			for (String fileName : fileNamesToCreate) {
-				File file = new File(outDir, fileName);
-				if (!file.exists()) {
-					file.createNewFile();
-					FileUtils.writeLines(file, CharEncoding.UTF_8, Collections.singletonList(headerLine), RF2Constants.LINE_ENDING);
-				}
+				writers.open(fileName, headerLine);
 			}
 		}
 
 	}
 
-	private void writeToFile(File outDir, String header, List<String> lines, String targetOutputFileName) throws IOException {
-		if (targetOutputFileName != null && header != null) {
-			File outFile = new File(outDir, targetOutputFileName);
-			if (!outFile.exists()) {
-				outFile.createNewFile();
-				List<String> headers = new ArrayList<>();
-				headers.add(header);
-				FileUtils.writeLines(outFile, CharEncoding.UTF_8, headers, RF2Constants.LINE_ENDING);
-			}
-			if (lines != null && !lines.isEmpty()) {
-				FileUtils.writeLines(outFile, CharEncoding.UTF_8, lines, RF2Constants.LINE_ENDING, true);
-				logger.debug("Copied {} lines to {}", lines.size(), outFile.getAbsolutePath());
+	/**
+	 * Waits for all the tasks to finish, then throws the first failure if any failed.
+	 */
+	private static <T> List<T> waitForAll(List<Future<T>> tasks) throws IOException {
+		List<T> results = new ArrayList<>();
+		Throwable failure = null;
+		for (Future<T> task : tasks) {
+			try {
+				results.add(task.get());
+			} catch (ExecutionException e) {
+				if (failure == null) {
+					failure = e.getCause();
+				}
+				results.add(null);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while preparing source files", e);
 			}
 		}
+		if (failure instanceof IOException ioException) {
+			throw ioException;
+		}
+		if (failure instanceof RuntimeException runtimeException) {
+			throw runtimeException;
+		}
+		if (failure != null) {
+			throw new IOException(failure);
+		}
+		return results;
 	}
 
 	private FileProcessingReportDetail copyFilesWhenIgnoringCountryAndNamespace(String sourceFileName, String source,
@@ -933,4 +1100,132 @@ public class InputSourceFileProcessor {
 		return refsetWithAdditionalFields;
 	}
 
+	private record DownloadedSourceFile(String sourceName, File file) {
+	}
+
+	/**
+	 * The staging directory of the lines prepared from one source, with its report details and the lines whose use depends on
+	 * the sources before it.
+	 */
+	private record PreparedSource(File stagingDir, List<FileProcessingReportDetail> reportDetails, List<UnassignedKeyLines> unassignedKeyLines) {
+	}
+
+	/**
+	 * The batch the lines of a refset are added to and the prepared file they go to.
+	 */
+	private record Route(PreparedFileWriters.Batch batch, String targetFileName) {
+	}
+
+	/**
+	 * The batch the description or text definition rows of a rule are added to.
+	 */
+	private record LanguageRoute(LanguageRule rule, PreparedFileWriters.Batch batch) {
+	}
+
+	/**
+	 * The lines of one source whose refset id or language code has no configured source, each key of each source file staged
+	 * in its own directory.
+	 */
+	private static class UnassignedKeys implements Closeable {
+
+		private final File stagingDir;
+		private final List<UnassignedKeyLines> keyLines = new ArrayList<>();
+
+		UnassignedKeys(File stagingDir) {
+			this.stagingDir = stagingDir;
+		}
+
+		/**
+		 * @param firsts the file or source each key was first found in, filled in as the sources are merged.
+		 * @param owner the source file for a refset id, or the source for a language code.
+		 */
+		UnassignedKeyLines stage(Map<String, String> firsts, String key, String owner, String header) throws IOException {
+			UnassignedKeyLines lines = new UnassignedKeyLines(firsts, key, owner, new File(stagingDir, Integer.toString(keyLines.size())), header);
+			keyLines.add(lines);
+			return lines;
+		}
+
+		@Override
+		public void close() throws IOException {
+			IOException failure = null;
+			for (UnassignedKeyLines lines : keyLines) {
+				try {
+					lines.batch.flush();
+					lines.writers.close();
+				} catch (IOException e) {
+					if (failure == null) {
+						failure = e;
+					}
+				}
+			}
+			if (failure != null) {
+				throw failure;
+			}
+		}
+	}
+
+	/**
+	 * The lines of one key from one source file. They go to the prepared files only if the file, or its source for a language code,
+	 * is the first in source name order to have the key.
+	 */
+	private static class UnassignedKeyLines {
+
+		private final Map<String, String> firsts;
+		private final String key;
+		private final String owner;
+		private final File stagingDir;
+		private final PreparedFileWriters writers;
+		private final PreparedFileWriters.Batch batch;
+		private final List<FileProcessingReportDetail> firstReportDetails = new ArrayList<>();
+		private final List<FileProcessingReportDetail> otherReportDetails = new ArrayList<>();
+
+		UnassignedKeyLines(Map<String, String> firsts, String key, String owner, File stagingDir, String header) throws IOException {
+			this.firsts = firsts;
+			this.key = key;
+			this.owner = owner;
+			this.stagingDir = stagingDir;
+			this.writers = new PreparedFileWriters(stagingDir);
+			this.batch = writers.newBatch(header);
+		}
+
+		/**
+		 * Only called while merging, in source name order.
+		 */
+		boolean isFirst() {
+			return owner.equals(firsts.computeIfAbsent(key, k -> owner));
+		}
+	}
+
+	/**
+	 * Counts the lines of a source file that are skipped for having fewer columns than needed to route them.
+	 */
+	private static class SkippedLines {
+
+		private int count;
+		private int firstLineNumber;
+
+		void add(int lineNumber) {
+			if (count++ == 0) {
+				firstLineNumber = lineNumber;
+			}
+		}
+
+		void report(List<FileProcessingReportDetail> reportDetails, String inputFilename, String sourceName) {
+			if (count > 0) {
+				reportDetails.add(new FileProcessingReportDetail(ReportType.ERROR, inputFilename, null, sourceName,
+						String.format(SKIPPED_LINES_MSG, count, firstLineNumber)));
+			}
+		}
+	}
+
+	/**
+	 * Routes description or text definition rows to the prepared file of a config, keeping only the given modules if any.
+	 */
+	private record LanguageRule(String key, FileProcessingConfig config, Set<String> moduleIds) {
+
+		boolean accepts(String moduleId) {
+			return moduleIds == null || moduleIds.contains(moduleId);
+		}
+	}
+
 }
@@ -0,0 +1,142 @@
+package org.ihtsdo.buildcloud.core.service.inputfile.prepare;
+
+import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Appends the lines of one source to its prepared files in a staging directory, which are then appended to the out directory
+ * in source order so that the prepared files don't depend on which source finishes first.
+ * Each file is created with the header line of the first source file routed to it.
+ */
+class PreparedFileWriters implements Closeable {
+
+	private static final int BATCH_SIZE = 1000;
+
+	private final File outDir;
+	private final Map<String, Writer> writers = new HashMap<>();
+
+	PreparedFileWriters(File outDir) throws IOException {
+		if (!outDir.isDirectory() && !outDir.mkdirs()) {
+			throw new IOException("Failed to create directory " + outDir.getAbsolutePath());
+		}
+		this.outDir = outDir;
+	}
+
+	/**
+	 * Moves the files prepared in the staging directory to the out directory, or appends them without their header line when
+	 * the out directory already has the file. Appended bytes are copied as they are, the lines are not read again.
+	 */
+	static void appendTo(File stagingDir, File outDir) throws IOException {
+		File[] files = stagingDir.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			File outFile = new File(outDir, file.getName());
+			if (!outFile.exists()) {
+				Files.move(file.toPath(), outFile.toPath());
+				continue;
+			}
+			try (InputStream in = new BufferedInputStream(new FileInputStream(file));
+				 OutputStream out = new FileOutputStream(outFile, true)) {
+				int b;
+				while ((b = in.read()) != -1 && b != '\n') {
+					// Skips the header line
+				}
+				in.transferTo(out);
+			}
+		}
+	}
+
+	/**
+	 * Creates the target file with the given header line if it has not been created yet.
+	 */
+	void open(String targetFileName, String header) throws IOException {
+		getWriter(targetFileName, header);
+	}
+
+	/**
+	 * @return a buffer for the lines of one source file which writes to the target files in batches.
+	 */
+	Batch newBatch(String header) {
+		return new Batch(header);
+	}
+
+	private void write(String targetFileName, String header, List<String> lines) throws IOException {
+		Writer writer = getWriter(targetFileName, header);
+		synchronized (writer) {
+			for (String line : lines) {
+				writer.write(line);
+				writer.write(RF2Constants.LINE_ENDING);
+			}
+		}
+	}
+
+	private synchronized Writer getWriter(String targetFileName, String header) throws IOException {
+		Writer writer = writers.get(targetFileName);
+		if (writer == null) {
+			File outFile = new File(outDir, targetFileName);
+			boolean writeHeader = !outFile.exists();
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outFile, true), StandardCharsets.UTF_8));
+			if (writeHeader) {
+				writer.write(header);
+				writer.write(RF2Constants.LINE_ENDING);
+			}
+			writers.put(targetFileName, writer);
+		}
+		return writer;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		IOException failure = null;
+		for (Writer writer : writers.values()) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				if (failure == null) {
+					failure = e;
+				}
+			}
+		}
+		writers.clear();
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	class Batch {
+
+		private final String header;
+		private final Map<String, List<String>> linesByTarget = new HashMap<>();
+
+		private Batch(String header) {
+			this.header = header;
+		}
+
+		void add(String targetFileName, String line) throws IOException {
+			List<String> lines = linesByTarget.computeIfAbsent(targetFileName, k -> new ArrayList<>());
+			lines.add(line);
+			if (lines.size() >= BATCH_SIZE) {
+				write(targetFileName, header, lines);
+				lines.clear();
+			}
+		}
+
+		void flush() throws IOException {
+			for (Map.Entry<String, List<String>> entry : linesByTarget.entrySet()) {
+				if (!entry.getValue().isEmpty()) {
+					write(entry.getKey(), header, entry.getValue());
+					entry.getValue().clear();
+				}
+			}
+		}
+	}
+}
@@ -43,7 +43,7 @@ public class SourceFileProcessingReport {
         addReportDetail(detail);
     }
 
-    public void addReportDetail(FileProcessingReportDetail detail) {
+    public synchronized void addReportDetail(FileProcessingReportDetail detail) {
         ReportType type = detail.getType();
 		if (this.details.get(type) != null){
            this.details.get(type).add(detail);
@@ -72,7 +72,7 @@ public class SourceFileProcessingReport {
 		return sourceFiles;
 	}
 	
-	public void addSoureFiles(String sourceName, List<String> fileList) {
+	public synchronized void addSoureFiles(String sourceName, List<String> fileList) {
 		List<String> fileNameWithoutPath = new ArrayList<>();
 		for (String filename : fileList) {
 			fileNameWithoutPath.add(FilenameUtils.getName(filename));
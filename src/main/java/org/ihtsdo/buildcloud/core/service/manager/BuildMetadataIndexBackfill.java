@@ -0,0 +1,86 @@
+package org.ihtsdo.buildcloud.core.service.manager;
+
+import org.ihtsdo.buildcloud.core.dao.BuildDAO;
+import org.ihtsdo.buildcloud.core.dao.helper.S3PathHelper;
+import org.ihtsdo.buildcloud.core.entity.Build;
+import org.ihtsdo.buildcloud.core.entity.Product;
+import org.ihtsdo.buildcloud.core.entity.ReleaseCenter;
+import org.ihtsdo.buildcloud.core.service.ProductService;
+import org.ihtsdo.buildcloud.core.service.ReleaseCenterService;
+import org.ihtsdo.buildcloud.core.service.helper.FilterOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Rebuilds the build metadata index of every product from the builds in S3 when the application starts.
+ * Run once with srs.build.metadata-index.backfill=true before the index is queried, and again whenever the index
+ * may have missed changes, for example after it was disabled for a while.
+ */
+@Component
+@ConditionalOnProperty(name = "srs.build.metadata-index.backfill", havingValue = "true")
+public class BuildMetadataIndexBackfill implements ApplicationRunner {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(BuildMetadataIndexBackfill.class);
+
+	private static final int PRODUCT_PAGE_SIZE = 100;
+
+	private final ReleaseCenterService releaseCenterService;
+
+	private final ProductService productService;
+
+	private final BuildDAO buildDAO;
+
+	private final S3PathHelper pathHelper;
+
+	private final BuildMetadataIndexService buildMetadataIndexService;
+
+	public BuildMetadataIndexBackfill(ReleaseCenterService releaseCenterService, ProductService productService, BuildDAO buildDAO,
+									  S3PathHelper pathHelper, BuildMetadataIndexService buildMetadataIndexService) {
+		this.releaseCenterService = releaseCenterService;
+		this.productService = productService;
+		this.buildDAO = buildDAO;
+		this.pathHelper = pathHelper;
+		this.buildMetadataIndexService = buildMetadataIndexService;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) {
+		LOGGER.info("Start: Rebuild the build metadata index from S3");
+		final Set<FilterOption> filterOptions = EnumSet.noneOf(FilterOption.class);
+		for (ReleaseCenter center : releaseCenterService.findAll()) {
+			Page<Product> productPage;
+			int pageNumber = 0;
+			do {
+				productPage = productService.findAll(center.getBusinessKey(), filterOptions, PageRequest.of(pageNumber++, PRODUCT_PAGE_SIZE), false);
+				for (Product product : productPage.getContent()) {
+					backfill(center.getBusinessKey(), product.getBusinessKey());
+				}
+			} while (productPage.hasNext());
+		}
+		LOGGER.info("Finish: Rebuild the build metadata index from S3");
+	}
+
+	private void backfill(String releaseCenterKey, String productKey) {
+		try {
+			// List the product rather than using the build ids cached for it
+			buildDAO.clearBuildIdsCache();
+			final List<Build> builds = buildDAO.findAllDesc(releaseCenterKey, productKey, true, false, false, null);
+			final Set<String> invisibleBuildIds = buildDAO.findAllDesc(releaseCenterKey, productKey, false, false, false, false)
+					.stream().map(Build::getId).collect(Collectors.toSet());
+			buildMetadataIndexService.replaceProductBuilds(releaseCenterKey, productKey, pathHelper.getBuildStoragePath(), builds, invisibleBuildIds);
+		} catch (RuntimeException e) {
+			LOGGER.error("Failed to rebuild the build metadata index of {} {}", releaseCenterKey, productKey, e);
+		}
+	}
+}
@@ -0,0 +1,199 @@
+package org.ihtsdo.buildcloud.core.service.manager;
+
+import org.apache.commons.lang3.StringUtils;
+import org.ihtsdo.buildcloud.core.dao.BuildMetadataDao;
+import org.ihtsdo.buildcloud.core.entity.Build;
+import org.ihtsdo.buildcloud.core.entity.BuildMetadata;
+import org.ihtsdo.buildcloud.core.service.BuildService;
+import org.ihtsdo.buildcloud.rest.pojo.BuildPage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.CollectionUtils;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the build metadata index in step with the marker files of builds in S3, and finds the builds of a product
+ * from the index rather than from a listing of the product in S3.
+ * The marker files remain the record of the builds, the index is rebuilt from them by {@link BuildMetadataIndexBackfill}.
+ */
+@Service
+@Transactional
+public class BuildMetadataIndexService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(BuildMetadataIndexService.class);
+
+	private static final String SEPARATOR = ",";
+
+	private final BuildMetadataDao buildMetadataDao;
+
+	private final boolean enabled;
+
+	private final boolean queryEnabled;
+
+	public BuildMetadataIndexService(BuildMetadataDao buildMetadataDao,
+									 @Value("${srs.build.metadata-index.enabled:false}") boolean enabled,
+									 @Value("${srs.build.metadata-index.query:false}") boolean queryEnabled) {
+		this.buildMetadataDao = buildMetadataDao;
+		this.enabled = enabled;
+		this.queryEnabled = enabled && queryEnabled;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public boolean isQueryEnabled() {
+		return queryEnabled;
+	}
+
+	public void indexBuild(Build build, String storagePath) {
+		update(build, storagePath, metadata -> {
+			metadata.setStatus(statusOf(build));
+			metadata.setBuildName(build.getBuildName());
+			metadata.setBuildUser(build.getBuildUser());
+			metadata.setUserRoles(join(build.getUserRoles()));
+			setTags(metadata, build.getTags());
+			metadata.setRetryCount(build.getRetryCount() == null ? 0 : build.getRetryCount());
+		});
+	}
+
+	public void updateStatus(Build build, String storagePath) {
+		update(build, storagePath, metadata -> metadata.setStatus(statusOf(build)));
+	}
+
+	public void updateTags(Build build, String storagePath) {
+		update(build, storagePath, metadata -> setTags(metadata, build.getTags()));
+	}
+
+	public void updateBuildName(Build build, String storagePath) {
+		update(build, storagePath, metadata -> metadata.setBuildName(build.getBuildName()));
+	}
+
+	public void updateVisibility(Build build, String storagePath, boolean visible) {
+		update(build, storagePath, metadata -> metadata.setVisible(visible));
+	}
+
+	public void updateRetryCount(Build build, String storagePath, int retryCount) {
+		update(build, storagePath, metadata -> metadata.setRetryCount(retryCount));
+	}
+
+	public void markAsDeleted(Build build, String storagePath) {
+		update(build, storagePath, metadata -> metadata.setDeleted(true));
+	}
+
+	public void remove(String releaseCenterKey, String productKey, String storagePath, String buildId) {
+		if (!enabled) {
+			return;
+		}
+		BuildMetadata metadata = buildMetadataDao.find(releaseCenterKey, productKey, storagePath, buildId);
+		if (metadata != null) {
+			buildMetadataDao.delete(metadata);
+		}
+	}
+
+	/**
+	 * Replaces the index of a product with the given builds.
+	 */
+	public void replaceProductBuilds(String releaseCenterKey, String productKey, String storagePath, List<Build> builds, Set<String> invisibleBuildIds) {
+		buildMetadataDao.deleteAll(releaseCenterKey, productKey, storagePath);
+		for (Build build : builds) {
+			BuildMetadata metadata = newMetadata(build, storagePath);
+			metadata.setStatus(statusOf(build));
+			metadata.setBuildName(build.getBuildName());
+			metadata.setBuildUser(build.getBuildUser());
+			metadata.setUserRoles(join(build.getUserRoles()));
+			setTags(metadata, build.getTags());
+			metadata.setRetryCount(build.getRetryCount() == null ? 0 : build.getRetryCount());
+			metadata.setVisible(!invisibleBuildIds.contains(build.getId()));
+			buildMetadataDao.save(metadata);
+		}
+		LOGGER.info("Indexed {} builds of {} {} in {}", builds.size(), releaseCenterKey, productKey, storagePath);
+	}
+
+	@Transactional(readOnly = true)
+	public BuildPage<Build> findBuilds(String releaseCenterKey, String productKey, String storagePath, Boolean visibility,
+									   BuildService.View viewMode, List<Integer> forYears, PageRequest pageRequest) {
+		int pageNumber = pageRequest.getPageNumber();
+		int pageSize = pageRequest.getPageSize();
+		if (pageNumber < 0 || pageSize <= 0) {
+			return BuildPage.empty();
+		}
+		long totalElements = buildMetadataDao.countBuilds(releaseCenterKey, productKey, storagePath, visibility, viewMode, forYears);
+		List<Build> builds = buildMetadataDao.findBuilds(releaseCenterKey, productKey, storagePath, visibility, viewMode, forYears,
+						pageRequest.getSort(), pageNumber * pageSize, pageSize)
+				.stream()
+				.map(this::toBuild)
+				.collect(Collectors.toCollection(ArrayList::new));
+		int totalPages = totalElements == 0 ? 0 : (int) ((totalElements - 1) / pageSize) + 1;
+		return new BuildPage<>((int) totalElements, totalPages, pageNumber, pageSize, builds);
+	}
+
+	private void update(Build build, String storagePath, Consumer<BuildMetadata> change) {
+		if (!enabled) {
+			return;
+		}
+		BuildMetadata metadata = buildMetadataDao.find(build.getReleaseCenterKey(), build.getProductKey(), storagePath, build.getId());
+		if (metadata == null) {
+			// Builds from before the index was enabled are indexed when they next change
+			metadata = newMetadata(build, storagePath);
+			metadata.setStatus(statusOf(build));
+			metadata.setBuildUser(build.getBuildUser());
+			metadata.setUserRoles(join(build.getUserRoles()));
+			setTags(metadata, build.getTags());
+			change.accept(metadata);
+			buildMetadataDao.save(metadata);
+		} else {
+			change.accept(metadata);
+			metadata.setLastUpdatedTime(new Timestamp(System.currentTimeMillis()));
+			buildMetadataDao.update(metadata);
+		}
+	}
+
+	private BuildMetadata newMetadata(Build build, String storagePath) {
+		BuildMetadata metadata = new BuildMetadata(build.getReleaseCenterKey(), build.getProductKey(), storagePath, build.getId());
+		metadata.setLastUpdatedTime(new Timestamp(System.currentTimeMillis()));
+		return metadata;
+	}
+
+	private Build toBuild(BuildMetadata metadata) {
+		Build build = new Build(metadata.getBuildId(), metadata.getReleaseCenterKey(), metadata.getProductKey(), metadata.getStatus());
+		build.setBuildUser(metadata.getBuildUser());
+		build.setUserRoles(split(metadata.getUserRoles()));
+		build.setTags(split(metadata.getTags()).stream().map(Build.Tag::valueOf).collect(Collectors.toCollection(ArrayList::new)));
+		if (metadata.getRetryCount() >= 1) {
+			build.setRetryCount(metadata.getRetryCount());
+		}
+		build.setContentStoragePath(metadata.getStoragePath());
+		return build;
+	}
+
+	private void setTags(BuildMetadata metadata, List<Build.Tag> tags) {
+		if (CollectionUtils.isEmpty(tags)) {
+			metadata.setTags(null);
+			metadata.setPublished(false);
+		} else {
+			metadata.setTags(tags.stream().sorted(Comparator.comparingInt(Build.Tag::getOrder)).map(Enum::name).collect(Collectors.joining(SEPARATOR)));
+			metadata.setPublished(tags.contains(Build.Tag.PUBLISHED));
+		}
+	}
+
+	private String statusOf(Build build) {
+		return build.getStatus() != null ? build.getStatus().name() : null;
+	}
+
+	private String join(List<String> values) {
+		return CollectionUtils.isEmpty(values) ? null : String.join(SEPARATOR, values);
+	}
+
+	private List<String> split(String value) {
+		return StringUtils.isEmpty(value) ? Collections.emptyList() : Arrays.asList(value.split(SEPARATOR));
+	}
+}
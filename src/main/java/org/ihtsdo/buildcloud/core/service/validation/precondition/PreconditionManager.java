@@ -7,11 +7,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @Service
 public class PreconditionManager {
@@ -21,6 +26,9 @@ public class PreconditionManager {
 
 	private boolean offLineMode;
 
+	@Value("${srs.build.precondition.parallelism:1}")
+	private int parallelism = 1;
+
 	private static final Logger LOGGER = LoggerFactory.getLogger(PreconditionManager.class);
 
 	public PreconditionManager(@Value("${srs.build.offlineMode}") boolean offlineMode) {
@@ -28,27 +36,61 @@ public class PreconditionManager {
 	}
 
 	/**
-	 * Runs each PreconditionCheck which has been added to the manager.
+	 * Runs each PreconditionCheck which has been added to the manager, several at the same time when the parallelism is more than 1.
 	 *
-	 * @return the report in a JSON friendly structure
+	 * @return the report in a JSON friendly structure, in the order the checks were added whichever finished first
 	 */
 	public List<PreConditionCheckReport> runPreconditionChecks(final Build build) {
-		List<PreConditionCheckReport> checkReports = new ArrayList<>();
+		List<PreconditionCheck> checksToRun = new ArrayList<>();
 		for (PreconditionCheck thisCheck : preconditionChecks) {
 			if (!offLineMode || !NetworkRequired.class.isAssignableFrom(thisCheck.getClass())
 					|| (RF2FilesCheck.class.isAssignableFrom(thisCheck.getClass()))) {
 				if (thisCheck instanceof TermServerClassificationResultsCheck && !build.getConfiguration().useClassifierPreConditionChecks() ) {
 					continue;
 				}
-				thisCheck.runCheck(build);
-				checkReports.add(thisCheck.getReport());
+				checksToRun.add(thisCheck);
 			} else {
 				LOGGER.warn("Skipping {} as requires network.", thisCheck.getClass().getName());
 			}
 		}
+		if (parallelism > 1 && checksToRun.size() > 1) {
+			runChecksInParallel(build, checksToRun);
+		} else {
+			for (PreconditionCheck thisCheck : checksToRun) {
+				thisCheck.runCheck(build);
+			}
+		}
+		List<PreConditionCheckReport> checkReports = new ArrayList<>();
+		for (PreconditionCheck thisCheck : checksToRun) {
+			checkReports.add(thisCheck.getReport());
+		}
 		return checkReports;
 	}
 
+	private void runChecksInParallel(final Build build, final List<PreconditionCheck> checks) {
+		// Checks run with the security context of the build, as RF2FilesCheck passes on the user's token to RVF
+		final ExecutorService executorService = new DelegatingSecurityContextExecutorService(Executors.newFixedThreadPool(Math.min(parallelism, checks.size())));
+		try {
+			final List<Future<?>> futures = new ArrayList<>();
+			for (PreconditionCheck check : checks) {
+				futures.add(executorService.submit(() -> check.runCheck(build)));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw new IllegalStateException("Pre-condition check failed.", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while running pre-condition checks.", e);
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
 	public PreconditionManager preconditionChecks(PreconditionCheck... preconditionCheckArray) {
 		List<PreconditionCheck> preconditionChecks = new ArrayList<>();
 		Collections.addAll(preconditionChecks, preconditionCheckArray);
@@ -60,6 +102,10 @@ public class PreconditionManager {
 		this.preconditionChecks = preconditionChecks;
 	}
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
 	public void setOfflineMode(boolean offlineMode) {
 		this.offLineMode = !offlineMode;
 	}
@@ -2,6 +2,12 @@ package org.ihtsdo.buildcloud.core.service.validation.precondition;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.google.common.base.Strings;
 import org.ihtsdo.buildcloud.core.dao.BuildDAO;
@@ -27,6 +33,12 @@ public class RF2FilesCheck extends PreconditionCheck implements NetworkRequired
 	@Value("${rvf.url}")
 	private String rvfUrl;
 
+	@Value("${srs.build.precondition.rvf-upload-parallelism:1}")
+	private int uploadParallelism = 1;
+
+	@Value("${srs.build.precondition.rvf-max-failure-detail-length:100000}")
+	private int maxFailureDetailLength = RVFClient.DEFAULT_MAX_FAILURE_DETAIL_LENGTH;
+
 	private static final Logger LOGGER = LoggerFactory.getLogger(RF2FilesCheck.class);
 
 	@Override
@@ -35,18 +47,45 @@ public class RF2FilesCheck extends PreconditionCheck implements NetworkRequired
 			LOGGER.warn("No rvf url is specified and RF2FilesCheck will be skipped");
 			return;
 		}
-		try (RVFClient rvfClient = new RVFClient(rvfUrl)) {
-			StringBuilder errorMessage = new StringBuilder();
+		try {
+			final List<String> inputFiles = new ArrayList<>();
 			for (String inputFile : buildDAO.listInputFileNames(build)) {
 				if (inputFile.startsWith(RF2Constants.INPUT_FILE_PREFIX) && inputFile.endsWith(RF2Constants.TXT_FILE_EXTENSION)) {
-					InputStream inputFileStream = buildDAO.getInputFileStream(build, inputFile);
-					AsyncPipedStreamBean logFileOutputStream = buildDAO.getLogFileOutputStream(build, "precheck-rvf-" + inputFile + ".log");
-					String error = rvfClient.checkInputFile(inputFileStream, inputFile, logFileOutputStream, SecurityUtil.getAuthenticationToken());
-					if (error != null) {
-						errorMessage.append(error).append(".");
+					inputFiles.add(inputFile);
+				}
+			}
+			final String authToken = SecurityUtil.getAuthenticationToken();
+			final int parallelism = Math.max(1, Math.min(uploadParallelism, inputFiles.size()));
+			final List<String> errors = new ArrayList<>();
+			// The client keeps a connection to RVF open for each file being uploaded at the same time
+			try (RVFClient rvfClient = new RVFClient(rvfUrl, parallelism)) {
+				rvfClient.setMaxFailureDetailLength(maxFailureDetailLength);
+				if (parallelism > 1) {
+					final ExecutorService executorService = Executors.newFixedThreadPool(parallelism);
+					try {
+						final List<Future<String>> futures = new ArrayList<>();
+						for (String inputFile : inputFiles) {
+							futures.add(executorService.submit(() -> checkInputFile(rvfClient, build, inputFile, authToken)));
+						}
+						// Errors are reported in the order of the files, whichever upload finished first
+						for (Future<String> future : futures) {
+							errors.add(waitForCheck(future));
+						}
+					} finally {
+						executorService.shutdownNow();
+					}
+				} else {
+					for (String inputFile : inputFiles) {
+						errors.add(checkInputFile(rvfClient, build, inputFile, authToken));
 					}
 				}
 			}
+			StringBuilder errorMessage = new StringBuilder();
+			for (String error : errors) {
+				if (error != null) {
+					errorMessage.append(error).append(".");
+				}
+			}
 			if (StringUtils.hasLength(errorMessage.toString())) {
 				fail(errorMessage.toString());
 			} else {
@@ -54,6 +93,29 @@ public class RF2FilesCheck extends PreconditionCheck implements NetworkRequired
 			}
 		} catch (IOException e) {
 			LOGGER.error("Failed to check any input files against RVF.", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOGGER.error("Interrupted while checking input files against RVF.", e);
+		}
+	}
+
+	private String checkInputFile(RVFClient rvfClient, Build build, String inputFile, String authToken) throws IOException {
+		try (InputStream inputFileStream = buildDAO.getInputFileStream(build, inputFile)) {
+			AsyncPipedStreamBean logFileOutputStream = buildDAO.getLogFileOutputStream(build, "precheck-rvf-" + inputFile + ".log");
+			return rvfClient.checkInputFile(inputFileStream, inputFile, logFileOutputStream, authToken);
+		}
+	}
+
+	private String waitForCheck(Future<String> future) throws IOException, InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException ioException) {
+				throw ioException;
+			} else if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw new IllegalStateException(e.getCause());
 		}
 	}
 
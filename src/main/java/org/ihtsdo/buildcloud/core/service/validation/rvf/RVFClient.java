@@ -8,6 +8,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
 import org.apache.commons.io.IOUtils;
@@ -21,6 +22,7 @@ import org.apache.http.entity.mime.content.InputStreamBody;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
+import org.ihtsdo.buildcloud.core.service.build.RF2Record;
 import org.ihtsdo.buildcloud.core.dao.io.AsyncPipedStreamBean;
 import org.ihtsdo.buildcloud.core.entity.QATestConfig;
 import org.ihtsdo.otf.rest.exception.ApplicationWiringException;
@@ -91,18 +93,35 @@ public class RVFClient implements Closeable {
 
 	private static final String ERROR_NO_LINES_RECEIVED_FROM_RVF = "Error - No lines received from RVF!";
 
+	public static final int DEFAULT_MAX_FAILURE_DETAIL_LENGTH = 100_000;
+
+	private static final int TEST_TYPE_COLUMN = 5;
+
+	private static final String UNKNOWN_TEST_TYPE = "Unknown";
+
 	private static final Logger LOGGER = LoggerFactory.getLogger(RVFClient.class);
 
 	private final String releaseValidationFrameworkUrl;
 
 	private final CloseableHttpClient httpClient;
 
+	private int maxFailureDetailLength = DEFAULT_MAX_FAILURE_DETAIL_LENGTH;
+
 	public RVFClient(final String releaseValidationFrameworkUrl) {
+		this(releaseValidationFrameworkUrl, 0);
+	}
+
+	/**
+	 * @param maxConnections the number of requests which can be sent to RVF at the same time, each over a pooled
+	 * connection kept alive between requests. 0 keeps the client defaults.
+	 */
+	public RVFClient(final String releaseValidationFrameworkUrl, final int maxConnections) {
 		if (releaseValidationFrameworkUrl == null) {
 			throw new ApplicationWiringException("Null RVF host URL.");
 		}
 		this.releaseValidationFrameworkUrl = releaseValidationFrameworkUrl;
-		httpClient = HttpClients.createDefault();
+		httpClient = maxConnections > 0 ? HttpClients.custom().setMaxConnTotal(maxConnections).setMaxConnPerRoute(maxConnections).build()
+				: HttpClients.createDefault();
 	}
 
 	public String checkInputFile(final InputStream inputFileStream, final String inputFileName, final AsyncPipedStreamBean logFileOutputStream, final String authToken) {
@@ -174,12 +193,18 @@ public class RVFClient implements Closeable {
 		return errorMessage;
 	}
 
+	/**
+	 * Reads the response a line at a time, copying every line to the log. The failed tests are kept in the details
+	 * only up to the max failure detail length, the rest are counted by test type and left in the log.
+	 */
 	protected RVFFailDetail processResponse(final BufferedReader responseReader, final BufferedWriter logWriter, String debugMsg) throws IOException, RVFClientException {
 		RVFFailDetail failDetail = new RVFFailDetail();
 		long failureCount = 0;
 		boolean foundFailureCount = false;
 		boolean noLinesReceived = false;
-		String failedDetails = null;
+		StringBuilder failedDetails = null;
+		long failuresNotInDetails = 0;
+		final RF2Record record = new RF2Record();
 
 		String line = responseReader.readLine(); // read header
 		if (line != null) {
@@ -191,7 +216,19 @@ public class RVFClient implements Closeable {
 			boolean endOfValuesReached = false; // Optimisation so we don't inspect every line.
 			while ((line = responseReader.readLine()) != null) {
 				if (line.startsWith(FAILED)) {
-					failedDetails = failedDetails == null ? line.replaceAll("\t", " ") : failedDetails + ", " + line.replaceAll("\t", " ");
+					record.reset(line);
+					failDetail.addFailure(record.hasField(TEST_TYPE_COLUMN) ? record.get(TEST_TYPE_COLUMN) : UNKNOWN_TEST_TYPE);
+					if (failedDetails == null) {
+						failedDetails = new StringBuilder();
+					}
+					if (failuresNotInDetails == 0 && failedDetails.length() + line.length() <= maxFailureDetailLength) {
+						if (!failedDetails.isEmpty()) {
+							failedDetails.append(", ");
+						}
+						failedDetails.append(line.replace('\t', ' '));
+					} else {
+						failuresNotInDetails++;
+					}
 				}
 				if (endOfValuesReached) {
 					if (line.startsWith(TOTAL_NUMBER_OF_FAILURES)) {
@@ -212,14 +249,33 @@ public class RVFClient implements Closeable {
 		}
 
 		if (foundFailureCount) {
+			if (failuresNotInDetails > 0) {
+				failedDetails.append(" ... ").append(failuresNotInDetails).append(" more failed tests not shown. Failed tests by test type: ");
+				boolean first = true;
+				for (Map.Entry<String, Long> testTypeCount : failDetail.getFailuresByTestType().entrySet()) {
+					if (!first) {
+						failedDetails.append(", ");
+					}
+					failedDetails.append(testTypeCount.getKey()).append(": ").append(testTypeCount.getValue());
+					first = false;
+				}
+				failedDetails.append(". ").append(debugMsg);
+			}
 			failDetail.setFailedCount(failureCount);
-			failDetail.setDetails(failedDetails);
+			failDetail.setDetails(failedDetails == null ? null : failedDetails.toString());
 			return failDetail;
 		} else {
 			throw new RVFClientException("Failure count not found in RVF response. " + (noLinesReceived?"No data received. ":"") + debugMsg);
 		}
 	}
 
+	/**
+	 * @param maxFailureDetailLength the max length of the failed tests kept in the details of a response, the rest are only counted.
+	 */
+	public void setMaxFailureDetailLength(final int maxFailureDetailLength) {
+		this.maxFailureDetailLength = maxFailureDetailLength;
+	}
+
 	@Override
 	public void close() throws IOException {
 		httpClient.close();
@@ -1,8 +1,13 @@
 package org.ihtsdo.buildcloud.core.service.validation.rvf;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public class RVFFailDetail {
     private long failedCount;
     private String details;
+    // Number of failed tests of each test type, in the order first seen
+    private final Map<String, Long> failuresByTestType = new LinkedHashMap<>();
 
     public long getFailedCount() {
         return failedCount;
@@ -19,4 +24,12 @@ public class RVFFailDetail {
     public void setDetails(String details) {
         this.details = details;
     }
+
+    public Map<String, Long> getFailuresByTestType() {
+        return failuresByTestType;
+    }
+
+    public void addFailure(String testType) {
+        failuresByTestType.merge(testType, 1L, Long::sum);
+    }
 }
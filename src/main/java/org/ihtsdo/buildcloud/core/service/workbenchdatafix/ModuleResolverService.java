@@ -1,6 +1,7 @@
 package org.ihtsdo.buildcloud.core.service.workbenchdatafix;
 
 import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
+import org.ihtsdo.buildcloud.core.service.build.RF2Record;
 import org.ihtsdo.otf.rest.exception.BadInputFileException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,28 +12,28 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 @Service
 public class ModuleResolverService {
 
-	private final Pattern existingFileRowPattern;
-	private final Pattern inputFileRowPattern;
+	// RF2 Relationship fields:
+	// id effectiveTime active moduleId sourceId destinationId relationshipGroup typeId characteristicTypeId modifierId
+	private static final int ACTIVE = 2;
+	private static final int MODULE_ID = 3;
+	private static final int SOURCE_ID = 4;
+	private static final int DESTINATION_ID = 5;
+	private static final int TYPE_ID = 7;
+	private static final int CHARACTERISTIC_TYPE_ID = 8;
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(ModuleResolverService.class);
 
-	public ModuleResolverService() {
-		// RF2 Relationship fields:
-		// id effectiveTime active moduleId sourceId destinationId relationshipGroup typeId characteristicTypeId modifierId
-
-		// Pattern for matching row which is active with a moduleId of model and a typeId of isA. Group for sourceId extraction.
-		existingFileRowPattern = Pattern.compile("[^\t]*\t[^\t]*\t1\t" + RF2Constants.INTERNATIONAL_MODEL_COMPONENT_ID + "\t([^\t]*)\t[^\t]*\t[^\t]*\t" + RF2Constants.IS_A + "\t.*");
-
-		// Pattern for matching row which is active with a typeId of isA.
-		// We can't match on moduleId here because it's wrong in input files coming out of workbench.
-		// Groups for sourceId and destinationId extraction.
-		inputFileRowPattern = Pattern.compile("[^\t]*\t[^\t]*\t1\t[^\t]*\t([^\t]*)\t([^\t]*)\t[^\t]*\t" + RF2Constants.IS_A + "\t.*");
+	/**
+	 * @return true if the row is active with a typeId of isA, followed by at least one more field.
+	 * Fields are compared in place rather than with a regular expression.
+	 */
+	private static boolean isActiveIsA(RF2Record record) {
+		return record.hasField(CHARACTERISTIC_TYPE_ID) && record.fieldEquals(ACTIVE, RF2Constants.BOOLEAN_TRUE)
+				&& record.fieldEquals(TYPE_ID, RF2Constants.IS_A);
 	}
 
 	/**
@@ -45,10 +46,12 @@ public class ModuleResolverService {
 		try (BufferedReader snapshotReader = new BufferedReader(new InputStreamReader(previousStatedRelationshipSnapshot))) {
 			String line = snapshotReader.readLine();
 			if (line != null) {
+				final RF2Record record = new RF2Record();
 				while ((line = snapshotReader.readLine()) != null) {
-					Matcher matcher = existingFileRowPattern.matcher(line);
-					if (matcher.matches()) {
-						snapshotModelConceptIds.add(matcher.group(1));
+					record.reset(line);
+					// The moduleId of the model can be relied on in the published snapshot
+					if (isActiveIsA(record) && record.fieldEquals(MODULE_ID, RF2Constants.INTERNATIONAL_MODEL_COMPONENT_ID)) {
+						snapshotModelConceptIds.add(record.get(SOURCE_ID));
 					}
 				}
 			} else {
@@ -72,11 +75,13 @@ public class ModuleResolverService {
 		try (BufferedReader deltaReader = new BufferedReader(new InputStreamReader(inputStatedRelationshipDelta))) {
 			String line = deltaReader.readLine();
 			if (line != null) {
+				final RF2Record record = new RF2Record();
 				while ((line = deltaReader.readLine()) != null) {
-					Matcher matcher = inputFileRowPattern.matcher(line);
-					if (matcher.matches()) {
-						String sourceId = matcher.group(1);
-						String destinationId = matcher.group(2);
+					record.reset(line);
+					// We can't match on moduleId here because it's wrong in input files coming out of workbench.
+					if (isActiveIsA(record)) {
+						String sourceId = record.get(SOURCE_ID);
+						String destinationId = record.get(DESTINATION_ID);
 						if (!destinationIdToSourceIdListMap.containsKey(destinationId)) {
 							destinationIdToSourceIdListMap.put(destinationId, new ArrayList<>());
 						}
@@ -16,7 +16,10 @@ import jakarta.jms.JMSException;
 import jakarta.jms.MessageProducer;
 import jakarta.jms.Session;
 import jakarta.jms.TextMessage;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.UUID;
 
 public class TelemetryEventAppender extends WriterAppender {
@@ -27,6 +30,11 @@ public class TelemetryEventAppender extends WriterAppender {
 	private final Logger logger = LoggerFactory.getLogger(TelemetryEventAppender.class);
 	private String service;
 	private String environment = "LocalHost";
+	// Batching of events into one message per stream, off by default
+	private int batchSize = 1;
+	private long batchIntervalMillis = 1000;
+	private final Map<String, EventBatch> eventBatches = new LinkedHashMap<>();
+	private Timer batchTimer;
 
 	public TelemetryEventAppender() {
 		// Hardcoding pattern because should not be under host application control
@@ -44,7 +52,12 @@ public class TelemetryEventAppender extends WriterAppender {
 				if (MDC.get(Constants.START_STREAM) != null) {
 					message = createStartStreamMessage();
 				} else if (MDC.get(Constants.FINISH_STREAM) != null) {
+					// Events of the stream must reach the stream before it is finished
+					sendEventBatch((String) MDC.get(Constants.STREAM_ID));
 					message = createFinishStreamMessage();
+				} else if (batchSize > 1 && MDC.get(Constants.STREAM_ID) != null) {
+					addToEventBatch(event, (String) MDC.get(Constants.STREAM_ID));
+					return;
 				} else {
 					message = createEventMessage(event, this.service, this.environment);
 				}
@@ -96,15 +109,87 @@ public class TelemetryEventAppender extends WriterAppender {
 	}
 
 	private TextMessage createMessage(String text) throws JMSException {
+		return createMessage(text, (String) MDC.get(Constants.STREAM_ID));
+	}
+
+	private TextMessage createMessage(String text, String streamId) throws JMSException {
 		TextMessage message = session.createTextMessage();
-		String streamId = (String) MDC.get(Constants.STREAM_ID);
 		if (streamId != null) {
 			message.setJMSCorrelationID(streamId);
+			// Keeps the messages of a stream in order when the server has several consumers
+			message.setStringProperty(Constants.GROUP_ID, streamId);
 		}
 		message.setText(text);
 		return message;
 	}
 
+	private void addToEventBatch(LoggingEvent event, String streamId) throws JMSException {
+		EventBatch batch = eventBatches.computeIfAbsent(streamId, id -> new EventBatch(event.getTimeStamp()));
+		batch.text.append(this.layout.format(event));
+		String[] throwableStrRep = event.getThrowableStrRep();
+		if (throwableStrRep != null) {
+			batch.text.append(StringUtils.join(throwableStrRep, "\n")).append(Constants.LINE_BREAK);
+		}
+		batch.eventCount++;
+		if (batch.eventCount >= batchSize || System.currentTimeMillis() - batch.firstEventTimeStamp >= batchIntervalMillis) {
+			sendEventBatch(streamId);
+		}
+		if (batchTimer == null) {
+			batchTimer = new Timer("telemetry-event-batches", true);
+			batchTimer.schedule(new TimerTask() {
+				@Override
+				public void run() {
+					sendDueEventBatches();
+				}
+			}, batchIntervalMillis, batchIntervalMillis);
+		}
+	}
+
+	private void sendEventBatch(String streamId) throws JMSException {
+		EventBatch batch = streamId != null ? eventBatches.remove(streamId) : null;
+		if (batch != null) {
+			TextMessage message = createMessage(batch.text.toString(), streamId);
+			message.setIntProperty(Constants.EVENT_COUNT, batch.eventCount);
+			message.setLongProperty(Constants.TIME_STAMP, batch.firstEventTimeStamp);
+			message.setStringProperty(Constants.SERVICE, service);
+			message.setStringProperty(Constants.ENVIRONMENT, environment);
+			producer.send(message);
+		}
+	}
+
+	/**
+	 * Sends batches which have waited too long for more events. Synchronized with {@link #doAppend(LoggingEvent)} as the session is single threaded.
+	 */
+	private synchronized void sendDueEventBatches() {
+		long now = System.currentTimeMillis();
+		for (String streamId : eventBatches.keySet().toArray(new String[0])) {
+			if (now - eventBatches.get(streamId).firstEventTimeStamp >= batchIntervalMillis) {
+				try {
+					sendEventBatch(streamId);
+				} catch (JMSException e) {
+					logger.warn("Failed to send telemetry event batch.", e);
+				}
+			}
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		if (batchTimer != null) {
+			batchTimer.cancel();
+		}
+		if (producer != null) {
+			for (String streamId : eventBatches.keySet().toArray(new String[0])) {
+				try {
+					sendEventBatch(streamId);
+				} catch (JMSException e) {
+					logger.warn("Failed to send telemetry event batch.", e);
+				}
+			}
+		}
+		super.close();
+	}
+
 	private MessageProducer createProducer() {
 		try {
 			session = new JmsFactory().createSession();
@@ -133,4 +218,36 @@ public class TelemetryEventAppender extends WriterAppender {
 		}
 	}
 
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * @param batchSize the max number of log events sent in one message, 1 sends each event in its own message.
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	public long getBatchIntervalMillis() {
+		return batchIntervalMillis;
+	}
+
+	/**
+	 * @param batchIntervalMillis the max time an event waits in a batch before being sent.
+	 */
+	public void setBatchIntervalMillis(long batchIntervalMillis) {
+		this.batchIntervalMillis = Math.max(1, batchIntervalMillis);
+	}
+
+	private static final class EventBatch {
+		private final long firstEventTimeStamp;
+		private final StringBuilder text = new StringBuilder();
+		private int eventCount;
+
+		private EventBatch(long firstEventTimeStamp) {
+			this.firstEventTimeStamp = firstEventTimeStamp;
+		}
+	}
+
 }
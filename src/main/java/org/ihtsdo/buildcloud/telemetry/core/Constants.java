@@ -8,6 +8,8 @@ public class Constants {
 	public static final String TIME_STAMP = "timeStamp";
 	public static final String LEVEL = "level";
 	public static final String EXCEPTION = "exception";
+	public static final String EVENT_COUNT = "eventCount";
+	public static final String GROUP_ID = "JMSXGroupID";
 	public static final String SERVICE = "service";
 	public static final String ENVIRONMENT = "environment";
 	public static final String START_STREAM = "StartTelemetryStream";
@@ -2,8 +2,25 @@ package org.ihtsdo.buildcloud.telemetry.core;
 
 public class TelemetryStreamPathBuilder {
 
+	private static final String CHUNK_DIRECTORY_SUFFIX = ".chunks/";
+
 	public static String getS3StreamDestinationPath(String bucketName, String objectKey) {
 		return Constants.s3 + Constants.PROTOCOL_SEPARATOR + bucketName + "/" + objectKey;
 	}
 
+	/**
+	 * @return the prefix of the chunk objects holding the part of a log which has not yet been compacted into the log object.
+	 */
+	public static String getChunkPrefix(String objectKey) {
+		return objectKey + CHUNK_DIRECTORY_SUFFIX;
+	}
+
+	public static String getChunkKey(String objectKey, int chunkNumber) {
+		return getChunkPrefix(objectKey) + String.format("%08d", chunkNumber);
+	}
+
+	public static boolean isChunkKey(String key) {
+		return key.contains(CHUNK_DIRECTORY_SUFFIX);
+	}
+
 }
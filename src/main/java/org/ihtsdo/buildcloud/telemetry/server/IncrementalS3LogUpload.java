@@ -0,0 +1,160 @@
+package org.ihtsdo.buildcloud.telemetry.server;
+
+import io.awspring.cloud.s3.ObjectMetadata;
+import org.ihtsdo.buildcloud.telemetry.core.TelemetryStreamPathBuilder;
+import org.ihtsdo.otf.dao.s3.S3Client;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.s3.model.ListObjectsRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Uploads a telemetry log which is still being written as numbered chunk objects holding only the bytes
+ * written since the last upload, instead of uploading the whole log each time.
+ * When the stream finishes the chunks are compacted into the log object itself.
+ * Readers can follow a running log by reading the log object followed by its chunks, see {@link TelemetryStreamPathBuilder#getChunkPrefix(String)}.
+ */
+public class IncrementalS3LogUpload {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(IncrementalS3LogUpload.class);
+
+	private final S3Client s3Client;
+	private final String bucketName;
+	private final String objectKey;
+	private final File temporaryFile;
+	private long uploadedBytes;
+	private int nextChunk;
+
+	public IncrementalS3LogUpload(final S3Client s3Client, final String bucketName, final String objectKey, final File temporaryFile) {
+		this.s3Client = s3Client;
+		this.bucketName = bucketName;
+		this.objectKey = objectKey;
+		this.temporaryFile = temporaryFile;
+	}
+
+	/**
+	 * Compacts any chunks left by an earlier stream to the same log which did not finish, then starts with an empty temporary file.
+	 */
+	public void start() throws IOException {
+		final List<String> chunkKeys = listChunkKeys();
+		if (!chunkKeys.isEmpty()) {
+			LOGGER.info("Compacting {} chunks left from an earlier stream to {}", chunkKeys.size(), objectKey);
+			compact(chunkKeys, null);
+		}
+		Files.deleteIfExists(temporaryFile.toPath());
+	}
+
+	/**
+	 * Uploads the bytes written to the temporary file since the last upload as the next chunk.
+	 */
+	public synchronized void uploadNewBytes() {
+		final long length = temporaryFile.length();
+		if (length <= uploadedBytes) {
+			return;
+		}
+		final byte[] bytes = new byte[(int) (length - uploadedBytes)];
+		try (RandomAccessFile file = new RandomAccessFile(temporaryFile, "r")) {
+			file.seek(uploadedBytes);
+			file.readFully(bytes);
+			s3Client.putObject(bucketName, TelemetryStreamPathBuilder.getChunkKey(objectKey, nextChunk), new ByteArrayInputStream(bytes),
+					ObjectMetadata.builder().build(), bytes.length);
+			nextChunk++;
+			uploadedBytes = length;
+		} catch (IOException | S3Exception e) {
+			// The same bytes will be included in the next chunk
+			LOGGER.error("Error occurred while trying to upload log chunk for {} to S3.", objectKey, e);
+		}
+	}
+
+	/**
+	 * Uploads the complete log and removes the chunks.
+	 */
+	public synchronized void finish() {
+		uploadNewBytes();
+		try {
+			compact(listChunkKeys(), temporaryFile);
+			Files.deleteIfExists(temporaryFile.toPath());
+		} catch (IOException | S3Exception e) {
+			// Chunks which were not removed are compacted when the next stream to this log starts
+			LOGGER.error("Error occurred while trying to compact log chunks for {} in S3.", objectKey, e);
+		}
+	}
+
+	/**
+	 * Writes the existing log object followed by either the local content, which holds everything in the chunks, or the chunks themselves.
+	 */
+	private void compact(final List<String> chunkKeys, final File localContent) throws IOException {
+		final File compactedFile = new File(temporaryFile.getPath() + ".compacted");
+		try {
+			try (InputStream existingObjectInputStream = getObject(objectKey)) {
+				if (existingObjectInputStream != null) {
+					Files.copy(existingObjectInputStream, compactedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				} else {
+					Files.deleteIfExists(compactedFile.toPath());
+				}
+			}
+			try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(compactedFile, true))) {
+				if (localContent != null) {
+					Files.copy(localContent.toPath(), outputStream);
+				} else {
+					for (final String chunkKey : chunkKeys) {
+						try (InputStream chunkInputStream = getObject(chunkKey)) {
+							if (chunkInputStream != null) {
+								chunkInputStream.transferTo(outputStream);
+							}
+						}
+					}
+				}
+			}
+			try (InputStream inputStream = new FileInputStream(compactedFile)) {
+				s3Client.putObject(bucketName, objectKey, inputStream, ObjectMetadata.builder().build(), compactedFile.length());
+			}
+			for (final String chunkKey : chunkKeys) {
+				s3Client.deleteObject(bucketName, chunkKey);
+			}
+		} finally {
+			Files.deleteIfExists(compactedFile.toPath());
+		}
+	}
+
+	private InputStream getObject(final String key) {
+		try {
+			return s3Client.getObject(bucketName, key);
+		} catch (S3Exception e) {
+			if (e.statusCode() != 404) {
+				throw e;
+			}
+			return null;
+		}
+	}
+
+	private List<String> listChunkKeys() {
+		final String prefix = TelemetryStreamPathBuilder.getChunkPrefix(objectKey);
+		final List<String> keys = new ArrayList<>();
+		ListObjectsRequest listObjectsRequest = ListObjectsRequest.builder().bucket(bucketName).prefix(prefix).maxKeys(10000).build();
+		boolean done = false;
+		while (!done) {
+			final ListObjectsResponse listObjectsResponse = s3Client.listObjects(listObjectsRequest);
+			for (final S3Object s3Object : listObjectsResponse.contents()) {
+				keys.add(s3Object.key());
+			}
+			if (Boolean.TRUE.equals(listObjectsResponse.isTruncated())) {
+				final String nextMarker = listObjectsResponse.contents().get(listObjectsResponse.contents().size() - 1).key();
+				listObjectsRequest = ListObjectsRequest.builder().bucket(bucketName).prefix(prefix).maxKeys(10000).marker(nextMarker).build();
+			} else {
+				done = true;
+			}
+		}
+		// Chunk numbers are zero padded so key order is upload order
+		keys.sort(null);
+		return keys;
+	}
+}
@@ -1,8 +1,12 @@
 package org.ihtsdo.buildcloud.telemetry.server;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.activemq.transport.TransportDisposedIOException;
 import org.apache.commons.lang3.NotImplementedException;
 import org.ihtsdo.buildcloud.telemetry.core.Constants;
+import org.ihtsdo.buildcloud.telemetry.core.JmsFactory;
 import org.ihtsdo.otf.resourcemanager.ManualResourceConfiguration;
 import org.ihtsdo.otf.resourcemanager.ResourceConfiguration;
 import org.ihtsdo.otf.resourcemanager.ResourceManager;
@@ -25,9 +29,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import org.ihtsdo.otf.dao.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 
@@ -42,16 +49,36 @@ public class TelemetryProcessor {
 
 	private static final String TEMP_DIRECTORY_PATH = "/tmp/telemetry-tmp";
 
+	private static final int STREAM_LOCK_STRIPES = 32;
+
 	private final Map<String, BufferedWriter> streamWriters;
 	private final Map<String, Runnable> activeS3UploadTasks;
 	private final Map<String, Long> activeS3LastUploadMillis;
+	private final Map<String, Integer> unflushedLineCounts;
+	private final Map<String, Long> lastFlushMillis;
+
+	// Messages for one stream are handled under the same lock, whichever consumer receives them
+	private final Object[] streamLocks;
 
-	private boolean shutdown;
+	private volatile boolean shutdown;
 	private final boolean isOffline;
+	private final boolean incrementalUpload;
+
+	private final List<MessageConsumer> consumers;
+
+	private final List<Session> jmsSessions;
+
+	@Value("${srs.telemetry.flush-lines:100}")
+	private int flushLines;
+
+	@Value("${srs.telemetry.flush-interval-millis:1000}")
+	private long flushIntervalMillis;
 
-	private final MessageConsumer consumer;
+	@Autowired(required = false)
+	private MeterRegistry meterRegistry;
 
-	private final Session jmsSession;
+	private final AtomicLong eventsReceived = new AtomicLong();
+	private final AtomicLong lagMillis = new AtomicLong();
 
 	private final ResourceLoader resourceLoader;
 	private final S3Client s3Client;
@@ -59,14 +86,32 @@ public class TelemetryProcessor {
 	@Autowired
 	public TelemetryProcessor(final Session jmsSession, final ResourceLoader resourceLoader,
 			@Value("${srs.build.offlineMode}") final boolean isOffLine,
+			@Value("${srs.telemetry.incremental-upload:false}") final boolean incrementalUpload,
+			@Value("${srs.telemetry.consumers:4}") final int consumerCount,
 			final S3Client s3Client) throws JMSException {
 		this.streamWriters = new ConcurrentHashMap<>();
 		this.activeS3UploadTasks = new ConcurrentHashMap<>();
 		this.activeS3LastUploadMillis = new ConcurrentHashMap<>();
-		this.jmsSession = jmsSession;
-		this.consumer = jmsSession.createConsumer(jmsSession.createQueue(Constants.QUEUE_RELEASE_EVENTS));
+		this.unflushedLineCounts = new ConcurrentHashMap<>();
+		this.lastFlushMillis = new ConcurrentHashMap<>();
+		this.streamLocks = new Object[STREAM_LOCK_STRIPES];
+		for (int i = 0; i < STREAM_LOCK_STRIPES; i++) {
+			streamLocks[i] = new Object();
+		}
+		// Sessions are single threaded so each consumer has its own. The event appender groups messages by stream
+		// so the broker delivers all messages of one stream to the same consumer, in order.
+		this.jmsSessions = new ArrayList<>();
+		this.consumers = new ArrayList<>();
+		jmsSessions.add(jmsSession);
+		for (int i = 1; i < consumerCount; i++) {
+			jmsSessions.add(new JmsFactory().createSession());
+		}
+		for (final Session session : jmsSessions) {
+			consumers.add(session.createConsumer(session.createQueue(Constants.QUEUE_RELEASE_EVENTS)));
+		}
 		this.resourceLoader = resourceLoader;
 		this.isOffline = isOffLine;
+		this.incrementalUpload = incrementalUpload;
 		this.s3Client = s3Client;
 		new File(TEMP_DIRECTORY_PATH).mkdirs();
 	}
@@ -77,21 +122,36 @@ public class TelemetryProcessor {
 			shutdown = true;
 			closeOpenStreams();
 		}, "telemetry-processor-shutdown"));
-		new Thread(this::doStartUp).start();
+		registerMetrics();
+		for (int i = 0; i < consumers.size(); i++) {
+			final MessageConsumer consumer = consumers.get(i);
+			new Thread(() -> doStartUp(consumer), "telemetry-consumer-" + i).start();
+		}
+	}
+
+	private void registerMetrics() {
+		if (meterRegistry != null) {
+			FunctionCounter.builder("srs.telemetry.events", eventsReceived, AtomicLong::get)
+					.description("Telemetry events received").register(meterRegistry);
+			Gauge.builder("srs.telemetry.lag", lagMillis, AtomicLong::get)
+					.description("Time between the last event being logged and received").baseUnit("milliseconds").register(meterRegistry);
+			Gauge.builder("srs.telemetry.streams", streamWriters, Map::size)
+					.description("Open telemetry streams").register(meterRegistry);
+		}
 	}
 
-	private void doStartUp() {
+	private void doStartUp(final MessageConsumer consumer) {
 		boolean printedWaiting = false;
 		LOGGER.info("Telemetry server starting up.");
 		while (!shutdown) {
-			printedWaiting = doStartUp(printedWaiting);
+			printedWaiting = doStartUp(consumer, printedWaiting);
 		}
 		closeOpenStreams();
 	}
 
-	private boolean doStartUp(boolean printedWaiting) {
+	private boolean doStartUp(final MessageConsumer consumer, boolean printedWaiting) {
 		try {
-			printedWaiting = waitForMessage(printedWaiting);
+			printedWaiting = waitForMessage(consumer, printedWaiting);
 		} catch (IllegalStateException e) {
 			LOGGER.info("Connection closed. Shutting down telemetry consumer.");
 			shutdown = true;
@@ -104,12 +164,16 @@ public class TelemetryProcessor {
 		return printedWaiting;
 	}
 
-	private boolean waitForMessage(boolean printedWaiting) throws JMSException, IOException {
+	private boolean waitForMessage(final MessageConsumer consumer, boolean printedWaiting) throws JMSException, IOException {
 		if (!printedWaiting) {
 			LOGGER.debug("Waiting for message");
 			printedWaiting = true;
 		}
-		return processMessage(printedWaiting, (TextMessage) consumer.receive(ONE_SECOND));
+		final TextMessage message = (TextMessage) consumer.receive(ONE_SECOND);
+		if (message == null) {
+			flushIdleStreams();
+		}
+		return processMessage(printedWaiting, message);
 	}
 
 	private boolean processMessage(boolean printedWaiting, final TextMessage message) throws JMSException, IOException {
@@ -123,14 +187,44 @@ public class TelemetryProcessor {
 
 	private void processCorrelationID(final TextMessage message, final String correlationID) throws JMSException, IOException {
 		if (correlationID != null) {
-			processMessageText(message, correlationID, message.getText());
+			recordEvent(message);
+			final String text = message.getText();
+			if (Constants.START_STREAM.equals(text)) {
+				// Opening a stream can compact its log in S3, so it is done before taking the lock other streams share
+				final BufferedWriter writer = openStream(message, correlationID);
+				synchronized (getStreamLock(correlationID)) {
+					if (writer != null) {
+						streamWriters.put(correlationID, writer);
+					}
+				}
+			} else {
+				synchronized (getStreamLock(correlationID)) {
+					processMessageText(message, correlationID, text);
+				}
+			}
+		}
+	}
+
+	private void recordEvent(final TextMessage message) throws JMSException {
+		eventsReceived.addAndGet(getEventCount(message));
+		if (message.propertyExists(Constants.TIME_STAMP)) {
+			lagMillis.set(System.currentTimeMillis() - message.getLongProperty(Constants.TIME_STAMP));
 		}
 	}
 
+	/**
+	 * @return the number of log events in the message, which holds several when the appender batches events.
+	 */
+	private int getEventCount(final TextMessage message) throws JMSException {
+		return message.propertyExists(Constants.EVENT_COUNT) ? message.getIntProperty(Constants.EVENT_COUNT) : 1;
+	}
+
+	private Object getStreamLock(final String correlationID) {
+		return streamLocks[Math.floorMod(correlationID.hashCode(), STREAM_LOCK_STRIPES)];
+	}
+
 	private void processMessageText(final TextMessage message, final String correlationID, final String text) throws JMSException, IOException {
-		if (Constants.START_STREAM.equals(text)) {
-			startStream(message, correlationID);
-		} else if (Constants.FINISH_STREAM.equals(text)) {
+		if (Constants.FINISH_STREAM.equals(text)) {
 			finishStream(correlationID);
 		} else {
 			writeMessageTextAndFlush(message, correlationID, text);
@@ -141,14 +235,45 @@ public class TelemetryProcessor {
 		final BufferedWriter writer = streamWriters.get(correlationID);
 		if (writer != null) {
 			writeMessageText(message, text, writer);
-			// We need output to disk to be up to the minute, so flush each line
-			writer.flush();
-			pushS3StreamIfDue(correlationID);
+			// Output to disk needs to be up to date, but flushing every line limits throughput, so flush by count or time
+			final int unflushedLines = unflushedLineCounts.merge(correlationID, getEventCount(message), Integer::sum);
+			if (unflushedLines >= flushLines || isFlushDue(correlationID)) {
+				flushStream(correlationID, writer);
+			}
 		} else {
 			LOGGER.error("Attempting to write to stream but no open stream for correlationID {}.", correlationID);
 		}
 	}
 
+	private boolean isFlushDue(final String correlationID) {
+		return System.currentTimeMillis() - lastFlushMillis.getOrDefault(correlationID, 0L) >= flushIntervalMillis;
+	}
+
+	private void flushStream(final String correlationID, final BufferedWriter writer) throws IOException {
+		writer.flush();
+		unflushedLineCounts.remove(correlationID);
+		lastFlushMillis.put(correlationID, System.currentTimeMillis());
+		pushS3StreamIfDue(correlationID);
+	}
+
+	/**
+	 * Flushes streams which have lines waiting but no new messages, so the log doesn't stall between messages.
+	 */
+	private void flushIdleStreams() {
+		for (final String correlationID : unflushedLineCounts.keySet()) {
+			synchronized (getStreamLock(correlationID)) {
+				final BufferedWriter writer = streamWriters.get(correlationID);
+				if (writer != null && unflushedLineCounts.containsKey(correlationID) && isFlushDue(correlationID)) {
+					try {
+						flushStream(correlationID, writer);
+					} catch (IOException e) {
+						LOGGER.error("Failed to flush stream for correlationID {}.", correlationID, e);
+					}
+				}
+			}
+		}
+	}
+
 	private void writeMessageText(final TextMessage message, final String text, final BufferedWriter writer) throws IOException, JMSException {
 		writer.write(text);
 		final String exception = message.getStringProperty(Constants.EXCEPTION);
@@ -165,16 +290,16 @@ public class TelemetryProcessor {
 			streamWriters.remove(correlationID);
 			activeS3UploadTasks.remove(correlationID);
 			activeS3LastUploadMillis.remove(correlationID);
+			unflushedLineCounts.remove(correlationID);
+			lastFlushMillis.remove(correlationID);
 		} else {
 			LOGGER.error("Attempting to close stream but no open stream for correlationID {}", correlationID);
 		}
 	}
 
-	private void startStream(final TextMessage message, final String correlationID) throws JMSException, IOException {
+	private BufferedWriter openStream(final TextMessage message, final String correlationID) throws JMSException, IOException {
 		final String streamUri = message.getStringProperty(Constants.STREAM_URI);
-		if (streamUri != null) {
-			streamWriters.put(correlationID, createStreamWriter(correlationID, streamUri));
-		}
+		return streamUri != null ? createStreamWriter(correlationID, streamUri) : null;
 	}
 
 	private BufferedWriter createStreamWriter(final String correlationID, final String streamUri) throws IOException {
@@ -197,6 +322,10 @@ public class TelemetryProcessor {
 		final String bucketName = split1[0];
 		final String objectKey = split1[1];
 
+		if (incrementalUpload) {
+			return createIncrementalS3StreamWriter(correlationID, bucketName, objectKey);
+		}
+
 		final ResourceManager resourceManager =
 				new ResourceManager(new ManualResourceConfiguration(false, true,
 				new ResourceConfiguration.Local(), new ResourceConfiguration.Cloud(bucketName, objectKey)),
@@ -215,6 +344,23 @@ public class TelemetryProcessor {
 		});
 	}
 
+	private BufferedWriterTaskOnClose createIncrementalS3StreamWriter(final String correlationID, final String bucketName, final String objectKey) throws IOException {
+		final File temporaryFile = new File(TEMP_DIRECTORY_PATH + Constants.SLASH + correlationID);
+		final IncrementalS3LogUpload upload = new IncrementalS3LogUpload(s3Client, bucketName, objectKey, temporaryFile);
+		if (!isOffline) {
+			upload.start();
+		}
+
+		activeS3UploadTasks.put(correlationID, upload::uploadNewBytes);
+		activeS3LastUploadMillis.put(correlationID, System.currentTimeMillis());
+
+		return new BufferedWriterTaskOnClose(new FileWriter(temporaryFile, true), () -> {
+			if (!isOffline) {
+				upload.finish();
+			}
+		});
+	}
+
 	private void prepareTemporaryS3FileForAppend(final String bucketName, final String objectKey, final File temporaryFile) throws IOException {
 		try (InputStream existingObjectInputStream = s3Client.getObject(bucketName, objectKey)) {
 			if (existingObjectInputStream != null) {
@@ -269,8 +415,12 @@ public class TelemetryProcessor {
 	public final void shutdown() throws JMSException {
 		shutdown = true;
 		closeOpenStreams();
-		consumer.close();
-		jmsSession.close();
+		for (final MessageConsumer consumer : consumers) {
+			consumer.close();
+		}
+		for (final Session session : jmsSessions) {
+			session.close();
+		}
 	}
 
 	private void closeOpenStreams() {
@@ -283,6 +433,8 @@ public class TelemetryProcessor {
 			streamWriters.clear();
 			activeS3UploadTasks.clear();
 			activeS3LastUploadMillis.clear();
+			unflushedLineCounts.clear();
+			lastFlushMillis.clear();
 		}
 		activeWriters.forEach((correlationId, writer) -> {
 			try {
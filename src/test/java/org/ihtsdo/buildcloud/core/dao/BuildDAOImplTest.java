@@ -3,23 +3,35 @@ package org.ihtsdo.buildcloud.core.dao;
 import org.apache.commons.codec.binary.Base64;
 import org.ihtsdo.buildcloud.core.entity.Build;
 import org.ihtsdo.buildcloud.core.entity.Product;
+import org.ihtsdo.buildcloud.core.dao.helper.S3PathHelper;
 import org.ihtsdo.buildcloud.core.service.BuildService;
 import org.ihtsdo.buildcloud.rest.pojo.BuildPage;
+import org.ihtsdo.buildcloud.telemetry.core.TelemetryStreamPathBuilder;
+import org.ihtsdo.buildcloud.telemetry.server.IncrementalS3LogUpload;
 import org.ihtsdo.buildcloud.test.AbstractTest;
+import org.ihtsdo.otf.dao.s3.S3Client;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.transaction.annotation.Transactional;
+import software.amazon.awssdk.services.s3.model.ListObjectsRequest;
+import software.amazon.awssdk.services.s3.model.S3Object;
 
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -34,6 +46,12 @@ public class BuildDAOImplTest extends AbstractTest {
 	@Autowired
 	protected ProductDAO productDAO;
 
+	@Autowired
+	private S3Client s3Client;
+
+	@TempDir
+	File tempDir;
+
 	private Product product;
 
 	private Build build;
@@ -56,6 +74,97 @@ public class BuildDAOImplTest extends AbstractTest {
 		nextBuildMillis = creationTime.getTime() + 1000;
 	}
 
+	@AfterEach
+	public void resetIncrementalLogUpload() {
+		ReflectionTestUtils.setField(buildDAO, "incrementalLogUpload", false);
+	}
+
+	@Test
+	void testRunningLogReadWithItsChunks() throws IOException {
+		ReflectionTestUtils.setField(buildDAO, "incrementalLogUpload", true);
+		final File temporaryFile = new File(tempDir, "build_log");
+		final IncrementalS3LogUpload upload = newLogUpload(temporaryFile);
+		upload.start();
+
+		appendLine(temporaryFile, "first");
+		upload.uploadNewBytes();
+		appendLine(temporaryFile, "second");
+		upload.uploadNewBytes();
+		// Nothing new to upload
+		upload.uploadNewBytes();
+
+		assertEquals(2, listChunks().size());
+		assertEquals("first\nsecond\n", readLog());
+		assertFalse(buildDAO.listBuildLogFilePaths(build).stream().anyMatch(TelemetryStreamPathBuilder::isChunkKey));
+
+		appendLine(temporaryFile, "third");
+		upload.finish();
+
+		assertTrue(listChunks().isEmpty());
+		assertEquals("first\nsecond\nthird\n", readLog());
+		assertFalse(temporaryFile.exists());
+	}
+
+	@Test
+	void testChunksLeftByUnfinishedStreamCompactedOnNextStart() throws IOException {
+		ReflectionTestUtils.setField(buildDAO, "incrementalLogUpload", true);
+		final File temporaryFile = new File(tempDir, "build_log");
+		final IncrementalS3LogUpload unfinished = newLogUpload(temporaryFile);
+		unfinished.start();
+		appendLine(temporaryFile, "before restart");
+		unfinished.uploadNewBytes();
+
+		final IncrementalS3LogUpload restarted = newLogUpload(temporaryFile);
+		restarted.start();
+		assertFalse(temporaryFile.exists());
+		appendLine(temporaryFile, "after restart");
+		restarted.uploadNewBytes();
+
+		assertEquals("before restart\nafter restart\n", readLog());
+	}
+
+	@Test
+	void testChunksNotReadWhenIncrementalUploadDisabled() throws IOException {
+		final File temporaryFile = new File(tempDir, "build_log");
+		final IncrementalS3LogUpload upload = newLogUpload(temporaryFile);
+		upload.start();
+		appendLine(temporaryFile, "first");
+		upload.finish();
+		appendLine(temporaryFile, "not compacted");
+		upload.uploadNewBytes();
+
+		assertEquals("first\n", readLog());
+	}
+
+	private IncrementalS3LogUpload newLogUpload(File temporaryFile) {
+		return new IncrementalS3LogUpload(s3Client, getLogBucket(), getMainLogKey(), temporaryFile);
+	}
+
+	private String getLogBucket() {
+		return buildDAO.getTelemetryBuildLogFilePath(build).split("://", 2)[1].split("/", 2)[0];
+	}
+
+	private String getMainLogKey() {
+		return buildDAO.getTelemetryBuildLogFilePath(build).split("://", 2)[1].split("/", 2)[1];
+	}
+
+	private List<S3Object> listChunks() {
+		return s3Client.listObjects(ListObjectsRequest.builder().bucket(getLogBucket())
+				.prefix(TelemetryStreamPathBuilder.getChunkPrefix(getMainLogKey())).build()).contents();
+	}
+
+	private String readLog() throws IOException {
+		try (InputStream inputStream = buildDAO.getLogFileStream(build, S3PathHelper.BUILD_LOG_TXT)) {
+			return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private void appendLine(File file, String line) throws IOException {
+		try (FileWriter writer = new FileWriter(file, true)) {
+			writer.write(line + "\n");
+		}
+	}
+
 	@Test
     void testFind() {
 		// saved build
@@ -0,0 +1,113 @@
+package org.ihtsdo.buildcloud.core.dao;
+
+import org.ihtsdo.buildcloud.TestConfig;
+import org.ihtsdo.buildcloud.core.entity.BuildMetadata;
+import org.ihtsdo.buildcloud.core.service.BuildService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = TestConfig.class)
+@Transactional()
+public class BuildMetadataDaoImplTest {
+
+	private static final String RELEASE_CENTER = "international";
+	private static final String PRODUCT = "product";
+	private static final String STORAGE_PATH = "builds/";
+
+	@Autowired
+	private BuildMetadataDao buildMetadataDao;
+
+	@BeforeEach
+	public void setUp() {
+		save("2025-01-01T10:00:00", "RELEASE_COMPLETE", "Build B", false, true, false);
+		save("2025-02-01T10:00:00", "FAILED", "Build A", false, false, false);
+		save("2025-03-01T10:00:00", "RELEASE_COMPLETE", "Build C", true, true, false);
+		save("2025-04-01T10:00:00", "BUILT", "Build D", false, true, false);
+		save("2025-05-01T10:00:00", "BUILT", "Build E", false, true, true);
+	}
+
+	@Test
+	public void testFindBuildsInDescendingOrder() {
+		List<BuildMetadata> builds = findBuilds(null, BuildService.View.ALL_RELEASES, null, Sort.unsorted(), 0, 10);
+		assertEquals(List.of("2025-04-01T10:00:00", "2025-03-01T10:00:00", "2025-02-01T10:00:00", "2025-01-01T10:00:00"),
+				builds.stream().map(BuildMetadata::getBuildId).toList());
+		assertEquals(4, buildMetadataDao.countBuilds(RELEASE_CENTER, PRODUCT, STORAGE_PATH, null, BuildService.View.ALL_RELEASES, null));
+	}
+
+	@Test
+	public void testFindBuildsPaged() {
+		List<BuildMetadata> builds = findBuilds(null, BuildService.View.ALL_RELEASES, null, Sort.unsorted(), 2, 2);
+		assertEquals(List.of("2025-02-01T10:00:00", "2025-01-01T10:00:00"), builds.stream().map(BuildMetadata::getBuildId).toList());
+	}
+
+	@Test
+	public void testFindBuildsByVisibility() {
+		assertEquals(List.of("2025-02-01T10:00:00"),
+				findBuilds(false, BuildService.View.ALL_RELEASES, null, Sort.unsorted(), 0, 10).stream().map(BuildMetadata::getBuildId).toList());
+		assertEquals(3, buildMetadataDao.countBuilds(RELEASE_CENTER, PRODUCT, STORAGE_PATH, true, BuildService.View.ALL_RELEASES, null));
+	}
+
+	@Test
+	public void testFindBuildsByView() {
+		assertEquals(List.of("2025-03-01T10:00:00"),
+				findBuilds(null, BuildService.View.PUBLISHED, null, Sort.unsorted(), 0, 10).stream().map(BuildMetadata::getBuildId).toList());
+		assertEquals(3, buildMetadataDao.countBuilds(RELEASE_CENTER, PRODUCT, STORAGE_PATH, null, BuildService.View.UNPUBLISHED, null));
+		// Builds since the latest published build
+		assertEquals(List.of("2025-04-01T10:00:00", "2025-03-01T10:00:00"),
+				findBuilds(null, BuildService.View.DEFAULT, null, Sort.unsorted(), 0, 10).stream().map(BuildMetadata::getBuildId).toList());
+	}
+
+	@Test
+	public void testFindBuildsForYears() {
+		save("2024-12-01T10:00:00", "BUILT", "Build Z", false, true, false);
+		assertEquals(1, buildMetadataDao.countBuilds(RELEASE_CENTER, PRODUCT, STORAGE_PATH, null, BuildService.View.ALL_RELEASES, List.of(2024)));
+		assertEquals(5, buildMetadataDao.countBuilds(RELEASE_CENTER, PRODUCT, STORAGE_PATH, null, BuildService.View.ALL_RELEASES, List.of(2024, 2025)));
+	}
+
+	@Test
+	public void testFindBuildsSorted() {
+		assertEquals(List.of("Build A", "Build B", "Build C", "Build D"),
+				findBuilds(null, BuildService.View.ALL_RELEASES, null, Sort.by("buildName"), 0, 10).stream().map(BuildMetadata::getBuildName).toList());
+		// Statuses sort in the order they are declared in, builds with the same status in build id order
+		assertEquals(List.of("2025-04-01T10:00:00", "2025-02-01T10:00:00", "2025-01-01T10:00:00", "2025-03-01T10:00:00"),
+				findBuilds(null, BuildService.View.ALL_RELEASES, null, Sort.by("status"), 0, 10).stream().map(BuildMetadata::getBuildId).toList());
+	}
+
+	@Test
+	public void testFindAndDeleteAll() {
+		BuildMetadata metadata = buildMetadataDao.find(RELEASE_CENTER, PRODUCT, STORAGE_PATH, "2025-03-01T10:00:00");
+		assertNotNull(metadata);
+		assertEquals("Build C", metadata.getBuildName());
+		assertTrue(metadata.isPublished());
+		assertNull(buildMetadataDao.find(RELEASE_CENTER, PRODUCT, "regression-builds/", "2025-03-01T10:00:00"));
+
+		buildMetadataDao.deleteAll(RELEASE_CENTER, PRODUCT, STORAGE_PATH);
+		assertNull(buildMetadataDao.find(RELEASE_CENTER, PRODUCT, STORAGE_PATH, "2025-03-01T10:00:00"));
+	}
+
+	private List<BuildMetadata> findBuilds(Boolean visibility, BuildService.View viewMode, List<Integer> forYears, Sort sort, int firstResult, int maxResults) {
+		return buildMetadataDao.findBuilds(RELEASE_CENTER, PRODUCT, STORAGE_PATH, visibility, viewMode, forYears, sort, firstResult, maxResults);
+	}
+
+	private void save(String buildId, String status, String buildName, boolean published, boolean visible, boolean deleted) {
+		BuildMetadata metadata = new BuildMetadata(RELEASE_CENTER, PRODUCT, STORAGE_PATH, buildId);
+		metadata.setStatus(status);
+		metadata.setBuildName(buildName);
+		metadata.setPublished(published);
+		metadata.setTags(published ? "PUBLISHED" : null);
+		metadata.setVisible(visible);
+		metadata.setDeleted(deleted);
+		buildMetadataDao.save(metadata);
+	}
+}
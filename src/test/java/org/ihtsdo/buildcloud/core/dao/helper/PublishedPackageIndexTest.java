@@ -0,0 +1,73 @@
+package org.ihtsdo.buildcloud.core.dao.helper;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PublishedPackageIndexTest {
+
+	private static final String PACKAGE_ROOT = "SnomedCT_InternationalRF2_PRODUCTION_20250101T120000Z/";
+
+	@Test
+	void testFindFileByNameWithoutVersionDate() {
+		final PublishedPackageIndex index = PublishedPackageIndex.fromFilePaths(List.of(
+				PACKAGE_ROOT + "Delta/Terminology/sct2_Concept_Delta_INT_20250101.txt",
+				PACKAGE_ROOT + "Snapshot/Terminology/sct2_Concept_Snapshot_INT_20250101.txt",
+				PACKAGE_ROOT + "Full/Terminology/sct2_Concept_Full_INT_20250101.txt"));
+
+		assertEquals(PACKAGE_ROOT + "Snapshot/Terminology/sct2_Concept_Snapshot_INT_20250101.txt",
+				index.findFileContaining("sct2_Concept_Snapshot_INT").path());
+		assertNull(index.findFileContaining("sct2_Description_Snapshot-en_INT"));
+	}
+
+	@Test
+	void testFindFileContainingName() {
+		// Candidate release files have an x prefix
+		final PublishedPackageIndex index = PublishedPackageIndex.fromFilePaths(List.of(
+				PACKAGE_ROOT + "Snapshot/Terminology/xsct2_Concept_Snapshot_INT_20250101.txt",
+				PACKAGE_ROOT + "Snapshot/Terminology/xsct2_Relationship_Snapshot_INT_20250101.txt"));
+
+		assertEquals("xsct2_Concept_Snapshot_INT_20250101.txt", index.findFileContaining("sct2_Concept_Snapshot_INT").name());
+		assertEquals("xsct2_Relationship_Snapshot_INT_20250101.txt", index.findFileContaining("Relationship_Snapshot").name());
+	}
+
+	@Test
+	void testFirstFileInPackageContainingNameIsFound() {
+		final PublishedPackageIndex index = PublishedPackageIndex.fromFilePaths(List.of(
+				PACKAGE_ROOT + "Snapshot/Terminology/sct2_Relationship_Snapshot_INT_20250101.txt",
+				PACKAGE_ROOT + "Snapshot/Terminology/sct2_StatedRelationship_Snapshot_INT_20250101.txt"));
+
+		assertEquals("sct2_Relationship_Snapshot_INT_20250101.txt", index.findFileContaining("Relationship_Snapshot_INT").name());
+		assertEquals("sct2_StatedRelationship_Snapshot_INT_20250101.txt", index.findFileContaining("StatedRelationship_Snapshot_INT").name());
+	}
+
+	@Test
+	void testNamesNormalized() {
+		final PublishedPackageIndex index = PublishedPackageIndex.fromFilePaths(List.of(PACKAGE_ROOT + "Snapshot/Refset/Language/der2_cRefset_LanguageSnapshot-fr-cá_CA1000052_20250101.txt"));
+
+		assertNotNull(index.findFileContaining("der2_cRefset_LanguageSnapshot-fr-cá_CA1000052"));
+	}
+
+	@Test
+	void testWrittenIndexReadBack() throws IOException {
+		final PublishedPackageIndex index = new PublishedPackageIndex(List.of(
+				PublishedPackageIndex.newEntry(PACKAGE_ROOT + "Delta/Terminology/sct2_Concept_Delta_INT_20250101.txt", 1234, "0cc175b9c0f1b6a831c399e269772661"),
+				PublishedPackageIndex.newEntry(PACKAGE_ROOT + "Delta/Terminology/sct2_Description_Delta-en_INT_20250101.txt", 0, "d41d8cd98f00b204e9800998ecf8427e")));
+
+		final PublishedPackageIndex read = PublishedPackageIndex.read(new ByteArrayInputStream(index.toBytes()));
+
+		assertEquals(index.getEntries(), read.getEntries());
+		final PublishedPackageIndex.Entry entry = read.findFileContaining("sct2_Concept_Delta_INT");
+		assertEquals(1234, entry.size());
+		assertEquals("0cc175b9c0f1b6a831c399e269772661", entry.md5());
+	}
+
+	@Test
+	void testInvalidIndexRejected() {
+		assertThrows(IOException.class, () -> PublishedPackageIndex.read(new ByteArrayInputStream("not an index\n".getBytes())));
+	}
+}
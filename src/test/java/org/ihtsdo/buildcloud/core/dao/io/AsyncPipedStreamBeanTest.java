@@ -0,0 +1,70 @@
+package org.ihtsdo.buildcloud.core.dao.io;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncPipedStreamBeanTest {
+
+	private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+	private final CountDownLatch uploadStarted = new CountDownLatch(1);
+
+	// What the upload read, or the failure it ended with
+	private final CompletableFuture<byte[]> uploaded = new CompletableFuture<>();
+
+	@AfterEach
+	void tearDown() {
+		executorService.shutdownNow();
+	}
+
+	@Test
+	void testUploadCompletesWhenClosed() throws Exception {
+		final AsyncPipedStreamBean stream = startUpload();
+		stream.getOutputStream().write(new byte[] {1, 2, 3});
+		stream.getOutputStream().close();
+		stream.waitForFinish();
+
+		assertArrayEquals(new byte[] {1, 2, 3}, uploaded.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void testAbortFailsUploadInsteadOfCompletingIt() throws Exception {
+		final AsyncPipedStreamBean stream = startUpload();
+		stream.getOutputStream().write(new byte[] {1, 2, 3});
+		stream.getOutputStream().flush();
+		assertTrue(uploadStarted.await(5, TimeUnit.SECONDS));
+		stream.abort();
+
+		final ExecutionException e = assertThrows(ExecutionException.class, () -> uploaded.get(5, TimeUnit.SECONDS));
+		assertInstanceOf(IOException.class, e.getCause());
+	}
+
+	private AsyncPipedStreamBean startUpload() throws IOException {
+		final PipedInputStream pipedInputStream = new PipedInputStream();
+		final PipedOutputStream outputStream = new PipedOutputStream(pipedInputStream);
+		final Future<String> future = executorService.submit(() -> {
+			uploadStarted.countDown();
+			try {
+				uploaded.complete(pipedInputStream.readAllBytes());
+			} catch (IOException e) {
+				uploaded.completeExceptionally(e);
+				throw e;
+			}
+			return "file.txt";
+		});
+		return new AsyncPipedStreamBean(outputStream, future, "file.txt", pipedInputStream);
+	}
+}
@@ -0,0 +1,200 @@
+package org.ihtsdo.buildcloud.core.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModuleStorageCoordinatorPackageCacheTest {
+
+	private static final String INTERNATIONAL = "SNOMEDCT";
+	private static final String CORE_MODULE = "900000000000207008";
+
+	@TempDir
+	File tempDir;
+
+	private File cacheDirectory;
+	private LocalModuleStorage moduleStorage;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		cacheDirectory = new File(tempDir, "cache");
+		moduleStorage = new LocalModuleStorage(new File(tempDir, "storage"));
+		moduleStorage.addRelease("20250101", "sct2_Concept_Snapshot_INT_20250101.txt", 1000);
+		moduleStorage.addRelease("20250201", "sct2_Concept_Snapshot_INT_20250201.txt", 1000);
+	}
+
+	@Test
+	void testReleaseDownloadedOnceAndReused() throws Exception {
+		final ModuleStorageCoordinatorPackageCache cache = newCache(100);
+
+		final File first = cache.getExtractedPackage(INTERNATIONAL, CORE_MODULE, "20250101", () -> moduleStorage.download("20250101"));
+		assertTrue(new File(first, "sct2_Concept_Snapshot_INT_20250101.txt").isFile());
+		cache.release(first);
+		final File second = cache.getExtractedPackage(INTERNATIONAL, CORE_MODULE, "20250101", () -> moduleStorage.download("20250101"));
+		cache.release(second);
+
+		assertEquals(first, second);
+		assertTrue(second.isDirectory(), "Cached files are kept when released");
+		assertEquals(1, moduleStorage.downloads.get());
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertTrue(cache.getBytesSaved() > 0);
+	}
+
+	@Test
+	void testCacheSurvivesRestart() throws Exception {
+		final ModuleStorageCoordinatorPackageCache cache = newCache(100);
+		cache.release(cache.getExtractedPackage(INTERNATIONAL, CORE_MODULE, "20250101", () -> moduleStorage.download("20250101")));
+
+		final ModuleStorageCoordinatorPackageCache restarted = newCache(100);
+		restarted.release(restarted.getExtractedPackage(INTERNATIONAL, CORE_MODULE, "20250101", () -> moduleStorage.download("20250101")));
+
+		assertEquals(1, moduleStorage.downloads.get());
+		assertEquals(1, restarted.getHits());
+	}
+
+	@Test
+	void testCorruptedFilesDownloadedAgain() throws Exception {
+		final ModuleStorageCoordinatorPackageCache cache = newCache(100);
+		final File directory = cache.getExtractedPackage(INTERNATIONAL, CORE_MODULE, "20250101", () -> moduleStorage.download("20250101"));
+		cache.release(directory);
+		Files.writeString(new File(directory, "sct2_Concept_Snapshot_INT_20250101.txt").toPath(), "changed");
+
+		final File downloadedAgain = cache.getExtractedPackage(INTERNATIONAL, CORE_MODULE, "20250101", () -> moduleStorage.download("20250101"));
+		cache.release(downloadedAgain);
+
+		assertEquals(2, moduleStorage.downloads.get());
+		assertEquals(0, cache.getHits());
+		assertTrue(Files.readString(new File(downloadedAgain, "sct2_Concept_Snapshot_INT_20250101.txt").toPath()).startsWith("id\t"));
+	}
+
+	@Test
+	void testDiscardedPackageKeptUntilLastBuildUsingItReleasesIt() throws Exception {
+		final ModuleStorageCoordinatorPackageCache cache = newCache(100);
+		final File firstBuild = cache.getExtractedPackage(INTERNATIONAL, CORE_MODULE, "20250101", () -> moduleStorage.download("20250101"));
+		final File secondBuild = cache.getExtractedPackage(INTERNATIONAL, CORE_MODULE, "20250101", () -> moduleStorage.download("20250101"));
+		assertEquals(firstBuild, secondBuild);
+		Files.writeString(new File(firstBuild, "sct2_Concept_Snapshot_INT_20250101.txt").toPath(), "changed");
+
+		// Fails verification, so the package is downloaded again while the first two builds still use the old files
+		final File thirdBuild = cache.getExtractedPackage(INTERNATIONAL, CORE_MODULE, "20250101", () -> moduleStorage.download("20250101"));
+		assertNotEquals(firstBuild, thirdBuild);
+		assertEquals(2, moduleStorage.downloads.get());
+
+		cache.release(firstBuild);
+		assertTrue(secondBuild.isDirectory(), "Still used by the second build");
+		cache.release(secondBuild);
+		assertFalse(secondBuild.exists(), "Deleted with the last build using the discarded package");
+
+		assertTrue(thirdBuild.isDirectory());
+		cache.release(thirdBuild);
+		assertTrue(thirdBuild.isDirectory(), "The package downloaded again stays in the cache");
+		final File fourthBuild = cache.getExtractedPackage(INTERNATIONAL, CORE_MODULE, "20250101", () -> moduleStorage.download("20250101"));
+		cache.release(fourthBuild);
+		assertEquals(thirdBuild, fourthBuild);
+		assertEquals(2, moduleStorage.downloads.get());
+	}
+
+	@Test
+	void testLeastRecentlyUsedEvictedButNotWhileInUse() throws Exception {
+		// Room for one release only
+		final ModuleStorageCoordinatorPackageCache cache = new ModuleStorageCoordinatorPackageCache(cacheDirectory.getAbsolutePath(), 0, true);
+		cache.init();
+		final File january = cache.getExtractedPackage(INTERNATIONAL, CORE_MODULE, "20250101", () -> moduleStorage.download("20250101"));
+		assertTrue(january.isDirectory(), "A package in use is not evicted");
+
+		final File february = cache.getExtractedPackage(INTERNATIONAL, CORE_MODULE, "20250201", () -> moduleStorage.download("20250201"));
+		assertTrue(january.isDirectory());
+		cache.release(january);
+		assertFalse(january.isDirectory(), "Released package over the size limit is evicted");
+		assertTrue(february.isDirectory());
+		cache.release(february);
+	}
+
+	@Test
+	void testConcurrentBuildsShareOneDownload() throws Exception {
+		final ModuleStorageCoordinatorPackageCache cache = newCache(100);
+		final ExecutorService executorService = Executors.newFixedThreadPool(4);
+		try {
+			final CountDownLatch start = new CountDownLatch(1);
+			final Callable<File> build = () -> {
+				start.await();
+				final File directory = cache.getExtractedPackage(INTERNATIONAL, CORE_MODULE, "20250101", () -> moduleStorage.download("20250101"));
+				cache.release(directory);
+				return directory;
+			};
+			final Future<File> first = executorService.submit(build);
+			final Future<File> second = executorService.submit(build);
+			final Future<File> third = executorService.submit(build);
+			start.countDown();
+			assertEquals(first.get(), second.get());
+			assertEquals(first.get(), third.get());
+		} finally {
+			executorService.shutdown();
+		}
+		assertEquals(1, moduleStorage.downloads.get());
+		assertEquals(2, cache.getHits());
+	}
+
+	@Test
+	void testDisabledCacheExtractsToTemporaryDirectory() throws Exception {
+		final ModuleStorageCoordinatorPackageCache cache = new ModuleStorageCoordinatorPackageCache("", 100, true);
+		cache.init();
+		final File directory = cache.getExtractedPackage(INTERNATIONAL, CORE_MODULE, "20250101", () -> moduleStorage.download("20250101"));
+		assertTrue(new File(directory, "sct2_Concept_Snapshot_INT_20250101.txt").isFile());
+		cache.release(directory);
+		assertFalse(directory.exists());
+	}
+
+	private ModuleStorageCoordinatorPackageCache newCache(long maxSizeMB) throws IOException {
+		final ModuleStorageCoordinatorPackageCache cache = new ModuleStorageCoordinatorPackageCache(cacheDirectory.getAbsolutePath(), maxSizeMB, true);
+		cache.init();
+		return cache;
+	}
+
+	/**
+	 * Stands in for the Module Storage Coordinator, serving release packages from a local directory.
+	 * Each download is a new copy of the package, as the coordinator downloads packages to temporary files.
+	 */
+	private static class LocalModuleStorage {
+
+		private final File directory;
+		private final AtomicInteger downloads = new AtomicInteger();
+
+		LocalModuleStorage(File directory) {
+			this.directory = directory;
+			assertTrue(directory.mkdirs());
+		}
+
+		void addRelease(String effectiveTime, String filename, int rows) throws IOException {
+			try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(new File(directory, effectiveTime + ".zip")))) {
+				zipOutputStream.putNextEntry(new ZipEntry("SnomedCT_InternationalRF2_PRODUCTION_" + effectiveTime + "/Snapshot/Terminology/" + filename));
+				final StringBuilder content = new StringBuilder("id\teffectiveTime\tactive\tmoduleId\tdefinitionStatusId\r\n");
+				for (int i = 0; i < rows; i++) {
+					content.append(100000 + i).append("005\t").append(effectiveTime).append("\t1\t").append(CORE_MODULE).append("\t900000000000074008\r\n");
+				}
+				zipOutputStream.write(content.toString().getBytes(StandardCharsets.UTF_8));
+				zipOutputStream.closeEntry();
+			}
+		}
+
+		File download(String effectiveTime) throws IOException {
+			downloads.incrementAndGet();
+			final File downloaded = Files.createTempFile("msc-release", ".zip").toFile();
+			Files.copy(new File(directory, effectiveTime + ".zip").toPath(), downloaded.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+			return downloaded;
+		}
+	}
+}
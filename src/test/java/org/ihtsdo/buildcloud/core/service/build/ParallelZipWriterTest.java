@@ -0,0 +1,152 @@
+package org.ihtsdo.buildcloud.core.service.build;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelZipWriterTest {
+
+	private static final String HEADER = "id\teffectiveTime\tactive\tmoduleId\trefsetId\treferencedComponentId\r\n";
+
+	@TempDir
+	File tempDir;
+
+	@Test
+	void testMultiBlockEntriesReadBackByJavaZip() throws IOException {
+		final Map<String, byte[]> files = new LinkedHashMap<>();
+		files.put("Release/", new byte[0]);
+		// Repeated lines across the block boundaries, so that blocks refer back into the dictionary of the block before
+		files.put("Release/der2_Refset_SimpleSnapshot_INT_20250101.txt", rf2Lines(5 * ParallelZipWriter.BLOCK_SIZE / 2));
+		files.put("Release/der2_Refset_SimpleDelta_INT_20250101.txt", rf2Lines(ParallelZipWriter.BLOCK_SIZE * 2));
+		files.put("Release/random.bin", randomBytes(ParallelZipWriter.BLOCK_SIZE + 1));
+		files.put("Release/empty.txt", new byte[0]);
+
+		for (int level : new int[] {Deflater.DEFAULT_COMPRESSION, Deflater.NO_COMPRESSION, Deflater.BEST_COMPRESSION}) {
+			final Map<String, byte[]> entries = readAndVerify(zip(files, level, 4));
+			assertEquals(files.keySet(), entries.keySet());
+			for (Map.Entry<String, byte[]> file : files.entrySet()) {
+				assertArrayEquals(file.getValue(), entries.get(file.getKey()), file.getKey() + " at level " + level);
+			}
+		}
+	}
+
+	@Test
+	void testParallelCompressionMatchesSingleThreadedContent() throws IOException {
+		final Map<String, byte[]> files = Map.of("der2_Refset_SimpleSnapshot_INT_20250101.txt", rf2Lines(3 * ParallelZipWriter.BLOCK_SIZE + 100));
+		final Map<String, byte[]> single = readAndVerify(zip(files, Deflater.DEFAULT_COMPRESSION, 1));
+		final Map<String, byte[]> parallel = readAndVerify(zip(files, Deflater.DEFAULT_COMPRESSION, 3));
+		assertArrayEquals(single.get("der2_Refset_SimpleSnapshot_INT_20250101.txt"), parallel.get("der2_Refset_SimpleSnapshot_INT_20250101.txt"));
+	}
+
+	@Test
+	void testDuplicateEntryRejected() throws IOException {
+		try (ParallelZipWriter zipWriter = new ParallelZipWriter(new ByteArrayOutputStream(), Deflater.DEFAULT_COMPRESSION, 2)) {
+			zipWriter.putFile("a.txt", new ByteArrayInputStream(new byte[] {1}));
+			assertThrows(ZipException.class, () -> zipWriter.putFile("a.txt", new ByteArrayInputStream(new byte[] {1})));
+		}
+	}
+
+	@Test
+	void testAbortLeavesArchiveUnfinishedAndStreamOpen() throws IOException {
+		final ClosingByteArrayOutputStream out = new ClosingByteArrayOutputStream();
+		final ParallelZipWriter zipWriter = new ParallelZipWriter(out, Deflater.DEFAULT_COMPRESSION, 2);
+		zipWriter.putFile("a.txt", new ByteArrayInputStream(rf2Lines(ParallelZipWriter.BLOCK_SIZE + 1)));
+		final int written = out.size();
+		zipWriter.abort();
+		zipWriter.close();
+
+		assertFalse(out.closed);
+		assertEquals(written, out.size(), "No central directory is written");
+		assertThrows(IOException.class, () -> zipWriter.putFile("b.txt", InputStream.nullInputStream()));
+	}
+
+	private byte[] zip(Map<String, byte[]> files, int level, int parallelism) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ParallelZipWriter zipWriter = new ParallelZipWriter(out, level, parallelism)) {
+			for (Map.Entry<String, byte[]> file : files.entrySet()) {
+				if (file.getKey().endsWith("/")) {
+					zipWriter.putFolder(file.getKey());
+				} else {
+					zipWriter.putFile(file.getKey(), new ByteArrayInputStream(file.getValue()));
+				}
+			}
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Reads the entries with {@link ZipInputStream}, which checks each entry against its data descriptor,
+	 * and checks them against the checksums and sizes in the central directory read by {@link ZipFile}.
+	 */
+	private Map<String, byte[]> readAndVerify(byte[] zip) throws IOException {
+		final Map<String, byte[]> entries = new LinkedHashMap<>();
+		try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+			ZipEntry entry;
+			while ((entry = in.getNextEntry()) != null) {
+				entries.put(entry.getName(), in.readAllBytes());
+			}
+		}
+		final File zipFile = File.createTempFile("parallel", ".zip", tempDir);
+		Files.write(zipFile.toPath(), zip);
+		try (ZipFile readZip = new ZipFile(zipFile)) {
+			assertEquals(entries.size(), readZip.size());
+			for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+				final ZipEntry centralEntry = readZip.getEntry(entry.getKey());
+				final CRC32 crc = new CRC32();
+				crc.update(entry.getValue());
+				assertEquals(crc.getValue(), centralEntry.getCrc(), entry.getKey());
+				assertEquals(entry.getValue().length, centralEntry.getSize(), entry.getKey());
+				try (InputStream content = readZip.getInputStream(centralEntry)) {
+					assertArrayEquals(entry.getValue(), content.readAllBytes(), entry.getKey());
+				}
+			}
+		}
+		return entries;
+	}
+
+	private static byte[] rf2Lines(int size) {
+		final Random random = new Random(size);
+		final StringBuilder lines = new StringBuilder(size + 128).append(HEADER);
+		while (lines.length() < size) {
+			lines.append(random.nextInt(1000)).append("-uuid\t20250101\t1\t900000000000207008\t723264001\t")
+					.append(100000 + random.nextInt(1000)).append("\r\n");
+		}
+		lines.setLength(size);
+		return lines.toString().getBytes(StandardCharsets.US_ASCII);
+	}
+
+	private static byte[] randomBytes(int size) {
+		final byte[] bytes = new byte[size];
+		new Random(size).nextBytes(bytes);
+		return bytes;
+	}
+
+	private static class ClosingByteArrayOutputStream extends ByteArrayOutputStream {
+
+		private boolean closed;
+
+		@Override
+		public void close() throws IOException {
+			closed = true;
+			super.close();
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package org.ihtsdo.buildcloud.core.service.build;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RF2RecordTest {
+
+	private static final List<String> LINES = Arrays.asList(
+			"100022\t20140731\t1\t900000000000207008\t100000000\t0\t116680003",
+			"\t20140731\t1\t900000000000207008\t10000006\t138875005\t0\t116680003\t900000000000011006\t900000000000451002",
+			"a\t\t\tb\t",
+			"\t",
+			"",
+			"single");
+
+	@Test
+	public void testFieldsMatchStringSplit() {
+		RF2Record record = new RF2Record();
+		for (String line : LINES) {
+			record.reset(line);
+			String[] expected = line.split(RF2Constants.COLUMN_SEPARATOR, -1);
+			assertEquals(Arrays.asList(expected), Arrays.asList(record.toArray()), line);
+			assertEquals(expected.length, record.getFieldCount());
+			for (int limit = 1; limit <= expected.length + 1; limit++) {
+				assertEquals(Arrays.asList(line.split(RF2Constants.COLUMN_SEPARATOR, limit)), Arrays.asList(record.reset(line).toArray(limit)), line);
+			}
+			for (int field = 0; field < expected.length; field++) {
+				assertEquals(expected[field], record.reset(line).get(field));
+				assertEquals(expected[field].isEmpty(), record.isEmpty(field));
+				assertTrue(record.fieldEquals(field, expected[field]));
+				assertFalse(record.fieldEquals(field, expected[field] + "x"));
+			}
+			assertFalse(record.hasField(expected.length));
+		}
+	}
+
+	@Test
+	public void testPrimitiveFields() {
+		RF2Record record = new RF2Record(LINES.get(0));
+		assertEquals(100022L, record.getSctid());
+		assertEquals(20140731, record.getEffectiveTime());
+		assertTrue(record.isActive());
+		assertEquals(116680003L, record.getLong(6));
+		assertEquals("20140731\t1\t900000000000207008\t100000000\t0\t116680003", record.getFrom(1));
+		assertEquals("100022\t20140731", record.getTo(1));
+
+		record.reset(LINES.get(1));
+		assertThrows(NumberFormatException.class, record::getSctid);
+		assertEquals("116680003", record.get(7));
+		assertThrows(IndexOutOfBoundsException.class, () -> record.get(10));
+	}
+}
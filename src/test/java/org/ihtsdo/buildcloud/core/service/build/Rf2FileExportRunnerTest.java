@@ -21,8 +21,11 @@ import java.io.InputStream;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class Rf2FileExportRunnerTest extends AbstractTest {
 
@@ -169,6 +172,89 @@ public class Rf2FileExportRunnerTest extends AbstractTest {
 		StreamTestUtils.assertStreamsEqualLineByLine(getExpectedFileInputStreamFromResource(EXPECTED_ATTRIBUT_VALUE_FULL_FILE), dao.getOutputFileInputStream(build, EXPECTED_ATTRIBUT_VALUE_FULL_FILE));
 	}
 
+	@Test
+	public void testLargeFilesAreGeneratedFirst() {
+		List<String> files = new ArrayList<>(Arrays.asList(TRANSFORMED_SIMPLE_DELTA_FILE_NAME, LANGUAGE_REFSET,
+				"sct2_Description_Delta-en_INT_20140731.txt", "sct2_Relationship_Delta_INT_20140731.txt"));
+		files.sort(Comparator.comparingInt(Rf2FileExportRunner::getGenerationPriority));
+		assertEquals(Arrays.asList("sct2_Relationship_Delta_INT_20140731.txt", "sct2_Description_Delta-en_INT_20140731.txt",
+				LANGUAGE_REFSET, TRANSFORMED_SIMPLE_DELTA_FILE_NAME), files);
+	}
+
+	@Test
+	public void testConcurrencyLimit() {
+		assertEquals(1, new Rf2FileExportRunner(build, dao, null, null, 1).getConcurrencyLimit(10));
+		assertEquals(3, new Rf2FileExportRunner(build, dao, null, null, 1, 4, 0).getConcurrencyLimit(3));
+		assertEquals(4, new Rf2FileExportRunner(build, dao, null, null, 1, 4, 0).getConcurrencyLimit(10));
+		assertTrue(new Rf2FileExportRunner(build, dao, null, null, 1, 4, Integer.MAX_VALUE).getConcurrencyLimit(10) >= 1);
+	}
+
+	@Test
+	public void testGenerateReleaseFilesConcurrently() throws Exception {
+		buildConfiguration.setFirstTimeRelease(true);
+		buildConfiguration.setWorkbenchDataFixesRequired(false);
+		s3Client.putObject(storageBucketName, transformedFileFullPath + TRANSFORMED_SIMPLE_DELTA_FILE_NAME, getFileByName(TRANSFORMED_SIMPLE_DELTA_FILE_NAME));
+		s3Client.putObject(storageBucketName, transformedFileFullPath + TRANSFORMED_ATTRIBUT_VALUE_DELTA_FILE, getFileByName(TRANSFORMED_ATTRIBUT_VALUE_DELTA_FILE));
+
+		final Rf2FileExportRunner rf2ExportService = new Rf2FileExportRunner(build, dao, null, null, 1, 2, 0);
+		rf2ExportService.generateReleaseFiles();
+
+		final List<String> outputFiles = dao.listOutputFilePaths(build);
+		assertEquals(6, outputFiles.size());
+		StreamTestUtils.assertStreamsEqualLineByLine(getExpectedFileInputStreamFromResource(EXPECTED_SIMPLE_DELTA_FILE_NAME), dao.getOutputFileInputStream(build, EXPECTED_SIMPLE_DELTA_FILE_NAME));
+		StreamTestUtils.assertStreamsEqualLineByLine(getExpectedFileInputStreamFromResource(EXPECTED_SIMPLE_SNAPSHOT_FILE_NAME), dao.getOutputFileInputStream(build, EXPECTED_SIMPLE_SNAPSHOT_FILE_NAME));
+		StreamTestUtils.assertStreamsEqualLineByLine(getExpectedFileInputStreamFromResource(EXPECTED_SIMPLE_FULL_FILE_NAME), dao.getOutputFileInputStream(build, EXPECTED_SIMPLE_FULL_FILE_NAME));
+	}
+
+	@Test
+	public void testFilesGeneratedAtTheSameTime() throws Exception {
+		final CountDownLatch allRunning = new CountDownLatch(3);
+		final List<String> generated = Collections.synchronizedList(new ArrayList<>());
+		Rf2FileExportRunner.generateConcurrently(Arrays.asList("a", "b", "c"), 3, file -> {
+			allRunning.countDown();
+			try {
+				if (!allRunning.await(10, TimeUnit.SECONDS)) {
+					throw new ReleaseFileGenerationException("Files were not generated at the same time");
+				}
+			} catch (InterruptedException e) {
+				throw new ReleaseFileGenerationException("Interrupted", e);
+			}
+			generated.add(file);
+		});
+		assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), new HashSet<>(generated));
+	}
+
+	@Test
+	public void testFailedFileStopsTheOtherFiles() throws Exception {
+		final CountDownLatch slowFileRunning = new CountDownLatch(1);
+		final AtomicBoolean slowFileInterrupted = new AtomicBoolean();
+		final List<String> started = Collections.synchronizedList(new ArrayList<>());
+		final ReleaseFileGenerationException exception = assertThrows(ReleaseFileGenerationException.class,
+				() -> Rf2FileExportRunner.generateConcurrently(Arrays.asList("slow", "failing", "waiting"), 2, file -> {
+					started.add(file);
+					if (file.equals("slow")) {
+						slowFileRunning.countDown();
+						try {
+							Thread.sleep(30000);
+						} catch (InterruptedException e) {
+							slowFileInterrupted.set(true);
+							throw new ReleaseFileGenerationException("Interrupted", e);
+						}
+					} else if (file.equals("failing")) {
+						try {
+							slowFileRunning.await(10, TimeUnit.SECONDS);
+						} catch (InterruptedException e) {
+							throw new ReleaseFileGenerationException("Interrupted", e);
+						}
+						throw new ReleaseFileGenerationException("Broken file");
+					}
+				}));
+		assertEquals("Broken file", exception.getMessage());
+		// The slow file is stopped before the failure is thrown, the waiting file is never started
+		assertTrue(slowFileInterrupted.get());
+		assertFalse(started.contains("waiting"));
+	}
+
 	private InputStream getExpectedFileInputStreamFromResource(final String fileName) throws FileNotFoundException {
 		final String filePath = getClass().getResource("/org/ihtsdo/buildcloud/core/service/build/export/expected/" + fileName).getFile();
 		return new FileInputStream(filePath);
@@ -1,6 +1,8 @@
 package org.ihtsdo.buildcloud.core.service.build;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 import org.ihtsdo.buildcloud.core.dao.BuildDAOImpl;
 import org.ihtsdo.buildcloud.core.dao.ProductDAO;
 import org.ihtsdo.buildcloud.core.dao.helper.S3PathHelper;
@@ -24,6 +26,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.Map;
 
@@ -161,4 +164,40 @@ public class ZipperTest  extends AbstractTest {
 
 		LOGGER.info("Created Test Zip Archive: {}", zipFile.getAbsolutePath());
 	}
+
+	@Test
+	public void testZipperWithReadAheadAndParallelCompression() throws JAXBException, IOException, ResourceNotFoundException {
+
+		Zipper zipper = new Zipper(build, buildDAO);
+		zipper.setReadAhead(2);
+		zipper.setCompressionParallelism(2);
+		zipper.setCompressionLevel(0);
+		File zipFile = zipper.createZipFile(Zipper.FileTypeOption.NONE);
+
+		Map<String, String> zipContents = FileUtils.examineZipContents(zipFile.getName(), new FileInputStream(zipFile));
+		assertEquals(13, zipContents.size(), "Expecting 11 directories + 2 file = 13 items in zipped file");
+		assertTrue(zipContents.containsValue(FilenameUtils
+				.separatorsToSystem("SnomedCT_Release_INT_20140831/RF2Release/Delta/Refset/Content/der2_Refset_SimpleDelta_INT_20140831.txt")));
+		assertTrue(zipContents.containsValue(FilenameUtils
+				.separatorsToSystem("SnomedCT_Release_INT_20140831/RF2Release/Snapshot/Refset/Content/der2_Refset_SimpleSnapshot_INT_20140831.txt")));
+	}
+
+	@Test
+	public void testZipperInOutputFiles() throws JAXBException, IOException, ResourceNotFoundException {
+
+		Zipper zipper = new Zipper(build, buildDAO);
+		zipper.setCompressionParallelism(2);
+		String zipFilename = zipper.createZipFileInOutput(Zipper.FileTypeOption.NONE);
+		assertEquals("SnomedCT_Release_INT_20140831.zip", zipFilename);
+
+		Map<String, String> zipContents = FileUtils.examineZipContents(zipFilename, buildDAO.getOutputFileInputStream(build, zipFilename));
+		assertEquals(13, zipContents.size(), "Expecting 11 directories + 2 file = 13 items in zipped file");
+		assertTrue(zipContents.containsValue(FilenameUtils
+				.separatorsToSystem("SnomedCT_Release_INT_20140831/RF2Release/Delta/Refset/Content/der2_Refset_SimpleDelta_INT_20140831.txt")));
+
+		// The release package check expects the MD5 file next to the zip
+		String md5 = DigestUtils.md5Hex(buildDAO.getOutputFileInputStream(build, zipFilename));
+		String md5FileContent = IOUtils.toString(buildDAO.getOutputFileInputStream(build, zipFilename + RF2Constants.MD5_FILE_EXTENSION), StandardCharsets.UTF_8);
+		assertTrue(md5FileContent.contains(md5), "Expecting the MD5 file to hold the checksum of the zip");
+	}
 }
@@ -0,0 +1,135 @@
+package org.ihtsdo.buildcloud.core.service.build.compare;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileDiffGeneratorTest {
+
+	private static final String HEADER = "id\teffectiveTime\tactive\tmoduleId\tdefinitionStatusId";
+
+	private final FileDiffGenerator fileDiffGenerator = new FileDiffGenerator();
+
+	@Test
+	void testSameFilesHaveNoDifferences() throws IOException {
+		final String file = lines(HEADER, "100005\t20250101\t1\t900000000000207008\t900000000000074008");
+		final FileDiffReport report = findDiff(file, file, false);
+		assertTrue(report.getDeleteRows().isEmpty());
+		assertTrue(report.getInsertRows().isEmpty());
+		assertTrue(report.getChangeRows().isEmpty());
+	}
+
+	@Test
+	void testSnapshotRowsMatchedOnId() throws IOException {
+		final FileDiffReport report = findDiff(
+				lines(HEADER,
+						"100005\t20240101\t1\t900000000000207008\t900000000000074008",
+						"200008\t20240101\t1\t900000000000207008\t900000000000074008",
+						"300002\t20240101\t1\t900000000000207008\t900000000000074008"),
+				lines(HEADER,
+						"100005\t20250101\t1\t900000000000207008\t900000000000073002",
+						"300002\t20240101\t1\t900000000000207008\t900000000000074008",
+						"400009\t20250101\t1\t900000000000207008\t900000000000074008"),
+				false);
+
+		assertEquals(List.of("100005    20240101    1    900000000000207008    900000000000074008"), oldLines(report.getChangeRows()));
+		assertEquals(List.of("100005    20250101    1    900000000000207008    900000000000073002"), newLines(report.getChangeRows()));
+		assertEquals(List.of("200008    20240101    1    900000000000207008    900000000000074008"), oldLines(report.getDeleteRows()));
+		assertEquals(List.of("400009    20250101    1    900000000000207008    900000000000074008"), newLines(report.getInsertRows()));
+	}
+
+	@Test
+	void testFullFilesDifferingInOneRow() throws IOException {
+		final String left = lines(HEADER,
+				"100005\t20240101\t1\t900000000000207008\t900000000000074008",
+				"100005\t20250101\t0\t900000000000207008\t900000000000074008",
+				"200008\t20240101\t1\t900000000000207008\t900000000000074008",
+				"200008\t20250101\t1\t900000000000207008\t900000000000074008");
+		final String right = lines(HEADER,
+				"100005\t20240101\t1\t900000000000207008\t900000000000074008",
+				"100005\t20250101\t0\t900000000000207008\t900000000000074008",
+				"200008\t20240101\t1\t900000000000207008\t900000000000074008",
+				"200008\t20250101\t1\t900000000000207008\t900000000000073002");
+
+		final FileDiffReport report = findDiff(left, right, false);
+		assertEquals(1, report.getChangeRows().size());
+		assertEquals("200008    20250101    1    900000000000207008    900000000000074008", report.getChangeRows().get(0).getOldLine());
+		assertEquals("200008    20250101    1    900000000000207008    900000000000073002", report.getChangeRows().get(0).getNewLine());
+		assertTrue(report.getDeleteRows().isEmpty());
+		assertTrue(report.getInsertRows().isEmpty());
+	}
+
+	@Test
+	void testFullFileRowsOfOneIdMatchedOnEffectiveTime() throws IOException {
+		final FileDiffReport report = findDiff(
+				lines(HEADER,
+						"100005\t20240101\t1\t900000000000207008\t900000000000074008",
+						"100005\t20250101\t1\t900000000000207008\t900000000000074008"),
+				lines(HEADER,
+						"100005\t20240101\t1\t900000000000207008\t900000000000073002",
+						"100005\t20250101\t1\t900000000000207008\t900000000000073002",
+						"100005\t20250201\t0\t900000000000207008\t900000000000073002"),
+				false);
+
+		assertEquals(List.of("100005    20240101    1    900000000000207008    900000000000074008",
+				"100005    20250101    1    900000000000207008    900000000000074008"), oldLines(report.getChangeRows()));
+		assertEquals(List.of("100005    20240101    1    900000000000207008    900000000000073002",
+				"100005    20250101    1    900000000000207008    900000000000073002"), newLines(report.getChangeRows()));
+		assertTrue(report.getDeleteRows().isEmpty());
+		assertEquals(List.of("100005    20250201    0    900000000000207008    900000000000073002"), newLines(report.getInsertRows()));
+	}
+
+	@Test
+	void testRowsOnlyDifferingByIdReportedAsChangedUnlessIdsIgnored() throws IOException {
+		final String left = lines(HEADER, "100005\t20250101\t1\t900000000000207008\t900000000000074008");
+		final String right = lines(HEADER, "100006\t20250101\t1\t900000000000207008\t900000000000074008");
+
+		final FileDiffReport report = findDiff(left, right, false);
+		assertEquals(List.of("100005    20250101    1    900000000000207008    900000000000074008"), oldLines(report.getChangeRows()));
+		assertEquals(List.of("100006    20250101    1    900000000000207008    900000000000074008"), newLines(report.getChangeRows()));
+		assertTrue(report.getDeleteRows().isEmpty());
+		assertTrue(report.getInsertRows().isEmpty());
+
+		final FileDiffReport ignoringIds = findDiff(left, right, true);
+		assertTrue(ignoringIds.getChangeRows().isEmpty());
+		assertTrue(ignoringIds.getDeleteRows().isEmpty());
+		assertTrue(ignoringIds.getInsertRows().isEmpty());
+	}
+
+	@Test
+	void testLinesNormalizedAndLinesWithoutIdSkipped() throws IOException {
+		final FileDiffReport report = findDiff(
+				lines(HEADER, "\t20250101\tno id", "100005\t20250101\t1\t900000000000207008\ta < b"),
+				lines(HEADER, "\t20250101\tno id either", "100005\t20250101\t1\t900000000000207008\ta > b"),
+				false);
+
+		assertEquals(List.of("100005    20250101    1    900000000000207008    a &lt; b"), oldLines(report.getChangeRows()));
+		assertEquals(List.of("100005    20250101    1    900000000000207008    a &gt; b"), newLines(report.getChangeRows()));
+		assertTrue(report.getDeleteRows().isEmpty());
+		assertTrue(report.getInsertRows().isEmpty());
+	}
+
+	private FileDiffReport findDiff(String left, String right, boolean ignoreIdComparison) throws IOException {
+		final FileDiffReport report = new FileDiffReport();
+		fileDiffGenerator.findDiff(new ByteArrayInputStream(left.getBytes(StandardCharsets.UTF_8)),
+				new ByteArrayInputStream(right.getBytes(StandardCharsets.UTF_8)), ignoreIdComparison, report);
+		return report;
+	}
+
+	private static String lines(String... lines) {
+		return String.join("\r\n", lines) + "\r\n";
+	}
+
+	private static List<String> oldLines(List<DiffRow> rows) {
+		return rows.stream().map(DiffRow::getOldLine).toList();
+	}
+
+	private static List<String> newLines(List<DiffRow> rows) {
+		return rows.stream().map(DiffRow::getNewLine).toList();
+	}
+}
@@ -0,0 +1,135 @@
+package org.ihtsdo.buildcloud.core.service.build.compare;
+
+import org.ihtsdo.buildcloud.core.entity.Build;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReleasePackageCacheTest {
+
+	private static final String CONCEPTS = "id\teffectiveTime\tactive\tmoduleId\tdefinitionStatusId\r\n"
+			+ "100005\t20250101\t1\t900000000000207008\t900000000000074008\r\n";
+
+	@TempDir
+	File tempDir;
+
+	private final AtomicInteger downloads = new AtomicInteger();
+
+	private ReleasePackageCache cache;
+
+	@AfterEach
+	void tearDown() {
+		if (cache != null) {
+			cache.shutdown();
+		}
+	}
+
+	@Test
+	void testPackageDownloadedOnceAndReused() throws IOException {
+		cache = new ReleasePackageCache(4, 2);
+		final Build build = newBuild("2025-01-01T10:00:00");
+
+		final ReleasePackageCache.ExtractedPackage first = cache.getExtractedPackage(build, () -> zip("xsct2_Concept_Snapshot_INT_20250101.txt", CONCEPTS));
+		cache.release(first);
+		final ReleasePackageCache.ExtractedPackage second = cache.getExtractedPackage(build, () -> zip("xsct2_Concept_Snapshot_INT_20250101.txt", CONCEPTS));
+		cache.release(second);
+
+		assertSame(first, second);
+		assertEquals(1, downloads.get());
+		assertNotNull(first.getFile("xsct2_Concept_Snapshot_INT_20250101.txt"));
+		assertNull(first.getFile("sct2_Concept_Snapshot_INT_20250101.txt"));
+		assertEquals(Map.of("sct2_Concept_Snapshot_INT", "xsct2_Concept_Snapshot_INT_20250101.txt"), first.getFileNamesByNormalizedName());
+	}
+
+	@Test
+	void testDigestsMatchForSameContent() throws IOException {
+		cache = new ReleasePackageCache(4, 2);
+		final ReleasePackageCache.ExtractedPackage left = cache.getExtractedPackage(newBuild("2025-01-01T10:00:00"),
+				() -> zip("sct2_Concept_Snapshot_INT_20250101.txt", CONCEPTS));
+		final ReleasePackageCache.ExtractedPackage same = cache.getExtractedPackage(newBuild("2025-02-01T10:00:00"),
+				() -> zip("sct2_Concept_Snapshot_INT_20250201.txt", CONCEPTS));
+		final ReleasePackageCache.ExtractedPackage changed = cache.getExtractedPackage(newBuild("2025-03-01T10:00:00"),
+				() -> zip("sct2_Concept_Snapshot_INT_20250301.txt", CONCEPTS.replace("\t1\t", "\t0\t")));
+
+		final String leftDigest = left.getDigests().get("sct2_Concept_Snapshot_INT_20250101.txt");
+		assertEquals(64, leftDigest.length());
+		assertEquals(leftDigest, same.getDigests().get("sct2_Concept_Snapshot_INT_20250201.txt"));
+		assertNotEquals(leftDigest, changed.getDigests().get("sct2_Concept_Snapshot_INT_20250301.txt"));
+	}
+
+	@Test
+	void testLeastRecentlyUsedPackageEvictedOnceReleased() throws IOException {
+		cache = new ReleasePackageCache(1, 1);
+		final ReleasePackageCache.ExtractedPackage first = cache.getExtractedPackage(newBuild("2025-01-01T10:00:00"),
+				() -> zip("sct2_Concept_Snapshot_INT_20250101.txt", CONCEPTS));
+		final ReleasePackageCache.ExtractedPackage second = cache.getExtractedPackage(newBuild("2025-02-01T10:00:00"),
+				() -> zip("sct2_Concept_Snapshot_INT_20250201.txt", CONCEPTS));
+
+		assertTrue(first.getDirectory().isDirectory(), "A package in use is kept");
+		assertEquals(2, cache.size());
+
+		cache.release(first);
+		assertFalse(first.getDirectory().exists());
+		assertEquals(1, cache.size());
+
+		cache.release(second);
+		assertTrue(second.getDirectory().isDirectory());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	void testPackageAskedForAtTheSameTimeDownloadedOnce() throws Exception {
+		cache = new ReleasePackageCache(4, 2);
+		final Build build = newBuild("2025-01-01T10:00:00");
+		final CountDownLatch downloading = new CountDownLatch(1);
+		final ExecutorService executorService = Executors.newSingleThreadExecutor();
+		try {
+			final Future<ReleasePackageCache.ExtractedPackage> first = executorService.submit(() -> cache.getExtractedPackage(build, () -> {
+				downloading.countDown();
+				// Hold the download so that the second request waits for it rather than downloading again
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(200));
+				return zip("sct2_Concept_Snapshot_INT_20250101.txt", CONCEPTS);
+			}));
+			assertTrue(downloading.await(10, TimeUnit.SECONDS));
+			final ReleasePackageCache.ExtractedPackage second = cache.getExtractedPackage(build, () -> zip("sct2_Concept_Snapshot_INT_20250101.txt", CONCEPTS));
+			assertSame(first.get(10, TimeUnit.SECONDS), second);
+			assertEquals(1, downloads.get());
+			cache.release(second);
+			cache.release(second);
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	private Build newBuild(String id) {
+		return new Build(id, "international", "snomed_ct_international_edition", null);
+	}
+
+	private File zip(String fileName, String content) throws IOException {
+		downloads.incrementAndGet();
+		final File zipFile = File.createTempFile("release-package", ".zip", tempDir);
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zipFile))) {
+			out.putNextEntry(new ZipEntry("SnomedCT_Release/Snapshot/Terminology/" + fileName));
+			out.write(content.getBytes(StandardCharsets.UTF_8));
+			out.closeEntry();
+		}
+		return zipFile;
+	}
+}
@@ -0,0 +1,120 @@
+package org.ihtsdo.buildcloud.core.service.build.compare.type;
+
+import org.ihtsdo.buildcloud.core.entity.Build;
+import org.ihtsdo.buildcloud.core.service.build.compare.BuildComparisonManager;
+import org.ihtsdo.buildcloud.core.service.build.compare.DefaultComponentComparisonReport;
+import org.ihtsdo.buildcloud.core.service.build.compare.HighLevelComparisonReport;
+import org.ihtsdo.buildcloud.core.service.build.compare.ReleasePackageCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReleasePackageComparisonTest {
+
+	private static final String CONCEPTS = "id\teffectiveTime\tactive\tmoduleId\tdefinitionStatusId\r\n"
+			+ "100005\t20250101\t1\t900000000000207008\t900000000000074008\r\n";
+
+	private static final String DESCRIPTIONS = "id\teffectiveTime\tactive\tmoduleId\tconceptId\r\n"
+			+ "101013\t20250101\t1\t900000000000207008\t100005\r\n";
+
+	@TempDir
+	File tempDir;
+
+	private ReleasePackageCache cache;
+
+	private ReleasePackageComparison comparison;
+
+	@BeforeEach
+	void setUp() {
+		cache = new ReleasePackageCache(4, 2);
+		comparison = new ReleasePackageComparison(null, null, cache);
+	}
+
+	@AfterEach
+	void tearDown() {
+		cache.shutdown();
+	}
+
+	@Test
+	void testFilesMatchedOnNormalizedName() throws IOException {
+		final Build left = cachedBuild("2025-01-01T10:00:00", Map.of(
+				"sct2_Concept_Snapshot_INT_20250101.txt", CONCEPTS,
+				"sct2_Description_Snapshot-en_INT_20250101.txt", DESCRIPTIONS));
+		// The beta prefix and release date are left out when matching, so unchanged content passes
+		final Build right = cachedBuild("2025-02-01T10:00:00", Map.of(
+				"xsct2_Concept_Snapshot_INT_20250201.txt", CONCEPTS,
+				"xsct2_Description_Snapshot-en_INT_20250201.txt", DESCRIPTIONS));
+
+		comparison.findDiff(left, right);
+
+		assertEquals(HighLevelComparisonReport.State.PASS, comparison.getReport().getResult());
+	}
+
+	@Test
+	void testChangedDeletedAndAddedFilesReported() throws IOException {
+		final Build left = cachedBuild("2025-01-01T10:00:00", Map.of(
+				"sct2_Concept_Snapshot_INT_20250101.txt", CONCEPTS,
+				"sct2_Description_Snapshot-en_INT_20250101.txt", DESCRIPTIONS));
+		final Build right = cachedBuild("2025-02-01T10:00:00", Map.of(
+				"xsct2_Concept_Snapshot_INT_20250201.txt", CONCEPTS.replace("\t1\t", "\t0\t"),
+				"sct2_TextDefinition_Snapshot-en_INT_20250201.txt", DESCRIPTIONS));
+
+		comparison.findDiff(left, right);
+
+		final HighLevelComparisonReport report = comparison.getReport();
+		assertEquals(HighLevelComparisonReport.State.FAILED, report.getResult());
+		final Map<String, DefaultComponentComparisonReport> byStatus = new LinkedHashMap<>();
+		for (Object detail : (List<?>) report.getDetails()) {
+			final DefaultComponentComparisonReport fileReport = (DefaultComponentComparisonReport) detail;
+			assertEquals(ReleasePackageComparison.PackageTestName.FILE_CONTENT.name(), fileReport.getName());
+			assertNull(byStatus.put(fileReport.getStatus(), fileReport));
+		}
+		assertEquals(3, byStatus.size());
+
+		final DefaultComponentComparisonReport changed = byStatus.get(BuildComparisonManager.ComparisonState.CONTENT_MISMATCH.name());
+		assertEquals("sct2_Concept_Snapshot_INT_20250101.txt", changed.getExpected());
+		assertEquals("xsct2_Concept_Snapshot_INT_20250201.txt", changed.getActual());
+
+		final DefaultComponentComparisonReport deleted = byStatus.get(BuildComparisonManager.ComparisonState.DELETED.name());
+		assertEquals("sct2_Description_Snapshot-en_INT_20250101.txt", deleted.getExpected());
+		assertNull(deleted.getActual());
+
+		final DefaultComponentComparisonReport added = byStatus.get(BuildComparisonManager.ComparisonState.ADD_NEW.name());
+		assertNull(added.getExpected());
+		assertEquals("sct2_TextDefinition_Snapshot-en_INT_20250201.txt", added.getActual());
+	}
+
+	/**
+	 * Puts the package of the build in the cache, so that the comparison finds it there rather than downloading it.
+	 */
+	private Build cachedBuild(String id, Map<String, String> files) throws IOException {
+		final Build build = new Build(id, "international", "snomed_ct_international_edition", null);
+		cache.release(cache.getExtractedPackage(build, () -> zip(files)));
+		return build;
+	}
+
+	private File zip(Map<String, String> files) throws IOException {
+		final File zipFile = File.createTempFile("release-package", ".zip", tempDir);
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zipFile))) {
+			for (Map.Entry<String, String> file : files.entrySet()) {
+				out.putNextEntry(new ZipEntry("SnomedCT_Release/Snapshot/Terminology/" + file.getKey()));
+				out.write(file.getValue().getBytes(StandardCharsets.UTF_8));
+				out.closeEntry();
+			}
+		}
+		return zipFile;
+	}
+}
@@ -1,13 +1,19 @@
 package org.ihtsdo.buildcloud.core.service.build.database.map;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.ihtsdo.buildcloud.core.service.build.database.PreviousSnapshotFixup;
 import org.ihtsdo.buildcloud.core.service.build.database.RF2TableExportDAO;
 import org.ihtsdo.buildcloud.core.service.build.database.RF2TableResults;
 import org.ihtsdo.buildcloud.test.StreamTestUtils;
@@ -17,6 +23,8 @@ import org.junit.jupiter.api.Test;
 
 import com.google.common.collect.Lists;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 public class RF2TableDAOTreeMapImplTest {
 
 	private RF2TableExportDAO dao;
@@ -25,7 +33,11 @@ public class RF2TableDAOTreeMapImplTest {
 	@BeforeEach
 	public void setUp() throws Exception {
 		customRefsetCompositeKeys = new HashMap<>();
-		dao = new RF2TableExportDAOImpl(customRefsetCompositeKeys);
+		dao = createDao(customRefsetCompositeKeys);
+	}
+
+	protected RF2TableExportDAO createDao(Map<String, List<Integer>> customRefsetCompositeKeys) {
+		return new RF2TableExportDAOImpl(customRefsetCompositeKeys);
 	}
 
 	@Test
@@ -33,7 +45,7 @@ public class RF2TableDAOTreeMapImplTest {
 		String effectiveTime = "20140731";
 
 		String deltaInput = "rel2_Refset_SimpleDelta_INT_20140731.txt";
-		Class<?> thisClass = getClass();
+		Class<?> thisClass = RF2TableDAOTreeMapImplTest.class;
 		TableSchema tableSchema = dao.createTable(deltaInput, thisClass.getResourceAsStream(deltaInput), true);
 
 		String previousSnapshot = "der2_Refset_SimpleSnapshot_INT_20140131.txt";
@@ -50,7 +62,7 @@ public class RF2TableDAOTreeMapImplTest {
 		String effectiveTime = "20140731";
 
 		String deltaInput = "rel2_cRefset_AssociationReferenceDelta_INT_20140731.txt";
-		Class<?> thisClass = getClass();
+		Class<?> thisClass = RF2TableDAOTreeMapImplTest.class;
 		TableSchema tableSchema = dao.createTable(deltaInput, thisClass.getResourceAsStream(deltaInput), true);
 
 		String previousSnapshot = "der2_cRefset_AssociationReferenceSnapshot_INT_20140131.txt";
@@ -68,7 +80,7 @@ public class RF2TableDAOTreeMapImplTest {
 		String effectiveTime = "20140731";
 
 		String deltaInput = "rel2_cRefset_AssociationReferenceDelta_INT_20140731.txt";
-		Class<?> thisClass = getClass();
+		Class<?> thisClass = RF2TableDAOTreeMapImplTest.class;
 		TableSchema tableSchema = dao.createTable(deltaInput, thisClass.getResourceAsStream(deltaInput), true);
 
 		String previousSnapshot = "der2_cRefset_AssociationReferenceSnapshot_INT_20140131.txt";
@@ -85,14 +97,114 @@ public class RF2TableDAOTreeMapImplTest {
 	public void testSelectDeltaFromSnapshot() throws Exception {
 		String newSnapshot = "der2_cRefset_AssociationReferenceSnapshot_D_20140731.txt.txt";
 
-		TableSchema table = dao.createTable(newSnapshot, getClass().getResourceAsStream(newSnapshot), false);
+		TableSchema table = dao.createTable(newSnapshot, RF2TableDAOTreeMapImplTest.class.getResourceAsStream(newSnapshot), false);
 
 		String expectedNewDelta = "der2_cRefset_AssociationReferenceDelta_D_20140731.txt";
 		RF2TableResults results = dao.selectWithEffectiveDateOrdered(table, "20140731");
-		StreamTestUtils.assertStreamsEqualLineByLine(expectedNewDelta, getClass().getResourceAsStream(expectedNewDelta),
+		StreamTestUtils.assertStreamsEqualLineByLine(expectedNewDelta, RF2TableDAOTreeMapImplTest.class.getResourceAsStream(expectedNewDelta),
 				new RF2TableResultsReaderHack(results));
 	}
 
+	@Test
+	public void testApplyPreviousSnapshotFixups_simpleRefset() throws Exception {
+		String effectiveTime = "20140731";
+		String deltaInput = "rel2_Refset_SimpleDelta_INT_20140731.txt";
+		String previousSnapshot = "der2_Refset_SimpleSnapshot_INT_20140131.txt";
+		Class<?> thisClass = RF2TableDAOTreeMapImplTest.class;
+
+		// Fixes applied one after another, each reading the previous snapshot
+		RF2TableExportDAO separateDao = createDao(customRefsetCompositeKeys);
+		TableSchema separateTable = separateDao.createTable(deltaInput, thisClass.getResourceAsStream(deltaInput), true);
+		separateDao.reconcileRefsetMemberIds(thisClass.getResourceAsStream(previousSnapshot), previousSnapshot, effectiveTime);
+		separateDao.discardAlreadyPublishedDeltaStates(thisClass.getResourceAsStream(previousSnapshot), previousSnapshot, effectiveTime);
+
+		TableSchema tableSchema = dao.createTable(deltaInput, thisClass.getResourceAsStream(deltaInput), true);
+		PreviousSnapshotFixup reconciliation = dao.newRefsetMemberIdReconciliation(previousSnapshot, effectiveTime);
+		PreviousSnapshotFixup discard = dao.newAlreadyPublishedDeltaStateDiscard(previousSnapshot, effectiveTime);
+		dao.applyPreviousSnapshotFixups(thisClass.getResourceAsStream(previousSnapshot), previousSnapshot, List.of(reconciliation, discard));
+
+		assertEquals(readLines(separateDao.selectAllOrdered(separateTable)), readLines(dao.selectAllOrdered(tableSchema)));
+		assertEquals(3, reconciliation.getCount());
+		assertEquals(0, discard.getCount());
+	}
+
+	@Test
+	public void testApplyPreviousSnapshotFixups_attributeValueRefset() throws Exception {
+		String effectiveTime = "20140731";
+		String deltaInput = "der2_cRefset_AttributeValueDelta_INT_20140731.txt";
+		String previousSnapshot = "der2_cRefset_AttributeValueSnapshot_INT_20140131.txt";
+		String delta = lines(
+				attributeValue("00000000-0000-0000-0000-00000000000a", effectiveTime, "0", "100000001", ""),
+				attributeValue("00000000-0000-0000-0000-00000000000b", effectiveTime, "0", "100000002", ""),
+				attributeValue("00000000-0000-0000-0000-00000000000c", effectiveTime, "0", "100000003", ""),
+				attributeValue("00000000-0000-0000-0000-00000000000d", effectiveTime, "1", "100000004", "900000000000495008"),
+				attributeValue("00000000-0000-0000-0000-00000000000e", effectiveTime, "1", "100000005", ""));
+		String previous = lines(
+				attributeValue("00000000-0000-0000-0000-00000000000a", "20140131", "1", "100000001", "900000000000495008"),
+				attributeValue("00000000-0000-0000-0000-00000000000b", "20140131", "0", "100000002", "900000000000495008"),
+				attributeValue("00000000-0000-0000-0000-00000000000d", "20140131", "1", "100000004", "900000000000495008"),
+				attributeValue("00000000-0000-0000-0000-00000000000e", "20140131", "0", "100000005", "900000000000495008"));
+
+		// Fixes applied one after another, each reading the previous snapshot
+		RF2TableExportDAO separateDao = createDao(customRefsetCompositeKeys);
+		TableSchema separateTable = separateDao.createTable(deltaInput, toStream(delta), true);
+		separateDao.reconcileRefsetMemberIds(toStream(previous), previousSnapshot, effectiveTime);
+		separateDao.resolveEmptyValueId(toStream(previous), effectiveTime);
+		separateDao.discardAlreadyPublishedDeltaStates(toStream(previous), previousSnapshot, effectiveTime);
+
+		TableSchema tableSchema = dao.createTable(deltaInput, toStream(delta), true);
+		PreviousSnapshotFixup resolution = dao.newEmptyValueIdResolution(effectiveTime);
+		PreviousSnapshotFixup discard = dao.newAlreadyPublishedDeltaStateDiscard(previousSnapshot, effectiveTime);
+		dao.applyPreviousSnapshotFixups(toStream(previous), previousSnapshot,
+				List.of(dao.newRefsetMemberIdReconciliation(previousSnapshot, effectiveTime), resolution, discard));
+
+		List<String> expected = List.of(
+				attributeValue("00000000-0000-0000-0000-00000000000a", effectiveTime, "0", "100000001", "900000000000495008"),
+				attributeValue("00000000-0000-0000-0000-00000000000e", effectiveTime, "1", "100000005", ""));
+		assertEquals(expected, readLines(separateDao.selectAllOrdered(separateTable)));
+		assertEquals(expected, readLines(dao.selectAllOrdered(tableSchema)));
+		// a resolved from the previous value id, b inactive in both, c not previously published
+		assertEquals(3, resolution.getCount());
+		assertEquals(1, discard.getCount());
+	}
+
+	@Test
+	public void testFindAlreadyPublishedDeltaKeys() throws Exception {
+		String deltaInput = "der2_cRefset_AttributeValueDelta_INT_20140731.txt";
+		String delta = lines(
+				attributeValue("00000000-0000-0000-0000-00000000000a", "20140731", "1", "100000001", "900000000000495008"),
+				attributeValue("00000000-0000-0000-0000-00000000000b", "20140731", "1", "100000002", "900000000000495008"),
+				attributeValue("00000000-0000-0000-0000-00000000000c", "20140731", "1", "100000003", "900000000000495008"));
+		String previous = lines(
+				attributeValue("00000000-0000-0000-0000-00000000000a", "20140731", "1", "100000001", "900000000000495008"),
+				attributeValue("00000000-0000-0000-0000-00000000000b", "20140131", "1", "100000002", "900000000000495008"));
+		TableSchema tableSchema = dao.createTable(deltaInput, toStream(delta), false);
+
+		assertEquals(Set.of(new UUIDKey("00000000-0000-0000-0000-00000000000a", "20140731")),
+				dao.findAlreadyPublishedDeltaKeys(tableSchema, toStream(previous)));
+	}
+
+	private String attributeValue(String id, String effectiveTime, String active, String referencedComponentId, String valueId) {
+		return String.join("\t", id, effectiveTime, active, "900000000000207008", "900000000000489007", referencedComponentId, valueId);
+	}
+
+	private String lines(String... lines) {
+		return "id\teffectiveTime\tactive\tmoduleId\trefsetId\treferencedComponentId\tvalueId\n" + String.join("\n", lines) + "\n";
+	}
+
+	private InputStream toStream(String content) {
+		return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private List<String> readLines(RF2TableResults results) throws SQLException {
+		List<String> lines = new ArrayList<>();
+		String line;
+		while ((line = results.nextLine()) != null) {
+			lines.add(line);
+		}
+		return lines;
+	}
+
 	static class RF2TableResultsReaderHack extends BufferedReader {
 
 		private final RF2TableResults results;
@@ -0,0 +1,62 @@
+package org.ihtsdo.buildcloud.core.service.build.database.merge;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExternalRF2SorterTest {
+
+	private static final String HEADER = "id\teffectiveTime\tactive\tmoduleId\tsourceId";
+
+	@Test
+	public void testSortsByKeyFieldInMemoryAndOnDisk() throws Exception {
+		final Random random = new Random(42);
+		final List<String> lines = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			// Repeat source ids so that the order of lines with the same key is checked
+			lines.add((100000020L + i * 10L) + "\t20250131\t1\t900000000000207008\t" + (100000000L + random.nextInt(200)));
+		}
+		final List<String> expected = new ArrayList<>(lines);
+		expected.sort(Comparator.comparingLong(line -> Long.parseLong(line.substring(line.lastIndexOf('\t') + 1))));
+		final byte[] file = (HEADER + "\r\n" + String.join("\r\n", lines)).getBytes(StandardCharsets.UTF_8);
+
+		for (int maxLinesPerRun : new int[] {1, 7, 100, 1000, 5000}) {
+			final ExternalRF2Sorter sorter = new ExternalRF2Sorter(4, maxLinesPerRun);
+			sorter.addFile(new ByteArrayInputStream(file));
+			try (ExternalRF2Sorter.SortedRows sorted = sorter.sortedRows()) {
+				assertEquals(HEADER, sorted.getHeader());
+				final List<String> actual = new ArrayList<>();
+				while (sorted.next()) {
+					assertEquals(Long.parseLong(sorted.getLine().substring(sorted.getLine().lastIndexOf('\t') + 1)), sorted.getKey());
+					actual.add(sorted.getLine());
+				}
+				assertEquals(expected, actual, "maxLinesPerRun " + maxLinesPerRun);
+				assertFalse(sorted.next());
+			}
+		}
+	}
+
+	@Test
+	public void testAddedLinesWithoutHeader() throws Exception {
+		final ExternalRF2Sorter sorter = new ExternalRF2Sorter(0, 2);
+		sorter.add("30\ta");
+		sorter.add("10\tb");
+		sorter.add("20\tc");
+		sorter.add("10\td");
+		try (ExternalRF2Sorter.SortedRows sorted = sorter.sortedRows()) {
+			assertNull(sorted.getHeader());
+			final List<String> actual = new ArrayList<>();
+			while (sorted.next()) {
+				actual.add(sorted.getLine());
+			}
+			assertEquals(List.of("10\tb", "10\td", "20\tc", "30\ta"), actual);
+		}
+	}
+}
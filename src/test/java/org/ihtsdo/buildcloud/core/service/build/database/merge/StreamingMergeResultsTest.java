@@ -0,0 +1,77 @@
+package org.ihtsdo.buildcloud.core.service.build.database.merge;
+
+import org.ihtsdo.buildcloud.core.service.build.database.RF2TableExportDAO;
+import org.ihtsdo.buildcloud.core.service.build.database.RF2TableResults;
+import org.ihtsdo.buildcloud.core.service.build.database.map.RF2TableExportDAOImpl;
+import org.ihtsdo.snomed.util.rf2.schema.TableSchema;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class StreamingMergeResultsTest {
+
+	private static final String HEADER = "id\teffectiveTime\tactive\tmoduleId\trefsetId\treferencedComponentId";
+	private static final String DELTA_FILE = "rel2_Refset_SimpleDelta_INT_20140731.txt";
+
+	@Test
+	public void testMergeMatchesAppendingToTable() throws Exception {
+		final Random random = new Random(7);
+		final List<String> ids = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			ids.add(UUID.nameUUIDFromBytes(Integer.toString(i).getBytes()).toString());
+		}
+		final String delta = rf2File(random, ids, 100, new String[]{"20140731"});
+		final String previousFull = rf2File(random, ids, 2000, new String[]{"20130131", "20130731", "20140131"});
+		final String includedFull = rf2File(random, ids, 500, new String[]{"20120131", "20140131"});
+
+		// Expected output appending the previous full files to the table
+		final RF2TableExportDAO expectedDao = new RF2TableExportDAOImpl(new HashMap<>());
+		final TableSchema expectedSchema = expectedDao.createTable(DELTA_FILE, toStream(delta), false);
+		expectedDao.appendData(expectedSchema, toStream(previousFull), false);
+		expectedDao.appendData(expectedSchema, toStream(includedFull), false);
+		final List<String> expected = readAll(expectedDao.selectAllOrdered(expectedSchema));
+
+		// Streaming merge with a small run size so that several runs are merged
+		final RF2TableExportDAO deltaDao = new RF2TableExportDAOImpl(new HashMap<>());
+		final TableSchema tableSchema = deltaDao.createTable(DELTA_FILE, toStream(delta), false);
+		final List<String> actual;
+		try (ExternalRF2Sorter sorter = new ExternalRF2Sorter(tableSchema.getFields().get(0).getType(), 150)) {
+			sorter.addFile(toStream(previousFull));
+			sorter.addFile(toStream(includedFull));
+			try (StreamingMergeResults results = new StreamingMergeResults(tableSchema.getFields().get(0).getType(),
+					deltaDao.selectAllOrdered(tableSchema), sorter.finish())) {
+				actual = readAll(results);
+			}
+		}
+		assertEquals(expected, actual);
+	}
+
+	private String rf2File(final Random random, final List<String> ids, final int rows, final String[] dates) {
+		final StringBuilder builder = new StringBuilder(HEADER).append("\r\n");
+		for (int i = 0; i < rows; i++) {
+			builder.append(ids.get(random.nextInt(ids.size()))).append('\t')
+					.append(dates[random.nextInt(dates.length)]).append('\t')
+					.append(random.nextBoolean() ? "1" : "0").append("\t900000000000207008\t450990004\t")
+					.append(100000000 + i).append("\r\n");
+		}
+		return builder.toString();
+	}
+
+	private InputStream toStream(final String content) {
+		return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private List<String> readAll(final RF2TableResults results) throws Exception {
+		final List<String> lines = new ArrayList<>();
+		String line;
+		while ((line = results.nextLine()) != null) {
+			lines.add(line);
+		}
+		return lines;
+	}
+}
@@ -0,0 +1,51 @@
+package org.ihtsdo.buildcloud.core.service.build.database.primitive;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongHashSetTest {
+
+	@Test
+	public void testMatchesHashSet() {
+		LongHashSet set = new LongHashSet();
+		Set<Long> expected = new HashSet<>();
+		Random random = new Random(42);
+		for (int i = 0; i < 20000; i++) {
+			// Repeat ids so that some adds are of ids already in the set
+			long id = random.nextInt(5000) * 1000L + 100;
+			assertEquals(expected.add(id), set.add(id));
+		}
+		assertEquals(expected.size(), set.size());
+		for (Long id : expected) {
+			assertTrue(set.contains(id));
+		}
+		assertFalse(set.contains(5000100L));
+
+		SortedLongSet sortedSet = set.toSortedSet();
+		assertEquals(expected.size(), sortedSet.size());
+		for (Long id : expected) {
+			assertTrue(sortedSet.contains(id));
+		}
+		assertFalse(sortedSet.contains(5000100L));
+	}
+
+	@Test
+	public void testZeroIdAndClear() {
+		LongHashSet set = new LongHashSet(10);
+		assertTrue(set.isEmpty());
+		assertTrue(set.add(0));
+		assertFalse(set.add(0));
+		assertTrue(set.contains(0));
+		assertFalse(set.contains(116680003L));
+
+		set.clear();
+		assertTrue(set.isEmpty());
+		assertFalse(set.contains(0));
+		assertTrue(set.toSortedSet().isEmpty());
+	}
+}
@@ -0,0 +1,54 @@
+package org.ihtsdo.buildcloud.core.service.build.database.primitive;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongLongHashMapTest {
+
+	@Test
+	public void testMatchesHashMap() {
+		LongLongHashMap map = new LongLongHashMap();
+		Map<Long, Long> expected = new HashMap<>();
+		Random random = new Random(42);
+		for (int i = 0; i < 20000; i++) {
+			// Repeat keys so that some puts replace values already in the map
+			long key = random.nextInt(5000) * 1000L;
+			long value = random.nextLong();
+			if (random.nextBoolean()) {
+				assertEquals(expected.put(key, value) == null, map.put(key, value));
+			} else {
+				assertEquals(expected.putIfAbsent(key, value) == null, map.putIfAbsent(key, value));
+			}
+		}
+		assertEquals(expected.size(), map.size());
+		for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+			assertTrue(map.containsKey(entry.getKey()));
+			assertEquals(entry.getValue().longValue(), map.get(entry.getKey(), -1));
+		}
+		assertFalse(map.containsKey(1));
+		assertEquals(-1, map.get(1, -1));
+
+		Map<Long, Long> iterated = new HashMap<>();
+		map.forEach(iterated::put);
+		assertEquals(expected, iterated);
+	}
+
+	@Test
+	public void testZeroKeyAndClear() {
+		LongLongHashMap map = new LongLongHashMap(10);
+		assertTrue(map.isEmpty());
+		assertTrue(map.put(0, 116680003L));
+		assertFalse(map.putIfAbsent(0, 1));
+		assertEquals(116680003L, map.get(0, -1));
+		assertFalse(map.containsKey(116680003L));
+
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertFalse(map.containsKey(0));
+	}
+}
@@ -0,0 +1,45 @@
+package org.ihtsdo.buildcloud.core.service.build.database.primitive;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongPairHashSetTest {
+
+	@Test
+	public void testMatchesHashSet() {
+		LongPairHashSet set = new LongPairHashSet();
+		Set<UUID> expected = new HashSet<>();
+		Random random = new Random(42);
+		for (int i = 0; i < 20000; i++) {
+			// Repeat ids so that some adds are of ids already in the set
+			UUID uuid = new UUID(random.nextInt(5000), random.nextLong() & 0xF);
+			assertEquals(expected.add(uuid), set.add(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()));
+		}
+		assertEquals(expected.size(), set.size());
+		for (UUID uuid : expected) {
+			assertTrue(set.contains(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()));
+		}
+		assertFalse(set.contains(5000, 0));
+	}
+
+	@Test
+	public void testZeroIdAndClear() {
+		LongPairHashSet set = new LongPairHashSet(10);
+		assertTrue(set.isEmpty());
+		assertTrue(set.add(0, 0));
+		assertFalse(set.add(0, 0));
+		assertTrue(set.add(116680003L, 0));
+		assertTrue(set.contains(0, 0));
+		assertFalse(set.contains(0, 116680003L));
+
+		set.clear();
+		assertTrue(set.isEmpty());
+		assertFalse(set.contains(0, 0));
+	}
+}
@@ -0,0 +1,140 @@
+package org.ihtsdo.buildcloud.core.service.build.database.primitive;
+
+import org.ihtsdo.buildcloud.core.service.build.database.map.Key;
+import org.ihtsdo.buildcloud.core.service.build.database.map.SCTIDKey;
+import org.ihtsdo.buildcloud.core.service.build.database.map.UUIDKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrimitiveKeyTableTest {
+
+	@Test
+	public void testIterationOrderMatchesTreeMap() {
+		for (ByteArena.Mode mode : ByteArena.Mode.values()) {
+			PrimitiveKeyTable table = new PrimitiveKeyTable(mode);
+			TreeMap<Key, String> expected = new TreeMap<>();
+			Random random = new Random(42);
+			for (int i = 0; i < 5000; i++) {
+				String id = UUID.nameUUIDFromBytes(Integer.toString(random.nextInt(2000)).getBytes()).toString();
+				String date = Integer.toString(20140101 + random.nextInt(3) * 10000);
+				Key key = new UUIDKey(id, date);
+				String value = "1\tvalue " + i;
+				assertEquals(expected.put(key, value), table.put(key, value));
+			}
+			for (Key key : new ArrayList<>(expected.keySet()).subList(0, 500)) {
+				assertEquals(expected.remove(key), table.remove(key));
+			}
+			assertEquals(expected.size(), table.size());
+			assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(table.entrySet()));
+			table.clear();
+		}
+	}
+
+	@Test
+	public void testSctidKeys() {
+		PrimitiveKeyTable table = new PrimitiveKeyTable(ByteArena.Mode.HEAP);
+		table.put(new SCTIDKey("900000000000207008", "20140731"), "b");
+		table.put(new SCTIDKey("116680003", "20140731"), "a2");
+		table.put(new SCTIDKey("116680003", "20140131"), "a1");
+
+		assertEquals("a2", table.get(new SCTIDKey("116680003", "20140731")));
+		assertNull(table.get(new SCTIDKey("116680003", "20150131")));
+		assertFalse(table.containsKey(new UUIDKey(UUID.randomUUID().toString(), "20140731")));
+		assertEquals(Arrays.asList(new SCTIDKey("116680003", "20140131"), new SCTIDKey("116680003", "20140731"),
+				new SCTIDKey("900000000000207008", "20140731")), new ArrayList<>(table.keySet()));
+	}
+
+	@Test
+	public void testMixedKeyTypesRejected() {
+		PrimitiveKeyTable table = new PrimitiveKeyTable(ByteArena.Mode.HEAP);
+		table.put(new SCTIDKey("116680003", "20140731"), "a");
+		assertThrows(IllegalArgumentException.class, () -> table.put(new UUIDKey(UUID.randomUUID().toString(), "20140731"), "b"));
+	}
+
+	@Test
+	public void testDatesWhichAreNotEightDigitsFallBackToTreeMap() {
+		PrimitiveKeyTable table = new PrimitiveKeyTable(ByteArena.Mode.HEAP);
+		TreeMap<Key, String> expected = new TreeMap<>();
+		for (String date : Arrays.asList("20140731", "20140131", "", "2014", "2014-07-31", "20150131")) {
+			Key key = new SCTIDKey("116680003", date);
+			assertEquals(expected.put(key, date), table.put(key, date));
+		}
+		assertEquals("2014-07-31", table.get(new SCTIDKey("116680003", "2014-07-31")));
+		assertEquals("20140131", table.remove(new SCTIDKey("116680003", "20140131")));
+		expected.remove(new SCTIDKey("116680003", "20140131"));
+		assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(table.entrySet()));
+	}
+
+	@Test
+	public void testLookupOfDateWhichIsNotEightDigits() {
+		PrimitiveKeyTable table = new PrimitiveKeyTable(ByteArena.Mode.HEAP);
+		table.put(new SCTIDKey("116680003", "20140731"), "a");
+		assertNull(table.get(new SCTIDKey("116680003", "")));
+		assertFalse(table.containsKey(new SCTIDKey("116680003", "x")));
+		assertNull(table.remove(new SCTIDKey("116680003", "2014")));
+		assertEquals(1, table.size());
+	}
+
+	@Test
+	public void testCachedOrderFollowsWrites() {
+		PrimitiveKeyTable table = new PrimitiveKeyTable(ByteArena.Mode.HEAP);
+		table.put(new SCTIDKey("3", "20140731"), "c");
+		table.put(new SCTIDKey("1", "20140731"), "a");
+		assertEquals(Arrays.asList("a", "c"), new ArrayList<>(table.values()));
+
+		table.remove(new SCTIDKey("1", "20140731"));
+		assertEquals(List.of("c"), new ArrayList<>(table.values()));
+
+		table.put(new SCTIDKey("2", "20140731"), "b");
+		table.put(new SCTIDKey("3", "20140731"), "c2");
+		assertEquals(Arrays.asList("b", "c2"), new ArrayList<>(table.values()));
+
+		Iterator<Map.Entry<Key, String>> iterator = table.entrySet().iterator();
+		iterator.next();
+		iterator.remove();
+		assertEquals(List.of("c2"), new ArrayList<>(table.values()));
+	}
+
+	@Test
+	public void testRemovedRowsReclaimed() {
+		for (ByteArena.Mode mode : ByteArena.Mode.values()) {
+			PrimitiveKeyTable table = new PrimitiveKeyTable(mode);
+			TreeMap<Key, String> expected = new TreeMap<>();
+			for (int i = 0; i < 4000; i++) {
+				Key key = new SCTIDKey(Integer.toString(100000 + i), "20140731");
+				table.put(key, "1\tvalue " + i);
+				expected.put(key, "1\tvalue " + i);
+			}
+			long bytesBeforeRemoval = table.getPayloadBytes();
+			for (int i = 0; i < 3000; i++) {
+				Key key = new SCTIDKey(Integer.toString(100000 + i * 4 / 3), "20140731");
+				assertEquals(expected.remove(key), table.remove(key));
+			}
+			Key added = new SCTIDKey("99999", "20140731");
+			table.put(added, "added");
+			expected.put(added, "added");
+
+			assertTrue(table.getPayloadBytes() < bytesBeforeRemoval / 2, "Removed rows reclaimed in mode " + mode);
+			assertEquals(expected.size(), table.size());
+			assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(table.entrySet()));
+			for (Key key : expected.keySet()) {
+				assertEquals(expected.get(key), table.get(key));
+			}
+			table.clear();
+		}
+	}
+
+	@Test
+	public void testLargePayloadSpansChunks() throws Exception {
+		try (ByteArena arena = new ByteArena(ByteArena.Mode.MAPPED, 16)) {
+			long first = arena.add("short".getBytes());
+			byte[] large = "a value larger than a single chunk".getBytes();
+			long second = arena.add(large);
+			assertEquals("short", arena.get(first, 5));
+			assertEquals("a value larger than a single chunk", arena.get(second, large.length));
+		}
+	}
+}
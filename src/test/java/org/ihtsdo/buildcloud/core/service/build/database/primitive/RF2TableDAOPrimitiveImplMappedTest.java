@@ -0,0 +1,12 @@
+package org.ihtsdo.buildcloud.core.service.build.database.primitive;
+
+/**
+ * Runs the TreeMap table tests against the primitive keyed table with its rows held in memory-mapped temporary files.
+ */
+public class RF2TableDAOPrimitiveImplMappedTest extends RF2TableDAOPrimitiveImplTest {
+
+	@Override
+	protected ByteArena.Mode getArenaMode() {
+		return ByteArena.Mode.MAPPED;
+	}
+}
@@ -0,0 +1,22 @@
+package org.ihtsdo.buildcloud.core.service.build.database.primitive;
+
+import org.ihtsdo.buildcloud.core.service.build.database.RF2TableExportDAO;
+import org.ihtsdo.buildcloud.core.service.build.database.map.RF2TableDAOTreeMapImplTest;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the TreeMap table tests against the primitive keyed table.
+ */
+public class RF2TableDAOPrimitiveImplTest extends RF2TableDAOTreeMapImplTest {
+
+	@Override
+	protected RF2TableExportDAO createDao(Map<String, List<Integer>> customRefsetCompositeKeys) {
+		return new RF2TableExportDAOPrimitiveImpl(customRefsetCompositeKeys, getArenaMode());
+	}
+
+	protected ByteArena.Mode getArenaMode() {
+		return ByteArena.Mode.HEAP;
+	}
+}
@@ -0,0 +1,34 @@
+package org.ihtsdo.buildcloud.core.service.build.database.primitive;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SortedLongSetTest {
+
+	@Test
+	public void testBuilderSortsAndRemovesRepeatedIds() {
+		SortedLongSet.Builder builder = new SortedLongSet.Builder(2);
+		for (long id = 5000; id > 0; id--) {
+			builder.add(id * 10).add(id * 10);
+		}
+		builder.add(-1).add(0);
+		SortedLongSet set = builder.build();
+		assertEquals(5002, set.size());
+		for (long id = 1; id <= 5000; id++) {
+			assertTrue(set.contains(id * 10));
+			assertFalse(set.contains(id * 10 + 1));
+		}
+		assertTrue(set.contains(-1));
+		assertTrue(set.contains(0));
+		assertFalse(set.contains(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testEmpty() {
+		assertTrue(SortedLongSet.empty().isEmpty());
+		assertFalse(SortedLongSet.empty().contains(0));
+		assertTrue(new SortedLongSet.Builder().build().isEmpty());
+		assertEquals(1, SortedLongSet.of(new long[] {116680003L, 116680003L, 7}, 2).size());
+	}
+}
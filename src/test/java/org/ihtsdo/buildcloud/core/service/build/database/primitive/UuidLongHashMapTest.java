@@ -0,0 +1,48 @@
+package org.ihtsdo.buildcloud.core.service.build.database.primitive;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UuidLongHashMapTest {
+
+	@Test
+	public void testMatchesHashMap() {
+		UuidLongHashMap map = new UuidLongHashMap();
+		Map<UUID, Long> expected = new HashMap<>();
+		Random random = new Random(42);
+		for (int i = 0; i < 20000; i++) {
+			// Repeat UUIDs so that some puts replace values already in the map
+			UUID uuid = new UUID(random.nextInt(5000), random.nextLong() & 0xF);
+			long sctid = 100000000L + random.nextInt(1000000);
+			assertEquals(expected.put(uuid, sctid) == null, map.put(uuid, sctid));
+		}
+		assertEquals(expected.size(), map.size());
+		for (Map.Entry<UUID, Long> entry : expected.entrySet()) {
+			UUID uuid = entry.getKey();
+			assertTrue(map.containsKey(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()));
+			assertEquals(entry.getValue().longValue(), map.get(uuid, -1));
+		}
+		assertFalse(map.containsKey(5000, 0));
+		assertEquals(-1, map.get(5000, 0, -1));
+	}
+
+	@Test
+	public void testZeroUuidAndClear() {
+		UuidLongHashMap map = new UuidLongHashMap(10);
+		assertTrue(map.isEmpty());
+		assertTrue(map.put(0, 0, 116680003L));
+		assertFalse(map.put(0, 0, 116680003L));
+		assertEquals(116680003L, map.get(0, 0, -1));
+		assertFalse(map.containsKey(0, 116680003L));
+
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertFalse(map.containsKey(0, 0));
+	}
+}
@@ -0,0 +1,124 @@
+package org.ihtsdo.buildcloud.core.service.build.transform;
+
+import org.ihtsdo.buildcloud.core.service.build.database.primitive.LongLongHashMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParentSctIdFinderTest {
+
+	// The expression the finder used to match IS-A relationships with
+	private static final Pattern IS_A_RELATIONSHIP_PATTERN = Pattern.compile("[^\t]*\t[^\t]*\t[^\t]*\t[^\t]*\t([^\t]*)\t([^\t]*)\t[^\t]*\t116680003\t.*");
+
+	@TempDir
+	File tempDir;
+
+	private ParentSctIdFinder finder;
+
+	private String statedRelationships;
+
+	private List<Long> sourceIds;
+
+	@BeforeEach
+	public void setup() {
+		finder = new ParentSctIdFinder();
+		final Random random = new Random(42);
+		final StringBuilder builder = new StringBuilder("id\teffectiveTime\tactive\tmoduleId\tsourceId\tdestinationId\trelationshipGroup\ttypeId\tcharacteristicTypeId\tmodifierId\r\n");
+		for (int i = 0; i < 5000; i++) {
+			final long sourceId = 100000000L + random.nextInt(2000);
+			final String typeId = random.nextInt(3) == 0 ? "116676008" : "116680003";
+			builder.append(i).append("\t20140731\t").append(random.nextInt(2)).append("\t900000000000207008\t")
+					.append(sourceId).append('\t').append(200000000L + random.nextInt(100000)).append('\t').append(random.nextInt(3)).append('\t').append(typeId);
+			// Some lines end after the type
+			if (random.nextInt(20) != 0) {
+				builder.append("\t900000000000010007\t900000000000451002");
+			}
+			builder.append("\r\n");
+		}
+		statedRelationships = builder.toString();
+		sourceIds = new ArrayList<>();
+		for (int i = 0; i < 2500; i += 2) {
+			sourceIds.add(100000000L + i);
+		}
+	}
+
+	@Test
+	public void testParentsMatchRegularExpression() throws TransformationException {
+		final Map<Long, Long> expected = findWithRegularExpression();
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, toMap(finder.getParentSctIdFromStatedRelationship(toStream(statedRelationships), sourceIds)));
+	}
+
+	@Test
+	public void testParallelChunksFindTheSameParents() throws TransformationException, IOException {
+		final File file = new File(tempDir, "sct2_StatedRelationship_Snapshot_INT_20140731.txt");
+		Files.write(file.toPath(), statedRelationships.getBytes(StandardCharsets.UTF_8));
+		final Map<Long, Long> expected = findWithRegularExpression();
+		for (int parallelism = 1; parallelism <= 64; parallelism *= 2) {
+			assertEquals(expected, toMap(finder.getParentSctIdFromStatedRelationship(file, sourceIds, parallelism)), "Parallelism " + parallelism);
+		}
+	}
+
+	@Test
+	public void testRepeatedSourceIdsTakeALaterParentForEachRepeat() throws TransformationException, IOException {
+		// Some source ids are listed twice or three times, and the last has no IS-A relationship left for its repeats
+		for (int i = 0; i < 2500; i += 20) {
+			sourceIds.add(100000000L + i);
+			if (i % 60 == 0) {
+				sourceIds.add(100000000L + i);
+			}
+		}
+		final Map<Long, Long> expected = findWithRegularExpression();
+		final Map<Long, Long> withoutRepeats = toMap(finder.getParentSctIdFromStatedRelationship(toStream(statedRelationships), new HashSet<>(sourceIds)));
+		assertNotEquals(withoutRepeats, expected);
+		assertEquals(expected, toMap(finder.getParentSctIdFromStatedRelationship(toStream(statedRelationships), sourceIds)));
+
+		final File file = new File(tempDir, "sct2_StatedRelationship_Snapshot_INT_20140731.txt");
+		Files.write(file.toPath(), statedRelationships.getBytes(StandardCharsets.UTF_8));
+		assertEquals(expected, toMap(finder.getParentSctIdFromStatedRelationship(file, sourceIds, 8)));
+	}
+
+	@Test
+	public void testNoInputOrSourceIds() throws TransformationException {
+		assertTrue(finder.getParentSctIdFromStatedRelationship(null, sourceIds).isEmpty());
+		assertTrue(finder.getParentSctIdFromStatedRelationship(toStream(statedRelationships), new ArrayList<>()).isEmpty());
+	}
+
+	private Map<Long, Long> findWithRegularExpression() {
+		final Map<Long, Long> result = new HashMap<>();
+		final List<Long> sourceIdsToFind = new ArrayList<>(sourceIds);
+		for (String line : statedRelationships.split("\r\n")) {
+			final Matcher matcher = IS_A_RELATIONSHIP_PATTERN.matcher(line);
+			if (matcher.matches() && sourceIdsToFind.remove(Long.valueOf(matcher.group(1)))) {
+				result.put(Long.valueOf(matcher.group(1)), Long.valueOf(matcher.group(2)));
+			}
+		}
+		return result;
+	}
+
+	private static Map<Long, Long> toMap(LongLongHashMap parents) {
+		final Map<Long, Long> map = new HashMap<>();
+		parents.forEach(map::put);
+		return map;
+	}
+
+	private static ByteArrayInputStream toStream(String content) {
+		return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,61 @@
+package org.ihtsdo.buildcloud.core.service.build.transform;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PersistentSctidCacheTest {
+
+	@TempDir
+	File tempDir;
+
+	@Test
+	public void testEntriesSurviveReload() throws IOException {
+		final File file = new File(tempDir, "1000000.bin");
+		final PersistentSctidCache cache = PersistentSctidCache.load(file);
+		final Map<UUID, Long> sctids = new HashMap<>();
+		for (long i = 1; i <= 5000; i++) {
+			sctids.put(UUID.randomUUID(), 1000000100L + i);
+		}
+		cache.putAll(sctids);
+		assertEquals(5000, cache.size());
+
+		final PersistentSctidCache reloaded = PersistentSctidCache.load(file);
+		assertEquals(5000, reloaded.size());
+		for (Map.Entry<UUID, Long> entry : sctids.entrySet()) {
+			assertEquals(entry.getValue(), reloaded.get(entry.getKey()));
+		}
+		assertNull(reloaded.get(UUID.randomUUID()));
+	}
+
+	@Test
+	public void testKnownEntriesNotAppendedAgain() throws IOException {
+		final File file = new File(tempDir, "1000000.bin");
+		final PersistentSctidCache cache = PersistentSctidCache.load(file);
+		final Map<UUID, Long> sctids = Map.of(UUID.randomUUID(), 1000001100L, UUID.randomUUID(), 1000002100L);
+		cache.putAll(sctids);
+		cache.putAll(sctids);
+		assertEquals(2L * PersistentSctidCache.RECORD_SIZE, file.length());
+	}
+
+	@Test
+	public void testPartlyWrittenRecordIgnored() throws IOException {
+		final File file = new File(tempDir, "1000000.bin");
+		final UUID uuid = UUID.randomUUID();
+		PersistentSctidCache.load(file).putAll(Map.of(uuid, 1000001100L));
+		try (FileOutputStream outputStream = new FileOutputStream(file, true)) {
+			outputStream.write(new byte[10]);
+		}
+		final PersistentSctidCache reloaded = PersistentSctidCache.load(file);
+		assertEquals(1, reloaded.size());
+		assertEquals(Long.valueOf(1000001100L), reloaded.get(uuid));
+	}
+}
@@ -6,6 +6,10 @@ import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Scanner;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -45,6 +49,26 @@ public class RepeatableRelationshipUUIDTransformTest {
 		assertEquals("81342da0-c3df-5ce2-900a-95fd6be13885", valuesB2[0]);
 	}
 
+	@Test
+	public void testMatchesGoldenUuids() throws Exception {
+		// UUIDs made when the relationship values were joined into one String before hashing
+		final RepeatableRelationshipUUIDTransform statedTransform = new RepeatableRelationshipUUIDTransform(RF2Constants.RelationshipFileType.STATED);
+		int count = 0;
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(getClass().getResourceAsStream("repeatable-relationship-uuid-golden.txt"), StandardCharsets.UTF_8))) {
+			reader.readLine(); // Discard header
+			String line;
+			while ((line = reader.readLine()) != null) {
+				final String[] values = line.split("\t", -1);
+				final String[] columnValues = Arrays.copyOfRange(values, 2, values.length);
+				final RepeatableRelationshipUUIDTransform lineTransform = RF2Constants.RelationshipFileType.valueOf(values[0]) == RF2Constants.RelationshipFileType.STATED ? statedTransform : transform;
+				lineTransform.transformLine(columnValues);
+				assertEquals(values[1], columnValues[0], line);
+				count++;
+			}
+		}
+		assertEquals(300, count);
+	}
+
 	public static void main(String[] args) throws TransformationException, NoSuchAlgorithmException {
 		RepeatableRelationshipUUIDTransformTest test = new RepeatableRelationshipUUIDTransformTest();
 		test.setup();
@@ -17,6 +17,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -149,4 +152,55 @@ public class StreamingFileTransformationTest {
 		assertEquals("\t20140131\t1\t900000000000207008\t450990004\t293104008", linesAfter.get(4), "Last line as expected");
 	}
 
+	@Test
+	public void testAsyncBatchesWrittenInOrder() throws Exception {
+		// One line per batch, the earlier batches taking longest to complete
+		fileTransformation = new StreamingFileTransformation(1);
+		ExecutorService executorService = Executors.newFixedThreadPool(3);
+		try {
+			fileTransformation.addTransformation(new AsyncBatchLineTransformation() {
+				private int batchCount;
+
+				@Override
+				public int getMaxBatchesInFlight() {
+					return 3;
+				}
+
+				@Override
+				public Future<?> transformLinesAsync(List<String[]> columnValues) {
+					final long delay = 50L * (4 - batchCount++);
+					return executorService.submit(() -> {
+						Thread.sleep(delay);
+						transformLines(columnValues);
+						return null;
+					});
+				}
+
+				@Override
+				public void transformLines(List<String[]> columnValuesList) {
+					for (String[] columnValues : columnValuesList) {
+						columnValues[0] = "id" + columnValues[5];
+					}
+				}
+			});
+			fileTransformation.addTransformation(new ReplaceValueLineTransformation(2, "0"));
+
+			List<String> linesBefore = Files.readAllLines(rf2File.toPath(), RF2Constants.UTF_8);
+
+			fileTransformation.transformFile(new FileInputStream(rf2File), new FileOutputStream(tempOutputFile), rf2File.getName(), report);
+
+			List<String> linesAfter = Files.readAllLines(tempOutputFile.toPath(), RF2Constants.UTF_8);
+			assertEquals(5, linesAfter.size());
+			assertEquals(linesBefore.get(0), linesAfter.get(0), "Header unchanged");
+			for (int i = 1; i < linesAfter.size(); i++) {
+				String[] before = linesBefore.get(i).split(RF2Constants.COLUMN_SEPARATOR, -1);
+				String[] after = linesAfter.get(i).split(RF2Constants.COLUMN_SEPARATOR, -1);
+				assertEquals("id" + before[5], after[0], "Lines written in input order");
+				assertEquals("0", after[2], "Later transformation applied after the async one");
+			}
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
 }
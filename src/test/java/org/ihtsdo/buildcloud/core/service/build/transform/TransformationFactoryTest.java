@@ -1,7 +1,18 @@
 package org.ihtsdo.buildcloud.core.service.build.transform;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.ihtsdo.buildcloud.core.entity.BuildReport;
+import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
+import org.ihtsdo.snomed.util.rf2.schema.ComponentType;
 import org.ihtsdo.snomed.util.rf2.schema.DataType;
 import org.ihtsdo.snomed.util.rf2.schema.Field;
 import org.ihtsdo.snomed.util.rf2.schema.FileRecognitionException;
@@ -14,6 +25,8 @@ import static org.junit.jupiter.api.Assertions.*;
 
 public class TransformationFactoryTest {
 
+	private static final String HEADER = "header";
+
 	private TransformationFactory transformationFactory;
 	private TableSchema schemaBean;
 
@@ -44,6 +57,119 @@ public class TransformationFactoryTest {
 
 	}
 
+	@Test
+	public void testTransformationsCompiledOncePerBuild() throws Exception {
+		StreamingFileTransformation transformation = transformationFactory.getSteamingFileTransformation(schemaBean);
+		assertSame(transformation, transformationFactory.getSteamingFileTransformation(schemaBean));
+
+		TransformationPlan plan = transformation.getPlan();
+		assertEquals(1, plan.size(), "Line transformations fused into one pass");
+		assertEquals("lines[UUIDTransformation(0), ReplaceValueLineTransformation(1), SCTIDTransformationFromCache(3), SCTIDTransformationFromCache(4), "
+				+ "SCTIDTransformationFromCache(5), SCTIDTransformationFromCache(11), SCTIDTransformationFromCache(12)]", plan.toString());
+
+		TransformationPlan statedRelationshipPlan = transformationFactory.getPreProcessFileTransformation(ComponentType.RELATIONSHIP).getPlan();
+		assertEquals("lines[RepeatableRelationshipUUIDTransform] -> batch[SCTIDTransformation]", statedRelationshipPlan.toString());
+
+		// Changing the settings builds the transformations again
+		transformationFactory.setModelConceptIdsForModuleIdFix(Set.of("293495006"));
+		StreamingFileTransformation rebuilt = transformationFactory.getSteamingFileTransformation(schemaBean);
+		assertNotSame(transformation, rebuilt);
+		assertTrue(rebuilt.getPlan().toString().startsWith("lines[ConditionalTransformation, UUIDTransformation(0)"));
+	}
+
+	@Test
+	public void testCompiledPlansMatchPerStepTransformation() throws Exception {
+		final Map<String, List<String>> linesByFile = new LinkedHashMap<>();
+		linesByFile.put("sct2_Concept_Delta_INT_20140131.txt", List.of(
+				"100005\t\t1\t900000000000207008\t900000000000074008",
+				"293495006\t20130731\t1\t\t900000000000073002",
+				"100006\t20130731\t0\t900000000000012004\t900000000000073002"));
+		linesByFile.put("sct2_Description_Delta-en_INT_20140131.txt", List.of(
+				"100017\t\t1\t900000000000207008\t293495006\ten\t900000000000013009\tTerm\t900000000000448009",
+				"100018\t20130731\t0\t900000000000207008\t100005\ten\t900000000000003001\tTerm (finding)\t900000000000448009",
+				"100019\t\t1\t900000000000207008\t100005\ten\t900000000000013009\t\t900000000000448009"));
+		linesByFile.put("sct2_TextDefinition_Delta-en_INT_20140131.txt", List.of(
+				"100027\t\t1\t900000000000207008\t293495006\ten\t900000000000550004\tDefinition\t900000000000448009",
+				"100028\t20130731\t1\t900000000000207008\t100005\ten\t900000000000550004\tDefinition\t900000000000448009"));
+		linesByFile.put("sct2_StatedRelationship_Delta_INT_20140131.txt", List.of(
+				"100020\t\t1\t900000000000207008\t100005\t293495006\t0\t116680003\t900000000000010007\t900000000000451002",
+				"100021\t20130731\t0\t900000000000207008\t293495006\t100005\t1\t116680003\t900000000000010007\t900000000000451002"));
+		linesByFile.put("sct2_Relationship_Delta_INT_20140131.txt", List.of(
+				"100022\t\t1\t\t100005\t293495006\t0\t116680003\t900000000000011006\t900000000000451002",
+				"a4d1ac3e-0d5a-4b43-a22e-1dcc69b7b2b5\t20130731\t1\t900000000000207008\t293495006\t100005\t0\t116680003\t900000000000011006\t900000000000451002"));
+		linesByFile.put("sct2_Identifier_Delta_INT_20140131.txt", List.of(
+				"900000000000002006\tA-1\t\t1\t900000000000207008\t293495006",
+				"900000000000002006\tA-2\t20130731\t0\t\t100005"));
+		linesByFile.put("der2_Refset_SimpleDelta_INT_20140131.txt", List.of(
+				"\t\t1\t900000000000207008\t450990004\t293495006",
+				"\t20130731\t0\t900000000000207008\t450990004\t100005",
+				"8b5a3d4c-52b6-4d5b-9f0f-0f3c0b1f6a11\t\t1\t900000000000207008\t450990004\t100005"));
+		linesByFile.put("der2_iisssccRefset_ExtendedMapDelta_INT_20140131.txt", List.of(
+				"\t\t1\t900000000000207008\t447562003\t293495006\t1\t1\tTRUE\t\tA01\t447561005\t447637006",
+				"\t20130731\t1\t900000000000207008\t447562003\t100005\t1\t2\tOTHERWISE TRUE\t\t\t447561005\t447638001"));
+
+		for (Map.Entry<String, List<String>> entry : linesByFile.entrySet()) {
+			final TableSchema tableSchema = new SchemaFactory().createSchemaBean(entry.getKey());
+			final String expected = transformPerStep(newTransformationFactory().getSteamingFileTransformation(tableSchema), entry.getValue());
+			final StreamingFileTransformation compiled = newTransformationFactory().getSteamingFileTransformation(tableSchema);
+			assertEquals(expected, transformFile(compiled, entry.getValue()), entry.getKey() + " with plan " + compiled.getPlan());
+		}
+
+		final Map<ComponentType, List<String>> preProcessLines = Map.of(
+				ComponentType.CONCEPT, linesByFile.get("sct2_Concept_Delta_INT_20140131.txt"),
+				ComponentType.DESCRIPTION, linesByFile.get("sct2_Description_Delta-en_INT_20140131.txt"),
+				ComponentType.RELATIONSHIP, linesByFile.get("sct2_StatedRelationship_Delta_INT_20140131.txt"));
+		for (Map.Entry<ComponentType, List<String>> entry : preProcessLines.entrySet()) {
+			final String expected = transformPerStep(newTransformationFactory().getPreProcessFileTransformation(entry.getKey()), entry.getValue());
+			final StreamingFileTransformation compiled = newTransformationFactory().getPreProcessFileTransformation(entry.getKey());
+			assertEquals(expected, transformFile(compiled, entry.getValue()), entry.getKey() + " pre-processing with plan " + compiled.getPlan());
+		}
+	}
+
+	/**
+	 * Factory with a small buffer, so that files are transformed in several buffers, and repeatable UUIDs.
+	 */
+	private TransformationFactory newTransformationFactory() {
+		final AtomicLong uuidCount = new AtomicLong();
+		final TransformationFactory factory = new TransformationFactory("0", "20140131", new CachedSctidFactory(null, null, null, null, 1, 10),
+				() -> new UUID(0, uuidCount.incrementAndGet()).toString(), "900000000000207008", "900000000000012004", 2);
+		factory.setModelConceptIdsForModuleIdFix(Set.of("293495006"));
+		factory.setExistingUuidToSctidMap(Map.of("a4d1ac3e-0d5a-4b43-a22e-1dcc69b7b2b5", "100023"));
+		return factory;
+	}
+
+	/**
+	 * Applies each transformation to all the lines in turn, as files were transformed before the transformations were compiled.
+	 */
+	private String transformPerStep(StreamingFileTransformation transformation, List<String> lines) throws TransformationException {
+		final List<String[]> columnValuesList = new ArrayList<>();
+		for (String line : lines) {
+			columnValuesList.add(line.split(RF2Constants.COLUMN_SEPARATOR, -1));
+		}
+		for (Transformation step : transformation.getTransformations()) {
+			if (step instanceof BatchLineTransformation batchLineTransformation) {
+				batchLineTransformation.transformLines(columnValuesList);
+			} else {
+				for (String[] columnValues : columnValuesList) {
+					((LineTransformation) step).transformLine(columnValues);
+				}
+			}
+		}
+		final StringBuilder expected = new StringBuilder(HEADER).append(RF2Constants.LINE_ENDING);
+		for (String[] columnValues : columnValuesList) {
+			expected.append(String.join(RF2Constants.COLUMN_SEPARATOR, columnValues)).append(RF2Constants.LINE_ENDING);
+		}
+		return expected.toString();
+	}
+
+	private String transformFile(StreamingFileTransformation transformation, List<String> lines) throws Exception {
+		final String input = HEADER + RF2Constants.LINE_ENDING + String.join(RF2Constants.LINE_ENDING, lines) + RF2Constants.LINE_ENDING;
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		final BuildReport report = BuildReport.getDummyReport();
+		transformation.transformFile(new ByteArrayInputStream(input.getBytes(RF2Constants.UTF_8)), outputStream, "test", report);
+		return outputStream.toString(RF2Constants.UTF_8);
+	}
+
 	private void assertTransform(Class<? extends Transformation> expectedTransformationClass, int expectedColumnIndex,
 			Transformation actualTransformation) {
 
@@ -0,0 +1,163 @@
+package org.ihtsdo.buildcloud.core.service.build.transform;
+
+import org.ihtsdo.buildcloud.core.entity.BuildReport;
+import org.ihtsdo.otf.rest.exception.BusinessServiceException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransformationServiceTest {
+
+	private static final String TRANSFORMATION_FAILURES = "File Transformation Failures";
+
+	private ExecutorService executorService;
+
+	@AfterEach
+	public void tearDown() {
+		executorService.shutdownNow();
+	}
+
+	@Test
+	public void testFilesTransformedAtTheSameTimeAndAllFinishedOnReturn() throws Exception {
+		executorService = Executors.newFixedThreadPool(2);
+		final BuildReport report = BuildReport.getDummyReport();
+		final CountDownLatch lastStarted = new CountDownLatch(1);
+		final List<String> finished = new CopyOnWriteArrayList<>();
+		final Map<String, Runnable> tasks = new LinkedHashMap<>();
+		tasks.put("first.txt", () -> {
+			try {
+				// Only finishes once the other file is being transformed too
+				assertTrue(lastStarted.await(10, TimeUnit.SECONDS));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			finished.add("first.txt");
+		});
+		tasks.put("last.txt", () -> {
+			lastStarted.countDown();
+			finished.add("last.txt");
+		});
+
+		TransformationService.transformConcurrently(executorService, tasks, report);
+
+		assertEquals(List.of("last.txt", "first.txt"), finished);
+		assertNull(report.getReport().get(TRANSFORMATION_FAILURES));
+	}
+
+	@Test
+	public void testFailedFileReportedWithoutStoppingTheOtherFiles() throws Exception {
+		executorService = Executors.newFixedThreadPool(2);
+		final BuildReport report = BuildReport.getDummyReport();
+		final List<String> finished = new CopyOnWriteArrayList<>();
+		final Map<String, Runnable> tasks = new LinkedHashMap<>();
+		tasks.put("failing.txt", () -> {
+			throw new IllegalStateException();
+		});
+		tasks.put("other.txt", () -> finished.add("other.txt"));
+		tasks.put("reported.txt", () -> report.add(TRANSFORMATION_FAILURES, "reported.txt", "Bad line", 3));
+
+		TransformationService.transformConcurrently(executorService, tasks, report);
+
+		assertEquals(List.of("other.txt"), finished);
+		@SuppressWarnings("unchecked")
+		final Map<String, Map<String, String>> failures = (Map<String, Map<String, String>>) report.getReport().get(TRANSFORMATION_FAILURES);
+		assertEquals(2, failures.size());
+		assertEquals(IllegalStateException.class.getName(), failures.get("failing.txt").get(BuildReport.FIRST_ERROR));
+		assertEquals("1", failures.get("failing.txt").get(BuildReport.ERROR_COUNT));
+		assertEquals("Bad line", failures.get("reported.txt").get(BuildReport.FIRST_ERROR));
+		assertEquals("3", failures.get("reported.txt").get(BuildReport.FIRST_LINE));
+	}
+
+	@Test
+	public void testInterruptCancelsTheFilesNotYetTransformed() throws Exception {
+		executorService = Executors.newSingleThreadExecutor();
+		final BuildReport report = BuildReport.getDummyReport();
+		final CountDownLatch firstStarted = new CountDownLatch(1);
+		final AtomicBoolean firstInterrupted = new AtomicBoolean();
+		final AtomicBoolean queuedStarted = new AtomicBoolean();
+		final Map<String, Runnable> tasks = new LinkedHashMap<>();
+		tasks.put("slow.txt", () -> {
+			firstStarted.countDown();
+			try {
+				Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+			} catch (InterruptedException e) {
+				firstInterrupted.set(true);
+			}
+		});
+		tasks.put("queued.txt", () -> queuedStarted.set(true));
+
+		final Thread caller = Thread.currentThread();
+		final Thread interrupter = new Thread(() -> {
+			try {
+				firstStarted.await();
+				caller.interrupt();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		interrupter.start();
+		try {
+			assertThrows(BusinessServiceException.class, () -> TransformationService.transformConcurrently(executorService, tasks, report));
+		} finally {
+			// Clear the interrupt flag for the rest of the test
+			Thread.interrupted();
+		}
+		executorService.shutdown();
+		assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+
+		assertTrue(firstInterrupted.get());
+		assertFalse(queuedStarted.get());
+	}
+
+	@Test
+	public void testReportReadWhileFilesAddToIt() throws Exception {
+		executorService = Executors.newFixedThreadPool(4);
+		final BuildReport report = BuildReport.getDummyReport();
+		final Map<String, Runnable> tasks = new LinkedHashMap<>();
+		for (int i = 0; i < 8; i++) {
+			final String fileName = "file" + i + ".txt";
+			tasks.put(fileName, () -> {
+				for (int line = 0; line < 1000; line++) {
+					report.add(TRANSFORMATION_FAILURES, fileName, "Bad line", line);
+					report.addDetail("File Transformation Timings", fileName + line, "1 ms");
+				}
+			});
+		}
+		final AtomicBoolean done = new AtomicBoolean();
+		final AtomicReference<Throwable> readFailure = new AtomicReference<>();
+		final Thread reader = new Thread(() -> {
+			try {
+				while (!done.get()) {
+					report.getReport().values().forEach(Object::toString);
+				}
+			} catch (Throwable e) {
+				readFailure.set(e);
+			}
+		});
+		reader.start();
+		try {
+			TransformationService.transformConcurrently(executorService, tasks, report);
+		} finally {
+			done.set(true);
+			reader.join();
+		}
+		assertNull(readFailure.get());
+
+		@SuppressWarnings("unchecked")
+		final Map<String, Map<String, String>> failures = (Map<String, Map<String, String>>) report.getReport().get(TRANSFORMATION_FAILURES);
+		assertEquals(8, failures.size());
+		assertEquals("1000", failures.get("file7.txt").get(BuildReport.ERROR_COUNT));
+	}
+}
@@ -0,0 +1,125 @@
+package org.ihtsdo.buildcloud.core.service.helper;
+
+import org.ihtsdo.buildcloud.core.service.build.database.primitive.LongLongHashMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ModuleChangeDeltaGeneratorTest {
+
+	private static final String CONCEPT_HEADER = "id\teffectiveTime\tactive\tmoduleId\tdefinitionStatusId";
+	private static final String RELATIONSHIP_HEADER = "id\teffectiveTime\tactive\tmoduleId\tsourceId\tdestinationId\trelationshipGroup\ttypeId\tcharacteristicTypeId\tmodifierId";
+	private static final long[] MODULES = {900000000000207008L, 900000000000012004L, 554471000005108L};
+
+	@TempDir
+	File tempDir;
+
+	private final Map<Long, Long> previousConceptModules = new HashMap<>();
+	private final Map<Long, Long> conceptModules = new HashMap<>();
+	private final List<String> previousRelationships = new ArrayList<>();
+	private final Set<Long> deltaRelationshipIds = new HashSet<>();
+
+	@BeforeEach
+	public void setup() {
+		// Concepts and relationships in no particular order
+		final Random random = new Random(42);
+		for (int i = 0; i < 300; i++) {
+			final long conceptId = 100000000L + random.nextInt(1000) * 100L;
+			final long moduleId = MODULES[random.nextInt(MODULES.length)];
+			previousConceptModules.put(conceptId, moduleId);
+			conceptModules.put(conceptId, random.nextInt(4) == 0 ? MODULES[random.nextInt(MODULES.length)] : moduleId);
+		}
+		// New concepts
+		for (int i = 0; i < 20; i++) {
+			conceptModules.put(200000000L + i * 100L, MODULES[0]);
+		}
+		final List<Long> conceptIds = new ArrayList<>(previousConceptModules.keySet());
+		for (int i = 0; i < 2000; i++) {
+			final long id = 7000000020L + i * 100L;
+			final long sourceId = conceptIds.get(random.nextInt(conceptIds.size()));
+			previousRelationships.add(id + "\t20170731\t1\t" + previousConceptModules.get(sourceId) + "\t" + sourceId + "\t123027009\t0\t116680003\t900000000000011006\t900000000000451002");
+			if (random.nextInt(5) == 0) {
+				deltaRelationshipIds.add(id);
+			}
+		}
+	}
+
+	@Test
+	public void testMatchesInMemoryJoin() throws Exception {
+		final Set<String> expected = new HashSet<>();
+		for (String relationship : previousRelationships) {
+			final String[] values = relationship.split("\t");
+			final long sourceId = Long.parseLong(values[4]);
+			if (!conceptModules.get(sourceId).equals(previousConceptModules.get(sourceId)) && !deltaRelationshipIds.contains(Long.parseLong(values[0]))) {
+				values[1] = "20180131";
+				values[3] = conceptModules.get(sourceId).toString();
+				expected.add(String.join("\t", values));
+			}
+		}
+		assertFalse(expected.isEmpty());
+
+		for (int maxLinesInMemory : new int[] {3, 100, 100000}) {
+			final ModuleChangeDeltaGenerator generator = new ModuleChangeDeltaGenerator(maxLinesInMemory);
+			final ModuleChangeDeltaGenerator.ModuleChanges moduleChanges = generator.findModuleChanges(concepts(conceptModules), concepts(previousConceptModules));
+			final File output = new File(tempDir, "delta-" + maxLinesInMemory + ".txt");
+			generator.writeModuleChangeDelta(moduleChanges, relationships(previousRelationships), 4, relationships(deltaRelationships()), "20180131", output);
+
+			final List<String> lines = Files.readAllLines(output.toPath());
+			assertEquals(RELATIONSHIP_HEADER, lines.get(0));
+			final List<String> rows = lines.subList(1, lines.size());
+			assertEquals(expected, new HashSet<>(rows));
+			assertEquals(expected.size(), rows.size());
+		}
+	}
+
+	@Test
+	public void testModuleChangesFromMap() throws Exception {
+		final LongLongHashMap conceptToModuleIds = new LongLongHashMap();
+		conceptToModuleIds.put(300L, 3L);
+		conceptToModuleIds.put(100L, 1L);
+		conceptToModuleIds.put(200L, 2L);
+		try (ModuleChangeDeltaGenerator.ModuleChanges moduleChanges = ModuleChangeDeltaGenerator.ModuleChanges.of(conceptToModuleIds)) {
+			for (long id = 100; id <= 300; id += 100) {
+				assertTrue(moduleChanges.next());
+				assertEquals(id, moduleChanges.getComponentId());
+				assertEquals(id / 100, moduleChanges.getModuleId());
+			}
+			assertFalse(moduleChanges.next());
+		}
+	}
+
+	private List<String> deltaRelationships() {
+		final List<String> delta = new ArrayList<>();
+		for (String relationship : previousRelationships) {
+			if (deltaRelationshipIds.contains(Long.parseLong(relationship.substring(0, relationship.indexOf('\t'))))) {
+				delta.add(relationship.replace("20170731", "20180131"));
+			}
+		}
+		return delta;
+	}
+
+	private static InputStream concepts(Map<Long, Long> conceptModules) {
+		final StringBuilder builder = new StringBuilder(CONCEPT_HEADER).append("\r\n");
+		conceptModules.forEach((conceptId, moduleId) -> builder.append(conceptId).append("\t20170731\t1\t").append(moduleId).append("\t900000000000074008\r\n"));
+		return new ByteArrayInputStream(builder.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static InputStream relationships(List<String> relationships) {
+		return new ByteArrayInputStream((RELATIONSHIP_HEADER + "\r\n" + String.join("\r\n", relationships)).getBytes(StandardCharsets.UTF_8));
+	}
+}
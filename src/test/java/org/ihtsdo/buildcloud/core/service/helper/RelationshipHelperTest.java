@@ -1,15 +1,20 @@
 package org.ihtsdo.buildcloud.core.service.helper;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.UUID;
 
+import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
+import org.ihtsdo.buildcloud.core.service.build.database.primitive.LongLongHashMap;
+import org.ihtsdo.buildcloud.core.service.build.database.primitive.UuidLongHashMap;
+import org.ihtsdo.buildcloud.core.service.build.transform.RepeatableRelationshipUUIDTransform;
 import org.ihtsdo.otf.rest.exception.BusinessServiceException;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -19,11 +24,11 @@ import static org.junit.jupiter.api.Assertions.*;
 
 public class RelationshipHelperTest {
 	
-	private final Map<String, String> conceptToModuleMap = new HashMap<>();
+	private final LongLongHashMap conceptToModuleMap = new LongLongHashMap();
 	@BeforeEach
 	public void setUp() {
-		conceptToModuleMap.put("741232009","900000000000207008");
-		conceptToModuleMap.put("741232010","900000000000207008");
+		conceptToModuleMap.put(741232009L, 900000000000207008L);
+		conceptToModuleMap.put(741232010L, 900000000000207008L);
 	}
 	
 	@Test
@@ -41,14 +46,40 @@ public class RelationshipHelperTest {
 		assertEquals(expected, result.get(1));
 	}
 	
+	@Test
+	public void testInferedDeltaFromConceptSnapshots() throws IOException {
+		InputStream conceptSnapshotStream = new ByteArrayInputStream(("id\teffectiveTime\tactive\tmoduleId\tdefinitionStatusId\r\n"
+				+ "741232009\t20180131\t1\t554471000005108\t900000000000074008\r\n"
+				+ "741232010\t20170731\t1\t900000000000012004\t900000000000074008\r\n").getBytes(StandardCharsets.UTF_8));
+		InputStream previousConceptSnapshotStream = RelationshipHelperTest.class.getResourceAsStream("sct2_Concept_Snapshot_INT_20170731.txt");
+		InputStream inferredDeltaStream = RelationshipHelperTest.class.getResourceAsStream("sct2_Relationship_Delta_INT_20180131.txt");
+		InputStream previousInferredSnapshotStream = RelationshipHelperTest.class.getResourceAsStream("sct2_Relationship_Snapshot_INT_20170731.txt");
+		File extraDelta = RelationshipHelper.generateRelationshipDeltaDueToModuleIdChange(conceptSnapshotStream, previousConceptSnapshotStream,
+				inferredDeltaStream, previousInferredSnapshotStream, "20180131");
+		List<String> result = readLinesFromFile(extraDelta);
+		assertEquals(2, result.size());
+		assertEquals("7346485023	20180131	1	554471000005108	741232009	123027009	0	704323007	900000000000010007	900000000000451002", result.get(1));
+	}
+
 	@Test
 	public void testGetConceptsWithModuleChange() throws IOException {
 		InputStream previousSnapshotStream = RelationshipHelperTest.class.getResourceAsStream("sct2_Concept_Snapshot_INT_20170731.txt");
-		Map<String, String> result = RelationshipHelper.getConceptsWithModuleChange(previousSnapshotStream, conceptToModuleMap);
+		LongLongHashMap result = RelationshipHelper.getConceptsWithModuleChange(previousSnapshotStream, conceptToModuleMap);
 		assertEquals(1, result.size());
-		assertEquals("900000000000207008",result.get("741232010"));
+		assertEquals(900000000000207008L, result.get(741232010L, -1));
 	}
 	
+	@Test
+	public void testBuildUuidSctidMapFromPreviousRelationshipFile() throws Exception {
+		String previousSnapshotPath = new File(RelationshipHelperTest.class.getResource("sct2_Relationship_Snapshot_INT_20170731.txt").toURI()).getPath();
+		UuidLongHashMap result = RelationshipHelper.buildUuidSctidMapFromPreviousRelationshipFile(previousSnapshotPath, RF2Constants.RelationshipFileType.INFERRED);
+		// Both relationships have the same source, destination, type and group so the last one is kept
+		assertEquals(1, result.size());
+		String[] relationship = "\t20170731\t1\t900000000000012004\t741232009\t123027009\t0\t704323007\t900000000000010007\t900000000000451002".split("\t", -1);
+		UUID uuid = new RepeatableRelationshipUUIDTransform(RF2Constants.RelationshipFileType.INFERRED).getCalculatedUuid(relationship);
+		assertEquals(7346485023L, result.get(uuid, -1));
+	}
+
 	private List<String> readLinesFromFile( File fileToRead) throws IOException {
 		List<String> lines = new ArrayList<>();
 		try (BufferedReader reader = new BufferedReader(new FileReader(fileToRead))) {
@@ -0,0 +1,91 @@
+package org.ihtsdo.buildcloud.core.service.helper;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Type5UuidFactoryTest {
+
+	private Type5UuidFactory factory;
+
+	private List<String[]> goldenEntries;
+
+	@BeforeEach
+	public void setup() throws Exception {
+		factory = new Type5UuidFactory();
+		// UUIDs made by the factory when it encoded each name with String.getBytes and shared one synchronized digest
+		goldenEntries = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(getClass().getResourceAsStream("type5-uuid-golden.txt"), StandardCharsets.UTF_8))) {
+			reader.readLine(); // Discard header
+			String line;
+			while ((line = reader.readLine()) != null) {
+				goldenEntries.add(line.split("\t", -1));
+			}
+		}
+	}
+
+	@Test
+	public void testMatchesGoldenUuids() throws IOException {
+		assertEquals(224, goldenEntries.size());
+		for (String[] entry : goldenEntries) {
+			assertEquals(entry[2], getUuid(entry), entry[1]);
+		}
+		// And again now that the namespaces have been hashed
+		for (String[] entry : goldenEntries) {
+			assertEquals(entry[2], getUuid(entry), entry[1]);
+		}
+	}
+
+	@Test
+	public void testNamePartsHashedAsJoinedName() {
+		assertEquals(factory.get("7310001241081016002811370021166800030S"),
+				factory.get("731000124108", "1016002", "81137002", "116680003", "0", "S"));
+		assertEquals(factory.get("emoji 😀 Café"), factory.get("emoji ", "😀", " Café"));
+		assertEquals(factory.get("anull"), factory.get("a", null));
+		assertEquals(factory.get(""), factory.get(new CharSequence[0]));
+	}
+
+	@Test
+	public void testThreadsMakeTheSameUuids() throws Exception {
+		ExecutorService executorService = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<List<String>>> futures = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				futures.add(executorService.submit(() -> {
+					List<String> uuids = new ArrayList<>();
+					for (int repeat = 0; repeat < 50; repeat++) {
+						for (String[] entry : goldenEntries) {
+							uuids.add(getUuid(entry));
+						}
+					}
+					return uuids;
+				}));
+			}
+			for (Future<List<String>> future : futures) {
+				List<String> uuids = future.get();
+				for (int i = 0; i < uuids.size(); i++) {
+					assertEquals(goldenEntries.get(i % goldenEntries.size())[2], uuids.get(i));
+				}
+			}
+		} finally {
+			executorService.shutdown();
+		}
+	}
+
+	private String getUuid(String[] entry) {
+		UUID namespace = entry[0].isEmpty() ? null : UUID.fromString(entry[0]);
+		return factory.get(namespace, entry[1]).toString();
+	}
+}
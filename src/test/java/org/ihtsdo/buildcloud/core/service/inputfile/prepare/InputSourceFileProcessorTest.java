@@ -1,10 +1,17 @@
 package org.ihtsdo.buildcloud.core.service.inputfile.prepare;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.io.IOUtils;
 
 import org.ihtsdo.buildcloud.TestConfig;
 import org.ihtsdo.buildcloud.core.dao.helper.S3PathHelper;
@@ -12,6 +19,7 @@ import org.ihtsdo.buildcloud.core.entity.Build;
 import org.ihtsdo.buildcloud.core.entity.Product;
 import org.ihtsdo.buildcloud.core.entity.ReleaseCenter;
 import org.ihtsdo.buildcloud.core.manifest.ManifestValidator;
+import org.ihtsdo.buildcloud.core.service.build.RF2Constants;
 import org.ihtsdo.otf.dao.s3.S3Client;
 import org.ihtsdo.otf.dao.s3.helper.FileHelper;
 import org.junit.jupiter.api.BeforeEach;
@@ -35,6 +43,10 @@ public class InputSourceFileProcessorTest {
 	private static final String IT = "it";
 	private static final String EXTERNALLY_MAINTAINED = "externally-maintained";
 	private static final String TERMINOLOGY_SERVER = "terminology-server";
+	private static final String REFSET_FILE = "der2_Refset_SimpleDelta_INT_20240731.txt";
+	private static final String RELATIONSHIP_FILE = "sct2_Relationship_Delta_INT_20240731.txt";
+	private static final String REFSET_HEADER = "id\teffectiveTime\tactive\tmoduleId\trefsetId\treferencedComponentId";
+	private static final String RELATIONSHIP_HEADER = "id\teffectiveTime\tactive\tmoduleId\tsourceId\tdestinationId\trelationshipGroup\ttypeId\tcharacteristicTypeId\tmodifierId";
 	@Autowired
 	private S3PathHelper s3PathHelper;
 
@@ -52,7 +64,8 @@ public class InputSourceFileProcessorTest {
 	@BeforeEach
 	public void setUp() {
 		fileHelper = new FileHelper(buildBucketName, s3Client);
-		product = new Product(getClass().getName());
+		// Builds created within the same second share an id, so each test gets its own product for the files it uploads
+		product = new Product(getClass().getName() + "-" + UUID.randomUUID());
 		ReleaseCenter releaseCenter = new ReleaseCenter("International", "int");
 		product.setReleaseCenter(releaseCenter);
 		build = new Build(new Date(), product.getReleaseCenter().getBusinessKey(), product.getBusinessKey(), product.getBuildConfiguration(), product.getQaTestConfig());
@@ -315,6 +328,92 @@ public class InputSourceFileProcessorTest {
 		}		
 	}
 	
+	@Test
+	public void testRefsetInMultipleSourcesTakenFromFirstSource() throws Exception {
+		uploadSourceFile(EXTERNALLY_MAINTAINED, REFSET_FILE, REFSET_HEADER, refsetLine("e1", "723264001"), refsetLine("e2", "446609009"));
+		uploadSourceFile(TERMINOLOGY_SERVER, REFSET_FILE, REFSET_HEADER, refsetLine("t1", "723264001"), refsetLine("t2", "446609009"));
+
+		SourceFileProcessingReport report = processRoutingManifest(TERMINOLOGY_SERVER + "/" + REFSET_FILE, EXTERNALLY_MAINTAINED + "/" + REFSET_FILE);
+
+		assertEquals(List.of(REFSET_HEADER, refsetLine("e1", "723264001"), refsetLine("t2", "446609009")),
+				readInputFile("rel2_Refset_SimpleDelta_INT_20240731.txt"));
+		List<FileProcessingReportDetail> errors = report.getDetails().get(ReportType.ERROR);
+		assertEquals(1, errors.size());
+		assertEquals(TERMINOLOGY_SERVER, errors.get(0).getSource());
+		assertEquals("723264001", errors.get(0).getRefsetId());
+		assertTrue(report.getDetails().get(ReportType.WARNING).stream()
+				.anyMatch(detail -> EXTERNALLY_MAINTAINED.equals(detail.getSource()) && "446609009".equals(detail.getRefsetId())));
+	}
+
+	@Test
+	public void testLinesWrittenInSourceOrder() throws Exception {
+		List<String> externalLines = relationshipLines("e", 2500);
+		List<String> terminologyServerLines = relationshipLines("t", 2500);
+		uploadSourceFile(TERMINOLOGY_SERVER, RELATIONSHIP_FILE, RELATIONSHIP_HEADER, terminologyServerLines.toArray(new String[0]));
+		uploadSourceFile(EXTERNALLY_MAINTAINED, RELATIONSHIP_FILE, RELATIONSHIP_HEADER, externalLines.toArray(new String[0]));
+
+		SourceFileProcessingReport report = processRoutingManifest(TERMINOLOGY_SERVER + "/" + RELATIONSHIP_FILE, EXTERNALLY_MAINTAINED + "/" + RELATIONSHIP_FILE);
+
+		assertNull(report.getDetails().get(ReportType.ERROR));
+		List<String> expected = new ArrayList<>();
+		expected.add(RELATIONSHIP_HEADER);
+		expected.addAll(externalLines);
+		expected.addAll(terminologyServerLines);
+		assertEquals(expected, readInputFile("rel2_Relationship_Delta_INT_20240731.txt"));
+	}
+
+	@Test
+	public void testShortLinesSkippedAndReported() throws Exception {
+		String shortLine = "200001\t20240731\t1";
+		uploadSourceFile(TERMINOLOGY_SERVER, RELATIONSHIP_FILE, RELATIONSHIP_HEADER, relationshipLines("t", 1).get(0), shortLine, relationshipLines("u", 1).get(0));
+		uploadSourceFile(TERMINOLOGY_SERVER, REFSET_FILE, REFSET_HEADER, shortLine, refsetLine("t1", "723264001"));
+
+		SourceFileProcessingReport report = processRoutingManifest(TERMINOLOGY_SERVER + "/" + RELATIONSHIP_FILE, TERMINOLOGY_SERVER + "/" + REFSET_FILE);
+
+		assertEquals(List.of(RELATIONSHIP_HEADER, relationshipLines("t", 1).get(0), relationshipLines("u", 1).get(0)),
+				readInputFile("rel2_Relationship_Delta_INT_20240731.txt"));
+		assertEquals(List.of(REFSET_HEADER, refsetLine("t1", "723264001")), readInputFile("rel2_Refset_SimpleDelta_INT_20240731.txt"));
+		List<FileProcessingReportDetail> errors = report.getDetails().get(ReportType.ERROR);
+		assertEquals(2, errors.size());
+		assertEquals("Skipped 1 lines with fewer columns than expected, the first being line 3.", errors.get(0).getMessage());
+		assertEquals("Skipped 1 lines with fewer columns than expected, the first being line 2.", errors.get(1).getMessage());
+	}
+
+	private SourceFileProcessingReport processRoutingManifest(String... sourceFiles) throws Exception {
+		processor = new InputSourceFileProcessor(fileHelper, s3PathHelper, product.getReleaseCenter().getBusinessKey(), product.getBusinessKey(), true);
+		processor.setParallelism(2);
+		return processor.processFiles(getClass().getResourceAsStream("manifest_routing.xml"), Arrays.asList(sourceFiles), build.getId(), null);
+	}
+
+	private void uploadSourceFile(String source, String fileName, String... lines) throws Exception {
+		byte[] bytes = (String.join(RF2Constants.LINE_ENDING, lines) + RF2Constants.LINE_ENDING).getBytes(StandardCharsets.UTF_8);
+		String path = s3PathHelper.getBuildSourcesPath(product.getReleaseCenter().getBusinessKey(), product.getBusinessKey(), build.getId())
+				.append(source).append("/").append(fileName).toString();
+		fileHelper.putFile(new ByteArrayInputStream(bytes), bytes.length, path);
+	}
+
+	private List<String> readInputFile(String fileName) throws Exception {
+		String path = s3PathHelper.getBuildInputFilesPath(product.getReleaseCenter().getBusinessKey(), product.getBusinessKey(), build.getId())
+				.append(fileName).toString();
+		try (InputStream inputStream = fileHelper.getFileStream(path)) {
+			assertNotNull(inputStream, fileName + " must be prepared");
+			return IOUtils.readLines(inputStream, StandardCharsets.UTF_8);
+		}
+	}
+
+	private static String refsetLine(String id, String refsetId) {
+		return String.join("\t", id, "20240731", "1", "900000000000207008", refsetId, "100005");
+	}
+
+	private static List<String> relationshipLines(String idPrefix, int count) {
+		List<String> lines = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			lines.add(String.join("\t", idPrefix + i, "20240731", "1", "900000000000207008", "100005", "138875005", "0",
+					"116680003", "900000000000011006", "900000000000451002"));
+		}
+		return lines;
+	}
+
 	private void validateManifest(String manifestFileName) {
 		InputStream manifestStream = getClass().getResourceAsStream(manifestFileName);
 		String validationMsg = ManifestValidator.validate(manifestStream);
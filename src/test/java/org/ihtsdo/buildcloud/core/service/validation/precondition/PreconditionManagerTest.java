@@ -0,0 +1,88 @@
+package org.ihtsdo.buildcloud.core.service.validation.precondition;
+
+import org.ihtsdo.buildcloud.core.entity.Build;
+import org.ihtsdo.buildcloud.core.entity.PreConditionCheckReport;
+import org.ihtsdo.buildcloud.core.entity.PreConditionCheckReport.State;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PreconditionManagerTest {
+
+	@Test
+	public void testChecksRunInParallelReportedInOrder() {
+		final CountDownLatch allRunning = new CountDownLatch(3);
+		final PreconditionManager manager = new PreconditionManager(true).preconditionChecks(
+				new WaitingCheck("first", allRunning, State.FAIL),
+				new WaitingCheck("second", allRunning, State.PASS),
+				new WaitingCheck("third", allRunning, State.WARNING));
+		manager.setParallelism(3);
+
+		final List<PreConditionCheckReport> reports = manager.runPreconditionChecks(null);
+
+		assertEquals(3, reports.size());
+		assertEquals("first", reports.get(0).getPreConditionCheckName());
+		assertEquals(State.FAIL, reports.get(0).getResult());
+		assertEquals("second", reports.get(1).getPreConditionCheckName());
+		assertEquals(State.PASS, reports.get(1).getResult());
+		assertEquals("third", reports.get(2).getPreConditionCheckName());
+		assertEquals(State.WARNING, reports.get(2).getResult());
+	}
+
+	@Test
+	public void testFailingCheckStopsTheChecks() {
+		final PreconditionManager manager = new PreconditionManager(true).preconditionChecks(
+				new WaitingCheck("first", new CountDownLatch(0), State.PASS),
+				new PreconditionCheck() {
+					@Override
+					public void runCheck(Build build) {
+						throw new IllegalArgumentException("Broken check");
+					}
+				});
+		manager.setParallelism(2);
+
+		final IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> manager.runPreconditionChecks(null));
+		assertEquals("Broken check", exception.getMessage());
+	}
+
+	/**
+	 * Check which only gets its result once all the other checks are running.
+	 */
+	private static class WaitingCheck extends PreconditionCheck {
+
+		private final String name;
+		private final CountDownLatch allRunning;
+		private final State result;
+
+		private WaitingCheck(String name, CountDownLatch allRunning, State result) {
+			this.name = name;
+			this.allRunning = allRunning;
+			this.result = result;
+		}
+
+		@Override
+		public void runCheck(Build build) {
+			allRunning.countDown();
+			try {
+				if (!allRunning.await(10, TimeUnit.SECONDS)) {
+					fatalError("Checks did not run at the same time");
+					return;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				fatalError("Interrupted");
+				return;
+			}
+			setState(result);
+		}
+
+		@Override
+		public String getTestName() {
+			return name;
+		}
+	}
+}
@@ -1,12 +1,32 @@
 package org.ihtsdo.buildcloud.core.service.validation.rvf;
 
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.ihtsdo.buildcloud.core.dao.io.AsyncPipedStreamBean;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -50,4 +70,113 @@ public class RVFClientTest {
 
 		assertEquals(2, failDetail.getFailedCount());
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testCheckInputFilesAtTheSameTime() throws Exception {
+		final int files = 3;
+		final CountDownLatch allUploading = new CountDownLatch(files);
+		final List<String> requestBodies = Collections.synchronizedList(new ArrayList<>());
+		// Stub RVF which only passes the files once they are all being checked at the same time
+		final ExecutorService rvfExecutor = Executors.newFixedThreadPool(files);
+		final HttpServer rvf = startRvf(rvfExecutor, exchange -> {
+			requestBodies.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+			allUploading.countDown();
+			boolean together;
+			try {
+				together = allUploading.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				together = false;
+			}
+			final byte[] response = ("Result\tRow-Column\tFile Name\n\nTotal number of failures: " + (together ? 0 : 1) + "\n").getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, response.length);
+			try (OutputStream responseBody = exchange.getResponseBody()) {
+				responseBody.write(response);
+			}
+		});
+		final ExecutorService executorService = Executors.newFixedThreadPool(files);
+		try (RVFClient client = new RVFClient("http://localhost:" + rvf.getAddress().getPort(), files)) {
+			final List<Future<String>> errors = new ArrayList<>();
+			for (int i = 0; i < files; i++) {
+				final String fileName = "rel2_Concept_Delta_INT_2014073" + i + ".txt";
+				final byte[] content = ("content of " + fileName).getBytes(StandardCharsets.UTF_8);
+				errors.add(executorService.submit(() -> client.checkInputFile(new ByteArrayInputStream(content), fileName,
+						new AsyncPipedStreamBean(new ByteArrayOutputStream(), CompletableFuture.completedFuture(fileName), fileName), "token")));
+			}
+			for (Future<String> error : errors) {
+				assertNull(error.get(30, TimeUnit.SECONDS));
+			}
+		} finally {
+			executorService.shutdownNow();
+			rvf.stop(0);
+			rvfExecutor.shutdownNow();
+		}
+		assertEquals(files, requestBodies.size());
+		for (int i = 0; i < files; i++) {
+			final String fileName = "rel2_Concept_Delta_INT_2014073" + i + ".txt";
+			assertTrue(requestBodies.stream().anyMatch(body -> body.contains("filename=\"" + fileName + "\"") && body.contains("content of " + fileName)));
+		}
+	}
+
+	@Test
+	public void testProcessResponseFailureDetails() throws Exception {
+		String response = """
+                Result\tRow-Column\tFile Name\tFile Path\tColumn Name\tTest Type\tTest Pattern\tFailure Details\tNumber of occurences
+                Failed\t2-1\trel2_Concept_Delta_INT_20140731.txt\t/rel2_Concept_Delta_INT_20140731.txt\tid\tColumnValuesTest\tSCTID\tinvalid\t1
+                Failed\t3-2\trel2_Concept_Delta_INT_20140731.txt\t/rel2_Concept_Delta_INT_20140731.txt\teffectiveTime\tColumnValuesTest\tDate\tinvalid\t1
+
+                Number of tests run: 37362
+                Total number of failures: 2
+                Total number of successes: 37360
+                """;
+
+		RVFFailDetail failDetail = rvfClient.processResponse(new BufferedReader(new StringReader(response)),
+				new BufferedWriter(new StringWriter()), "Occured during testProcessResponseFailureDetails");
+
+		assertEquals(2, failDetail.getFailedCount());
+		assertEquals("Failed 2-1 rel2_Concept_Delta_INT_20140731.txt /rel2_Concept_Delta_INT_20140731.txt id ColumnValuesTest SCTID invalid 1, "
+				+ "Failed 3-2 rel2_Concept_Delta_INT_20140731.txt /rel2_Concept_Delta_INT_20140731.txt effectiveTime ColumnValuesTest Date invalid 1", failDetail.getDetails());
+		assertEquals(Map.of("ColumnValuesTest", 2L), failDetail.getFailuresByTestType());
+	}
+
+	@Test
+	public void testLargeFailureResponseCapped() throws Exception {
+		final int failures = 200_000;
+		// Stub RVF which fails every line of the file
+		final ExecutorService rvfExecutor = Executors.newSingleThreadExecutor();
+		final HttpServer rvf = startRvf(rvfExecutor, exchange -> {
+			exchange.getRequestBody().readAllBytes();
+			exchange.sendResponseHeaders(200, 0);
+			try (BufferedWriter responseWriter = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+				responseWriter.write("Result\tRow-Column\tFile Name\tFile Path\tColumn Name\tTest Type\tTest Pattern\tFailure Details\tNumber of occurences\n");
+				for (int i = 0; i < failures; i++) {
+					responseWriter.write("Failed\t" + (i + 2) + "-1\tf.txt\t/f.txt\tid\t" + (i % 4 == 0 ? "FileNameTest" : "ColumnValuesTest") + "\tSCTID\tinvalid\t1\n");
+				}
+				responseWriter.write("\nNumber of tests run: " + failures + "\nTotal number of failures: " + failures + "\nTotal number of successes: 0\n");
+			}
+		});
+		final ByteArrayOutputStream log = new ByteArrayOutputStream();
+		try (RVFClient client = new RVFClient("http://localhost:" + rvf.getAddress().getPort())) {
+			client.setMaxFailureDetailLength(1000);
+			final String error = client.checkInputFile(new ByteArrayInputStream("content".getBytes(StandardCharsets.UTF_8)), "rel2_Concept_Delta_INT_20140731.txt",
+					new AsyncPipedStreamBean(log, CompletableFuture.completedFuture("log"), "log"), "token");
+
+			assertTrue(error.startsWith("There were " + failures + " RVF precondition test failures for file rel2_Concept_Delta_INT_20140731.txt: Failed 2-1 f.txt"), error);
+			assertTrue(error.length() < 1500, "Failure details capped");
+			assertTrue(error.contains("more failed tests not shown. Failed tests by test type: FileNameTest: 50000, ColumnValuesTest: 150000. Logged results to log"), error);
+		} finally {
+			rvf.stop(0);
+			rvfExecutor.shutdownNow();
+		}
+		// Every failure is still in the log
+		final String[] logLines = log.toString(StandardCharsets.UTF_8).split("\r\n");
+		assertEquals(failures + 5, logLines.length);
+	}
+
+	private HttpServer startRvf(ExecutorService executorService, HttpHandler testPreHandler) throws IOException {
+		final HttpServer rvf = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		rvf.setExecutor(executorService);
+		rvf.createContext("/test-pre", testPreHandler);
+		rvf.start();
+		return rvf;
+	}
+}
@@ -0,0 +1,161 @@
+package org.ihtsdo.buildcloud.telemetry.server;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.ihtsdo.buildcloud.telemetry.core.Constants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import jakarta.jms.Connection;
+import jakarta.jms.JMSException;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TelemetryProcessorTest {
+
+	private static final String BROKER_URL = "vm://telemetry-processor-test?broker.persistent=false&broker.useJmx=false";
+
+	@TempDir
+	File tempDir;
+
+	private String previousBrokerUrl;
+	private Connection connection;
+	private Connection processorConnection;
+	private Session producerSession;
+	private MessageProducer producer;
+	private TelemetryProcessor processor;
+
+	@BeforeEach
+	public void setUp() throws JMSException {
+		previousBrokerUrl = System.getProperty(Constants.SYS_PROP_BROKER_URL);
+		// The extra consumers of the processor connect to the broker given here
+		System.setProperty(Constants.SYS_PROP_BROKER_URL, BROKER_URL);
+		connection = new ActiveMQConnectionFactory(BROKER_URL).createConnection();
+		connection.start();
+		producerSession = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+		producer = producerSession.createProducer(producerSession.createQueue(Constants.QUEUE_RELEASE_EVENTS));
+	}
+
+	@AfterEach
+	public void tearDown() throws JMSException {
+		if (processor != null) {
+			processor.shutdown();
+			processorConnection.close();
+		}
+		connection.close();
+		if (previousBrokerUrl != null) {
+			System.setProperty(Constants.SYS_PROP_BROKER_URL, previousBrokerUrl);
+		} else {
+			System.clearProperty(Constants.SYS_PROP_BROKER_URL);
+		}
+	}
+
+	@Test
+	public void testStreamsKeepTheirOrderAcrossConsumers() throws Exception {
+		startProcessor(4, 1, 0);
+		final int streamCount = 8;
+		final int linesPerStream = 200;
+		final List<File> logs = new ArrayList<>();
+		for (int stream = 0; stream < streamCount; stream++) {
+			final File log = new File(tempDir, "stream" + stream + ".log");
+			logs.add(log);
+			producer.send(startMessage("stream" + stream, log));
+		}
+		// Interleave the streams so consecutive messages go to different consumers
+		for (int line = 0; line < linesPerStream; line++) {
+			for (int stream = 0; stream < streamCount; stream++) {
+				producer.send(eventMessage("stream" + stream, "line " + line + "\n", 1));
+			}
+		}
+		for (int stream = 0; stream < streamCount; stream++) {
+			producer.send(finishMessage("stream" + stream));
+		}
+
+		for (final File log : logs) {
+			waitFor(() -> readLines(log).size() == linesPerStream);
+			final List<String> lines = readLines(log);
+			for (int line = 0; line < linesPerStream; line++) {
+				assertEquals("line " + line, lines.get(line), log.getName());
+			}
+		}
+	}
+
+	@Test
+	public void testBatchedEventsCountTowardsTheFlush() throws Exception {
+		// Flush by count only, so lines are not written to disk until ten events are received
+		startProcessor(1, 10, TimeUnit.HOURS.toMillis(1));
+		final File log = new File(tempDir, "batched.log");
+		producer.send(startMessage("batched", log));
+		// The first message of a stream is always flushed
+		producer.send(eventMessage("batched", "first\n", 1));
+		waitFor(() -> readLines(log).size() == 1);
+
+		producer.send(eventMessage("batched", "second\n", 1));
+		producer.send(eventMessage("batched", "third\nfourth\nfifth\nsixth\nseventh\neighth\nninth\ntenth\neleventh\n", 9));
+
+		waitFor(() -> readLines(log).size() == 11);
+		assertEquals("eleventh", readLines(log).get(10));
+	}
+
+	private void startProcessor(final int consumers, final int flushLines, final long flushIntervalMillis) throws JMSException {
+		processorConnection = new ActiveMQConnectionFactory(BROKER_URL).createConnection();
+		processorConnection.start();
+		final Session session = processorConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+		processor = new TelemetryProcessor(session, null, true, false, consumers, null);
+		ReflectionTestUtils.setField(processor, "flushLines", flushLines);
+		ReflectionTestUtils.setField(processor, "flushIntervalMillis", flushIntervalMillis);
+		processor.startup();
+	}
+
+	private TextMessage startMessage(final String streamId, final File log) throws JMSException {
+		final TextMessage message = createMessage(streamId, Constants.START_STREAM);
+		message.setStringProperty(Constants.STREAM_URI, Constants.FILE + Constants.PROTOCOL_SEPARATOR + log.getAbsolutePath());
+		return message;
+	}
+
+	private TextMessage eventMessage(final String streamId, final String text, final int eventCount) throws JMSException {
+		final TextMessage message = createMessage(streamId, text);
+		message.setIntProperty(Constants.EVENT_COUNT, eventCount);
+		return message;
+	}
+
+	private TextMessage finishMessage(final String streamId) throws JMSException {
+		return createMessage(streamId, Constants.FINISH_STREAM);
+	}
+
+	private TextMessage createMessage(final String streamId, final String text) throws JMSException {
+		final TextMessage message = producerSession.createTextMessage(text);
+		message.setJMSCorrelationID(streamId);
+		message.setStringProperty(Constants.GROUP_ID, streamId);
+		return message;
+	}
+
+	private static List<String> readLines(final File file) {
+		try {
+			return file.exists() ? Files.readAllLines(file.toPath(), StandardCharsets.UTF_8) : List.of();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void waitFor(final BooleanSupplier condition) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(20);
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for the telemetry log");
+			Thread.sleep(20);
+		}
+	}
+}